@@ -0,0 +1,49 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1Backend;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FF1BcEngineWithAlphabet.encryptChars with the email alphabet (65 chars, radix 65) and the
+ * 94-char visible-ASCII alphabet used by the tests.
+ *
+ * java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner Alphabet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlphabetBenchmark {
+    @Param({"EMAIL", "ASCII_VISIBLE"})
+    public String alphabet;
+
+    @Param({"8", "18", "32"})
+    public int length;
+
+    @Param({"BOUNCY_CASTLE", "NATIVE"})
+    public String backend;
+
+    private FF1BcEngineWithAlphabet engine;
+    private String plain;
+
+    @Setup
+    public void setup() {
+        String chars = "EMAIL".equals(alphabet) ? Fixtures.EMAIL_ALPHABET : Fixtures.ASCII_VISIBLE_ALPHABET;
+        byte[] tweak = "tenant:bench|suite:alphabet".getBytes(StandardCharsets.UTF_8);
+        engine = new FF1BcEngineWithAlphabet(Fixtures.key(), chars, tweak,
+                EngineOptions.defaults().withBackend(FF1Backend.valueOf(backend)));
+        plain = Fixtures.sample(chars, length);
+    }
+
+    @Benchmark
+    public String encryptChars() throws Exception {
+        return engine.encryptChars(plain);
+    }
+}
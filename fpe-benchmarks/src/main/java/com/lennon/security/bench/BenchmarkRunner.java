@@ -0,0 +1,29 @@
+package com.lennon.security.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected suites once per thread count, with the GC/allocation profiler attached.
+ *
+ * Usage: java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner [includeRegex]
+ *   -Dbench.threads=1,8,32   thread counts to run (default 1,8,32)
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        String[] threads = System.getProperty("bench.threads", "1,8,32").split(",");
+        for (String t : threads) {
+            ChainedOptionsBuilder opts = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(t.trim()))
+                    .addProfiler(GCProfiler.class);
+            new Runner(opts.build()).run();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.BlockCipherProvider;
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1Backend;
+import com.lennon.security.core.FF1BcEngine;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BouncyCastle AESEngine vs. JCA "AES/ECB/NoPadding" (AES-NI intrinsics) inside FF1,
+ * for an 11-digit phone (radix 10) and an 18-character national ID (65-char email alphabet).
+ *
+ * java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner BlockCipher
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockCipherBenchmark {
+    @Param({"BC", "JCA"})
+    public String aes;
+
+    @Param({"BOUNCY_CASTLE", "NATIVE"})
+    public String backend;
+
+    private FF1BcEngine phoneEngine;
+    private FF1BcEngineWithAlphabet idEngine;
+
+    @Setup
+    public void setup() {
+        byte[] key = Fixtures.key();
+        byte[] tweak = "tenant:bench|suite:aes".getBytes(StandardCharsets.UTF_8);
+        EngineOptions opts = EngineOptions.defaults()
+                .withBackend(FF1Backend.valueOf(backend))
+                .withBlockCipher("JCA".equals(aes) ? BlockCipherProvider.jca() : BlockCipherProvider.bouncyCastle());
+        phoneEngine = new FF1BcEngine(key, 10, tweak, opts);
+        idEngine = new FF1BcEngineWithAlphabet(key, Fixtures.EMAIL_ALPHABET, tweak, opts);
+    }
+
+    @Benchmark
+    public String phone11() {
+        return phoneEngine.encryptDigits("13884353625");
+    }
+
+    @Benchmark
+    public String nationalId18() throws Exception {
+        return idEngine.encryptChars("11010519491231002X");
+    }
+}
@@ -0,0 +1,71 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.CachingFormatPreservingService;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+import com.lennon.security.core.FpeResultCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CachingFormatPreservingService hits under contention: every thread reading the same hot value,
+ * and each thread cycling over its own cached values. Both are all-hit workloads, so they measure
+ * the cache's read path only.
+ *
+ * Run at 1, 8 and 32 threads: java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner Cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    static final String HOT = "+86-156-1894-0601";
+    static final int PER_THREAD = 64;
+
+    private CachingFormatPreservingService fps;
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Input {
+        String[] phones;
+        int next;
+
+        @Setup
+        public void setup(CacheBenchmark bench) throws Exception {
+            int id = bench.threadIds.getAndIncrement();
+            phones = new String[PER_THREAD];
+            for (int i = 0; i < PER_THREAD; i++) {
+                phones[i] = String.format("+86-156-%04d-%04d", id, i);
+                bench.fps.encryptPhoneKeepPrefix(phones[i], 3, 4);
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] key = Fixtures.key();
+        byte[] tweak = "tenant:bench|suite:cache".getBytes(StandardCharsets.UTF_8);
+        fps = new CachingFormatPreservingService(new FormatPreservingService(
+                new FF1BcEngineWithFormat(key, tweak),
+                new FF1BcEngineWithAlphabet(key, Fixtures.EMAIL_ALPHABET, tweak)),
+                new FpeResultCache(100_000, 0));
+        fps.encryptPhoneKeepPrefix(HOT, 3, 4);
+    }
+
+    @Benchmark
+    public String hotKey() throws Exception {
+        return fps.encryptPhoneKeepPrefix(HOT, 3, 4);
+    }
+
+    @Benchmark
+    public String perThreadKeys(Input in) throws Exception {
+        String p = in.phones[in.next++ & (PER_THREAD - 1)];
+        return fps.encryptPhoneKeepPrefix(p, 3, 4);
+    }
+}
@@ -0,0 +1,52 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1Backend;
+import com.lennon.security.core.FF1BcEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FF1BcEngine.encryptDigits from 6 digits (the 1e6 minimum domain) up to 32 digits,
+ * on both FF1 backends.
+ *
+ * java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner Digits
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigitsBenchmark {
+    @Param({"6", "9", "11", "16", "18", "24", "32"})
+    public int length;
+
+    @Param({"BOUNCY_CASTLE", "NATIVE"})
+    public String backend;
+
+    private FF1BcEngine engine;
+    private String plain;
+    private String cipher;
+
+    @Setup
+    public void setup() {
+        byte[] tweak = "tenant:bench|suite:digits".getBytes(StandardCharsets.UTF_8);
+        engine = new FF1BcEngine(Fixtures.key(), 10, tweak,
+                EngineOptions.defaults().withBackend(FF1Backend.valueOf(backend)));
+        plain = Fixtures.sample("0123456789", length);
+        cipher = engine.encryptDigits(plain);
+    }
+
+    @Benchmark
+    public String encryptDigits() {
+        return engine.encryptDigits(plain);
+    }
+
+    @Benchmark
+    public String decryptDigits() {
+        return engine.decryptDigits(cipher);
+    }
+}
@@ -0,0 +1,71 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1Backend;
+import com.lennon.security.core.FF1BcEngine;
+import org.bouncycastle.crypto.fpe.FPEFF1Engine;
+import org.bouncycastle.crypto.params.FPEParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled (thread-confined, pre-initialized) FF1 engines vs. the old per-call
+ * "new FPEFF1Engine + init" path, and the native FF1Cipher backend, on an 11-digit phone.
+ *
+ * Run at 1, 8 and 32 threads: java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner EnginePool
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnginePoolBenchmark {
+    private byte[] key;
+    private byte[] tweak;
+    private FF1BcEngine pooled;
+    private FF1BcEngine nativeCore;
+
+    @State(Scope.Thread)
+    public static class Input {
+        byte[] digits;
+
+        @Setup
+        public void setup() {
+            digits = new byte[]{1, 3, 8, 8, 4, 3, 5, 3, 6, 2, 5};
+        }
+    }
+
+    @Setup
+    public void setup() {
+        key = Fixtures.key();
+        tweak = "tenant:bench|suite:pool".getBytes(StandardCharsets.UTF_8);
+        pooled = new FF1BcEngine(key, 10, tweak, EngineOptions.defaults().withBackend(FF1Backend.BOUNCY_CASTLE));
+        nativeCore = new FF1BcEngine(key, 10, tweak, EngineOptions.defaults().withBackend(FF1Backend.NATIVE));
+    }
+
+    @Benchmark
+    public String pooled() {
+        return pooled.encryptDigits("13884353625");
+    }
+
+    @Benchmark
+    public String nativeCore() {
+        return nativeCore.encryptDigits("13884353625");
+    }
+
+    @Benchmark
+    public String perCall(Input in) {
+        // the pre-pool FF1BcEngine.encryptDigits body
+        FPEFF1Engine engine = new FPEFF1Engine();
+        engine.init(true, new FPEParameters(new KeyParameter(key), 10, tweak));
+        byte[] out = new byte[in.digits.length];
+        engine.processBlock(in.digits, 0, in.digits.length, out, 0);
+        StringBuilder sb = new StringBuilder(out.length);
+        for (byte b : out) sb.append((char) ('0' + b));
+        return sb.toString();
+    }
+}
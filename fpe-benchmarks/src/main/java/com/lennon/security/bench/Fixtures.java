@@ -0,0 +1,42 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.PRF;
+
+/**
+ * Shared benchmark inputs. The key is read from FPE_KEY_HEX when set so numbers can be
+ * reproduced with a real key length; otherwise a fixed 256-bit test key is used.
+ */
+final class Fixtures {
+    /** 65-char alphabet used for emails in the tests and the consumer demo. */
+    static final String EMAIL_ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ._-";
+
+    /** 94-char visible-ASCII alphabet used by FormatPreservingAllTypesTests. */
+    static final String ASCII_VISIBLE_ALPHABET =
+            "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+                    "!@#$%^&*()_+-=[]{}|;:',.<>/?`~\\\"";
+
+    private static final String DEFAULT_KEY_HEX =
+            "ffeeddccbbaa99887766554433221100ffeeddccbbaa99887766554433221100";
+
+    private Fixtures() {}
+
+    static byte[] key() {
+        String hex = System.getProperty("FPE_KEY_HEX");
+        if (hex == null || hex.isEmpty()) hex = System.getenv("FPE_KEY_HEX");
+        if (hex == null || hex.isEmpty()) hex = DEFAULT_KEY_HEX;
+        return PRF.hexToBytes(hex);
+    }
+
+    /** First n chars of a fixed pseudo-random run over alphabet (same input on every fork). */
+    static String sample(String alphabet, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        long x = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < n; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            sb.append(alphabet.charAt((int) Long.remainderUnsigned(x, alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1Backend;
+import com.lennon.security.core.FF1BcEngine;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FpeMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FF1 (BouncyCastle and native backends) vs. FF3-1 on our field types: 11-digit phone,
+ * 16-digit card (Luhn kept), 18-char national ID and a 19-char email local part.
+ *
+ * java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner Mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModeBenchmark {
+    @Param({"FF1_BC", "FF1_NATIVE", "FF3_1"})
+    public String mode;
+
+    private FF1BcEngine digits;
+    private FF1BcEngineWithFormat card;
+    private FF1BcEngineWithAlphabet alpha;
+
+    @Setup
+    public void setup() {
+        byte[] key = Fixtures.key();
+        byte[] tweak = "tenant:bench|suite:mode".getBytes(StandardCharsets.UTF_8);
+        EngineOptions opts;
+        switch (mode) {
+            case "FF1_BC":
+                opts = EngineOptions.defaults().withBackend(FF1Backend.BOUNCY_CASTLE);
+                break;
+            case "FF1_NATIVE":
+                opts = EngineOptions.defaults().withBackend(FF1Backend.NATIVE);
+                break;
+            default:
+                opts = EngineOptions.defaults().withMode(FpeMode.FF3_1);
+        }
+        digits = new FF1BcEngine(key, 10, tweak, opts);
+        card = new FF1BcEngineWithFormat(key, tweak, opts);
+        alpha = new FF1BcEngineWithAlphabet(key, Fixtures.EMAIL_ALPHABET, tweak, opts);
+    }
+
+    @Benchmark
+    public String phone11() {
+        return digits.encryptDigits("13884353625");
+    }
+
+    @Benchmark
+    public String card16() {
+        return card.encryptFormatted("4111 1111 1111 1111", true);
+    }
+
+    @Benchmark
+    public String nationalId18() throws Exception {
+        return alpha.encryptChars("11010519491231002X");
+    }
+
+    @Benchmark
+    public String emailLocal19() throws Exception {
+        return alpha.encryptChars("alice.smith-01_test");
+    }
+}
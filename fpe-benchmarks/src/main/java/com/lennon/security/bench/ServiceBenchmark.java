@@ -0,0 +1,65 @@
+package com.lennon.security.bench;
+
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1Backend;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FormatPreservingService entry points on realistic values: an email, a formatted phone,
+ * a mixed ID string and a Chinese address (Base64URL path).
+ *
+ * java -cp target/benchmarks.jar com.lennon.security.bench.BenchmarkRunner Service
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceBenchmark {
+    static final String EMAIL = "alice.smith-01_test@example.com";
+    static final String PHONE = "+86-156-1894-0601";
+    static final String OPAQUE = "ORD-2024-000123/alice";
+    static final String UNICODE = "北京市朝阳区建国路88号 SOHO现代城";
+
+    @Param({"BOUNCY_CASTLE", "NATIVE"})
+    public String backend;
+
+    private FormatPreservingService fps;
+
+    @Setup
+    public void setup() {
+        byte[] key = Fixtures.key();
+        byte[] tweak = "tenant:bench|suite:service".getBytes(StandardCharsets.UTF_8);
+        EngineOptions opts = EngineOptions.defaults().withBackend(FF1Backend.valueOf(backend));
+        fps = new FormatPreservingService(
+                new FF1BcEngineWithFormat(key, tweak, opts),
+                new FF1BcEngineWithAlphabet(key, Fixtures.EMAIL_ALPHABET, tweak, opts));
+    }
+
+    @Benchmark
+    public String emailWithMarker() {
+        return fps.encryptEmailWithMarker(EMAIL);
+    }
+
+    @Benchmark
+    public String phoneKeepPrefix() throws Exception {
+        return fps.encryptPhoneKeepPrefix(PHONE, 3, 4);
+    }
+
+    @Benchmark
+    public String opaqueAll() throws Exception {
+        return fps.encryptOpaqueAll(OPAQUE);
+    }
+
+    @Benchmark
+    public String anyUnicodeOpaque() throws Exception {
+        return fps.encryptAnyUnicodeOpaque(UNICODE);
+    }
+}
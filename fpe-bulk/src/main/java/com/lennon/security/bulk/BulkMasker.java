@@ -0,0 +1,267 @@
+package com.lennon.security.bulk;
+
+import com.lennon.security.policy.FieldPolicyEngine;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming bulk encryption / decryption of CSV or JSONL files under a {@link FieldPolicyEngine}.
+ *
+ * Pipeline:
+ *  - the calling thread reads the input through a FileChannel and a large buffer, splits it into
+ *    records and hands batches of batchSize records to a fixed pool of worker threads;
+ *  - workers apply the compiled field handlers (engines are shared and keep per-thread scratch);
+ *  - one writer thread takes the batches' futures in submission order, so output order equals
+ *    input order, and writes them through a second large buffer.
+ * At most maxInFlight batches are read ahead of the writer; the reader blocks beyond that, so
+ * memory does not grow with the input. Progress snapshots go to the configured listener.
+ *
+ * Usage:
+ *   FieldPolicyEngine policies = FieldPolicyEngine.compile(PolicyConfig.load(policyFile), key, tweak);
+ *   BulkStats stats = new BulkMasker(policies, BulkOptions.defaults()).encrypt(in, out);
+ */
+public final class BulkMasker {
+    private static final Future<Batch> END = CompletableFuture.completedFuture(null);
+
+    private final FieldPolicyEngine policies;
+    private final BulkOptions options;
+
+    public BulkMasker(FieldPolicyEngine policies, BulkOptions options) {
+        this.policies = Objects.requireNonNull(policies, "policies null");
+        this.options = Objects.requireNonNull(options, "options null");
+    }
+
+    public BulkStats encrypt(Path in, Path out) throws IOException {
+        return run(true, in, out);
+    }
+
+    public BulkStats decrypt(Path in, Path out) throws IOException {
+        return run(false, in, out);
+    }
+
+    private BulkStats run(boolean forEncrypt, Path in, Path out) throws IOException {
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            return run(forEncrypt, src, dst);
+        }
+    }
+
+    /** Process in to out; out is flushed but neither channel is closed. */
+    public BulkStats run(boolean forEncrypt, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long started = System.nanoTime();
+        RecordReader reader = new RecordReader(in, options.bufferSize(), options.format() == RecordFormat.CSV);
+        RecordWriter writer = new RecordWriter(out, options.bufferSize());
+
+        RecordTransformer transformer;
+        if (options.format() == RecordFormat.CSV) {
+            String header = reader.next();
+            if (header == null) {
+                writer.flush();
+                return new BulkStats(0, 0, reader.bytesRead(), writer.bytesWritten(), System.nanoTime() - started, true);
+            }
+            transformer = CsvTransformer.forHeader(header, policies, options);
+            writer.write(header);
+            writer.write(reader.end());
+        } else {
+            transformer = new JsonLineTransformer(policies, options);
+        }
+
+        BlockingQueue<Future<Batch>> pending = new ArrayBlockingQueue<>(options.maxInFlight());
+        ExecutorService workers = Executors.newFixedThreadPool(options.threads(), daemonThreads("fpe-bulk-worker-"));
+        Drain drain = new Drain(pending, reader, writer, started);
+        Thread writerThread = daemonThreads("fpe-bulk-writer-").newThread(drain);
+        writerThread.start();
+
+        Exception readFailure = null;
+        try {
+            long next = 1;
+            while (!drain.failed) {
+                int size = options.batchSize();
+                String[] records = new String[size];
+                String[] ends = new String[size];
+                int n = 0;
+                String r;
+                while (n < size && (r = reader.next()) != null) {
+                    records[n] = r;
+                    ends[n++] = reader.end();
+                }
+                if (n == 0) break;
+                Batch batch = new Batch(next, records, ends, n);
+                next += n;
+                pending.put(workers.submit(() -> batch.transform(transformer, forEncrypt)));
+                if (n < size) break;
+            }
+        } catch (IOException | RuntimeException ex) {
+            readFailure = ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            readFailure = ex;
+        } finally {
+            putUninterruptibly(pending, END);
+            joinUninterruptibly(writerThread);
+            workers.shutdownNow();
+        }
+
+        Throwable failure = readFailure != null ? readFailure : drain.failure;
+        if (failure instanceof ExecutionException) failure = failure.getCause();
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        if (failure != null) throw new IOException(failure);
+        return drain.snapshot(true);
+    }
+
+    /** A run of consecutive records and, once transformed, their output text. */
+    private static final class Batch {
+        final long first;
+        final String[] records;
+        final String[] ends;
+        final int size;
+        StringBuilder text;
+        int failed;
+
+        Batch(long first, String[] records, String[] ends, int size) {
+            this.first = first;
+            this.records = records;
+            this.ends = ends;
+            this.size = size;
+        }
+
+        Batch transform(RecordTransformer t, boolean forEncrypt) {
+            int chars = 0;
+            for (int i = 0; i < size; i++) chars += records[i].length() + 2;
+            StringBuilder sb = new StringBuilder(chars + chars / 4);
+            for (int i = 0; i < size; i++) {
+                failed += t.apply(records[i], first + i, forEncrypt, sb);
+                sb.append(ends[i]);
+                records[i] = null;
+            }
+            text = sb;
+            return this;
+        }
+    }
+
+    /** Writer loop: batches in submission order until END; after a failure keeps draining so the reader never blocks. */
+    private final class Drain implements Runnable {
+        private final BlockingQueue<Future<Batch>> pending;
+        private final RecordReader reader;
+        private final RecordWriter writer;
+        private final long started;
+        private long records;
+        private long failedFields;
+        private long lastReport;
+        volatile boolean failed;
+        volatile Throwable failure;
+
+        Drain(BlockingQueue<Future<Batch>> pending, RecordReader reader, RecordWriter writer, long started) {
+            this.pending = pending;
+            this.reader = reader;
+            this.writer = writer;
+            this.started = started;
+            this.lastReport = started;
+        }
+
+        @Override
+        public void run() {
+            long interval = options.progressIntervalMillis() * 1_000_000L;
+            while (true) {
+                Future<Batch> f;
+                try {
+                    f = pending.take();
+                } catch (InterruptedException ex) {
+                    fail(ex);
+                    continue;
+                }
+                if (f == END) break;
+                if (failed) {
+                    f.cancel(true);
+                    continue;
+                }
+                try {
+                    Batch b = f.get();
+                    writer.write(b.text);
+                    records += b.size;
+                    failedFields += b.failed;
+                    long now = System.nanoTime();
+                    if (now - lastReport >= interval) {
+                        lastReport = now;
+                        options.progress().onProgress(snapshot(false));
+                    }
+                } catch (Throwable ex) {
+                    fail(ex);
+                }
+            }
+            if (!failed) {
+                try {
+                    writer.flush();
+                    options.progress().onProgress(snapshot(true));
+                } catch (Throwable ex) {
+                    fail(ex);
+                }
+            }
+        }
+
+        private void fail(Throwable ex) {
+            if (!failed) {
+                failure = ex;
+                failed = true;
+            }
+        }
+
+        BulkStats snapshot(boolean finished) {
+            return new BulkStats(records, failedFields, reader.bytesRead(), writer.bytesWritten(),
+                    System.nanoTime() - started, finished);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static <T> void putUninterruptibly(BlockingQueue<T> q, T v) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                q.put(v);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void joinUninterruptibly(Thread t) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                t.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
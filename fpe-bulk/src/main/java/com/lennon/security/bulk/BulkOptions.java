@@ -0,0 +1,141 @@
+package com.lennon.security.bulk;
+
+import java.util.Objects;
+
+/**
+ * Immutable settings of a {@link BulkMasker} pipeline.
+ *
+ * Memory stays bounded by about maxInFlight x batchSize records plus the two I/O buffers,
+ * whatever the size of the input.
+ *
+ * Usage:
+ *   BulkOptions opts = BulkOptions.defaults().withFormat(RecordFormat.JSONL).withThreads(8);
+ */
+public final class BulkOptions {
+    /** What to do when a field's policy rejects its value (e.g. too short for FF1). */
+    public enum OnError {
+        /** Stop the run; the error names the record and field. */
+        FAIL,
+        /** Leave the value unchanged and count it in {@link BulkStats#failedFields()}. */
+        KEEP
+    }
+
+    private static final BulkOptions DEFAULTS = new BulkOptions(RecordFormat.CSV, ',',
+            Runtime.getRuntime().availableProcessors(), 1000, 0, 1 << 20, OnError.FAIL, ProgressListener.NONE, 1000);
+
+    private final RecordFormat format;
+    private final char delimiter;
+    private final int threads;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final int bufferSize;
+    private final OnError onError;
+    private final ProgressListener progress;
+    private final long progressIntervalMillis;
+
+    private BulkOptions(RecordFormat format, char delimiter, int threads, int batchSize, int maxInFlight,
+                        int bufferSize, OnError onError, ProgressListener progress, long progressIntervalMillis) {
+        this.format = format;
+        this.delimiter = delimiter;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.bufferSize = bufferSize;
+        this.onError = onError;
+        this.progress = progress;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /** CSV, ',' delimiter, one worker per core, batches of 1000 records, 1 MiB buffers, FAIL on errors. */
+    public static BulkOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public RecordFormat format() {
+        return format;
+    }
+
+    public char delimiter() {
+        return delimiter;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /** Batches read ahead of the writer; defaults to 4 per worker. */
+    public int maxInFlight() {
+        return maxInFlight > 0 ? maxInFlight : 4 * threads;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    public OnError onError() {
+        return onError;
+    }
+
+    public ProgressListener progress() {
+        return progress;
+    }
+
+    public long progressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    public BulkOptions withFormat(RecordFormat format) {
+        return new BulkOptions(Objects.requireNonNull(format, "format null"), delimiter, threads, batchSize,
+                maxInFlight, bufferSize, onError, progress, progressIntervalMillis);
+    }
+
+    /** CSV field separator, e.g. ';' or '\t'. */
+    public BulkOptions withDelimiter(char delimiter) {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("invalid delimiter");
+        }
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize, onError,
+                progress, progressIntervalMillis);
+    }
+
+    public BulkOptions withThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize, onError,
+                progress, progressIntervalMillis);
+    }
+
+    /** Records handed to a worker at a time. */
+    public BulkOptions withBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize, onError,
+                progress, progressIntervalMillis);
+    }
+
+    public BulkOptions withMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be >= 1");
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize, onError,
+                progress, progressIntervalMillis);
+    }
+
+    /** Size of the read and write buffers, in bytes. */
+    public BulkOptions withBufferSize(int bufferSize) {
+        if (bufferSize < 1024) throw new IllegalArgumentException("bufferSize must be >= 1024");
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize, onError,
+                progress, progressIntervalMillis);
+    }
+
+    public BulkOptions withOnError(OnError onError) {
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize,
+                Objects.requireNonNull(onError, "onError null"), progress, progressIntervalMillis);
+    }
+
+    public BulkOptions withProgress(ProgressListener progress, long intervalMillis) {
+        if (intervalMillis < 0) throw new IllegalArgumentException("intervalMillis must be >= 0");
+        return new BulkOptions(format, delimiter, threads, batchSize, maxInFlight, bufferSize, onError,
+                Objects.requireNonNull(progress, "progress null"), intervalMillis);
+    }
+}
@@ -0,0 +1,59 @@
+package com.lennon.security.bulk;
+
+/**
+ * Counters of one {@link BulkMasker} run (or of the run so far, for progress snapshots).
+ */
+public final class BulkStats {
+    private final long records;
+    private final long failedFields;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+    private final boolean finished;
+
+    BulkStats(long records, long failedFields, long bytesRead, long bytesWritten, long elapsedNanos, boolean finished) {
+        this.records = records;
+        this.failedFields = failedFields;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = finished;
+    }
+
+    /** Records written, header row excluded. */
+    public long records() {
+        return records;
+    }
+
+    /** Fields left unchanged because their policy rejected them (OnError.KEEP only). */
+    public long failedFields() {
+        return failedFields;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double recordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    /** True for the snapshot taken after the last record was written. */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d records, %,d failed fields, %,d bytes in, %,d bytes out, %.1f s, %,.0f records/s",
+                records, failedFields, bytesRead, bytesWritten, elapsedNanos / 1e9, recordsPerSecond());
+    }
+}
@@ -0,0 +1,316 @@
+package com.lennon.security.bulk;
+
+import com.lennon.security.policy.FieldPolicyEngine;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-place encryption (or decryption) of PII columns of one table over plain JDBC, resumable.
+ *
+ * The key column's span [MIN, MAX] is cut into ranges of rangeSize key values, aligned to
+ * multiples of rangeSize so the cut is the same on every run. Worker threads, each with its own
+ * connection, take ranges in key order and walk them in batches:
+ *   SELECT key, cols WHERE key BETWEEN next AND last ORDER BY key (batchSize rows)
+ *   -> field policies -> UPDATE ... WHERE key = ? via addBatch / executeBatch
+ *   -> checkpoint row (job, range) advanced to the last key, in the same transaction -> commit.
+ * A crashed or failed run therefore loses at most the uncommitted batch, and the next run with the
+ * same jobId skips finished ranges and resumes started ones after their last committed key, so no
+ * row is ever transformed twice. Checkpoints are kept per direction (jobId/encrypt, jobId/decrypt).
+ *
+ * Rows inserted into a finished range after the fact are not revisited: run against a quiesced
+ * table, or have writers store new rows already encrypted. The checkpoint table is created on
+ * first use if it does not exist.
+ *
+ * Usage:
+ *   ColumnJobStats stats = new ColumnEncryptionJob(dataSource, policies, spec).encrypt();
+ */
+public final class ColumnEncryptionJob {
+    private final DataSource dataSource;
+    private final FieldPolicyEngine policies;
+    private final ColumnJobSpec spec;
+    private final String[] columns;
+    private final int[] fieldIds;
+
+    public ColumnEncryptionJob(DataSource dataSource, FieldPolicyEngine policies, ColumnJobSpec spec) {
+        this.dataSource = Objects.requireNonNull(dataSource, "dataSource null");
+        this.policies = Objects.requireNonNull(policies, "policies null");
+        this.spec = Objects.requireNonNull(spec, "spec null");
+        if (spec.columns().isEmpty()) throw new IllegalArgumentException("no columns to encrypt");
+        this.columns = spec.columns().keySet().toArray(new String[0]);
+        this.fieldIds = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) fieldIds[i] = policies.fieldId(spec.columns().get(columns[i]));
+    }
+
+    public ColumnJobStats encrypt() throws SQLException {
+        return run(true);
+    }
+
+    public ColumnJobStats decrypt() throws SQLException {
+        return run(false);
+    }
+
+    private ColumnJobStats run(boolean forEncrypt) throws SQLException {
+        long started = System.nanoTime();
+        String job = spec.jobId() + (forEncrypt ? "/encrypt" : "/decrypt");
+        long rs = spec.rangeSize();
+
+        long min, max;
+        Set<Long> finished = new HashSet<>();
+        Map<Long, Long> resume = new HashMap<>();
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(true);
+            ensureCheckpointTable(c);
+            try (Statement st = c.createStatement();
+                 ResultSet r = st.executeQuery("SELECT MIN(" + spec.keyColumn() + "), MAX(" + spec.keyColumn()
+                         + ") FROM " + spec.table())) {
+                r.next();
+                min = r.getLong(1);
+                if (r.wasNull()) return new ColumnJobStats(0, 0, 0, 0, 0, System.nanoTime() - started);
+                max = r.getLong(2);
+            }
+            try (PreparedStatement ps = c.prepareStatement("SELECT range_start, range_last, next_key, done FROM "
+                    + spec.checkpointTable() + " WHERE job_id = ?")) {
+                ps.setString(1, job);
+                try (ResultSet r = ps.executeQuery()) {
+                    while (r.next()) {
+                        long start = r.getLong(1);
+                        if (r.getLong(2) != lastOf(start, rs) || Math.floorMod(start, rs) != 0) {
+                            throw new IllegalStateException("job " + job + " was checkpointed with a different rangeSize");
+                        }
+                        if (r.getInt(4) != 0) finished.add(start);
+                        else resume.put(start, r.getLong(3));
+                    }
+                }
+            }
+        }
+
+        long base = Math.floorDiv(min, rs) * rs;
+        long count = Math.floorDiv(max, rs) - Math.floorDiv(min, rs) + 1;
+        if (count > Integer.MAX_VALUE) throw new IllegalArgumentException("rangeSize too small for the key span");
+        int ranges = (int) count;
+        int skipped = 0;
+        for (long start : finished) if (start >= base && (start - base) / rs < ranges) skipped++;
+
+        Run run = new Run(job, forEncrypt, base, ranges, skipped, finished, resume, started);
+        int threads = Math.min(spec.threads(), Math.max(1, ranges - skipped));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fpe-column-job-" + run.threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) workers[i] = pool.submit(run::work);
+            for (Future<?> f : workers) {
+                try {
+                    f.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    run.fail(ex);
+                    break;
+                } catch (Exception ignored) {
+                    // work() records its own failures
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable failure = run.failure;
+        if (failure instanceof SQLException) throw (SQLException) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        if (failure != null) throw new SQLException(failure);
+        ColumnJobStats stats = run.snapshot();
+        spec.progress().accept(stats);
+        return stats;
+    }
+
+    private void ensureCheckpointTable(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeQuery("SELECT job_id FROM " + spec.checkpointTable() + " WHERE 1 = 0").close();
+        } catch (SQLException missing) {
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("CREATE TABLE " + spec.checkpointTable() + " ("
+                        + "job_id VARCHAR(128) NOT NULL, range_start BIGINT NOT NULL, range_last BIGINT NOT NULL, "
+                        + "next_key BIGINT NOT NULL, rows_done BIGINT NOT NULL, done SMALLINT NOT NULL, "
+                        + "PRIMARY KEY (job_id, range_start))");
+            }
+        }
+    }
+
+    /** Last key of the range starting at start, clamped at Long.MAX_VALUE. */
+    private static long lastOf(long start, long rangeSize) {
+        return start > Long.MAX_VALUE - rangeSize ? Long.MAX_VALUE : start + rangeSize - 1;
+    }
+
+    /** State shared by the workers of one run. */
+    private final class Run {
+        final String job;
+        final boolean forEncrypt;
+        final long base;
+        final int ranges;
+        final int skipped;
+        final Set<Long> finished;
+        final Map<Long, Long> resume;
+        final long started;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger threadIds = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        final LongAdder rows = new LongAdder();
+        final LongAdder failedValues = new LongAdder();
+        final AtomicLong lastReport;
+        volatile Throwable failure;
+
+        Run(String job, boolean forEncrypt, long base, int ranges, int skipped, Set<Long> finished,
+            Map<Long, Long> resume, long started) {
+            this.job = job;
+            this.forEncrypt = forEncrypt;
+            this.base = base;
+            this.ranges = ranges;
+            this.skipped = skipped;
+            this.finished = finished;
+            this.resume = resume;
+            this.started = started;
+            this.lastReport = new AtomicLong(started);
+        }
+
+        synchronized void fail(Throwable ex) {
+            if (failure == null) failure = ex;
+        }
+
+        ColumnJobStats snapshot() {
+            return new ColumnJobStats(ranges, skipped, done.get(), rows.sum(), failedValues.sum(), System.nanoTime() - started);
+        }
+
+        void work() {
+            long rs = spec.rangeSize();
+            StringBuilder set = new StringBuilder();
+            StringBuilder select = new StringBuilder("SELECT ").append(spec.keyColumn());
+            for (String col : columns) {
+                select.append(", ").append(col);
+                set.append(set.length() == 0 ? "" : ", ").append(col).append(" = ?");
+            }
+            select.append(" FROM ").append(spec.table()).append(" WHERE ").append(spec.keyColumn())
+                    .append(" BETWEEN ? AND ? ORDER BY ").append(spec.keyColumn());
+            String update = "UPDATE " + spec.table() + " SET " + set + " WHERE " + spec.keyColumn() + " = ?";
+            String cp = spec.checkpointTable();
+
+            try (Connection c = dataSource.getConnection()) {
+                c.setAutoCommit(false);
+                try (PreparedStatement sel = c.prepareStatement(select.toString());
+                     PreparedStatement upd = c.prepareStatement(update);
+                     PreparedStatement cpInsert = c.prepareStatement("INSERT INTO " + cp
+                             + " (job_id, range_start, range_last, next_key, rows_done, done) VALUES (?, ?, ?, ?, 0, 0)");
+                     PreparedStatement cpUpdate = c.prepareStatement("UPDATE " + cp
+                             + " SET next_key = ?, rows_done = rows_done + ?, done = ? WHERE job_id = ? AND range_start = ?")) {
+                    sel.setMaxRows(spec.batchSize());
+                    sel.setFetchSize(spec.batchSize());
+                    int k;
+                    while (failure == null && (k = next.getAndIncrement()) < ranges) {
+                        long start = base + k * rs;
+                        if (finished.contains(start)) continue;
+                        long last = lastOf(start, rs);
+                        Long from = resume.get(start);
+                        if (from == null) {
+                            cpInsert.setString(1, job);
+                            cpInsert.setLong(2, start);
+                            cpInsert.setLong(3, last);
+                            cpInsert.setLong(4, start);
+                            cpInsert.executeUpdate();
+                            c.commit();
+                            from = start;
+                        }
+                        if (range(c, sel, upd, cpUpdate, start, from, last)) done.incrementAndGet();
+                    }
+                } catch (SQLException | RuntimeException ex) {
+                    try {
+                        c.rollback();
+                    } catch (SQLException suppressed) {
+                        ex.addSuppressed(suppressed);
+                    }
+                    throw ex;
+                }
+            } catch (Throwable ex) {
+                fail(ex);
+            }
+        }
+
+        /** Walk one range from key from; returns true once it is finished, false if stopped by a failure elsewhere. */
+        private boolean range(Connection c, PreparedStatement sel, PreparedStatement upd, PreparedStatement cpUpdate,
+                              long start, long from, long last) throws SQLException {
+            int batch = spec.batchSize();
+            while (failure == null) {
+                sel.setLong(1, from);
+                sel.setLong(2, last);
+                int n = 0;
+                long lastKey = from;
+                try (ResultSet r = sel.executeQuery()) {
+                    while (r.next() && n < batch) {
+                        long key = r.getLong(1);
+                        for (int j = 0; j < columns.length; j++) {
+                            String v = r.getString(j + 2);
+                            upd.setString(j + 1, value(j, v, key));
+                        }
+                        upd.setLong(columns.length + 1, key);
+                        upd.addBatch();
+                        n++;
+                        lastKey = key;
+                    }
+                }
+                if (n > 0) upd.executeBatch();
+                boolean end = n < batch || lastKey == last;
+                cpUpdate.setLong(1, end ? last : lastKey + 1);
+                cpUpdate.setLong(2, n);
+                cpUpdate.setInt(3, end ? 1 : 0);
+                cpUpdate.setString(4, job);
+                cpUpdate.setLong(5, start);
+                cpUpdate.executeUpdate();
+                c.commit();
+                rows.add(n);
+                report();
+                if (end) return true;
+                from = lastKey + 1;
+            }
+            return false;
+        }
+
+        private String value(int column, String v, long key) {
+            if (v == null) return null;
+            try {
+                return forEncrypt ? policies.encrypt(fieldIds[column], v) : policies.decrypt(fieldIds[column], v);
+            } catch (RuntimeException ex) {
+                if (spec.onError() == BulkOptions.OnError.KEEP) {
+                    failedValues.increment();
+                    return v;
+                }
+                throw new IllegalArgumentException(spec.keyColumn() + " " + key + ", column " + columns[column]
+                        + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        private void report() {
+            long now = System.nanoTime();
+            long prev = lastReport.get();
+            if (now - prev >= spec.progressIntervalMillis() * 1_000_000L && lastReport.compareAndSet(prev, now)) {
+                spec.progress().accept(snapshot());
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.lennon.security.bulk;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable description of a {@link ColumnEncryptionJob}: which table, key column and PII columns,
+ * how the key space is cut into ranges, and how much runs in parallel.
+ *
+ * Table and column names are SQL identifiers (optionally schema-qualified) and are validated,
+ * since they end up in generated statements.
+ *
+ * Usage:
+ *   ColumnJobSpec spec = ColumnJobSpec.of("customers-2024", "crm.customer", "id")
+ *           .withColumn("mobile", "phone").withColumn("email", "email").withThreads(8);
+ */
+public final class ColumnJobSpec {
+    public static final String DEFAULT_CHECKPOINT_TABLE = "fpe_job_checkpoint";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+    private static final Consumer<ColumnJobStats> NO_PROGRESS = s -> { };
+
+    private final String jobId;
+    private final String table;
+    private final String keyColumn;
+    private final Map<String, String> columns;
+    private final long rangeSize;
+    private final int batchSize;
+    private final int threads;
+    private final String checkpointTable;
+    private final BulkOptions.OnError onError;
+    private final Consumer<ColumnJobStats> progress;
+    private final long progressIntervalMillis;
+
+    private ColumnJobSpec(String jobId, String table, String keyColumn, Map<String, String> columns, long rangeSize,
+                          int batchSize, int threads, String checkpointTable, BulkOptions.OnError onError,
+                          Consumer<ColumnJobStats> progress, long progressIntervalMillis) {
+        this.jobId = jobId;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = columns;
+        this.rangeSize = rangeSize;
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.checkpointTable = checkpointTable;
+        this.onError = onError;
+        this.progress = progress;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * @param jobId     names the checkpoints; reuse it to resume, change it to start over
+     * @param keyColumn integral, unique column the ranges are cut on (usually the primary key)
+     */
+    public static ColumnJobSpec of(String jobId, String table, String keyColumn) {
+        Objects.requireNonNull(jobId, "jobId null");
+        if (jobId.isEmpty() || jobId.length() > 120) throw new IllegalArgumentException("jobId must have 1..120 chars");
+        return new ColumnJobSpec(jobId, identifier(table), identifier(keyColumn), Collections.emptyMap(), 100_000,
+                1000, 4, DEFAULT_CHECKPOINT_TABLE, BulkOptions.OnError.FAIL, NO_PROGRESS, 10_000);
+    }
+
+    public String jobId() {
+        return jobId;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String keyColumn() {
+        return keyColumn;
+    }
+
+    /** Column name -> field policy name, in update order. */
+    public Map<String, String> columns() {
+        return columns;
+    }
+
+    public long rangeSize() {
+        return rangeSize;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public String checkpointTable() {
+        return checkpointTable;
+    }
+
+    public BulkOptions.OnError onError() {
+        return onError;
+    }
+
+    public Consumer<ColumnJobStats> progress() {
+        return progress;
+    }
+
+    public long progressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    /** Encrypt column with the policy named field. */
+    public ColumnJobSpec withColumn(String column, String field) {
+        Objects.requireNonNull(field, "field null");
+        Map<String, String> c = new LinkedHashMap<>(columns);
+        if (c.put(identifier(column), field) != null) throw new IllegalArgumentException("duplicate column: " + column);
+        return new ColumnJobSpec(jobId, table, keyColumn, Collections.unmodifiableMap(c), rangeSize, batchSize,
+                threads, checkpointTable, onError, progress, progressIntervalMillis);
+    }
+
+    /** Width of one range in key values (not rows); ranges are aligned to multiples of it. */
+    public ColumnJobSpec withRangeSize(long rangeSize) {
+        if (rangeSize < 1) throw new IllegalArgumentException("rangeSize must be >= 1");
+        return new ColumnJobSpec(jobId, table, keyColumn, columns, rangeSize, batchSize, threads, checkpointTable,
+                onError, progress, progressIntervalMillis);
+    }
+
+    /** Rows per SELECT / executeBatch / commit. */
+    public ColumnJobSpec withBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        return new ColumnJobSpec(jobId, table, keyColumn, columns, rangeSize, batchSize, threads, checkpointTable,
+                onError, progress, progressIntervalMillis);
+    }
+
+    /** Ranges processed in parallel, one connection each. */
+    public ColumnJobSpec withThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        return new ColumnJobSpec(jobId, table, keyColumn, columns, rangeSize, batchSize, threads, checkpointTable,
+                onError, progress, progressIntervalMillis);
+    }
+
+    public ColumnJobSpec withCheckpointTable(String checkpointTable) {
+        return new ColumnJobSpec(jobId, table, keyColumn, columns, rangeSize, batchSize, threads,
+                identifier(checkpointTable), onError, progress, progressIntervalMillis);
+    }
+
+    public ColumnJobSpec withOnError(BulkOptions.OnError onError) {
+        return new ColumnJobSpec(jobId, table, keyColumn, columns, rangeSize, batchSize, threads, checkpointTable,
+                Objects.requireNonNull(onError, "onError null"), progress, progressIntervalMillis);
+    }
+
+    public ColumnJobSpec withProgress(Consumer<ColumnJobStats> progress, long intervalMillis) {
+        if (intervalMillis < 0) throw new IllegalArgumentException("intervalMillis must be >= 0");
+        return new ColumnJobSpec(jobId, table, keyColumn, columns, rangeSize, batchSize, threads, checkpointTable,
+                onError, Objects.requireNonNull(progress, "progress null"), intervalMillis);
+    }
+
+    private static String identifier(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("not a plain SQL identifier: " + name);
+        }
+        return name;
+    }
+}
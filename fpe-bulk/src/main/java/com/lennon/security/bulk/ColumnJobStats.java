@@ -0,0 +1,61 @@
+package com.lennon.security.bulk;
+
+/**
+ * Counters of one {@link ColumnEncryptionJob} run (or of the run so far, for progress snapshots).
+ */
+public final class ColumnJobStats {
+    private final int ranges;
+    private final int rangesSkipped;
+    private final int rangesDone;
+    private final long rows;
+    private final long failedValues;
+    private final long elapsedNanos;
+
+    ColumnJobStats(int ranges, int rangesSkipped, int rangesDone, long rows, long failedValues, long elapsedNanos) {
+        this.ranges = ranges;
+        this.rangesSkipped = rangesSkipped;
+        this.rangesDone = rangesDone;
+        this.rows = rows;
+        this.failedValues = failedValues;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Ranges covering the key space of the table. */
+    public int ranges() {
+        return ranges;
+    }
+
+    /** Ranges already completed by an earlier run of the same job. */
+    public int rangesSkipped() {
+        return rangesSkipped;
+    }
+
+    /** Ranges completed by this run. */
+    public int rangesDone() {
+        return rangesDone;
+    }
+
+    /** Rows updated by this run. */
+    public long rows() {
+        return rows;
+    }
+
+    /** Values left unchanged because their policy rejected them (OnError.KEEP only). */
+    public long failedValues() {
+        return failedValues;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d ranges (%d skipped), %,d rows, %,d failed values, %.1f s, %,.0f rows/s",
+                rangesSkipped + rangesDone, ranges, rangesSkipped, rows, failedValues, elapsedNanos / 1e9, rowsPerSecond());
+    }
+}
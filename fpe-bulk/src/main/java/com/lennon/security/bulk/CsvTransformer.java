@@ -0,0 +1,142 @@
+package com.lennon.security.bulk;
+
+import com.lennon.security.policy.FieldPolicyEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RFC 4180 records. Columns are bound to policies once, from the header row; columns without a
+ * policy are copied byte for byte. A rewritten value is quoted if it was quoted before or now
+ * needs it (delimiter, quote or line break).
+ */
+final class CsvTransformer extends RecordTransformer {
+    private final char delimiter;
+    /** field id per column, -1 = copy */
+    private final int[] columns;
+
+    private CsvTransformer(FieldPolicyEngine policies, BulkOptions.OnError onError, char delimiter, int[] columns) {
+        super(policies, onError);
+        this.delimiter = delimiter;
+        this.columns = columns;
+    }
+
+    static CsvTransformer forHeader(String header, FieldPolicyEngine policies, BulkOptions options) {
+        List<String> names = split(header, options.delimiter());
+        int[] columns = new int[names.size()];
+        boolean any = false;
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = -1;
+            String name = names.get(c).trim();
+            for (int id = 0; id < policies.size(); id++) {
+                if (policies.policy(id).name().equals(name)) {
+                    columns[c] = id;
+                    any = true;
+                    break;
+                }
+            }
+        }
+        if (!any) throw new IllegalArgumentException("no CSV column matches a field policy: " + names);
+        return new CsvTransformer(policies, options.onError(), options.delimiter(), columns);
+    }
+
+    @Override
+    int apply(String record, long recordNo, boolean forEncrypt, StringBuilder out) {
+        int failed = 0;
+        int n = record.length();
+        int i = 0;
+        for (int col = 0; ; col++) {
+            int start = i;
+            boolean quoted = i < n && record.charAt(i) == '"';
+            int end = quoted ? endOfQuoted(record, i) : i;
+            while (end < n && record.charAt(end) != delimiter) end++;
+
+            int id = col < columns.length ? columns[col] : -1;
+            if (id < 0) {
+                out.append(record, start, end);
+            } else {
+                String value = quoted ? unquote(record, start, end) : record.substring(start, end);
+                String result = value(id, value, recordNo, forEncrypt);
+                if (result == null) {
+                    failed++;
+                    out.append(record, start, end);
+                } else if (quoted || needsQuotes(result)) {
+                    appendQuoted(out, result);
+                } else {
+                    out.append(result);
+                }
+            }
+            if (end >= n) return failed;
+            out.append(delimiter);
+            i = end + 1;
+        }
+    }
+
+    private boolean needsQuotes(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    /** Index just past the closing quote of the field opening at i (or the end of s). */
+    private static int endOfQuoted(String s, int i) {
+        int n = s.length();
+        i++;
+        while (i < n) {
+            if (s.charAt(i) == '"') {
+                if (i + 1 < n && s.charAt(i + 1) == '"') i += 2;
+                else return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /** Content of "..." in s[start..end), with "" collapsed; chars after the closing quote are kept. */
+    private static String unquote(String s, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        int i = start + 1;
+        while (i < end) {
+            char c = s.charAt(i++);
+            if (c != '"') {
+                sb.append(c);
+            } else if (i < end && s.charAt(i) == '"') {
+                sb.append('"');
+                i++;
+            } else {
+                sb.append(s, i, end);
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendQuoted(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /** Values of one record. */
+    static List<String> split(String record, char delimiter) {
+        List<String> out = new ArrayList<>();
+        int n = record.length();
+        int i = 0;
+        while (true) {
+            int start = i;
+            boolean quoted = i < n && record.charAt(i) == '"';
+            int end = quoted ? endOfQuoted(record, i) : i;
+            while (end < n && record.charAt(end) != delimiter) end++;
+            out.add(quoted ? unquote(record, start, end) : record.substring(start, end));
+            if (end >= n) return out;
+            i = end + 1;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.lennon.security.bulk;
+
+import com.lennon.security.policy.FieldPolicyEngine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One JSON object per line. String members of the top-level object whose key names a policy are
+ * rewritten; everything else (other members, nested values, whitespace) is copied as is.
+ * Blank lines pass through. A line that is not a JSON object fails as a whole (or, with
+ * OnError.KEEP, is copied unchanged and counted once).
+ */
+final class JsonLineTransformer extends RecordTransformer {
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    JsonLineTransformer(FieldPolicyEngine policies, BulkOptions options) {
+        super(policies, options.onError());
+        for (int id = 0; id < policies.size(); id++) ids.put(policies.policy(id).name(), id);
+    }
+
+    @Override
+    int apply(String line, long recordNo, boolean forEncrypt, StringBuilder out) {
+        int mark = out.length();
+        try {
+            return rewrite(line, recordNo, forEncrypt, out);
+        } catch (MalformedJson ex) {
+            if (onError == BulkOptions.OnError.FAIL) {
+                throw new IllegalArgumentException("record " + recordNo + ": " + ex.getMessage());
+            }
+            out.setLength(mark);
+            out.append(line);
+            return 1;
+        }
+    }
+
+    private int rewrite(String s, long recordNo, boolean forEncrypt, StringBuilder out) {
+        int n = s.length();
+        int i = skipWs(s, 0);
+        if (i == n) {
+            out.append(s);
+            return 0;
+        }
+        expect(s, i, '{');
+        int failed = 0;
+        int copied = 0;
+        i = skipWs(s, i + 1);
+        if (i < n && s.charAt(i) == '}') {
+            out.append(s);
+            return 0;
+        }
+        while (true) {
+            expect(s, i, '"');
+            int keyEnd = endOfString(s, i);
+            String key = decode(s, i + 1, keyEnd - 1);
+            i = skipWs(s, keyEnd);
+            expect(s, i, ':');
+            i = skipWs(s, i + 1);
+            if (i >= n) throw new MalformedJson("missing value");
+            Integer id;
+            if (s.charAt(i) == '"') {
+                int valueEnd = endOfString(s, i);
+                if ((id = ids.get(key)) != null) {
+                    String result = value(id, decode(s, i + 1, valueEnd - 1), recordNo, forEncrypt);
+                    if (result == null) {
+                        failed++;
+                    } else {
+                        out.append(s, copied, i);
+                        appendString(out, result);
+                        copied = valueEnd;
+                    }
+                }
+                i = valueEnd;
+            } else {
+                i = skipValue(s, i);
+            }
+            i = skipWs(s, i);
+            if (i >= n) throw new MalformedJson("unterminated object");
+            char c = s.charAt(i);
+            if (c == '}') break;
+            expect(s, i, ',');
+            i = skipWs(s, i + 1);
+        }
+        out.append(s, copied, n);
+        return failed;
+    }
+
+    private static int skipWs(String s, int i) {
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static void expect(String s, int i, char c) {
+        if (i >= s.length() || s.charAt(i) != c) throw new MalformedJson("expected '" + c + "' at " + i);
+    }
+
+    /** Index just past the closing quote of the string opening at i. */
+    private static int endOfString(String s, int i) {
+        for (i++; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '"') return i + 1;
+        }
+        throw new MalformedJson("unterminated string");
+    }
+
+    /** Index just past a number, literal, array or object starting at i. */
+    private static int skipValue(String s, int i) {
+        int depth = 0;
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                i = endOfString(s, i) - 1;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) return i;
+                if (--depth == 0) return i + 1;
+            } else if (depth == 0 && (c == ',' || c == ' ' || c == '\t' || c == '\r' || c == '\n')) {
+                return i;
+            }
+        }
+        if (depth != 0) throw new MalformedJson("unterminated value");
+        return i;
+    }
+
+    private static String decode(String s, int from, int to) {
+        int esc = s.indexOf('\\', from);
+        if (esc < 0 || esc >= to) return s.substring(from, to);
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i >= to) throw new MalformedJson("bad escape");
+            char e = s.charAt(i);
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 >= to) throw new MalformedJson("bad escape");
+                    try {
+                        sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new MalformedJson("bad escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw new MalformedJson("bad escape");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendString(StringBuilder out, String v) {
+        out.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static final class MalformedJson extends RuntimeException {
+        MalformedJson(String message) {
+            super("malformed JSON: " + message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.lennon.security.bulk;
+
+/**
+ * Receives periodic snapshots while {@link BulkMasker} runs, and one final snapshot at the end.
+ * Called from the pipeline's writer thread; keep it cheap.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    ProgressListener NONE = stats -> { };
+
+    void onProgress(BulkStats stats);
+}
@@ -0,0 +1,11 @@
+package com.lennon.security.bulk;
+
+/**
+ * Input layouts understood by {@link BulkMasker}.
+ */
+public enum RecordFormat {
+    /** RFC 4180 CSV with a header row; columns are matched to policies by header name. */
+    CSV,
+    /** One JSON object per line; top-level string members are matched to policies by key. */
+    JSONL
+}
@@ -0,0 +1,108 @@
+package com.lennon.security.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a UTF-8 channel into records (lines), read through one large direct buffer.
+ * With quoteAware set, newlines inside "..." do not end a record (CSV). Not thread-safe.
+ */
+final class RecordReader {
+    static final String LF = "\n";
+    static final String CRLF = "\r\n";
+    static final String NONE = "";
+
+    private final ReadableByteChannel channel;
+    private final boolean quoteAware;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final StringBuilder record = new StringBuilder(256);
+    private boolean eof;
+    private boolean flushed;
+    private String end = NONE;
+    private volatile long bytesRead;
+
+    RecordReader(ReadableByteChannel channel, int bufferSize, boolean quoteAware) {
+        this.channel = channel;
+        this.quoteAware = quoteAware;
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.chars.flip();
+    }
+
+    /** Next record without its line terminator, or null at end of input. */
+    String next() throws IOException {
+        record.setLength(0);
+        boolean inQuotes = false;
+        while (true) {
+            if (!chars.hasRemaining() && !fill()) {
+                if (record.length() == 0) return null;
+                end = NONE;
+                return record.toString();
+            }
+            char[] a = chars.array();
+            int pos = chars.position();
+            int lim = chars.limit();
+            int start = pos;
+            while (pos < lim) {
+                char c = a[pos];
+                if (c == '\n' && !inQuotes) {
+                    record.append(a, start, pos - start);
+                    chars.position(pos + 1);
+                    int n = record.length();
+                    if (n > 0 && record.charAt(n - 1) == '\r') {
+                        record.setLength(n - 1);
+                        end = CRLF;
+                    } else {
+                        end = LF;
+                    }
+                    return record.toString();
+                }
+                if (c == '"' && quoteAware) inQuotes = !inQuotes;
+                pos++;
+            }
+            record.append(a, start, pos - start);
+            chars.position(pos);
+        }
+    }
+
+    /** Line terminator of the record last returned by {@link #next()}: LF, CRLF or NONE. */
+    String end() {
+        return end;
+    }
+
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    private boolean fill() throws IOException {
+        if (flushed) return false;
+        chars.clear();
+        while (chars.position() == 0 && !flushed) {
+            if (!eof) {
+                int n = channel.read(bytes);
+                if (n < 0) eof = true;
+                else bytesRead += n;
+            }
+            bytes.flip();
+            CoderResult r = decoder.decode(bytes, chars, eof);
+            if (r.isError()) r.throwException();
+            bytes.compact();
+            if (eof && !r.isOverflow()) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,36 @@
+package com.lennon.security.bulk;
+
+import com.lennon.security.policy.FieldPolicyEngine;
+
+/**
+ * Rewrites one record, applying the field policies to the values that have one.
+ * Implementations are immutable and shared by all workers.
+ */
+abstract class RecordTransformer {
+    final FieldPolicyEngine policies;
+    final BulkOptions.OnError onError;
+
+    RecordTransformer(FieldPolicyEngine policies, BulkOptions.OnError onError) {
+        this.policies = policies;
+        this.onError = onError;
+    }
+
+    /**
+     * Append the rewritten record (no terminator) to out.
+     *
+     * @param recordNo 1-based record number, for error messages
+     * @return number of values left unchanged because their policy rejected them
+     */
+    abstract int apply(String record, long recordNo, boolean forEncrypt, StringBuilder out);
+
+    /** Policy output for value, or null if it failed and onError is KEEP. */
+    final String value(int fieldId, String value, long recordNo, boolean forEncrypt) {
+        try {
+            return forEncrypt ? policies.encrypt(fieldId, value) : policies.decrypt(fieldId, value);
+        } catch (RuntimeException ex) {
+            if (onError == BulkOptions.OnError.KEEP) return null;
+            throw new IllegalArgumentException("record " + recordNo + ", field "
+                    + policies.policy(fieldId).name() + ": " + ex.getMessage(), ex);
+        }
+    }
+}
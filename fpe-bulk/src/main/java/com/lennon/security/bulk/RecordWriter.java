@@ -0,0 +1,57 @@
+package com.lennon.security.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoder in front of a channel, with one large direct buffer. Not thread-safe.
+ */
+final class RecordWriter {
+    private final WritableByteChannel channel;
+    private final ByteBuffer bytes;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private volatile long bytesWritten;
+
+    RecordWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void write(CharSequence s) throws IOException {
+        CharBuffer in = CharBuffer.wrap(s);
+        while (true) {
+            CoderResult r = encoder.encode(in, bytes, false);
+            if (r.isError()) r.throwException();
+            if (!r.isOverflow()) break;
+            drain();
+        }
+    }
+
+    /** Write out everything buffered; does not close the channel. */
+    void flush() throws IOException {
+        CoderResult r = encoder.encode(CharBuffer.allocate(0), bytes, true);
+        if (r.isError()) r.throwException();
+        encoder.flush(bytes);
+        drain();
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        long n = 0;
+        while (bytes.hasRemaining()) n += channel.write(bytes);
+        bytes.clear();
+        bytesWritten += n;
+    }
+}
@@ -0,0 +1,117 @@
+package com.lennon.security.bulk;
+
+import com.lennon.security.core.PRF;
+import com.lennon.security.policy.FieldPolicy;
+import com.lennon.security.policy.FieldPolicyEngine;
+import com.lennon.security.policy.FieldType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CSV / JSONL pipeline: output order, untouched columns, quoting and error modes.
+ */
+public class BulkMaskerTests {
+    private static final byte[] KEY = PRF.hexToBytes("2B7E151628AED2A6ABF7158809CF4F3CEF4359D8D580AA4F7F036D6F04FC6A94");
+    private static final byte[] TWEAK = "tenant:test|suite:bulk".getBytes(StandardCharsets.UTF_8);
+    private static final FieldPolicyEngine POLICIES = FieldPolicyEngine.compile(Arrays.asList(
+            FieldPolicy.of("phone", FieldType.PHONE).withKeep(3, 4),
+            FieldPolicy.of("email", FieldType.EMAIL),
+            FieldPolicy.of("note", FieldType.UNICODE)), KEY, TWEAK);
+    private static final BulkOptions SMALL_BATCHES = BulkOptions.defaults().withThreads(4).withBatchSize(7).withMaxInFlight(3);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void csv_roundtrip_keeps_order_and_other_columns() throws Exception {
+        StringBuilder csv = new StringBuilder("id,phone,city,email,note\r\n");
+        List<String> phones = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String phone = String.format("+86-156-%04d-%04d", i, 9999 - i);
+            phones.add(phone);
+            csv.append(i).append(',').append(phone).append(",\"Shang, hai\",")
+                    .append("user").append(i).append("@example.com,\"say \"\"hi\"\"\n line ").append(i).append("\"\r\n");
+        }
+        Path in = write("in.csv", csv.toString());
+        Path enc = dir.resolve("enc.csv");
+        Path dec = dir.resolve("dec.csv");
+
+        BulkMasker masker = new BulkMasker(POLICIES, SMALL_BATCHES);
+        BulkStats stats = masker.encrypt(in, enc);
+        assertEquals(500, stats.records());
+        assertTrue(stats.isFinished());
+        assertEquals(Files.size(in), stats.bytesRead());
+
+        List<String> rows = new ArrayList<>();
+        for (String line : Files.readString(enc).split("\r\n")) rows.add(line);
+        assertEquals("id,phone,city,email,note", rows.get(0));
+        int phoneId = POLICIES.fieldId("phone");
+        // quoted note spans two lines; phone is the 2nd column of every "<id>," line
+        for (int i = 0, row = 1; i < 500; i++, row++) {
+            List<String> cols = CsvTransformer.split(rows.get(row), ',');
+            assertEquals(Integer.toString(i), cols.get(0));
+            assertEquals(POLICIES.encrypt(phoneId, phones.get(i)), cols.get(1));
+            assertEquals("Shang, hai", cols.get(2));
+        }
+
+        masker.decrypt(enc, dec);
+        assertEquals(csv.toString(), Files.readString(dec));
+    }
+
+    @Test
+    public void jsonl_rewrites_only_policy_members() throws Exception {
+        StringBuilder jsonl = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            jsonl.append("{\"id\": ").append(i).append(", \"phone\":\"+86-156-1894-").append(String.format("%04d", i))
+                    .append("\", \"meta\": {\"phone\": \"keep\"}, \"note\": \"line\\n\\\"").append(i).append("\\\" 中\"}\n");
+        }
+        jsonl.append("\n");
+        Path in = write("in.jsonl", jsonl.toString());
+        Path enc = dir.resolve("enc.jsonl");
+        Path dec = dir.resolve("dec.jsonl");
+
+        BulkOptions opts = SMALL_BATCHES.withFormat(RecordFormat.JSONL);
+        new BulkMasker(POLICIES, opts).encrypt(in, enc);
+        String first = Files.readAllLines(enc).get(0);
+        assertTrue(first.startsWith("{\"id\": 0, \"phone\":\"+86-"), first);
+        assertTrue(first.contains("\"meta\": {\"phone\": \"keep\"}"), first);
+        assertFalse(first.contains("1894-0000"), first);
+
+        new BulkMasker(POLICIES, opts).decrypt(enc, dec);
+        assertEquals(jsonl.toString(), Files.readString(dec));
+    }
+
+    @Test
+    public void errors_fail_or_are_kept() throws Exception {
+        Path in = write("bad.csv", "phone,email\n+86-156-1894-0601,a@b.com\n123456789,c@d.com\n");
+        Path out = dir.resolve("out.csv");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new BulkMasker(POLICIES, SMALL_BATCHES).encrypt(in, out));
+        assertTrue(ex.getMessage().startsWith("record 2, field phone"), ex.getMessage());
+
+        List<String> progress = new ArrayList<>();
+        BulkStats stats = new BulkMasker(POLICIES, SMALL_BATCHES.withOnError(BulkOptions.OnError.KEEP)
+                .withProgress(s -> progress.add(s.toString()), 0)).encrypt(in, out);
+        assertEquals(2, stats.records());
+        assertEquals(1, stats.failedFields());
+        assertTrue(Files.readAllLines(out).get(2).startsWith("123456789,"));
+        assertFalse(progress.isEmpty());
+
+        Path noMatch = write("other.csv", "a,b\n1,2\n");
+        assertThrows(IllegalArgumentException.class, () -> new BulkMasker(POLICIES, SMALL_BATCHES).encrypt(noMatch, out));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(dir.resolve(name), content);
+    }
+}
@@ -1,34 +1,61 @@
 package com.lennon.security.alphabet;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 /**
  * Simple Alphabet mapping: charset is an ordered String of characters (no duplicates).
  * Example: "0123456789" or "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789" etc.
+ *
+ * This is the char <-> symbol codec shared by all engines and FormatPreservingService:
+ *  - lookups go through a dense table indexed by the char itself (sized to the highest char
+ *    in the charset, so 128 entries for ASCII alphabets), no boxing;
+ *  - membership is a bitset test;
+ *  - encode/decode convert whole runs between chars and FF1 symbol bytes.
+ * Instances are immutable and thread-safe.
  */
 public final class Alphabet {
+    /** ASCII digits, radix 10. */
+    public static final Alphabet DIGITS = new Alphabet("0123456789");
+
     private final char[] chars;
-    private final Map<Character, Integer> valMap;
+    /** index[c] = value + 1, 0 when c is not in the alphabet */
+    private final char[] index;
+    private final long[] members;
 
     public Alphabet(String charset){
         Objects.requireNonNull(charset, "charset null");
         if (charset.isEmpty()) throw new IllegalArgumentException("charset empty");
-        // ensure unique chars
-        valMap = new HashMap<>();
+        if (charset.length() > Character.MAX_VALUE) throw new IllegalArgumentException("charset too large");
         chars = charset.toCharArray();
+        char max = 0;
+        for (char c : chars) if (c > max) max = c;
+        index = new char[max + 1];
+        members = new long[(max >>> 6) + 1];
+        // ensure unique chars
         for (int i = 0; i < chars.length; i++){
-            if (valMap.containsKey(chars[i])) throw new IllegalArgumentException("duplicate char in charset: " + chars[i]);
-            valMap.put(chars[i], i);
+            char c = chars[i];
+            if (index[c] != 0) throw new IllegalArgumentException("duplicate char in charset: " + c);
+            index[c] = (char) (i + 1);
+            members[c >>> 6] |= 1L << c;
         }
     }
 
     public int radix(){ return chars.length; }
 
+    /** Bitset membership test. */
+    public boolean contains(char c){
+        int w = c >>> 6;
+        return w < members.length && (members[w] & (1L << c)) != 0;
+    }
+
+    /** Symbol value of c, or -1 if c is not in the alphabet. */
+    public int indexOf(char c){
+        return c < index.length ? index[c] - 1 : -1;
+    }
+
     public int toVal(char c){
-        Integer v = valMap.get(c);
-        if (v == null) throw new IllegalArgumentException("char not in alphabet: " + c);
+        int v = indexOf(c);
+        if (v < 0) throw new IllegalArgumentException("char not in alphabet: " + c);
         return v;
     }
 
@@ -38,4 +65,52 @@ public final class Alphabet {
     }
 
     public String getCharset(){ return new String(chars); }
-}
\ No newline at end of file
+
+    // ---------- bulk codec ----------
+
+    /**
+     * Encode every char of src into dst[0..src.length()) as symbol values (radix must be <= 256).
+     * Returns the number of symbols written.
+     */
+    public int encode(CharSequence src, byte[] dst){
+        int n = src.length();
+        for (int i = 0; i < n; i++) dst[i] = symbol(src.charAt(i));
+        return n;
+    }
+
+    /** Encode src[off..off+len) into dst[dstOff..dstOff+len). */
+    public int encode(char[] src, int off, int len, byte[] dst, int dstOff){
+        for (int i = 0; i < len; i++) dst[dstOff + i] = symbol(src[off + i]);
+        return len;
+    }
+
+    /** Decode symbol values src[0..src.length) into dst. */
+    public int decode(byte[] src, char[] dst){
+        return decode(src, 0, src.length, dst, 0);
+    }
+
+    /** Decode symbol values src[off..off+len) into dst[dstOff..dstOff+len). */
+    public int decode(byte[] src, int off, int len, char[] dst, int dstOff){
+        for (int i = 0; i < len; i++){
+            int v = src[off + i] & 0xFF;
+            if (v >= chars.length) throw new IllegalStateException("output value out of range: " + v);
+            dst[dstOff + i] = chars[v];
+        }
+        return len;
+    }
+
+    /** Position of the first char of src[off..off+len) outside the alphabet, or -1 if all are members. */
+    public int firstInvalid(char[] src, int off, int len){
+        for (int i = 0; i < len; i++) if (!contains(src[off + i])) return off + i;
+        return -1;
+    }
+
+    private byte symbol(char c){
+        int v = c < index.length ? index[c] - 1 : -1;
+        if (v < 0 || v > 0xFF) {
+            if (v < 0) throw new IllegalArgumentException("char '" + c + "' not in alphabet");
+            throw new IllegalStateException("radix > 256 cannot be byte-encoded");
+        }
+        return (byte) v;
+    }
+}
@@ -0,0 +1,387 @@
+package com.lennon.security.core;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CompletableFuture facade over a {@link FormatPreservingService}, for non-blocking callers.
+ *
+ *  - Bounded: a fixed number of worker threads and a queue of queueCapacity calls; when the queue
+ *    is full the {@link Overflow} policy decides (fail the future, run on the caller, or wait).
+ *  - Coalescing: concurrent calls with the same operation and arguments share one cipher run
+ *    (output is deterministic); each caller still gets its own future, so cancelling one does
+ *    not affect the others.
+ *  - Virtual threads on JDK 21+ (the JAR is multi-release; elsewhere that option is ignored): each
+ *    call gets its own virtual thread instead of a pooled worker, and a semaphore caps the calls
+ *    in flight at threads + queueCapacity, the same number the pool accepts before overflowing.
+ *
+ * Usage:
+ *   AsyncFormatPreservingService async = new AsyncFormatPreservingService(fps,
+ *           AsyncFormatPreservingService.Options.defaults().withQueueCapacity(10_000));
+ *   async.encryptEmailWithMarker(email).thenAccept(reply::send);
+ */
+public final class AsyncFormatPreservingService implements AutoCloseable {
+
+    /** What happens to a call that finds the queue full. */
+    public enum Overflow {
+        /** Fail the future with RejectedExecutionException. */
+        REJECT,
+        /** Run the call on the submitting thread (slows the producer down). */
+        CALLER_RUNS,
+        /** Wait up to blockTimeoutMillis for queue space, then REJECT. */
+        BLOCK
+    }
+
+    /** Coalescing key: one per public method, so results of different types never mix. */
+    private enum Op {
+        EMAIL_ENCRYPT, EMAIL_DECRYPT, TRY_EMAIL_ENCRYPT, TRY_EMAIL_DECRYPT,
+        PHONE_ENCRYPT, PHONE_DECRYPT, TRY_PHONE_ENCRYPT, TRY_PHONE_DECRYPT,
+        OPAQUE_ENCRYPT, OPAQUE_DECRYPT, UNICODE_ENCRYPT, UNICODE_DECRYPT
+    }
+
+    private final FormatPreservingService service;
+    private final Options options;
+    private final ExecutorService executor;
+    /** Platform pool only; its queue is the bound. */
+    private final ThreadPoolExecutor pool;
+    /** Virtual threads only: the bound on calls in flight. */
+    private final Semaphore permits;
+    private final LongAdder notStarted = new LongAdder();
+    private final ConcurrentHashMap<Call, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    public AsyncFormatPreservingService(FormatPreservingService service) {
+        this(service, Options.defaults());
+    }
+
+    public AsyncFormatPreservingService(FormatPreservingService service, Options options) {
+        this.service = Objects.requireNonNull(service, "service null");
+        this.options = Objects.requireNonNull(options, "options null");
+        if (options.virtualThreads && AsyncThreads.virtualSupported()) {
+            this.pool = null;
+            this.permits = new Semaphore(options.threads + options.queueCapacity);
+            this.executor = AsyncThreads.virtualPerTask("fpe-async-");
+        } else {
+            this.pool = new ThreadPoolExecutor(options.threads, options.threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(options.queueCapacity),
+                    AsyncThreads.platform("fpe-async-"), new ThreadPoolExecutor.AbortPolicy());
+            this.permits = null;
+            this.executor = pool;
+        }
+    }
+
+    public CompletableFuture<String> encryptEmailWithMarker(String email) {
+        return submit(Op.EMAIL_ENCRYPT, email, 0, 0, () -> service.encryptEmailWithMarker(email));
+    }
+
+    public CompletableFuture<String> decryptEmailWithMarker(String cipher) {
+        return submit(Op.EMAIL_DECRYPT, cipher, 0, 0, () -> service.decryptEmailWithMarker(cipher));
+    }
+
+    /** The future itself fails only on rejection; cipher problems come back as a status. */
+    public CompletableFuture<FpeResult> tryEncryptEmailWithMarker(String email) {
+        return submit(Op.TRY_EMAIL_ENCRYPT, email, 0, 0, () -> service.tryEncryptEmailWithMarker(email));
+    }
+
+    public CompletableFuture<FpeResult> tryDecryptEmailWithMarker(String cipher) {
+        return submit(Op.TRY_EMAIL_DECRYPT, cipher, 0, 0, () -> service.tryDecryptEmailWithMarker(cipher));
+    }
+
+    public CompletableFuture<String> encryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix) {
+        return submit(Op.PHONE_ENCRYPT, phone, keepPrefix, keepSuffix,
+                () -> service.encryptPhoneKeepPrefix(phone, keepPrefix, keepSuffix));
+    }
+
+    public CompletableFuture<String> decryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix) {
+        return submit(Op.PHONE_DECRYPT, cipher, keepPrefix, keepSuffix,
+                () -> service.decryptPhoneKeepPrefix(cipher, keepPrefix, keepSuffix));
+    }
+
+    public CompletableFuture<FpeResult> tryEncryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix) {
+        return submit(Op.TRY_PHONE_ENCRYPT, phone, keepPrefix, keepSuffix,
+                () -> service.tryEncryptPhoneKeepPrefix(phone, keepPrefix, keepSuffix));
+    }
+
+    public CompletableFuture<FpeResult> tryDecryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix) {
+        return submit(Op.TRY_PHONE_DECRYPT, cipher, keepPrefix, keepSuffix,
+                () -> service.tryDecryptPhoneKeepPrefix(cipher, keepPrefix, keepSuffix));
+    }
+
+    public CompletableFuture<String> encryptOpaqueAll(String input) {
+        return submit(Op.OPAQUE_ENCRYPT, input, 0, 0, () -> service.encryptOpaqueAll(input));
+    }
+
+    public CompletableFuture<String> decryptOpaqueAll(String cipher) {
+        return submit(Op.OPAQUE_DECRYPT, cipher, 0, 0, () -> service.decryptOpaqueAll(cipher));
+    }
+
+    public CompletableFuture<String> encryptAnyUnicodeOpaque(String input) {
+        return submit(Op.UNICODE_ENCRYPT, input, 0, 0, () -> service.encryptAnyUnicodeOpaque(input));
+    }
+
+    public CompletableFuture<String> decryptAnyUnicodeOpaque(String cipher) {
+        return submit(Op.UNICODE_DECRYPT, cipher, 0, 0, () -> service.decryptAnyUnicodeOpaque(cipher));
+    }
+
+    public FormatPreservingService service() {
+        return service;
+    }
+
+    public Options options() {
+        return options;
+    }
+
+    /** Calls waiting for a worker (with virtual threads: accepted, thread not yet running). */
+    public int queueSize() {
+        return pool != null ? pool.getQueue().size() : notStarted.intValue();
+    }
+
+    /** Whether calls run on virtual threads (requested and supported by this runtime). */
+    public boolean usesVirtualThreads() {
+        return permits != null;
+    }
+
+    /** Calls that joined an identical call already in flight. */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** Calls failed because the queue was full (or the service closed). */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /** Calls run on the submitting thread under {@link Overflow#CALLER_RUNS}. */
+    public long callerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /** Stop accepting calls; queued ones still complete. */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> submit(Op op, String input, int keepPrefix, int keepSuffix, Callable<T> task) {
+        CompletableFuture<Object> f = new CompletableFuture<>();
+        Call key = null;
+        if (options.coalesce) {
+            key = new Call(op, input, keepPrefix, keepSuffix);
+            CompletableFuture<Object> running = inFlight.putIfAbsent(key, f);
+            if (running != null) {
+                coalesced.increment();
+                return (CompletableFuture<T>) running.copy();
+            }
+        }
+        dispatch(f, key, task);
+        return (CompletableFuture<T>) (key == null ? f : f.copy());
+    }
+
+    private void dispatch(CompletableFuture<Object> f, Call key, Callable<?> task) {
+        Runnable run = () -> run(f, key, task);
+        RejectedExecutionException rejection;
+        try {
+            if (permits == null) {
+                executor.execute(run);
+                return;
+            }
+            if (permits.tryAcquire()) {
+                startVirtual(run);
+                return;
+            }
+            rejection = new RejectedExecutionException("too many calls in flight");
+        } catch (RejectedExecutionException e) {
+            rejection = e;
+        }
+        if (!executor.isShutdown()) {
+            if (options.overflow == Overflow.CALLER_RUNS) {
+                callerRuns.increment();
+                run.run();
+                return;
+            }
+            if (options.overflow == Overflow.BLOCK) {
+                try {
+                    if (permits == null) {
+                        // workers are all started once the queue has filled, so queueing directly is safe
+                        if (pool.getQueue().offer(run, options.blockTimeoutMillis, TimeUnit.MILLISECONDS)) return;
+                    } else if (permits.tryAcquire(options.blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        startVirtual(run);
+                        return;
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } catch (RejectedExecutionException e) {
+                    rejection = e;
+                }
+            }
+        }
+        rejected.increment();
+        if (key != null) inFlight.remove(key, f);
+        f.completeExceptionally(rejection);
+    }
+
+    /** New virtual thread for run, holding one permit until it ends. */
+    private void startVirtual(Runnable run) {
+        notStarted.increment();
+        try {
+            executor.execute(() -> {
+                notStarted.decrement();
+                try {
+                    run.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            notStarted.decrement();
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void run(CompletableFuture<Object> f, Call key, Callable<?> task) {
+        Object value = null;
+        Throwable error = null;
+        try {
+            value = task.call();
+        } catch (Throwable t) {
+            error = t;
+        }
+        // leave the map before completing, so a call arriving after completion starts afresh
+        if (key != null) inFlight.remove(key, f);
+        if (error == null) {
+            f.complete(value);
+        } else {
+            f.completeExceptionally(error);
+        }
+    }
+
+    private static final class Call {
+        final Op op;
+        final String input;
+        final int keepPrefix;
+        final int keepSuffix;
+
+        Call(Op op, String input, int keepPrefix, int keepSuffix) {
+            this.op = op;
+            this.input = input;
+            this.keepPrefix = keepPrefix;
+            this.keepSuffix = keepSuffix;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Call)) return false;
+            Call c = (Call) o;
+            return op == c.op && keepPrefix == c.keepPrefix && keepSuffix == c.keepSuffix
+                    && Objects.equals(input, c.input);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((op.hashCode() * 31 + Objects.hashCode(input)) * 31 + keepPrefix) * 31 + keepSuffix;
+        }
+    }
+
+    /**
+     * Immutable settings, in the style of {@link EngineOptions}.
+     * Defaults: one worker per CPU, queue of 1024, REJECT, coalescing on, platform threads.
+     */
+    public static final class Options {
+        private static final Options DEFAULTS = new Options(Runtime.getRuntime().availableProcessors(), 1024,
+                Overflow.REJECT, 100L, true, false);
+
+        private final int threads;
+        private final int queueCapacity;
+        private final Overflow overflow;
+        private final long blockTimeoutMillis;
+        private final boolean coalesce;
+        private final boolean virtualThreads;
+
+        private Options(int threads, int queueCapacity, Overflow overflow, long blockTimeoutMillis,
+                        boolean coalesce, boolean virtualThreads) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.overflow = overflow;
+            this.blockTimeoutMillis = blockTimeoutMillis;
+            this.coalesce = coalesce;
+            this.virtualThreads = virtualThreads;
+        }
+
+        public static Options defaults() {
+            return DEFAULTS;
+        }
+
+        public int threads() {
+            return threads;
+        }
+
+        public int queueCapacity() {
+            return queueCapacity;
+        }
+
+        public Overflow overflow() {
+            return overflow;
+        }
+
+        public long blockTimeoutMillis() {
+            return blockTimeoutMillis;
+        }
+
+        public boolean coalesce() {
+            return coalesce;
+        }
+
+        /** Requested; only honoured on JDK 21+, see {@link #virtualThreadsSupported()}. */
+        public boolean virtualThreads() {
+            return virtualThreads;
+        }
+
+        /** Whether this runtime loaded the JDK 21 build and can run workers on virtual threads. */
+        public static boolean virtualThreadsSupported() {
+            return AsyncThreads.virtualSupported();
+        }
+
+        public Options withThreads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+            return new Options(threads, queueCapacity, overflow, blockTimeoutMillis, coalesce, virtualThreads);
+        }
+
+        public Options withQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be >= 1");
+            return new Options(threads, queueCapacity, overflow, blockTimeoutMillis, coalesce, virtualThreads);
+        }
+
+        public Options withOverflow(Overflow overflow) {
+            return new Options(threads, queueCapacity, Objects.requireNonNull(overflow, "overflow null"),
+                    blockTimeoutMillis, coalesce, virtualThreads);
+        }
+
+        /** How long {@link Overflow#BLOCK} waits for queue space. */
+        public Options withBlockTimeoutMillis(long blockTimeoutMillis) {
+            if (blockTimeoutMillis < 0) throw new IllegalArgumentException("blockTimeoutMillis must be >= 0");
+            return new Options(threads, queueCapacity, overflow, blockTimeoutMillis, coalesce, virtualThreads);
+        }
+
+        public Options withCoalesce(boolean coalesce) {
+            return new Options(threads, queueCapacity, overflow, blockTimeoutMillis, coalesce, virtualThreads);
+        }
+
+        public Options withVirtualThreads(boolean virtualThreads) {
+            return new Options(threads, queueCapacity, overflow, blockTimeoutMillis, coalesce, virtualThreads);
+        }
+    }
+}
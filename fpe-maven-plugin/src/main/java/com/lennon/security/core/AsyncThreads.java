@@ -0,0 +1,33 @@
+package com.lennon.security.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker threads of {@link AsyncFormatPreservingService}. Java 11 build: platform daemon threads
+ * only; the JDK 21 build of this class (src/main/java21, a multi-release JAR entry) adds a
+ * virtual thread per task.
+ */
+final class AsyncThreads {
+    private AsyncThreads() {
+    }
+
+    static boolean virtualSupported() {
+        return false;
+    }
+
+    static ThreadFactory platform(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** One new virtual thread per task; only when {@link #virtualSupported()}. */
+    static ExecutorService virtualPerTask(String prefix) {
+        throw new UnsupportedOperationException("virtual threads need JDK 21+");
+    }
+}
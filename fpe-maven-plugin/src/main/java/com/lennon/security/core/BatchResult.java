@@ -0,0 +1,51 @@
+package com.lennon.security.core;
+
+/**
+ * Outcome of a FormatPreservingService batch call, in input order.
+ *
+ * Element i either has a value (error(i) == null) or the exception its single-value call
+ * would have thrown (value(i) == null). One bad element never aborts the rest of the batch.
+ */
+public final class BatchResult {
+    private final String[] values;
+    private final Exception[] errors;
+    private int failures = -1;
+
+    BatchResult(String[] values, Exception[] errors) {
+        this.values = values;
+        this.errors = errors;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /** Result for input i, or null if that element failed. */
+    public String value(int i) {
+        return values[i];
+    }
+
+    /** Failure for input i, or null if it succeeded. */
+    public Exception error(int i) {
+        return errors[i];
+    }
+
+    public boolean isSuccess(int i) {
+        return errors[i] == null;
+    }
+
+    public int failureCount() {
+        int f = failures;
+        if (f < 0) {
+            f = 0;
+            for (Exception e : errors) if (e != null) f++;
+            failures = f;
+        }
+        return f;
+    }
+
+    /** Copy of all results in input order; failed elements are null. */
+    public String[] values() {
+        return values.clone();
+    }
+}
@@ -0,0 +1,30 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.engines.AESEngine;
+
+/**
+ * Source of the AES block cipher used inside FF1 (both backends).
+ *
+ * Engines call {@link #newCipher()} once per thread and keep the initialized instance,
+ * so implementations may return non-thread-safe ciphers.
+ *
+ * Usage:
+ *   EngineOptions opts = EngineOptions.defaults().withBlockCipher(BlockCipherProvider.jca());
+ */
+@FunctionalInterface
+public interface BlockCipherProvider {
+
+    /** A new, uninitialized 128-bit block cipher (AES). */
+    BlockCipher newCipher();
+
+    /** BouncyCastle's pure-Java AESEngine (default). */
+    static BlockCipherProvider bouncyCastle() {
+        return AESEngine::newInstance;
+    }
+
+    /** javax.crypto "AES/ECB/NoPadding", which HotSpot accelerates with AES-NI where available. */
+    static BlockCipherProvider jca() {
+        return JcaAesBlockCipher::new;
+    }
+}
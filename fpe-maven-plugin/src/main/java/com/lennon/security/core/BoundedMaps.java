@@ -0,0 +1,48 @@
+package com.lennon.security.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size bound shared by the small key / engine caches (FpeEngineRegistry, KeyRing, KeyDerivation):
+ * a ConcurrentHashMap whose values carry a last-used timestamp, trimmed by a linear scan on the
+ * miss that overfills it. These maps hold keys and engines, not records, so the scan stays cheap
+ * and lookups stay a plain lock-free get.
+ */
+public final class BoundedMaps {
+    /** Returned by a lastUsed function for an entry that must not be evicted now (e.g. still loading). */
+    public static final long PINNED = Long.MAX_VALUE;
+    /** lastUsed is refreshed at most this often, so hot entries are not written on every hit. */
+    public static final long TOUCH_GRANULARITY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private BoundedMaps() {
+    }
+
+    /**
+     * Remove least recently used entries until map has at most maxEntries, never keep (may be null)
+     * or a {@link #PINNED} entry. onEvict runs once for each entry this call removed.
+     */
+    public static <K, V> void evictLeastRecentlyUsed(ConcurrentMap<K, V> map, int maxEntries, K keep,
+                                                     ToLongFunction<? super V> lastUsed,
+                                                     BiConsumer<? super K, ? super V> onEvict) {
+        while (map.size() > maxEntries) {
+            K victim = null;
+            V value = null;
+            long oldest = PINNED;
+            for (Map.Entry<K, V> me : map.entrySet()) {
+                if (me.getKey().equals(keep)) continue;
+                long used = lastUsed.applyAsLong(me.getValue());
+                if (used < oldest) {
+                    oldest = used;
+                    victim = me.getKey();
+                    value = me.getValue();
+                }
+            }
+            if (victim == null) return;
+            if (map.remove(victim, value)) onEvict.accept(victim, value);
+        }
+    }
+}
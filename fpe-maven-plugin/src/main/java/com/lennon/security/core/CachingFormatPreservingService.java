@@ -0,0 +1,158 @@
+package com.lennon.security.core;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizing front for {@link FormatPreservingService}: repeated values are answered from a
+ * {@link FpeResultCache} instead of running FF1 again.
+ *
+ * Entries are scoped to the wrapped service (i.e. its key and tweak) plus the method and its
+ * parameters, so one cache can be shared by several wrappers. {@link #switchKey} swaps in a service
+ * built for a new key and drops everything cached under the old one. Only successful results are
+ * cached; null inputs and failures go straight through.
+ *
+ * Usage:
+ *   FpeResultCache cache = new FpeResultCache(100_000, 600_000);
+ *   CachingFormatPreservingService fps = new CachingFormatPreservingService(service, cache);
+ *   String enc = fps.encryptPhoneKeepPrefix(phone, 3, 4);
+ */
+public final class CachingFormatPreservingService {
+    private static final AtomicLong SCOPES = new AtomicLong();
+
+    private static final int ENC_EMAIL = 1;
+    private static final int DEC_EMAIL = 2;
+    private static final int ENC_PHONE_PREFIX = 3;
+    private static final int DEC_PHONE_PREFIX = 4;
+    private static final int ENC_PHONE_LETTERS = 5;
+    private static final int DEC_PHONE_LETTERS = 6;
+    private static final int ENC_OPAQUE_ALL = 7;
+    private static final int DEC_OPAQUE_ALL = 8;
+    private static final int ENC_UNICODE = 9;
+    private static final int DEC_UNICODE = 10;
+
+    private final FpeResultCache cache;
+    private volatile Binding binding;
+
+    public CachingFormatPreservingService(FormatPreservingService delegate, FpeResultCache cache) {
+        this.cache = Objects.requireNonNull(cache, "cache null");
+        this.binding = new Binding(Objects.requireNonNull(delegate, "delegate null"));
+    }
+
+    /**
+     * Route all further calls to a service built for a new key (or tweak) and clear the entries
+     * cached for the previous one. Calls already in flight may still store results under the old
+     * scope; those are never served again and age out of the LRU.
+     */
+    public void switchKey(FormatPreservingService delegate) {
+        Binding old;
+        synchronized (this) {
+            old = binding;
+            binding = new Binding(Objects.requireNonNull(delegate, "delegate null"));
+        }
+        cache.invalidateScope(old.scope);
+    }
+
+    public FormatPreservingService delegate() {
+        return binding.service;
+    }
+
+    public FpeResultCache cache() {
+        return cache;
+    }
+
+    public String encryptEmailWithMarker(String email) {
+        Binding b = binding;
+        if (email == null) return b.service.encryptEmailWithMarker(null);
+        FpeResultCache.Key k = new FpeResultCache.Key(b.scope, ENC_EMAIL, 0, 0, email);
+        String v = cache.get(k);
+        if (v == null) {
+            v = b.service.encryptEmailWithMarker(email);
+            cache.put(k, v);
+        }
+        return v;
+    }
+
+    public String decryptEmailWithMarker(String cipher) {
+        Binding b = binding;
+        if (cipher == null) return b.service.decryptEmailWithMarker(null);
+        FpeResultCache.Key k = new FpeResultCache.Key(b.scope, DEC_EMAIL, 0, 0, cipher);
+        String v = cache.get(k);
+        if (v == null) {
+            v = b.service.decryptEmailWithMarker(cipher);
+            cache.put(k, v);
+        }
+        return v;
+    }
+
+    public String encryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix) throws Exception {
+        Binding b = binding;
+        return cached(b, ENC_PHONE_PREFIX, keepPrefix, keepSuffix, phone,
+                v -> b.service.encryptPhoneKeepPrefix(v, keepPrefix, keepSuffix));
+    }
+
+    public String decryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix) throws Exception {
+        Binding b = binding;
+        return cached(b, DEC_PHONE_PREFIX, keepPrefix, keepSuffix, cipher,
+                v -> b.service.decryptPhoneKeepPrefix(v, keepPrefix, keepSuffix));
+    }
+
+    public String encryptPhoneKeepEndsAllowLetters(String phone, int keepPrefix, int keepSuffix) throws Exception {
+        Binding b = binding;
+        return cached(b, ENC_PHONE_LETTERS, keepPrefix, keepSuffix, phone,
+                v -> b.service.encryptPhoneKeepEndsAllowLetters(v, keepPrefix, keepSuffix));
+    }
+
+    public String decryptPhoneKeepEndsAllowLetters(String cipher, int keepPrefix, int keepSuffix) throws Exception {
+        Binding b = binding;
+        return cached(b, DEC_PHONE_LETTERS, keepPrefix, keepSuffix, cipher,
+                v -> b.service.decryptPhoneKeepEndsAllowLetters(v, keepPrefix, keepSuffix));
+    }
+
+    public String encryptOpaqueAll(String input) throws Exception {
+        Binding b = binding;
+        return cached(b, ENC_OPAQUE_ALL, 0, 0, input, b.service::encryptOpaqueAll);
+    }
+
+    public String decryptOpaqueAll(String cipher) throws Exception {
+        Binding b = binding;
+        return cached(b, DEC_OPAQUE_ALL, 0, 0, cipher, b.service::decryptOpaqueAll);
+    }
+
+    public String encryptAnyUnicodeOpaque(String input) throws Exception {
+        Binding b = binding;
+        return cached(b, ENC_UNICODE, 0, 0, input, b.service::encryptAnyUnicodeOpaque);
+    }
+
+    public String decryptAnyUnicodeOpaque(String cipher) throws Exception {
+        Binding b = binding;
+        return cached(b, DEC_UNICODE, 0, 0, cipher, b.service::decryptAnyUnicodeOpaque);
+    }
+
+    @FunctionalInterface
+    private interface Compute {
+        String apply(String value) throws Exception;
+    }
+
+    private String cached(Binding b, int op, int p1, int p2, String value, Compute compute) throws Exception {
+        if (value == null) return compute.apply(null);
+        FpeResultCache.Key k = new FpeResultCache.Key(b.scope, op, p1, p2, value);
+        String v = cache.get(k);
+        if (v == null) {
+            v = compute.apply(value);
+            if (v != null) cache.put(k, v);
+        }
+        return v;
+    }
+
+    /** A service together with the cache scope of its key; replaced as a whole on key change. */
+    private static final class Binding {
+        final FormatPreservingService service;
+        final long scope;
+
+        Binding(FormatPreservingService service) {
+            this.service = service;
+            this.scope = SCOPES.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.lennon.security.core;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.nio.ReadOnlyBufferException;
+
+/**
+ * Per-thread working buffers for the char[] / CharBuffer engine paths; grown on demand, never shrunk.
+ *
+ * Each layer owns its own fields so a wrapper can call the engine it wraps on the same thread:
+ *  - symbols / result: numeral layer (char -> symbol -> FF1 -> char)
+ *  - core / slots:     format layer (strip separators / put them back)
+ *  - stageIn / stageOut: copies of non-array CharBuffers
+ */
+final class CharScratch {
+    private static final ThreadLocal<CharScratch> LOCAL = ThreadLocal.withInitial(CharScratch::new);
+    private static final int INITIAL = 64;
+
+    private byte[] symbols = new byte[INITIAL];
+    private byte[] result = new byte[INITIAL];
+    private char[] core = new char[INITIAL];
+    private int[] slots = new int[INITIAL];
+    private char[] stageIn = new char[INITIAL];
+    private char[] stageOut = new char[INITIAL];
+
+    private CharScratch() {}
+
+    static CharScratch get() {
+        return LOCAL.get();
+    }
+
+    byte[] symbols(int n) {
+        if (symbols.length < n) symbols = new byte[grow(n)];
+        return symbols;
+    }
+
+    byte[] result(int n) {
+        if (result.length < n) result = new byte[grow(n)];
+        return result;
+    }
+
+    char[] core(int n) {
+        if (core.length < n) core = new char[grow(n)];
+        return core;
+    }
+
+    int[] slots(int n) {
+        if (slots.length < n) slots = new int[grow(n)];
+        return slots;
+    }
+
+    char[] stageIn(int n) {
+        if (stageIn.length < n) stageIn = new char[grow(n)];
+        return stageIn;
+    }
+
+    char[] stageOut(int n) {
+        if (stageOut.length < n) stageOut = new char[grow(n)];
+        return stageOut;
+    }
+
+    private static int grow(int n) {
+        return Math.max(n, INITIAL) + (n >>> 1);
+    }
+
+    /** Array-level transform exposed by the engines; src and dst may be the same array. */
+    interface CharOp {
+        int apply(boolean forEncrypt, boolean keep, char[] src, int off, int len, char[] dst, int dstOff);
+    }
+
+    /**
+     * Run op over src.remaining() chars into dst, advancing both positions on success.
+     * Backing arrays are used directly when both buffers have one, otherwise the chars are
+     * staged through this thread's scratch.
+     */
+    static int apply(CharOp op, boolean forEncrypt, boolean keep, CharBuffer src, CharBuffer dst) {
+        int len = src.remaining();
+        if (dst.isReadOnly()) throw new ReadOnlyBufferException();
+        if (dst.remaining() < len) throw new BufferOverflowException();
+        int n;
+        if (src.hasArray() && dst.hasArray()) {
+            n = op.apply(forEncrypt, keep, src.array(), src.arrayOffset() + src.position(), len,
+                    dst.array(), dst.arrayOffset() + dst.position());
+            src.position(src.position() + len);
+            dst.position(dst.position() + n);
+        } else {
+            CharScratch s = get();
+            char[] in = s.stageIn(len);
+            char[] out = s.stageOut(len);
+            int mark = src.position();
+            src.get(in, 0, len);
+            try {
+                n = op.apply(forEncrypt, keep, in, 0, len, out, 0);
+            } catch (RuntimeException ex) {
+                src.position(mark);
+                throw ex;
+            }
+            dst.put(out, 0, n);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,151 @@
+package com.lennon.security.core;
+
+import com.lennon.security.domain.RankedDomain;
+
+import javax.security.auth.Destroyable;
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Encryption inside a structured domain by rank / unrank: value -> rank in [0, N) -> encrypted
+ * rank -> value. Every output is again a member of the domain (e.g. a national ID with a listed
+ * region, a real birth date and a correct check char).
+ *
+ * The rank is written as len numerals in some radix and encrypted with the configured FF1 (or
+ * FF3-1) cipher, the same FpeCipher the other engines use. A result >= N is encrypted again
+ * (cycle walking) until it lands in [0, N). radix (at most 256) and len are picked once per
+ * domain so that radix^len is the smallest such power >= N; radix^len / N is the expected number
+ * of cipher calls and is always below 2, usually close to 1. A walk is capped at MAX_WALK calls.
+ *
+ * Constraints: N = left x right >= 1,000,000 (FF1's minimum domain) and < 2^63.
+ * Thread-safe.
+ *
+ * Usage:
+ *   ConstrainedDomainEngine ids = new ConstrainedDomainEngine(key, tweak, nationalIdDomain);
+ *   String enc = ids.encrypt("11010519491231002X");
+ */
+public final class ConstrainedDomainEngine implements Destroyable {
+    private static final long MIN_DOMAIN = 1_000_000L;
+    /** Largest radix whose numerals fit the byte symbols of FpeCipher. */
+    private static final int MAX_RADIX = 256;
+    /** Walks needing more cipher calls fail; with radix^len < 2N this takes about 2^-128 odds. */
+    static final int MAX_WALK = 128;
+
+    private final RankedDomain domain;
+    /** left * right, checked to fit in a long */
+    private final long size;
+    private final int radix;
+    private final int len;
+    private final FpeCipher cipher;
+
+    public ConstrainedDomainEngine(byte[] key, byte[] tweak, RankedDomain domain) {
+        this(key, tweak, domain, EngineOptions.defaults());
+    }
+
+    /** mode, backend and blockCipher apply as for the other engines. */
+    public ConstrainedDomainEngine(byte[] key, byte[] tweak, RankedDomain domain, EngineOptions options) {
+        Objects.requireNonNull(domain, "domain null");
+        Objects.requireNonNull(options, "options null");
+        if (key == null || (key.length != 16 && key.length != 24 && key.length != 32)) {
+            throw new IllegalArgumentException("key must be 16, 24 or 32 bytes");
+        }
+        this.domain = domain;
+        long left = domain.left();
+        long right = domain.right();
+        if (left < 1 || right < 1) throw new IllegalArgumentException("domain factors must be >= 1");
+        try {
+            this.size = Math.multiplyExact(left, right);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("domain size left * right must be < 2^63", ex);
+        }
+        if (size < MIN_DOMAIN) throw new IllegalArgumentException("domain too small");
+
+        // smallest radix^len >= size over every length, ties to the smaller radix;
+        // radix 2 always qualifies with ratio < 2
+        BigInteger n = BigInteger.valueOf(size);
+        int bestRadix = 2;
+        int bitLen = 64 - Long.numberOfLeadingZeros(size - 1);
+        int bestLen = bitLen;
+        BigInteger best = BigInteger.ONE.shiftLeft(bitLen);
+        for (int l = 2; l < bitLen; l++) {
+            int r = Math.max(2, (int) Math.ceil(Math.pow(size, 1.0 / l)) - 1);
+            while (r <= MAX_RADIX && BigInteger.valueOf(r).pow(l).compareTo(n) < 0) r++;
+            if (r > MAX_RADIX || l < FpeCipher.minLength(r)) continue;
+            BigInteger p = BigInteger.valueOf(r).pow(l);
+            if (p.compareTo(best) <= 0) {
+                best = p;
+                bestRadix = r;
+                bestLen = l;
+            }
+        }
+        this.radix = bestRadix;
+        this.len = bestLen;
+        this.cipher = options.withSmallDomainTables(false).newCipher(key, radix, tweak == null ? new byte[0] : tweak);
+        if (cipher.checkLength(len) != FpeStatus.OK) {
+            cipher.destroy();
+            throw new IllegalArgumentException("domain size not supported by " + options.mode() + ": " + size);
+        }
+    }
+
+    public RankedDomain domain() {
+        return domain;
+    }
+
+    public String encrypt(String value) {
+        if (value == null) return null;
+        return domain.unrank(encryptRank(domain.rank(value)));
+    }
+
+    public String decrypt(String value) {
+        if (value == null) return null;
+        return domain.unrank(decryptRank(domain.rank(value)));
+    }
+
+    /** Encrypt a rank in [0, domain().size()). */
+    public long encryptRank(long rank) {
+        return walk(true, rank);
+    }
+
+    public long decryptRank(long rank) {
+        return walk(false, rank);
+    }
+
+    /** Numeral radix of the rank string (for tests and sizing). */
+    int radix() {
+        return radix;
+    }
+
+    /** Numerals per rank string. */
+    int length() {
+        return len;
+    }
+
+    private long walk(boolean forEncrypt, long rank) {
+        if (rank < 0 || rank >= size) throw new IllegalArgumentException("rank out of range");
+        byte[] buf = new byte[len];
+        long x = rank;
+        for (int i = 0; i < MAX_WALK; i++) {
+            for (int k = len - 1; k >= 0; k--) {
+                buf[k] = (byte) Long.remainderUnsigned(x, radix);
+                x = Long.divideUnsigned(x, radix);
+            }
+            cipher.process(forEncrypt, buf, 0, len, buf, 0);
+            // radix^len < 2^64, so the value fits an unsigned long
+            x = 0;
+            for (int k = 0; k < len; k++) x = x * radix + (buf[k] & 0xFF);
+            if (Long.compareUnsigned(x, size) < 0) return x;
+        }
+        throw new IllegalStateException("cycle walk exceeded " + MAX_WALK + " steps");
+    }
+
+    /** Zero the cipher's key copies and every thread's AES state; later calls throw IllegalStateException. */
+    @Override
+    public void destroy() {
+        cipher.destroy();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return cipher.isDestroyed();
+    }
+}
@@ -0,0 +1,114 @@
+package com.lennon.security.core;
+
+import java.util.Objects;
+
+/**
+ * Immutable construction options shared by the engine wrappers.
+ *
+ * Usage:
+ *   EngineOptions opts = EngineOptions.defaults().withBackend(FF1Backend.BOUNCY_CASTLE);
+ *   FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(key, tweak, opts);
+ */
+public final class EngineOptions {
+    private static final EngineOptions DEFAULTS = new EngineOptions(FpeMode.FF1,
+            FF1Backend.NATIVE, FF1Cipher.DEFAULT_LENGTH_CACHE_SIZE, BlockCipherProvider.bouncyCastle(), false);
+
+    private final FpeMode mode;
+    private final FF1Backend backend;
+    private final int lengthCacheSize;
+    private final BlockCipherProvider blockCipher;
+    private final boolean smallDomainTables;
+
+    private EngineOptions(FpeMode mode, FF1Backend backend, int lengthCacheSize, BlockCipherProvider blockCipher,
+                          boolean smallDomainTables) {
+        this.mode = mode;
+        this.backend = backend;
+        this.lengthCacheSize = lengthCacheSize;
+        this.blockCipher = blockCipher;
+        this.smallDomainTables = smallDomainTables;
+    }
+
+    /** FF1 on the NATIVE backend with BouncyCastle AES, i.e. what the option-less constructors use. */
+    public static EngineOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public FpeMode mode() {
+        return mode;
+    }
+
+    public FF1Backend backend() {
+        return backend;
+    }
+
+    /** Max distinct input lengths whose FF1 constants and tweak-prefix MAC state are cached (NATIVE only). */
+    public int lengthCacheSize() {
+        return lengthCacheSize;
+    }
+
+    public BlockCipherProvider blockCipher() {
+        return blockCipher;
+    }
+
+    public boolean smallDomainTables() {
+        return smallDomainTables;
+    }
+
+    /** FF1 or FF3-1; backend and lengthCacheSize only apply to FF1. */
+    public EngineOptions withMode(FpeMode mode) {
+        return new EngineOptions(Objects.requireNonNull(mode, "mode null"), backend, lengthCacheSize, blockCipher,
+                smallDomainTables);
+    }
+
+    public EngineOptions withBackend(FF1Backend backend) {
+        return new EngineOptions(mode, Objects.requireNonNull(backend, "backend null"), lengthCacheSize, blockCipher,
+                smallDomainTables);
+    }
+
+    /**
+     * Bound the per-length cache of the NATIVE backend; 0 recomputes constants and the
+     * P || T prefix MAC on every call. Ignored by BOUNCY_CASTLE, which cannot resume a MAC.
+     */
+    public EngineOptions withLengthCacheSize(int lengthCacheSize) {
+        if (lengthCacheSize < 0) throw new IllegalArgumentException("lengthCacheSize must be >= 0");
+        return new EngineOptions(mode, backend, lengthCacheSize, blockCipher, smallDomainTables);
+    }
+
+    /**
+     * AES implementation used inside FF1 (either backend) and FF3-1, e.g. {@link BlockCipherProvider#jca()}
+     * to use the JDK's AES-NI intrinsics.
+     */
+    public EngineOptions withBlockCipher(BlockCipherProvider blockCipher) {
+        return new EngineOptions(mode, backend, lengthCacheSize, Objects.requireNonNull(blockCipher, "blockCipher null"),
+                smallDomainTables);
+    }
+
+    /**
+     * Encrypt inputs shorter than the mode's minimum (radix^len < 1,000,000) through a keyed
+     * permutation table per length instead of rejecting them; see {@link SmallDomainCipher}.
+     * Off by default: values that used to fail, or that callers left in clear text because they
+     * failed (e.g. short digit runs in email local parts), encrypt differently once it is on.
+     */
+    public EngineOptions withSmallDomainTables(boolean smallDomainTables) {
+        return new EngineOptions(mode, backend, lengthCacheSize, blockCipher, smallDomainTables);
+    }
+
+    /** Build the numeral-level cipher selected by these options. */
+    FpeCipher newCipher(byte[] key, int radix, byte[] tweak) {
+        FpeCipher cipher = newModeCipher(key, radix, tweak);
+        return smallDomainTables ? new SmallDomainCipher(cipher, key, tweak, blockCipher) : cipher;
+    }
+
+    private FpeCipher newModeCipher(byte[] key, int radix, byte[] tweak) {
+        if (mode == FpeMode.FF3_1) {
+            return new FF3_1EnginePool(key, radix, tweak, blockCipher);
+        }
+        switch (backend) {
+            case NATIVE:
+                return new FF1Cipher(key, radix, tweak, lengthCacheSize, blockCipher);
+            case BOUNCY_CASTLE:
+            default:
+                return new FF1EnginePool(key, radix, tweak, blockCipher);
+        }
+    }
+}
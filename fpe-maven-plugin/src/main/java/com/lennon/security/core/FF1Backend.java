@@ -0,0 +1,12 @@
+package com.lennon.security.core;
+
+/**
+ * FF1 implementation used behind FF1BcEngine / FF1BcEngineWithFormat / FF1BcEngineWithAlphabet.
+ * Both produce identical ciphertext for the same key, radix and tweak, so switching is safe for stored data.
+ */
+public enum FF1Backend {
+    /** BouncyCastle FPEFF1Engine (one initialized engine per thread). */
+    BOUNCY_CASTLE,
+    /** First-party FF1Cipher with cached per-length parameters, per-thread scratch and no BigInteger. Default. */
+    NATIVE
+}
@@ -1,83 +1,171 @@
 package com.lennon.security.core;
 
-import org.bouncycastle.crypto.fpe.FPEFF1Engine;
-import org.bouncycastle.crypto.params.FPEParameters;
-import org.bouncycastle.crypto.params.KeyParameter;
+import com.lennon.security.alphabet.Alphabet;
+import com.lennon.security.metrics.FpeEngineJfrEvent;
 
+import javax.security.auth.Destroyable;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 
 /**
- * Thin wrapper around BouncyCastle's FPEFF1Engine for digit-only formats (radix=10).
+ * Thin FF1 wrapper for digit-only formats (radix=10).
  *
  * Usage:
  *   FF1BcEngine engine = new FF1BcEngine(keyBytes, 10, tweakBytes);
  *   String cipher = engine.encryptDigits("12025550173");    // returns digits string same length
  *   String plain = engine.decryptDigits(cipher);
+ *
+ * Allocation-sensitive callers can use the char[] / CharBuffer overloads, which work on
+ * per-thread scratch instead of intermediate Strings. The try* methods check length and
+ * alphabet up front and report a {@link FpeStatus} instead of throwing.
+ *
+ * Instances are thread-safe. The FF1 backend (the native FF1Cipher by default, or BouncyCastle's
+ * FPEFF1Engine) is chosen through {@link EngineOptions}; both give identical ciphertext.
  */
-public final class FF1BcEngine {
-    private final byte[] key;
-    private final int radix;
-    private final byte[] tweak;
+public final class FF1BcEngine implements Destroyable {
+    private final FpeCipher cipher;
+    private final FpeMode mode;
+    private final CharScratch.CharOp charOp = (enc, keep, src, off, len, dst, dstOff) -> process(enc, src, off, len, dst, dstOff);
 
     public FF1BcEngine(byte[] key, int radix, byte[] tweak) {
+        this(key, radix, tweak, EngineOptions.defaults());
+    }
+
+    /**
+     * @param options backend selection etc.; see {@link EngineOptions}
+     */
+    public FF1BcEngine(byte[] key, int radix, byte[] tweak, EngineOptions options) {
         if (key == null || key.length == 0) throw new IllegalArgumentException("key empty");
         if (radix < 2 || radix > 256) throw new IllegalArgumentException("radix out of range");
-        this.key = key.clone();
-        this.radix = radix;
-        this.tweak = tweak == null ? new byte[0] : tweak.clone();
+        if (options == null) throw new IllegalArgumentException("options null");
+        this.cipher = options.newCipher(key, radix, tweak == null ? new byte[0] : tweak);
+        this.mode = options.mode();
     }
 
     /**
      * Encrypt a numeric-only string (digits 0..radix-1). Returns a cipher string same length.
      */
     public String encryptDigits(String plainDigits) {
-        byte[] in = digitsToByteArray(plainDigits);
-        FPEFF1Engine engine = new FPEFF1Engine();
-        engine.init(true, new FPEParameters(new KeyParameter(key), radix, tweak));
-        byte[] out = new byte[in.length];
-        int written = engine.processBlock(in, 0, in.length, out, 0);
-        if (written != out.length) {
-            // Most implementations return the same length; otherwise, resize.
-            out = Arrays.copyOf(out, written);
-        }
-        return byteArrayToDigits(out);
+        return processString(true, plainDigits);
     }
 
     /**
      * Decrypt a numeric cipher produced by encryptDigits.
      */
     public String decryptDigits(String cipherDigits) {
-        byte[] in = digitsToByteArray(cipherDigits);
-        FPEFF1Engine engine = new FPEFF1Engine();
-        engine.init(false, new FPEParameters(new KeyParameter(key), radix, tweak));
-        byte[] out = new byte[in.length];
-        int written = engine.processBlock(in, 0, in.length, out, 0);
-        if (written != out.length) {
-            out = Arrays.copyOf(out, written);
-        }
-        return byteArrayToDigits(out);
+        return processString(false, cipherDigits);
+    }
+
+    /** Like encryptDigits, but returns TOO_SHORT / TOO_LONG / INVALID_CHAR instead of throwing. */
+    public FpeResult tryEncryptDigits(String plainDigits) {
+        return tryString(true, plainDigits);
+    }
+
+    public FpeResult tryDecryptDigits(String cipherDigits) {
+        return tryString(false, cipherDigits);
+    }
+
+    /** Like encrypt(char[], ...); dst is only written when the result is OK. */
+    public FpeStatus tryEncrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return tryProcess(true, src, off, len, dst, dstOff);
+    }
+
+    public FpeStatus tryDecrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return tryProcess(false, src, off, len, dst, dstOff);
+    }
+
+    // ---------- char[] / CharBuffer API (no allocation beyond the FF1 backend itself) ----------
+
+    /**
+     * Encrypt src[off..off+len) (digits only) into dst[dstOff..dstOff+len). src and dst may be the
+     * same array. Returns the number of chars written.
+     */
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return process(true, src, off, len, dst, dstOff);
     }
 
-    private byte[] digitsToByteArray(String s) {
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return process(false, src, off, len, dst, dstOff);
+    }
+
+    /** Encrypt all remaining chars of src into dst, advancing both buffers. */
+    public int encrypt(CharBuffer src, CharBuffer dst) {
+        return CharScratch.apply(charOp, true, false, src, dst);
+    }
+
+    public int decrypt(CharBuffer src, CharBuffer dst) {
+        return CharScratch.apply(charOp, false, false, src, dst);
+    }
+
+    private String processString(boolean forEncrypt, String s) {
         if (s == null) throw new IllegalArgumentException("null input");
-        byte[] b = new byte[s.length()];
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (c < '0' || c > '9') throw new IllegalArgumentException("only digits 0-9 supported in this wrapper");
-            b[i] = (byte) (c - '0');
+        char[] buf = s.toCharArray();
+        process(forEncrypt, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    private FpeResult tryString(boolean forEncrypt, String s) {
+        if (s == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        char[] buf = s.toCharArray();
+        FpeStatus status = tryProcess(forEncrypt, buf, 0, buf.length, buf, 0);
+        return status == FpeStatus.OK ? FpeResult.ok(new String(buf)) : FpeResult.failure(status);
+    }
+
+    private FpeStatus tryProcess(boolean forEncrypt, char[] src, int off, int len, char[] dst, int dstOff) {
+        if (src == null || dst == null) return FpeStatus.NULL_INPUT;
+        if (Alphabet.DIGITS.firstInvalid(src, off, len) >= 0) return FpeStatus.INVALID_CHAR;
+        FpeStatus status = cipher.checkLength(len);
+        if (status != FpeStatus.OK) return status;
+        process(forEncrypt, src, off, len, dst, dstOff);
+        return FpeStatus.OK;
+    }
+
+    private int process(boolean forEncrypt, char[] src, int off, int len, char[] dst, int dstOff) {
+        FpeEngineJfrEvent event = new FpeEngineJfrEvent();
+        event.begin();
+        boolean ok = false;
+        try {
+            int written = processUntraced(forEncrypt, src, off, len, dst, dstOff);
+            ok = true;
+            return written;
+        } finally {
+            event.finish(forEncrypt, len, cipher.radix(), mode.name(), ok);
         }
-        return b;
     }
 
-    private String byteArrayToDigits(byte[] b) {
-        StringBuilder sb = new StringBuilder(b.length);
-        for (int i = 0; i < b.length; i++) {
-            int v = b[i] & 0xFF;
-            if (v < 0 || v >= radix) throw new IllegalStateException("output digit out of range: " + v);
-            sb.append((char) ('0' + v));
+    private int processUntraced(boolean forEncrypt, char[] src, int off, int len, char[] dst, int dstOff) {
+        if (src == null || dst == null) throw new IllegalArgumentException("null input");
+        CharScratch scratch = CharScratch.get();
+        byte[] in = scratch.symbols(len);
+        byte[] out = scratch.result(len);
+        if (Alphabet.DIGITS.firstInvalid(src, off, len) >= 0) {
+            throw new IllegalArgumentException("only digits 0-9 supported in this wrapper");
         }
-        return sb.toString();
+        Alphabet.DIGITS.encode(src, off, len, in, 0);
+        int written = cipher.process(forEncrypt, in, 0, len, out, 0);
+        Alphabet.DIGITS.decode(out, 0, written, dst, dstOff);
+        return written;
+    }
+
+    /** Zero this engine's key copies and per-thread state; later calls throw IllegalStateException. */
+    @Override
+    public void destroy() {
+        cipher.destroy();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return cipher.isDestroyed();
+    }
+
+    /** The numeral-level cipher behind this wrapper (used by Rekeyer). */
+    FpeCipher cipher() {
+        return cipher;
+    }
+
+    /** FF1 or FF3-1, as reported in JFR events. */
+    FpeMode mode() {
+        return mode;
     }
 
     /** convenience: tweak from string */
@@ -1,85 +1,78 @@
 package com.lennon.security.core;
 
-import org.bouncycastle.crypto.fpe.FPEFF1Engine;
-import org.bouncycastle.crypto.params.FPEParameters;
-import org.bouncycastle.crypto.params.KeyParameter;
+import com.lennon.security.alphabet.Alphabet;
+import com.lennon.security.metrics.FpeEngineJfrEvent;
 
-import java.util.*;
+import javax.security.auth.Destroyable;
+import java.nio.CharBuffer;
 
 /**
  * FPE engine over a custom alphabet.
+ * The char[] / CharBuffer overloads work on caller buffers with per-thread scratch; the formatted
+ * ones also accept a precompiled {@link FormatMask}. The try* methods check the core length and
+ * (for raw chars) the alphabet first and report a {@link FpeStatus} instead of throwing.
+ * Thread-safe; the FF1 backend is chosen through {@link EngineOptions}.
  */
-public final class FF1BcEngineWithAlphabet {
-    private final byte[] key;
-    private final String alphabet;
-    private final int radix;
-    private final byte[] tweak;
-    private final Map<Character, Integer> toVal;
-    private final char[] valToChar;
+public final class FF1BcEngineWithAlphabet implements Destroyable {
+    private final Alphabet alphabet;
+    private final FpeCipher cipher;
+    private final FpeMode mode;
+    private final CharScratch.CharOp charOp =
+            (enc, keep, src, off, len, dst, dstOff) -> processFormatted(enc, keep, null, src, off, len, dst, dstOff);
 
     public FF1BcEngineWithAlphabet(byte[] key, String alphabet, byte[] tweak) {
+        this(key, alphabet, tweak, EngineOptions.defaults());
+    }
+
+    public FF1BcEngineWithAlphabet(byte[] key, String alphabet, byte[] tweak, EngineOptions options) {
+        this(key, toAlphabet(alphabet), tweak, options);
+    }
+
+    public FF1BcEngineWithAlphabet(byte[] key, Alphabet alphabet, byte[] tweak) {
+        this(key, alphabet, tweak, EngineOptions.defaults());
+    }
+
+    public FF1BcEngineWithAlphabet(byte[] key, Alphabet alphabet, byte[] tweak, EngineOptions options) {
+        if (options == null) throw new IllegalArgumentException("options null");
         if (key == null || key.length == 0) throw new IllegalArgumentException("key empty");
-        if (alphabet == null || alphabet.length() < 2) throw new IllegalArgumentException("alphabet must have length >= 2");
-        this.key = key.clone();
+        if (alphabet == null || alphabet.radix() < 2) throw new IllegalArgumentException("alphabet must have length >= 2");
+        if (alphabet.radix() > 256) throw new IllegalArgumentException("alphabet must have length <= 256");
         this.alphabet = alphabet;
-        this.radix = alphabet.length();
-        this.tweak = tweak == null ? new byte[0] : tweak.clone();
-
-        // build mapping
-        toVal = new HashMap<>();
-        valToChar = alphabet.toCharArray();
-        for (int i = 0; i < valToChar.length; i++) {
-            char c = valToChar[i];
-            if (toVal.containsKey(c)) {
-                throw new IllegalArgumentException("alphabet contains duplicate char: " + c);
-            }
-            toVal.put(c, i);
-        }
+        this.cipher = options.newCipher(key, alphabet.radix(), tweak == null ? new byte[0] : tweak);
+        this.mode = options.mode();
+    }
+
+    private static Alphabet toAlphabet(String alphabet) {
+        if (alphabet == null || alphabet.length() < 2) throw new IllegalArgumentException("alphabet must have length >= 2");
+        return new Alphabet(alphabet);
     }
 
     /**
      * Encrypt formatted input: preserves non-alphabet characters (positions), optionally preserves last char (keepLast).
      */
     public String encryptFormatted(String input, boolean keepLast) throws Exception {
-        FormatStrip fs = stripFormat(input);
-        String s = fs.alphaChars;
-        if (s.length() == 0) return input;
-
-        String toEnc;
-        String preservedTail = "";
-        if (keepLast && s.length() >= 1) {
-            preservedTail = s.substring(s.length()-1);
-            toEnc = s.substring(0, s.length()-1);
-            if (toEnc.length() == 0) {
-                return reinsertFormat(fs, s);
-            }
-        } else {
-            toEnc = s;
-        }
-
-        String encCore = bcFf1Process(toEnc, true);
-        String encAll = keepLast ? encCore + preservedTail : encCore;
-        return reinsertFormat(fs, encAll);
+        char[] buf = input.toCharArray();
+        processFormatted(true, keepLast, null, buf, 0, buf.length, buf, 0);
+        return new String(buf);
     }
 
     public String decryptFormatted(String input, boolean keepLast) throws Exception {
-        FormatStrip fs = stripFormat(input);
-        String s = fs.alphaChars;
-        if (s.length() == 0) return input;
-
-        String toDec;
-        String preservedTail = "";
-        if (keepLast && s.length() >= 1) {
-            preservedTail = s.substring(s.length()-1);
-            toDec = s.substring(0, s.length()-1);
-            if (toDec.length() == 0) return reinsertFormat(fs, s);
-        } else {
-            toDec = s;
-        }
+        char[] buf = input.toCharArray();
+        processFormatted(false, keepLast, null, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
 
-        String decCore = bcFf1Process(toDec, false);
-        String decAll = keepLast ? decCore + preservedTail : decCore;
-        return reinsertFormat(fs, decAll);
+    /** encryptFormatted with a precompiled layout; inputs that do not fit mask use the dynamic path. */
+    public String encryptFormatted(String input, boolean keepLast, FormatMask mask) throws Exception {
+        char[] buf = input.toCharArray();
+        processFormatted(true, keepLast, mask, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    public String decryptFormatted(String input, boolean keepLast, FormatMask mask) throws Exception {
+        char[] buf = input.toCharArray();
+        processFormatted(false, keepLast, mask, buf, 0, buf.length, buf, 0);
+        return new String(buf);
     }
 
     // ---------- NEW: expose core operations for caller ----------
@@ -88,11 +81,9 @@ public final class FF1BcEngineWithAlphabet {
      */
     public String encryptChars(String raw) throws Exception {
         if (raw == null || raw.isEmpty()) return raw;
-        // validate members belong to alphabet
-        for (int i=0;i<raw.length();i++){
-            if (!toVal.containsKey(raw.charAt(i))) throw new IllegalArgumentException("char '" + raw.charAt(i) + "' not in alphabet");
-        }
-        return bcFf1Process(raw, true);
+        char[] buf = raw.toCharArray();
+        processCore(true, buf, 0, buf.length, buf, 0);
+        return new String(buf);
     }
 
     /**
@@ -100,87 +91,214 @@ public final class FF1BcEngineWithAlphabet {
      */
     public String decryptChars(String raw) throws Exception {
         if (raw == null || raw.isEmpty()) return raw;
-        for (int i=0;i<raw.length();i++){
-            if (!toVal.containsKey(raw.charAt(i))) throw new IllegalArgumentException("char '" + raw.charAt(i) + "' not in alphabet");
-        }
-        return bcFf1Process(raw, false);
+        char[] buf = raw.toCharArray();
+        processCore(false, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    /** Like encryptFormatted, but returns TOO_SHORT / TOO_LONG for an unusable core instead of throwing. */
+    public FpeResult tryEncryptFormatted(String input, boolean keepLast) {
+        return tryFormatted(true, input, keepLast);
+    }
+
+    public FpeResult tryDecryptFormatted(String input, boolean keepLast) {
+        return tryFormatted(false, input, keepLast);
+    }
+
+    /** Like encryptChars, but returns INVALID_CHAR / TOO_SHORT / TOO_LONG instead of throwing. */
+    public FpeResult tryEncryptChars(String raw) {
+        return tryChars(true, raw);
+    }
+
+    public FpeResult tryDecryptChars(String raw) {
+        return tryChars(false, raw);
+    }
+
+    /** Like encrypt(char[], ..., keepLast); dst is only written when the result is OK. */
+    public FpeStatus tryEncrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast) {
+        if (src == null || dst == null) return FpeStatus.NULL_INPUT;
+        return runFormatted(true, keepLast, null, src, off, len, dst, dstOff, true);
+    }
+
+    public FpeStatus tryDecrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast) {
+        if (src == null || dst == null) return FpeStatus.NULL_INPUT;
+        return runFormatted(false, keepLast, null, src, off, len, dst, dstOff, true);
     }
 
     /**
      * Returns true if the char is part of this engine's alphabet (useful when reinserting).
      */
     public boolean containsChar(char c) {
-        return toVal.containsKey(c);
+        return alphabet.contains(c);
     }
 
-    // ---------- internal: FF1 over alphabet ----------
-    private String bcFf1Process(String in, boolean forEncrypt) throws Exception {
-        byte[] inVals = new byte[in.length()];
-        for (int i = 0; i < in.length(); i++) {
-            char c = in.charAt(i);
-            Integer v = toVal.get(c);
-            if (v == null) throw new IllegalArgumentException("char '" + c + "' not in alphabet");
-            inVals[i] = (byte) (v & 0xFF);
+    /** The codec this engine maps chars with (shared, immutable). */
+    public Alphabet alphabet() {
+        return alphabet;
+    }
+
+    /** Zero this engine's key copies and per-thread state; later calls throw IllegalStateException. */
+    @Override
+    public void destroy() {
+        cipher.destroy();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return cipher.isDestroyed();
+    }
+
+    FpeCipher cipher() {
+        return cipher;
+    }
+
+    FpeMode mode() {
+        return mode;
+    }
+
+    // ---------- char[] / CharBuffer API ----------
+
+    /**
+     * Same as encryptFormatted(input, false) on src[off..off+len) into dst[dstOff..dstOff+len):
+     * non-alphabet chars stay in place. src and dst may be the same array. Returns len.
+     */
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return processFormatted(true, false, null, src, off, len, dst, dstOff);
+    }
+
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast) {
+        return processFormatted(true, keepLast, null, src, off, len, dst, dstOff);
+    }
+
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast, FormatMask mask) {
+        return processFormatted(true, keepLast, mask, src, off, len, dst, dstOff);
+    }
+
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return processFormatted(false, false, null, src, off, len, dst, dstOff);
+    }
+
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast) {
+        return processFormatted(false, keepLast, null, src, off, len, dst, dstOff);
+    }
+
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast, FormatMask mask) {
+        return processFormatted(false, keepLast, mask, src, off, len, dst, dstOff);
+    }
+
+    /** Encrypt all remaining chars of src into dst, advancing both buffers. */
+    public int encrypt(CharBuffer src, CharBuffer dst) {
+        return CharScratch.apply(charOp, true, false, src, dst);
+    }
+
+    public int encrypt(CharBuffer src, CharBuffer dst, boolean keepLast) {
+        return CharScratch.apply(charOp, true, keepLast, src, dst);
+    }
+
+    public int decrypt(CharBuffer src, CharBuffer dst) {
+        return CharScratch.apply(charOp, false, false, src, dst);
+    }
+
+    public int decrypt(CharBuffer src, CharBuffer dst, boolean keepLast) {
+        return CharScratch.apply(charOp, false, keepLast, src, dst);
+    }
+
+    private FpeResult tryFormatted(boolean forEncrypt, String input, boolean keepLast) {
+        if (input == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        char[] buf = input.toCharArray();
+        FpeStatus status = runFormatted(forEncrypt, keepLast, null, buf, 0, buf.length, buf, 0, true);
+        return status == FpeStatus.OK ? FpeResult.ok(new String(buf)) : FpeResult.failure(status);
+    }
+
+    private FpeResult tryChars(boolean forEncrypt, String raw) {
+        return chars(forEncrypt, raw, true);
+    }
+
+    /** check: report INVALID_CHAR / TOO_SHORT / TOO_LONG as a status; otherwise the cipher throws, as in encryptChars. */
+    FpeResult chars(boolean forEncrypt, String raw, boolean check) {
+        if (raw == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        if (raw.isEmpty()) return FpeResult.ok(raw);
+        char[] buf = raw.toCharArray();
+        if (check) {
+            if (alphabet.firstInvalid(buf, 0, buf.length) >= 0) return FpeResult.failure(FpeStatus.INVALID_CHAR);
+            FpeStatus status = cipher.checkLength(buf.length);
+            if (status != FpeStatus.OK) return FpeResult.failure(status);
+        }
+        processCore(forEncrypt, buf, 0, buf.length, buf, 0);
+        return FpeResult.ok(new String(buf));
+    }
+
+    private int processFormatted(boolean forEncrypt, boolean keepLast, FormatMask mask,
+                                 char[] src, int off, int len, char[] dst, int dstOff) {
+        runFormatted(forEncrypt, keepLast, mask, src, off, len, dst, dstOff, false);
+        return len;
+    }
+
+    /** check: report an out-of-domain core before touching dst instead of letting the cipher throw. */
+    private FpeStatus runFormatted(boolean forEncrypt, boolean keepLast, FormatMask mask,
+                                   char[] src, int off, int len, char[] dst, int dstOff, boolean check) {
+        CharScratch scratch = CharScratch.get();
+        char[] alpha = scratch.core(len);
+        int[] alphaPos;
+        int n = mask == null ? -1 : mask.gather(src, off, len, alphabet, alpha);
+        if (n >= 0) {
+            alphaPos = mask.slots(alphabet);
+        } else {
+            alphaPos = scratch.slots(len);
+            n = stripFormat(src, off, len, alpha, alphaPos);
         }
-        FPEFF1Engine engine = new FPEFF1Engine();
-        engine.init(forEncrypt, new FPEParameters(new KeyParameter(key), radix, tweak));
-        byte[] out = new byte[inVals.length];
-        int outLen = engine.processBlock(inVals, 0, inVals.length, out, 0);
-        if (outLen != out.length) out = Arrays.copyOf(out, outLen);
-        StringBuilder sb = new StringBuilder(out.length);
-        for (int i = 0; i < out.length; i++) {
-            int v = out[i] & 0xFF;
-            if (v < 0 || v >= valToChar.length) throw new IllegalStateException("output value out of range");
-            sb.append(valToChar[v]);
+
+        int core = keepLast ? n - 1 : n;
+        if (check && core > 0) {
+            FpeStatus status = cipher.checkLength(core);
+            if (status != FpeStatus.OK) return status;
         }
-        return sb.toString();
+
+        if (src != dst || off != dstOff) System.arraycopy(src, off, dst, dstOff, len);
+        if (core <= 0) return FpeStatus.OK;
+
+        processCore(forEncrypt, alpha, 0, core, alpha, 0);
+        reinsertFormat(alpha, alphaPos, core, dst, dstOff);
+        return FpeStatus.OK;
     }
 
-    // ---------- formatting helpers ----------
-    private static class FormatStrip {
-        final String alphaChars;
-        final List<Integer> nonAlphaPos;
-        final List<Character> nonAlphaChars;
-
-        FormatStrip(String alphaChars, List<Integer> nonAlphaPos, List<Character> nonAlphaChars) {
-            this.alphaChars = alphaChars;
-            this.nonAlphaPos = nonAlphaPos;
-            this.nonAlphaChars = nonAlphaChars;
+    // ---------- internal: FF1 over alphabet ----------
+    private int processCore(boolean forEncrypt, char[] src, int off, int len, char[] dst, int dstOff) {
+        FpeEngineJfrEvent event = new FpeEngineJfrEvent();
+        event.begin();
+        boolean ok = false;
+        try {
+            CharScratch scratch = CharScratch.get();
+            byte[] inVals = scratch.symbols(len);
+            byte[] out = scratch.result(len);
+            alphabet.encode(src, off, len, inVals, 0);
+            int outLen = cipher.process(forEncrypt, inVals, 0, len, out, 0);
+            int written = alphabet.decode(out, 0, outLen, dst, dstOff);
+            ok = true;
+            return written;
+        } finally {
+            event.finish(forEncrypt, len, alphabet.radix(), mode.name(), ok);
         }
     }
 
-    private FormatStrip stripFormat(String s) {
-        StringBuilder sb = new StringBuilder();
-        List<Integer> pos = new ArrayList<>();
-        List<Character> chs = new ArrayList<>();
-        int origLen = s.length();
-        for (int i = 0; i < origLen; i++) {
-            char c = s.charAt(i);
-            if (toVal.containsKey(c)) {
-                sb.append(c);
-            } else {
-                pos.add(i);
-                chs.add(c);
+    // ---------- formatting helpers ----------
+
+    /** Copy alphabet chars of src[off..off+len) into alpha[] and their relative positions into pos[]. */
+    private int stripFormat(char[] src, int off, int len, char[] alpha, int[] pos) {
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = src[off + i];
+            if (alphabet.contains(c)) {
+                alpha[n] = c;
+                pos[n++] = i;
             }
         }
-        return new FormatStrip(sb.toString(), pos, chs);
+        return n;
     }
 
-    private String reinsertFormat(FormatStrip fs, String alphaChars) {
-        int totalLen = alphaChars.length() + fs.nonAlphaPos.size();
-        char[] out = new char[totalLen];
-        Arrays.fill(out, '\0');
-        for (int i = 0; i < fs.nonAlphaPos.size(); i++) {
-            int idx = fs.nonAlphaPos.get(i);
-            if (idx < totalLen) out[idx] = fs.nonAlphaChars.get(i);
-        }
-        int di = 0;
-        for (int i = 0; i < totalLen; i++) {
-            if (out[i] == '\0') {
-                if (di < alphaChars.length()) out[i] = alphaChars.charAt(di++);
-                else out[i] = ' ';
-            }
+    private static void reinsertFormat(char[] alpha, int[] pos, int n, char[] dst, int dstOff) {
+        for (int k = 0; k < n; k++) {
+            dst[dstOff + pos[k]] = alpha[k];
         }
-        return new String(out);
     }
 }
@@ -1,10 +1,12 @@
 package com.lennon.security.core;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.lennon.security.alphabet.Alphabet;
+
+import javax.security.auth.Destroyable;
+import java.nio.CharBuffer;
 
 /**
- * Wrapper around FF1BcEngine (Bouncy Castle) with formatting + Luhn support.
+ * Wrapper around FF1BcEngine with formatting + Luhn support.
  *
  * Behavior:
  *  - encryptFormatted preserves any non-digit separators and leading '+' by removing them,
@@ -12,14 +14,26 @@ import java.util.List;
  *  - If keepLuhn==true and input length >= 2, the last digit (Luhn check digit) is not encrypted
  *    (left as-is).
  *
+ * The char[] / CharBuffer overloads do the same on caller buffers with per-thread scratch,
+ * so bulk callers can encrypt straight into reused row buffers. Overloads taking a
+ * {@link FormatMask} skip the layout scan for inputs that fit the mask.
+ * The try* methods report a digit core outside the FF1/FF3-1 domain as a {@link FpeStatus}
+ * (input left as is) instead of throwing.
+ *
  * NOTE: this implementation assumes radix 10 (digits only). If you need other alphabets,
  * adapt the digit extraction / mapping logic accordingly.
  */
-public final class FF1BcEngineWithFormat {
+public final class FF1BcEngineWithFormat implements Destroyable {
     private final FF1BcEngine engine;
+    private final CharScratch.CharOp charOp =
+            (enc, keep, src, off, len, dst, dstOff) -> process(enc, keep, null, src, off, len, dst, dstOff);
 
     public FF1BcEngineWithFormat(byte[] key, byte[] tweak) {
-        this.engine = new FF1BcEngine(key, 10, tweak);
+        this(key, tweak, EngineOptions.defaults());
+    }
+
+    public FF1BcEngineWithFormat(byte[] key, byte[] tweak, EngineOptions options) {
+        this.engine = new FF1BcEngine(key, 10, tweak, options);
     }
 
     /**
@@ -27,34 +41,7 @@ public final class FF1BcEngineWithFormat {
      * If keepLuhn is true, the last digit of the digit sequence is preserved (not encrypted).
      */
     public String encryptFormatted(String input, boolean keepLuhn) {
-        FormatStrip fs = stripFormat(input);
-
-        String digits = fs.digits;
-        if (digits.length() == 0) return input; // nothing to encrypt
-
-        String toEncrypt;
-        String preservedSuffix = "";
-        if (keepLuhn && digits.length() >= 1) {
-            // preserve last digit (check digit)
-            preservedSuffix = digits.substring(digits.length() - 1);
-            toEncrypt = digits.substring(0, digits.length() - 1);
-            if (toEncrypt.length() == 0) {
-                // nothing to encrypt; just reassemble
-                return reinsertFormat(fs, digits);
-            }
-        } else {
-            toEncrypt = digits;
-        }
-
-        String encDigitsCore = engine.encryptDigits(toEncrypt);
-        String encDigits;
-        if (keepLuhn && preservedSuffix.length() > 0) {
-            encDigits = encDigitsCore + preservedSuffix;
-        } else {
-            encDigits = encDigitsCore;
-        }
-
-        return reinsertFormat(fs, encDigits);
+        return processString(true, input, keepLuhn);
     }
 
     /**
@@ -62,103 +49,180 @@ public final class FF1BcEngineWithFormat {
      * If keepLuhn==true, the last digit is left untouched (not decrypted).
      */
     public String decryptFormatted(String input, boolean keepLuhn) {
-        FormatStrip fs = stripFormat(input);
-
-        String digits = fs.digits;
-        if (digits.length() == 0) return input;
-
-        String toDecrypt;
-        String preservedSuffix = "";
-        if (keepLuhn && digits.length() >= 1) {
-            preservedSuffix = digits.substring(digits.length() - 1);
-            toDecrypt = digits.substring(0, digits.length() - 1);
-            if (toDecrypt.length() == 0) {
-                return reinsertFormat(fs, digits);
-            }
-        } else {
-            toDecrypt = digits;
-        }
+        return processString(false, input, keepLuhn);
+    }
+
+    /** encryptFormatted with a precompiled layout; inputs that do not fit mask use the dynamic path. */
+    public String encryptFormatted(String input, boolean keepLuhn, FormatMask mask) {
+        char[] buf = input.toCharArray();
+        process(true, keepLuhn, mask, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    public String decryptFormatted(String input, boolean keepLuhn, FormatMask mask) {
+        char[] buf = input.toCharArray();
+        process(false, keepLuhn, mask, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    /** Like encryptFormatted, but returns TOO_SHORT / TOO_LONG for an unusable digit core instead of throwing. */
+    public FpeResult tryEncryptFormatted(String input, boolean keepLuhn) {
+        return tryString(true, input, keepLuhn);
+    }
+
+    public FpeResult tryDecryptFormatted(String input, boolean keepLuhn) {
+        return tryString(false, input, keepLuhn);
+    }
+
+    /** Like encrypt(char[], ..., keepLuhn); dst is only written when the result is OK. */
+    public FpeStatus tryEncrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLuhn) {
+        if (src == null || dst == null) return FpeStatus.NULL_INPUT;
+        return run(true, keepLuhn, null, src, off, len, dst, dstOff, true);
+    }
+
+    public FpeStatus tryDecrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLuhn) {
+        if (src == null || dst == null) return FpeStatus.NULL_INPUT;
+        return run(false, keepLuhn, null, src, off, len, dst, dstOff, true);
+    }
+
+    // ---------- char[] / CharBuffer API ----------
+
+    /**
+     * Same as encryptFormatted(input, false) on src[off..off+len) into dst[dstOff..dstOff+len).
+     * src and dst may be the same array. Returns the number of chars written (len).
+     */
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return process(true, false, null, src, off, len, dst, dstOff);
+    }
+
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLuhn) {
+        return process(true, keepLuhn, null, src, off, len, dst, dstOff);
+    }
+
+    public int encrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLuhn, FormatMask mask) {
+        return process(true, keepLuhn, mask, src, off, len, dst, dstOff);
+    }
+
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff) {
+        return process(false, false, null, src, off, len, dst, dstOff);
+    }
+
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLuhn) {
+        return process(false, keepLuhn, null, src, off, len, dst, dstOff);
+    }
+
+    public int decrypt(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLuhn, FormatMask mask) {
+        return process(false, keepLuhn, mask, src, off, len, dst, dstOff);
+    }
+
+    /** Encrypt all remaining chars of src into dst, advancing both buffers. */
+    public int encrypt(CharBuffer src, CharBuffer dst) {
+        return CharScratch.apply(charOp, true, false, src, dst);
+    }
+
+    public int encrypt(CharBuffer src, CharBuffer dst, boolean keepLuhn) {
+        return CharScratch.apply(charOp, true, keepLuhn, src, dst);
+    }
+
+    public int decrypt(CharBuffer src, CharBuffer dst) {
+        return CharScratch.apply(charOp, false, false, src, dst);
+    }
+
+    public int decrypt(CharBuffer src, CharBuffer dst, boolean keepLuhn) {
+        return CharScratch.apply(charOp, false, keepLuhn, src, dst);
+    }
+
+    /** Zero this engine's key copies and per-thread state; later calls throw IllegalStateException. */
+    @Override
+    public void destroy() {
+        engine.destroy();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return engine.isDestroyed();
+    }
+
+    FpeCipher cipher() {
+        return engine.cipher();
+    }
 
-        String decDigitsCore = engine.decryptDigits(toDecrypt);
-        String decDigits;
-        if (keepLuhn && preservedSuffix.length() > 0) {
-            decDigits = decDigitsCore + preservedSuffix;
+    FpeMode mode() {
+        return engine.mode();
+    }
+
+    private String processString(boolean forEncrypt, String input, boolean keepLuhn) {
+        char[] buf = input.toCharArray();
+        process(forEncrypt, keepLuhn, null, buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    private FpeResult tryString(boolean forEncrypt, String input, boolean keepLuhn) {
+        if (input == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        char[] buf = input.toCharArray();
+        FpeStatus status = run(forEncrypt, keepLuhn, null, buf, 0, buf.length, buf, 0, true);
+        return status == FpeStatus.OK ? FpeResult.ok(new String(buf)) : FpeResult.failure(status);
+    }
+
+    private int process(boolean forEncrypt, boolean keepLuhn, FormatMask mask,
+                        char[] src, int off, int len, char[] dst, int dstOff) {
+        run(forEncrypt, keepLuhn, mask, src, off, len, dst, dstOff, false);
+        return len;
+    }
+
+    /** check: report an out-of-domain core before touching dst instead of letting the cipher throw. */
+    private FpeStatus run(boolean forEncrypt, boolean keepLuhn, FormatMask mask,
+                          char[] src, int off, int len, char[] dst, int dstOff, boolean check) {
+        CharScratch scratch = CharScratch.get();
+        char[] digits = scratch.core(len);
+        int[] digitPos;
+        int n = mask == null ? -1 : mask.gather(src, off, len, Alphabet.DIGITS, digits);
+        if (n >= 0) {
+            digitPos = mask.slots(Alphabet.DIGITS);
         } else {
-            decDigits = decDigitsCore;
+            digitPos = scratch.slots(len);
+            n = stripFormat(src, off, len, digits, digitPos);
         }
 
-        return reinsertFormat(fs, decDigits);
-    }
+        // preserve last digit (check digit) if requested
+        int core = keepLuhn ? n - 1 : n;
+        if (check && core > 0) {
+            FpeStatus status = engine.cipher().checkLength(core);
+            if (status != FpeStatus.OK) return status;
+        }
 
-    // ---------- helper: strip/reinsert format ----------
+        // separators (and a leading '+') stay where they are
+        if (src != dst || off != dstOff) System.arraycopy(src, off, dst, dstOff, len);
+        if (core <= 0) return FpeStatus.OK; // nothing to encrypt
 
-    private static class FormatStrip {
-        final String digits;       // only [0-9]
-        final boolean hasPlus;     // whether original had a leading '+'
-        final List<Integer> nonDigitPos; // positions and chars for non-digits (store indices and char codes)
-        final List<Character> nonDigitChars;
-
-        FormatStrip(String digits, boolean hasPlus, List<Integer> nonDigitPos, List<Character> nonDigitChars) {
-            this.digits = digits;
-            this.hasPlus = hasPlus;
-            this.nonDigitPos = nonDigitPos;
-            this.nonDigitChars = nonDigitChars;
+        if (forEncrypt) {
+            engine.encrypt(digits, 0, core, digits, 0);
+        } else {
+            engine.decrypt(digits, 0, core, digits, 0);
         }
+        reinsertFormat(digits, digitPos, core, dst, dstOff);
+        return FpeStatus.OK;
     }
 
-    private static FormatStrip stripFormat(String s) {
-        StringBuilder digits = new StringBuilder();
-        boolean hasPlus = false;
-        List<Integer> pos = new ArrayList<>();
-        List<Character> chs = new ArrayList<>();
-
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (i == 0 && c == '+') {
-                hasPlus = true;
-                pos.add(i);
-                chs.add(c);
-            } else if (c >= '0' && c <= '9') {
-                digits.append(c);
-            } else {
-                // record non-digit pos relative to original string
-                pos.add(i);
-                chs.add(c);
-            }
-        }
-        return new FormatStrip(digits.toString(), hasPlus, pos, chs);
-    }
-
-    private static String reinsertFormat(FormatStrip fs, String digits) {
-        // Reconstruct original-length string by inserting digits into digit positions and reusing non-digit chars
-        // We'll build a char array sized to fs.digits.length + fs.nonDigitPos.size()
-        int totalLength = digits.length() + fs.nonDigitPos.size();
-        // If original had a leading '+' but we stripped it as non-digit, it will be in nonDigitPos/ch list.
-        char[] out = new char[totalLength];
-        // Fill with placeholders
-        for (int i = 0; i < totalLength; i++) out[i] = '\0';
-
-        // Place non-digit chars first
-        for (int k = 0; k < fs.nonDigitPos.size(); k++) {
-            int idx = fs.nonDigitPos.get(k);
-            // idx is original index; but totalLength may equal original length
-            if (idx < totalLength) {
-                out[idx] = fs.nonDigitChars.get(k);
+    // ---------- helper: strip/reinsert format ----------
+
+    /** Copy the digits of src[off..off+len) into digits[] and their relative positions into pos[]. */
+    private static int stripFormat(char[] src, int off, int len, char[] digits, int[] pos) {
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = src[off + i];
+            if (Alphabet.DIGITS.contains(c)) {
+                digits[n] = c;
+                pos[n++] = i;
             }
         }
+        return n;
+    }
 
-        // Fill remaining slots with digits in order
-        int di = 0;
-        for (int i = 0; i < totalLength; i++) {
-            if (out[i] == '\0') {
-                if (di < digits.length()) {
-                    out[i] = digits.charAt(di++);
-                } else {
-                    // if digits shorter than expected, pad with '0' (shouldn't happen)
-                    out[i] = '0';
-                }
-            }
+    /** Write digits[0..n) back to their recorded positions; everything else in dst is left as-is. */
+    private static void reinsertFormat(char[] digits, int[] pos, int n, char[] dst, int dstOff) {
+        for (int k = 0; k < n; k++) {
+            dst[dstOff + pos[k]] = digits[k];
         }
-        return new String(out);
     }
 }
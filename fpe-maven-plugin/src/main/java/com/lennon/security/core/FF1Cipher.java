@@ -0,0 +1,541 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * First-party FF1 (NIST SP 800-38G, Algorithms 7/8) over byte-encoded numerals, radix 2..256.
+ *
+ * Compared with BouncyCastle's FPEFF1Engine this keeps, per instance:
+ *  - the expanded AES key (one initialized block cipher per thread, from a BlockCipherProvider),
+ *  - the per-length constants u, v, b, d, the P block and radix^u / radix^v,
+ *  - the CBC-MAC state after P and the constant T || [0]^pad blocks of Q, so each round
+ *    only MACs the block(s) holding [i] || [NUM(B)]^b,
+ *  - per-thread scratch buffers for Q, R, S and the numeral arithmetic,
+ * so a steady-state call does not allocate.
+ *
+ * NUM/STR run on fixed-width arithmetic chosen per length:
+ *  - radix^v < 2^55 (phones, 18-char IDs): one long, S reduced mod radix^m byte by byte;
+ *  - d <= 64 bytes (e.g. 64-char email local parts over radix 94): little-endian int limbs,
+ *    with A +/- y done digit-wise in base radix (the low m digits of y are peeled off by
+ *    dividing by the largest radix^k below 2^31), so radix^m itself is never needed;
+ *  - longer inputs: BigInteger.
+ *
+ * The per-length cache holds at most lengthCacheSize distinct lengths (first come, first kept);
+ * further lengths are computed per call. Size 0 disables it.
+ *
+ * Output is bit-identical to FPEFF1Engine for the same key, radix and tweak.
+ * {@link #destroy()} zeroes the key copy and every thread's AES state.
+ *
+ * Usage:
+ *   FF1Cipher ff1 = new FF1Cipher(key, 10, tweak);
+ *   ff1.encrypt(in, 0, in.length, out, 0);
+ */
+public final class FF1Cipher implements FpeCipher {
+    public static final int DEFAULT_LENGTH_CACHE_SIZE = 64;
+
+    private static final int BLOCK = 16;
+    private static final int ROUNDS = 10;
+    /** Moduli below this keep (r << 8) | byte inside a signed long. */
+    private static final long LONG_LIMIT = 1L << 55;
+    /** Largest PRF output d (bytes) handled on int limbs; above this BigInteger is used. */
+    static final int WORDS_MAX_BYTES = 64;
+    private static final long MASK32 = 0xFFFFFFFFL;
+
+    private final byte[] key;
+    private final int radix;
+    private final int minLength;
+    private final byte[] tweak;
+    private final BigInteger bigRadix;
+    /** radix^chunkDigits: largest power of radix below 2^31 */
+    private final long chunkPow;
+    private final int chunkDigits;
+    private final ConcurrentMap<Integer, LengthParams> params = new ConcurrentHashMap<>();
+    private final int lengthCacheSize;
+    private final PerThread<Scratch> scratch;
+
+    public FF1Cipher(byte[] key, int radix, byte[] tweak) {
+        this(key, radix, tweak, DEFAULT_LENGTH_CACHE_SIZE);
+    }
+
+    /**
+     * @param lengthCacheSize max number of distinct input lengths whose constants and
+     *                        tweak-prefix MAC state are cached; 0 disables caching
+     */
+    public FF1Cipher(byte[] key, int radix, byte[] tweak, int lengthCacheSize) {
+        this(key, radix, tweak, lengthCacheSize, BlockCipherProvider.bouncyCastle());
+    }
+
+    /**
+     * @param aes source of the per-thread AES instance (BouncyCastle or JCA)
+     */
+    public FF1Cipher(byte[] key, int radix, byte[] tweak, int lengthCacheSize, BlockCipherProvider aes) {
+        if (aes == null) throw new IllegalArgumentException("block cipher provider null");
+        if (lengthCacheSize < 0) throw new IllegalArgumentException("lengthCacheSize must be >= 0");
+        if (key == null || (key.length != 16 && key.length != 24 && key.length != 32)) {
+            throw new IllegalArgumentException("key must be 16, 24 or 32 bytes");
+        }
+        if (radix < 2 || radix > 256) throw new IllegalArgumentException("radix out of range");
+        this.key = key.clone();
+        this.radix = radix;
+        this.minLength = FpeCipher.minLength(radix);
+        this.tweak = tweak == null ? new byte[0] : tweak.clone();
+        this.bigRadix = BigInteger.valueOf(radix);
+        long pow = radix;
+        int k = 1;
+        while (pow * radix < (1L << 31)) {
+            pow *= radix;
+            k++;
+        }
+        this.chunkPow = pow;
+        this.chunkDigits = k;
+        this.lengthCacheSize = lengthCacheSize;
+        this.scratch = new PerThread<>(() -> new Scratch(aes.newCipher(), this.key), Scratch::wipe);
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+
+    @Override
+    public int minLength() {
+        return minLength;
+    }
+
+    @Override
+    public int maxLength() {
+        return Integer.MAX_VALUE;
+    }
+
+    public int encrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        return process(true, in, inOff, len, out, outOff);
+    }
+
+    public int decrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        return process(false, in, inOff, len, out, outOff);
+    }
+
+    @Override
+    public int process(boolean forEncrypt, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkData(in, inOff, len);
+        Scratch s = scratch.get();
+        LengthParams lp = paramsFor(len, s.aes);
+        s.ensureCapacity(len, lp);
+
+        byte[] a = s.a;
+        byte[] b = s.b;
+        System.arraycopy(in, inOff, a, 0, lp.u);
+        System.arraycopy(in, inOff + lp.u, b, 0, lp.v);
+
+        // Q = T || [0]^pad || [i] || [NUM(B)]^b ; only the last b+1 bytes change per round
+        byte[] q = s.q;
+        System.arraycopy(tweak, 0, q, 0, tweak.length);
+        Arrays.fill(q, tweak.length, tweak.length + lp.pad, (byte) 0);
+
+        if (forEncrypt) {
+            for (int i = 0; i < ROUNDS; i++) {
+                // B has length n-m, A has length m: A = STR(NUM(A) + y mod radix^m)
+                round(s, lp, i, true, b, len - ((i & 1) == 0 ? lp.u : lp.v), a);
+                byte[] t = a; a = b; b = t;
+            }
+        } else {
+            for (int i = ROUNDS - 1; i >= 0; i--) {
+                // A has length n-m, B has length m: B = STR(NUM(B) - y mod radix^m)
+                round(s, lp, i, false, a, len - ((i & 1) == 0 ? lp.u : lp.v), b);
+                byte[] t = a; a = b; b = t;
+            }
+        }
+
+        // after an even number of swaps the buffers are back in place
+        System.arraycopy(a, 0, out, outOff, lp.u);
+        System.arraycopy(b, 0, out, outOff + lp.u, lp.v);
+        scratch.checkLive();
+        return len;
+    }
+
+    /**
+     * Zero the key copy, the cached MAC states and every thread's AES instance and buffers;
+     * later calls (and calls still running) throw IllegalStateException.
+     */
+    @Override
+    public void destroy() {
+        scratch.release();
+        Arrays.fill(key, (byte) 0);
+        for (LengthParams lp : params.values()) Arrays.fill(lp.macState, (byte) 0);
+        params.clear();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return scratch.isReleased();
+    }
+
+    // ---------- round function ----------
+
+    /**
+     * One Feistel round: y = NUM(PRF(P || Q(i, NUM(x)))), then acc[0..m) = STR^m(NUM(acc) +/- y)
+     * with m = n - xLen.
+     */
+    private void round(Scratch s, LengthParams lp, int i, boolean add, byte[] x, int xLen, byte[] acc) {
+        int m = lp.u + lp.v - xLen;
+        byte[] q = s.q;
+        int numOff = lp.qLen - lp.b;
+        q[numOff - 1] = (byte) i;
+
+        switch (lp.arith) {
+            case LONG: {
+                writeLong(numLong(x, xLen), q, numOff, lp.b);
+                prf(s, lp);
+                long mod = (i & 1) == 0 ? lp.longModU : lp.longModV;
+                long y = modBytes(s.s, lp.d, mod);
+                long c = numLong(acc, m);
+                if (add) {
+                    c += y;
+                    if (c >= mod) c -= mod;
+                } else {
+                    c -= y;
+                    if (c < 0) c += mod;
+                }
+                strLong(c, acc, m);
+                break;
+            }
+            case WORDS: {
+                int nw = numWords(x, xLen, s.xw);
+                writeWords(s.xw, nw, q, numOff, lp.b);
+                prf(s, lp);
+                lowDigits(s.s, lp.d, s.yw, s.yd, m);
+                if (add) addDigits(acc, s.yd, m);
+                else subDigits(acc, s.yd, m);
+                break;
+            }
+            default: {
+                writeFixed(num(x, xLen), q, numOff, lp.b);
+                prf(s, lp);
+                BigInteger y = new BigInteger(1, s.s, 0, lp.d);
+                BigInteger mod = (i & 1) == 0 ? lp.modU : lp.modV;
+                BigInteger c = add ? num(acc, m).add(y).mod(mod) : num(acc, m).subtract(y).mod(mod);
+                str(c, acc, m);
+            }
+        }
+    }
+
+    /** s.s[0..d) = S, the d-byte FF1 PRF expansion of P || Q (Q already filled in). */
+    private static void prf(Scratch s, LengthParams lp) {
+        // R = PRF(P || Q): CBC-MAC with zero IV, resumed after the constant prefix
+        byte[] q = s.q;
+        byte[] r = s.r;
+        BlockCipher aes = s.aes;
+        System.arraycopy(lp.macState, 0, r, 0, BLOCK);
+        for (int off = lp.resumeOff; off < lp.qLen; off += BLOCK) {
+            for (int k = 0; k < BLOCK; k++) r[k] ^= q[off + k];
+            aes.processBlock(r, 0, r, 0);
+        }
+
+        // S = R || CIPH(R xor [1]) || CIPH(R xor [2]) ... truncated to d bytes
+        byte[] sb = s.s;
+        System.arraycopy(r, 0, sb, 0, BLOCK);
+        byte[] blk = s.block;
+        for (int j = 1, off = BLOCK; off < lp.d; j++, off += BLOCK) {
+            System.arraycopy(r, 0, blk, 0, BLOCK);
+            blk[BLOCK - 4] ^= (byte) (j >>> 24);
+            blk[BLOCK - 3] ^= (byte) (j >>> 16);
+            blk[BLOCK - 2] ^= (byte) (j >>> 8);
+            blk[BLOCK - 1] ^= (byte) j;
+            aes.processBlock(blk, 0, sb, off);
+        }
+    }
+
+    // ---------- single long (radix^v < 2^55) ----------
+
+    private long numLong(byte[] x, int len) {
+        long r = 0;
+        for (int i = 0; i < len; i++) r = r * radix + (x[i] & 0xFF);
+        return r;
+    }
+
+    private void strLong(long c, byte[] x, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            x[i] = (byte) (c % radix);
+            c /= radix;
+        }
+    }
+
+    /** [v]^len, big-endian. */
+    private static void writeLong(long v, byte[] dst, int off, int len) {
+        for (int i = off + len - 1; i >= off; i--) {
+            dst[i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    /** NUM_256(s[0..len)) mod m, for m < 2^55. */
+    private static long modBytes(byte[] s, int len, long m) {
+        long r = 0;
+        for (int i = 0; i < len; i++) r = ((r << 8) | (s[i] & 0xFF)) % m;
+        return r;
+    }
+
+    // ---------- int limbs (d <= WORDS_MAX_BYTES) ----------
+
+    /** w = NUM_radix(x[0..len)) as little-endian 32-bit limbs; returns the number of limbs used. */
+    private int numWords(byte[] x, int len, int[] w) {
+        int nw = 0;
+        for (int i = 0; i < len; i++) {
+            long carry = x[i] & 0xFF;
+            for (int j = 0; j < nw; j++) {
+                long t = (w[j] & MASK32) * radix + carry;
+                w[j] = (int) t;
+                carry = t >>> 32;
+            }
+            if (carry != 0) w[nw++] = (int) carry;
+        }
+        return nw;
+    }
+
+    /** [w]^len, big-endian; limbs at or above nw are zero. */
+    private static void writeWords(int[] w, int nw, byte[] dst, int off, int len) {
+        for (int k = 0; k < len; k++) {
+            int limb = k >>> 2;
+            dst[off + len - 1 - k] = limb < nw ? (byte) (w[limb] >>> ((k & 3) << 3)) : 0;
+        }
+    }
+
+    /**
+     * digits[0..m) = the m least significant base-radix digits of NUM_256(s[0..len)),
+     * least significant first, i.e. STR^m(y mod radix^m) reversed. Clobbers w.
+     */
+    private void lowDigits(byte[] s, int len, int[] w, byte[] digits, int m) {
+        int nw = (len + 3) >>> 2;
+        for (int j = 0; j < nw; j++) w[j] = 0;
+        for (int k = 0; k < len; k++) {
+            w[k >>> 2] |= (s[len - 1 - k] & 0xFF) << ((k & 3) << 3);
+        }
+        int produced = 0;
+        while (produced < m) {
+            while (nw > 0 && w[nw - 1] == 0) nw--;
+            long rem = 0;
+            for (int j = nw - 1; j >= 0; j--) {
+                long cur = (rem << 32) | (w[j] & MASK32);
+                w[j] = (int) (cur / chunkPow);
+                rem = cur % chunkPow;
+            }
+            for (int k = 0; k < chunkDigits && produced < m; k++) {
+                digits[produced++] = (byte) (rem % radix);
+                rem /= radix;
+            }
+        }
+    }
+
+    /** x[0..m) = STR^m(NUM(x) + NUM(reverse(y)) mod radix^m). */
+    private void addDigits(byte[] x, byte[] y, int m) {
+        int carry = 0;
+        for (int k = 0; k < m; k++) {
+            int j = m - 1 - k;
+            int t = (x[j] & 0xFF) + (y[k] & 0xFF) + carry;
+            if (t >= radix) {
+                t -= radix;
+                carry = 1;
+            } else {
+                carry = 0;
+            }
+            x[j] = (byte) t;
+        }
+    }
+
+    /** x[0..m) = STR^m(NUM(x) - NUM(reverse(y)) mod radix^m). */
+    private void subDigits(byte[] x, byte[] y, int m) {
+        int borrow = 0;
+        for (int k = 0; k < m; k++) {
+            int j = m - 1 - k;
+            int t = (x[j] & 0xFF) - (y[k] & 0xFF) - borrow;
+            if (t < 0) {
+                t += radix;
+                borrow = 1;
+            } else {
+                borrow = 0;
+            }
+            x[j] = (byte) t;
+        }
+    }
+
+    // ---------- BigInteger fallback ----------
+
+    /** NUM_radix(x[0..len)) */
+    private BigInteger num(byte[] x, int len) {
+        BigInteger r = BigInteger.ZERO;
+        for (int i = 0; i < len; i++) {
+            r = r.multiply(bigRadix).add(BigInteger.valueOf(x[i] & 0xFF));
+        }
+        return r;
+    }
+
+    /** STR^len_radix(c) into x[0..len) */
+    private void str(BigInteger c, byte[] x, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            BigInteger[] qr = c.divideAndRemainder(bigRadix);
+            x[i] = (byte) qr[1].intValue();
+            c = qr[0];
+        }
+    }
+
+    /** [v]^len: big-endian, left-padded with zeros. */
+    private static void writeFixed(BigInteger v, byte[] dst, int off, int len) {
+        byte[] raw = v.toByteArray();
+        int skip = raw.length > len ? raw.length - len : 0; // drop sign byte
+        int n = raw.length - skip;
+        Arrays.fill(dst, off, off + len - n, (byte) 0);
+        System.arraycopy(raw, skip, dst, off + len - n, n);
+    }
+
+    // ---------- validation / per-length constants ----------
+
+    private void checkData(byte[] in, int inOff, int len) {
+        if (in == null) throw new IllegalArgumentException("null input");
+        if (len < minLength) throw new IllegalArgumentException("input too short");
+        for (int i = inOff; i < inOff + len; i++) {
+            if ((in[i] & 0xFF) >= radix) throw new IllegalArgumentException("input data outside of radix");
+        }
+    }
+
+    private LengthParams paramsFor(int n, BlockCipher aes) {
+        LengthParams lp = params.get(n);
+        if (lp == null) {
+            lp = new LengthParams(radix, n, tweak, aes);
+            if (params.size() < lengthCacheSize) {
+                LengthParams prev = params.putIfAbsent(n, lp);
+                if (prev != null) lp = prev;
+            }
+        }
+        return lp;
+    }
+
+    private enum Arith { LONG, WORDS, BIG }
+
+    /** Constants that depend only on (key, radix, n, T). */
+    private static final class LengthParams {
+        final int u;
+        final int v;
+        final int b;
+        final int d;
+        final int pad;
+        final int qLen;
+        final int sLen;
+        final byte[] p = new byte[BLOCK];
+        final Arith arith;
+        final BigInteger modU;
+        final BigInteger modV;
+        /** radix^u, radix^v when arith == LONG */
+        final long longModU;
+        final long longModV;
+        /** CBC-MAC chaining value after P and the first resumeOff bytes (all constant) of Q. */
+        final byte[] macState = new byte[BLOCK];
+        final int resumeOff;
+
+        LengthParams(int radix, int n, byte[] tweak, BlockCipher aes) {
+            int t = tweak.length;
+            BigInteger r = BigInteger.valueOf(radix);
+            u = n / 2;
+            v = n - u;
+            modU = r.pow(u);
+            modV = r.pow(v);
+            b = (modV.subtract(BigInteger.ONE).bitLength() + 7) / 8;
+            d = 4 * ((b + 3) / 4) + 4;
+            pad = Math.floorMod(-t - b - 1, BLOCK);
+            qLen = t + pad + 1 + b;
+            sLen = ((d + BLOCK - 1) / BLOCK) * BLOCK;
+            if (modV.compareTo(BigInteger.valueOf(LONG_LIMIT)) < 0) {
+                arith = Arith.LONG;
+                longModU = modU.longValue();
+                longModV = modV.longValue();
+            } else {
+                arith = d <= WORDS_MAX_BYTES ? Arith.WORDS : Arith.BIG;
+                longModU = 0;
+                longModV = 0;
+            }
+
+            // P = [1]^1 || [2]^1 || [1]^1 || [radix]^3 || [10]^1 || [u mod 256]^1 || [n]^4 || [t]^4
+            p[0] = 1;
+            p[1] = 2;
+            p[2] = 1;
+            p[3] = (byte) (radix >>> 16);
+            p[4] = (byte) (radix >>> 8);
+            p[5] = (byte) radix;
+            p[6] = 10;
+            p[7] = (byte) u;
+            p[8] = (byte) (n >>> 24);
+            p[9] = (byte) (n >>> 16);
+            p[10] = (byte) (n >>> 8);
+            p[11] = (byte) n;
+            p[12] = (byte) (t >>> 24);
+            p[13] = (byte) (t >>> 16);
+            p[14] = (byte) (t >>> 8);
+            p[15] = (byte) t;
+
+            // T || [0]^pad is fixed; only the block(s) carrying [i] || [NUM(B)]^b vary per round
+            resumeOff = ((t + pad) / BLOCK) * BLOCK;
+            aes.processBlock(p, 0, macState, 0);
+            for (int off = 0; off < resumeOff; off += BLOCK) {
+                for (int k = 0; k < BLOCK; k++) {
+                    int idx = off + k;
+                    macState[k] ^= idx < t ? tweak[idx] : 0;
+                }
+                aes.processBlock(macState, 0, macState, 0);
+            }
+        }
+    }
+
+    /** Per-thread AES instance and working buffers; grown on demand, never shrunk. */
+    private static final class Scratch {
+        final BlockCipher aes;
+        final byte[] r = new byte[BLOCK];
+        final byte[] block = new byte[BLOCK];
+        byte[] q = new byte[0];
+        byte[] s = new byte[0];
+        byte[] a = new byte[0];
+        byte[] b = new byte[0];
+        int[] xw = new int[0];
+        int[] yw = new int[0];
+        byte[] yd = new byte[0];
+
+        Scratch(BlockCipher aes, byte[] key) {
+            this.aes = aes;
+            aes.init(true, new KeyParameter(key));
+        }
+
+        /** Re-key the AES instance with zeros and clear the buffers. */
+        void wipe() {
+            aes.init(true, new KeyParameter(new byte[BLOCK]));
+            Arrays.fill(r, (byte) 0);
+            Arrays.fill(block, (byte) 0);
+            Arrays.fill(q, (byte) 0);
+            Arrays.fill(s, (byte) 0);
+            Arrays.fill(a, (byte) 0);
+            Arrays.fill(b, (byte) 0);
+            Arrays.fill(xw, 0);
+            Arrays.fill(yw, 0);
+            Arrays.fill(yd, (byte) 0);
+        }
+
+        void ensureCapacity(int n, LengthParams lp) {
+            if (q.length < lp.qLen) q = new byte[lp.qLen];
+            if (s.length < lp.sLen) s = new byte[lp.sLen];
+            int half = n - n / 2;
+            if (a.length < half) {
+                a = new byte[half];
+                b = new byte[half];
+            }
+            if (lp.arith == Arith.WORDS) {
+                // NUM(X) < radix^v needs at most b bytes; S has d bytes
+                if (xw.length < (lp.b + 3) / 4) xw = new int[(lp.b + 3) / 4];
+                if (yw.length < lp.d / 4) yw = new int[lp.d / 4];
+                if (yd.length < half) yd = new byte[half];
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.fpe.FPEFF1Engine;
+import org.bouncycastle.crypto.params.FPEParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.util.Arrays;
+
+/**
+ * Thread-confined pool of initialized BouncyCastle FF1 engines for one (key, radix, tweak).
+ *
+ * Each thread lazily gets one encrypting and one decrypting FPEFF1Engine, so the AES key
+ * schedule is expanded once per thread and direction instead of once per value.
+ * FPEFF1Engine keeps no per-call state after init, so a thread can reuse its instance forever.
+ */
+final class FF1EnginePool implements FpeCipher {
+    private final int radix;
+    private final int minLength;
+    private final byte[] key;
+    private final PerThread<Bound> encryptors;
+    private final PerThread<Bound> decryptors;
+
+    FF1EnginePool(byte[] key, int radix, byte[] tweak) {
+        this(key, radix, tweak, BlockCipherProvider.bouncyCastle());
+    }
+
+    FF1EnginePool(byte[] key, int radix, byte[] tweak, BlockCipherProvider aes) {
+        this.key = key.clone();
+        final byte[] t = tweak.clone();
+        this.radix = radix;
+        this.minLength = FpeCipher.minLength(radix);
+        this.encryptors = new PerThread<>(() -> new Bound(aes, true, this.key, radix, t), Bound::wipe);
+        this.decryptors = new PerThread<>(() -> new Bound(aes, false, this.key, radix, t), Bound::wipe);
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+
+    @Override
+    public int minLength() {
+        return minLength;
+    }
+
+    @Override
+    public int maxLength() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Run FF1 over in[inOff..inOff+len) (symbol values < radix) into out[outOff..).
+     * Returns the number of symbols written.
+     */
+    @Override
+    public int process(boolean forEncrypt, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        PerThread<Bound> engines = forEncrypt ? encryptors : decryptors;
+        int written = engines.get().engine.processBlock(in, inOff, len, out, outOff);
+        engines.checkLive();
+        return written;
+    }
+
+    @Override
+    public void destroy() {
+        encryptors.release();
+        decryptors.release();
+        Arrays.fill(key, (byte) 0);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return encryptors.isReleased();
+    }
+
+    /** A thread's engine and the KeyParameter it was initialized with (BouncyCastle keeps that, raw key included). */
+    private static final class Bound {
+        final FPEFF1Engine engine;
+        final KeyParameter key;
+        final boolean forEncrypt;
+        final int radix;
+        final byte[] tweak;
+
+        Bound(BlockCipherProvider aes, boolean forEncrypt, byte[] key, int radix, byte[] tweak) {
+            this.engine = new FPEFF1Engine(aes.newCipher());
+            this.key = new KeyParameter(key);
+            this.forEncrypt = forEncrypt;
+            this.radix = radix;
+            this.tweak = tweak;
+            engine.init(forEncrypt, new FPEParameters(this.key, radix, tweak));
+        }
+
+        /** Zero the kept key and re-key the AES schedule with zeros. */
+        void wipe() {
+            Arrays.fill(key.getKey(), (byte) 0);
+            engine.init(forEncrypt, new FPEParameters(new KeyParameter(new byte[16]), radix, tweak));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.fpe.FPEFF3_1Engine;
+import org.bouncycastle.crypto.params.FPEParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Thread-confined pool of initialized BouncyCastle FF3-1 engines for one (key, radix, tweak);
+ * the FF3-1 counterpart of {@link FF1EnginePool}.
+ */
+final class FF3_1EnginePool implements FpeCipher {
+    /** FF3-1 tweaks are exactly 56 bits. */
+    static final int TWEAK_BYTES = 7;
+
+    private final int radix;
+    private final int minLength;
+    private final int maxLength;
+    private final byte[] key;
+    private final PerThread<Bound> encryptors;
+    private final PerThread<Bound> decryptors;
+
+    FF3_1EnginePool(byte[] key, int radix, byte[] tweak, BlockCipherProvider aes) {
+        this.key = key.clone();
+        final byte[] t = deriveTweak(tweak);
+        this.radix = radix;
+        this.minLength = FpeCipher.minLength(radix);
+        this.maxLength = maxLength(radix);
+        this.encryptors = new PerThread<>(() -> new Bound(aes, true, this.key, radix, t), Bound::wipe);
+        this.decryptors = new PerThread<>(() -> new Bound(aes, false, this.key, radix, t), Bound::wipe);
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+
+    @Override
+    public int minLength() {
+        return minLength;
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public int process(boolean forEncrypt, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        PerThread<Bound> engines = forEncrypt ? encryptors : decryptors;
+        int written = engines.get().engine.processBlock(in, inOff, len, out, outOff);
+        engines.checkLive();
+        return written;
+    }
+
+    @Override
+    public void destroy() {
+        encryptors.release();
+        decryptors.release();
+        Arrays.fill(key, (byte) 0);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return encryptors.isReleased();
+    }
+
+    /** 2 * floor(log_radix(2^96)), computed as BouncyCastle does so both agree at the boundary. */
+    static int maxLength(int radix) {
+        return 2 * (int) Math.floor(Math.log(Math.pow(2, 96)) / Math.log(radix));
+    }
+
+    /** 7-byte tweaks pass through; anything else becomes SHA-256(tweak)[0..7). */
+    static byte[] deriveTweak(byte[] tweak) {
+        if (tweak.length == TWEAK_BYTES) return tweak.clone();
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(tweak);
+            return Arrays.copyOf(h, TWEAK_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** A thread's engine and the KeyParameter it was initialized with (BouncyCastle keeps that, raw key included). */
+    private static final class Bound {
+        final FPEFF3_1Engine engine;
+        final KeyParameter key;
+        final boolean forEncrypt;
+        final int radix;
+        final byte[] tweak;
+
+        Bound(BlockCipherProvider aes, boolean forEncrypt, byte[] key, int radix, byte[] tweak) {
+            this.engine = new FPEFF3_1Engine(aes.newCipher());
+            this.key = new KeyParameter(key);
+            this.forEncrypt = forEncrypt;
+            this.radix = radix;
+            this.tweak = tweak;
+            engine.init(forEncrypt, new FPEParameters(this.key, radix, tweak));
+        }
+
+        /** Zero the kept key and re-key the AES schedule with zeros. */
+        void wipe() {
+            Arrays.fill(key.getKey(), (byte) 0);
+            engine.init(forEncrypt, new FPEParameters(new KeyParameter(new byte[16]), radix, tweak));
+        }
+    }
+}
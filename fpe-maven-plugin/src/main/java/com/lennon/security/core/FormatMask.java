@@ -0,0 +1,219 @@
+package com.lennon.security.core;
+
+import com.lennon.security.alphabet.Alphabet;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Precompiled layout of a formatted value: which positions are encrypted (slots) and which
+ * literal chars sit everywhere else, e.g. "+1-ddd-ddd-dddd" or "dddd dddd dddd dddd".
+ *
+ * A mask is built once, from a pattern ({@link #compile}) or from a sample value ({@link #learn}),
+ * and handed to the engines / FormatPreservingService with each call. A mask only ever changes
+ * speed, never output:
+ *  - a literal that is a char of the engine's alphabet (the "1" of "+1-...", or '-' for an
+ *    alphabet that contains it) is encrypted like a slot, exactly as the dynamic path would;
+ *  - an input that does not fit (different length, different non-alphabet literal, or a
+ *    non-alphabet char in a slot) falls back to the dynamic strip/reinsert path.
+ *
+ * Instances are immutable and thread-safe. The slot layout is resolved once per alphabet instance
+ * and cached, so one mask can be shared by the digits and alphabet engines of many tenants.
+ */
+public final class FormatMask {
+    /** Slot marker used by {@link #compile(String)}. */
+    public static final char SLOT = 'd';
+    /** Views cached per mask; past this the cache starts over (engines come and go). */
+    private static final int MAX_VIEWS = 16;
+
+    private final String pattern;
+    private final int length;
+    private final int[] slots;
+    private final int[] literalPos;
+    private final char[] literals;
+    /** copy-on-write, one per alphabet instance seen; lookups are a plain scan */
+    private volatile View[] views = new View[0];
+
+    private FormatMask(String pattern, int[] slots, int[] literalPos, char[] literals) {
+        this.pattern = pattern;
+        this.length = slots.length + literalPos.length;
+        this.slots = slots;
+        this.literalPos = literalPos;
+        this.literals = literals;
+    }
+
+    /** Mask from a pattern where {@link #SLOT} ('d') marks an encrypted position and every other char is literal. */
+    public static FormatMask compile(String pattern) {
+        return compile(pattern, SLOT);
+    }
+
+    public static FormatMask compile(String pattern, char slot) {
+        Objects.requireNonNull(pattern, "pattern null");
+        int n = 0;
+        for (int i = 0; i < pattern.length(); i++) if (pattern.charAt(i) == slot) n++;
+        int[] slots = new int[n];
+        int[] literalPos = new int[pattern.length() - n];
+        char[] literals = new char[literalPos.length];
+        int s = 0, l = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == slot) {
+                slots[s++] = i;
+            } else {
+                literalPos[l] = i;
+                literals[l++] = c;
+            }
+        }
+        return new FormatMask(pattern, slots, literalPos, literals);
+    }
+
+    /** Mask of a sample value: chars of alphabet become slots, everything else literal. */
+    public static FormatMask learn(String sample, Alphabet alphabet) {
+        Objects.requireNonNull(sample, "sample null");
+        Objects.requireNonNull(alphabet, "alphabet null");
+        int n = 0;
+        for (int i = 0; i < sample.length(); i++) if (alphabet.contains(sample.charAt(i))) n++;
+        int[] slots = new int[n];
+        int[] literalPos = new int[sample.length() - n];
+        char[] literals = new char[literalPos.length];
+        char[] pattern = new char[sample.length()];
+        int s = 0, l = 0;
+        for (int i = 0; i < sample.length(); i++) {
+            char c = sample.charAt(i);
+            if (alphabet.contains(c)) {
+                slots[s++] = i;
+                pattern[i] = SLOT;
+            } else {
+                literalPos[l] = i;
+                literals[l++] = c;
+                pattern[i] = c;
+            }
+        }
+        return new FormatMask(new String(pattern), slots, literalPos, literals);
+    }
+
+    /** Total length of values this mask fits. */
+    public int length() {
+        return length;
+    }
+
+    /** Number of slot positions in the pattern (alphabet-char literals add to these, see {@link #slotCount(Alphabet)}). */
+    public int slotCount() {
+        return slots.length;
+    }
+
+    /** Number of positions an engine over alphabet encrypts in a value that fits. */
+    public int slotCount(Alphabet alphabet) {
+        return view(alphabet).slots.length;
+    }
+
+    /** True if s has this layout and every slot (including alphabet-char literals) holds a char of alphabet. */
+    public boolean matches(CharSequence s, Alphabet alphabet) {
+        if (s.length() != length) return false;
+        View v = view(alphabet);
+        for (int k = 0; k < v.literalPos.length; k++) {
+            if (s.charAt(v.literalPos[k]) != v.literals[k]) return false;
+        }
+        for (int slot : v.slots) {
+            if (!alphabet.contains(s.charAt(slot))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copy the slot chars of src[off..off+len) into dst[0..slotCount(alphabet)) if src fits this
+     * mask; returns that count, or -1 (dst partially written) if it does not.
+     */
+    int gather(char[] src, int off, int len, Alphabet alphabet, char[] dst) {
+        if (len != length) return -1;
+        View v = view(alphabet);
+        for (int k = 0; k < v.literalPos.length; k++) {
+            if (src[off + v.literalPos[k]] != v.literals[k]) return -1;
+        }
+        int[] vs = v.slots;
+        for (int k = 0; k < vs.length; k++) {
+            char c = src[off + vs[k]];
+            if (!alphabet.contains(c)) return -1;
+            dst[k] = c;
+        }
+        return vs.length;
+    }
+
+    /** Slot positions for alphabet, relative to the start of the value; shared, do not modify. */
+    int[] slots(Alphabet alphabet) {
+        return view(alphabet).slots;
+    }
+
+    /** Alphabets with a cached view (for tests). */
+    int cachedViews() {
+        return views.length;
+    }
+
+    private View view(Alphabet alphabet) {
+        for (View v : views) {
+            if (v.alphabet == alphabet) return v;
+        }
+        return addView(alphabet);
+    }
+
+    private synchronized View addView(Alphabet alphabet) {
+        View[] vs = views;
+        for (View v : vs) {
+            if (v.alphabet == alphabet) return v;
+        }
+        View v = new View(alphabet);
+        View[] next;
+        if (vs.length < MAX_VIEWS) {
+            next = Arrays.copyOf(vs, vs.length + 1);
+            next[vs.length] = v;
+        } else {
+            next = new View[]{v};
+        }
+        views = next;
+        return v;
+    }
+
+    /** Slots and literals of this mask once alphabet-char literals are moved to the slots. */
+    private final class View {
+        final Alphabet alphabet;
+        final int[] slots;
+        final int[] literalPos;
+        final char[] literals;
+
+        View(Alphabet alphabet) {
+            this.alphabet = alphabet;
+            int promoted = 0;
+            for (char c : FormatMask.this.literals) if (alphabet.contains(c)) promoted++;
+            if (promoted == 0) {
+                slots = FormatMask.this.slots;
+                literalPos = FormatMask.this.literalPos;
+                literals = FormatMask.this.literals;
+                return;
+            }
+            slots = new int[FormatMask.this.slots.length + promoted];
+            literalPos = new int[FormatMask.this.literalPos.length - promoted];
+            literals = new char[literalPos.length];
+            int[] maskSlots = FormatMask.this.slots;
+            int[] maskLiteralPos = FormatMask.this.literalPos;
+            char[] maskLiterals = FormatMask.this.literals;
+            int s = 0, l = 0, p = 0;
+            // merge pattern slots and promoted literals in position order
+            for (int k = 0; k < maskLiterals.length; k++) {
+                int pos = maskLiteralPos[k];
+                while (p < maskSlots.length && maskSlots[p] < pos) slots[s++] = maskSlots[p++];
+                if (alphabet.contains(maskLiterals[k])) {
+                    slots[s++] = pos;
+                } else {
+                    literalPos[l] = pos;
+                    literals[l++] = maskLiterals[k];
+                }
+            }
+            while (p < maskSlots.length) slots[s++] = maskSlots[p++];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -1,10 +1,20 @@
 package com.lennon.security.core;
 
+import com.lennon.security.alphabet.Alphabet;
+import com.lennon.security.metrics.FpeEvent;
+import com.lennon.security.metrics.FpeMetrics;
+import com.lennon.security.metrics.FpeOperation;
+import com.lennon.security.metrics.FpeServiceJfrEvent;
+
+import javax.security.auth.Destroyable;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Base64;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -14,101 +24,133 @@ import java.nio.charset.StandardCharsets;
  *  - encryptEmailWithMarker / decryptEmailWithMarker
  *  - encryptPhoneKeepPrefix / decryptPhoneKeepPrefix
  *  - (backwards-compatible) encryptPhoneKeepEnds / decryptPhoneKeepEnds -> delegate to KeepPrefix methods
+ *  - batch: encryptPhonesKeepPrefix / encryptEmails (+ decrypt), see {@link BatchResult}
+ *  - tryEncrypt* / tryDecrypt* for emails and phones: {@link FpeResult} instead of exceptions
+ *  - optional {@link FpeMetrics}: latency per operation, fallback / passthrough counts
+ *  - JFR: one {@link FpeServiceJfrEvent} per call (lengths and outcome, never values)
  *
  * See earlier comments for behavior details.
  */
-public final class FormatPreservingService {
+public final class FormatPreservingService implements Destroyable {
     private final FF1BcEngineWithFormat digitsEngine;    // 只输出数字的 engine
     private final FF1BcEngineWithAlphabet alphabetEngine; // 可输出字母 + 数字的 engine
+    private final Alphabet alphabet;                      // alphabetEngine 的字母表（bitset 判定成员），可能为 null
+    private final ForkJoinPool batchPool;                 // 批量接口使用的线程池
+    private final FpeMetrics metrics;                     // 默认 no-op
+    private final String modeName;                        // JFR 事件里的 mode
+    private final int alphabetRadix;                      // JFR 事件里字母表类操作的 radix
+
+    /** Batches at most this large (and the leaves of larger ones) run on a single thread. */
+    static final int BATCH_CHUNK = 512;
 
     public FormatPreservingService(FF1BcEngineWithFormat digitsEngine, FF1BcEngineWithAlphabet alphabetEngine) {
+        this(digitsEngine, alphabetEngine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param batchPool pool the batch methods split large inputs across; null runs every batch
+     *                  on the calling thread
+     */
+    public FormatPreservingService(FF1BcEngineWithFormat digitsEngine, FF1BcEngineWithAlphabet alphabetEngine,
+                                   ForkJoinPool batchPool) {
+        this(digitsEngine, alphabetEngine, batchPool, FpeMetrics.noop());
+    }
+
+    /**
+     * @param metrics receives per-operation latencies and path counts, e.g. a RecordingFpeMetrics
+     */
+    public FormatPreservingService(FF1BcEngineWithFormat digitsEngine, FF1BcEngineWithAlphabet alphabetEngine,
+                                   ForkJoinPool batchPool, FpeMetrics metrics) {
         this.digitsEngine = digitsEngine;
         this.alphabetEngine = alphabetEngine;
+        this.alphabet = alphabetEngine == null ? null : alphabetEngine.alphabet();
+        this.batchPool = batchPool;
+        this.metrics = Objects.requireNonNull(metrics, "metrics null");
+        FpeMode mode = digitsEngine != null ? digitsEngine.mode()
+                : alphabetEngine != null ? alphabetEngine.mode() : null;
+        this.modeName = mode == null ? "" : mode.name();
+        this.alphabetRadix = alphabet == null ? 10 : alphabet.radix();
     }
 
     // ---------- 新增：手机号中间允许产生字母的加解密（保留前 keepPrefix 位和后 keepSuffix 位） ----------
     public String encryptPhoneKeepEndsAllowLetters(String phone, int keepPrefix, int keepSuffix) throws Exception {
         if (phone == null) return null;
+        return phoneAllowLetters(true, phone, keepPrefix, keepSuffix, true).valueOrThrow();
+    }
+
+    public String decryptPhoneKeepEndsAllowLetters(String cipher, int keepPrefix, int keepSuffix) throws Exception {
+        if (cipher == null) return null;
+        return phoneAllowLetters(false, cipher, keepPrefix, keepSuffix, true).valueOrThrow();
+    }
 
+    /**
+     * Non-throwing form of {@link #encryptPhoneKeepEndsAllowLetters(String, int, int)}: a middle part
+     * too short (or long) for the alphabet engine is reported as TOO_SHORT / TOO_LONG.
+     */
+    public FpeResult tryEncryptPhoneKeepEndsAllowLetters(String phone, int keepPrefix, int keepSuffix) {
+        if (phone == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return phoneAllowLetters(true, phone, keepPrefix, keepSuffix, false);
+    }
+
+    public FpeResult tryDecryptPhoneKeepEndsAllowLetters(String cipher, int keepPrefix, int keepSuffix) {
+        if (cipher == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return phoneAllowLetters(false, cipher, keepPrefix, keepSuffix, false);
+    }
+
+    /** lenient: let the alphabet engine throw; otherwise report its status. */
+    private FpeResult phoneAllowLetters(boolean forEncrypt, String phone, int keepPrefix, int keepSuffix,
+                                        boolean lenient) {
+        FpeOperation op = forEncrypt ? FpeOperation.PHONE_LETTERS_ENCRYPT : FpeOperation.PHONE_LETTERS_DECRYPT;
+        return timed(op, length(phone), alphabetRadix,
+                () -> counted(runPhoneAllowLetters(forEncrypt, phone, keepPrefix, keepSuffix, lenient)));
+    }
+
+    private FpeResult runPhoneAllowLetters(boolean forEncrypt, String phone, int keepPrefix, int keepSuffix,
+                                           boolean lenient) {
         // collect characters that alphabetEngine considers part of alphabet (for phone we assume alphabet contains 0-9A-Za-z...)
+        // on decrypt these include digits or letters produced earlier
         StringBuilder coreBuilder = new StringBuilder();
         for (int i = 0; i < phone.length(); i++) {
             char c = phone.charAt(i);
-            if (alphabetEngine.containsChar(c)) coreBuilder.append(c);
+            if (alphabet.contains(c)) coreBuilder.append(c);
         }
         String core = coreBuilder.toString();
-        if (core.length() == 0) return phone;
+        if (core.length() == 0) {
+            metrics.increment(FpeEvent.PASSTHROUGH);
+            return FpeResult.ok(phone);
+        }
 
         if (keepPrefix < 0) keepPrefix = 0;
         if (keepSuffix < 0) keepSuffix = 0;
         if (core.length() < (keepPrefix + keepSuffix)) {
             // nothing to encrypt (or too short) — return original
-            return phone;
+            metrics.increment(FpeEvent.PASSTHROUGH);
+            return FpeResult.ok(phone);
         }
 
         String prefix = core.substring(0, keepPrefix);
         String suffix = core.substring(core.length() - keepSuffix);
         String middle = core.substring(keepPrefix, core.length() - keepSuffix);
 
-        // encrypt middle using alphabet engine (output may contain letters)
-        String encMiddle = alphabetEngine.encryptChars(middle);
+        // encrypt / decrypt middle using alphabet engine (ciphertext may contain letters)
+        FpeResult mid = alphabetEngine.chars(forEncrypt, middle, !lenient);
+        if (!mid.isOk()) return mid;
 
-        String encCore = prefix + encMiddle + suffix;
+        String newCore = prefix + mid.value() + suffix;
 
-        // reinsert into original format: iterate original phone, replace characters that are in alphabet with next char from encCore
+        // reinsert into original format: iterate original phone, replace characters that are in alphabet with next char from newCore
         StringBuilder out = new StringBuilder();
         int di = 0;
         for (int i = 0; i < phone.length(); i++) {
             char c = phone.charAt(i);
-            if (alphabetEngine.containsChar(c)) {
-                // take next from encCore
-                out.append(encCore.charAt(di++));
+            if (alphabet.contains(c)) {
+                // take next from newCore
+                out.append(newCore.charAt(di++));
             } else {
                 out.append(c);
             }
         }
-        return out.toString();
-    }
-
-    public String decryptPhoneKeepEndsAllowLetters(String cipher, int keepPrefix, int keepSuffix) throws Exception {
-        if (cipher == null) return null;
-
-        // collect core chars that belong to alphabet (these include digits or letters produced earlier)
-        StringBuilder coreBuilder = new StringBuilder();
-        for (int i = 0; i < cipher.length(); i++) {
-            char c = cipher.charAt(i);
-            if (alphabetEngine.containsChar(c)) coreBuilder.append(c);
-        }
-        String core = coreBuilder.toString();
-        if (core.length() == 0) return cipher;
-
-        if (keepPrefix < 0) keepPrefix = 0;
-        if (keepSuffix < 0) keepSuffix = 0;
-        if (core.length() < (keepPrefix + keepSuffix)) {
-            return cipher;
-        }
-
-        String prefix = core.substring(0, keepPrefix);
-        String suffix = core.substring(core.length() - keepSuffix);
-        String middle = core.substring(keepPrefix, core.length() - keepSuffix);
-
-        // decrypt middle using alphabet engine (should recover original digits)
-        String decMiddle = alphabetEngine.decryptChars(middle);
-
-        String decCore = prefix + decMiddle + suffix;
-
-        // reinsert decrypted core into the cipher's format positions (where alphabetEngine.containsChar was true)
-        StringBuilder out = new StringBuilder();
-        int di = 0;
-        for (int i = 0; i < cipher.length(); i++) {
-            char c = cipher.charAt(i);
-            if (alphabetEngine.containsChar(c)) {
-                out.append(decCore.charAt(di++));
-            } else {
-                out.append(c);
-            }
-        }
-        return out.toString();
+        return FpeResult.ok(out.toString());
     }
 
 
@@ -124,57 +166,74 @@ public final class FormatPreservingService {
      */
     public String encryptEmailWithMarker(String email) {
         Objects.requireNonNull(email, "email null");
+        FpeResult r = tryEncryptEmailWithMarker(email);
+        if (r.status() == FpeStatus.MALFORMED) throw new IllegalArgumentException("not an email: " + email);
+        return r.valueOrThrow();
+    }
+
+    /**
+     * Decrypt email produced by encryptEmailWithMarker.
+     * If marker '#' not present at end, return input unchanged.
+     */
+    public String decryptEmailWithMarker(String cipher) {
+        Objects.requireNonNull(cipher, "cipher null");
+        FpeResult r = tryDecryptEmailWithMarker(cipher);
+        if (r.status() == FpeStatus.MALFORMED) throw new IllegalArgumentException("not an email: " + cipher);
+        return r.valueOrThrow();
+    }
+
+    /**
+     * Non-throwing form of {@link #encryptEmailWithMarker(String)}: NULL_INPUT / MALFORMED (no '@')
+     * come back as a status. A local part the alphabet engine cannot take falls back to the
+     * numeric segments, and segments too short for FF1 stay as they are.
+     */
+    public FpeResult tryEncryptEmailWithMarker(String email) {
+        return timed(FpeOperation.EMAIL_ENCRYPT, length(email), alphabetRadix, () -> counted(encryptEmail(email)));
+    }
+
+    /** Non-throwing form of {@link #decryptEmailWithMarker(String)}. */
+    public FpeResult tryDecryptEmailWithMarker(String cipher) {
+        return timed(FpeOperation.EMAIL_DECRYPT, length(cipher), alphabetRadix, () -> counted(decryptEmail(cipher)));
+    }
+
+    private FpeResult encryptEmail(String email) {
+        if (email == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
         int at = email.indexOf('@');
-        if (at < 0) throw new IllegalArgumentException("not an email: " + email);
+        if (at < 0) return FpeResult.failure(FpeStatus.MALFORMED);
         String local = email.substring(0, at);
         String domain = email.substring(at + 1);
 
-        String encLocal;
+        String encLocal = null;
         if (alphabetEngine != null) {
-            try {
-                encLocal = alphabetEngine.encryptFormatted(local, false);
-            } catch (RuntimeException ex) {
-                // fallback to segment-wise
-                encLocal = encryptLocalPartNumericSegmentsWithFallback(local);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
-        } else {
+            encLocal = alphabetEngine.tryEncryptFormatted(local, false).value();
+        }
+        if (encLocal == null) {
+            // fallback to segment-wise
+            metrics.increment(FpeEvent.EMAIL_FALLBACK);
             encLocal = encryptLocalPartNumericSegmentsWithFallback(local);
         }
-
-        return encLocal + "@" + domain + "#";
+        return FpeResult.ok(encLocal + "@" + domain + "#");
     }
 
-    /**
-     * Decrypt email produced by encryptEmailWithMarker.
-     * If marker '#' not present at end, return input unchanged.
-     */
-    public String decryptEmailWithMarker(String cipher) {
-        Objects.requireNonNull(cipher, "cipher null");
+    private FpeResult decryptEmail(String cipher) {
+        if (cipher == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
         boolean hasMarker = cipher.endsWith("#");
         String base = hasMarker ? cipher.substring(0, cipher.length() - 1) : cipher;
         int at = base.indexOf('@');
-        if (at < 0) throw new IllegalArgumentException("not an email: " + cipher);
+        if (at < 0) return FpeResult.failure(FpeStatus.MALFORMED);
+        if (!hasMarker) return FpeResult.ok(cipher);
         String local = base.substring(0, at);
         String domain = base.substring(at + 1);
 
-        if (!hasMarker) return cipher;
-
-        String decLocal;
+        String decLocal = null;
         if (alphabetEngine != null) {
-            try {
-                decLocal = alphabetEngine.decryptFormatted(local, false);
-            } catch (RuntimeException ex) {
-                decLocal = decryptLocalPartNumericSegmentsWithFallback(local);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
-        } else {
+            decLocal = alphabetEngine.tryDecryptFormatted(local, false).value();
+        }
+        if (decLocal == null) {
+            metrics.increment(FpeEvent.EMAIL_FALLBACK);
             decLocal = decryptLocalPartNumericSegmentsWithFallback(local);
         }
-
-        return decLocal + "@" + domain;
+        return FpeResult.ok(decLocal + "@" + domain);
     }
 
     // ---------- phone: preserve prefix/suffix digits ----------
@@ -182,74 +241,160 @@ public final class FormatPreservingService {
      * Encrypt phone-like string by keeping first keepPrefix digits and last keepSuffix digits unchanged,
      * replacing only the middle digits. Non-digit formatting characters are preserved in-place.
      *
-     * Uses digitsEngine.encryptFormatted on the middle digits.
+     * Uses digitsEngine on the middle digits.
      */
     public String encryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix) throws Exception {
         Objects.requireNonNull(phone, "phone null");
+        return phoneKeepPrefix(true, phone, keepPrefix, keepSuffix, null);
+    }
+
+    public String decryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix) throws Exception {
+        Objects.requireNonNull(cipher, "cipher null");
+        return phoneKeepPrefix(false, cipher, keepPrefix, keepSuffix, null);
+    }
+
+    /**
+     * Same as {@link #encryptPhoneKeepPrefix(String, int, int)}, with the digit positions taken from a
+     * precompiled layout (e.g. FormatMask.compile("+d-ddd-ddd-dddd")) when the phone fits it;
+     * other phones are scanned as usual. Output is the same either way: keepPrefix/keepSuffix
+     * always count digits, and digit literals of the mask are digits like any other.
+     */
+    public String encryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix, FormatMask mask) throws Exception {
+        Objects.requireNonNull(phone, "phone null");
+        return phoneKeepPrefix(true, phone, keepPrefix, keepSuffix, mask);
+    }
+
+    public String decryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix, FormatMask mask) throws Exception {
+        Objects.requireNonNull(cipher, "cipher null");
+        return phoneKeepPrefix(false, cipher, keepPrefix, keepSuffix, mask);
+    }
+
+    /**
+     * Non-throwing form of {@link #encryptPhoneKeepPrefix(String, int, int)}: a middle part too short
+     * (or long) for the digits engine is reported as TOO_SHORT / TOO_LONG instead of throwing.
+     */
+    public FpeResult tryEncryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix) {
+        return tryEncryptPhoneKeepPrefix(phone, keepPrefix, keepSuffix, null);
+    }
+
+    public FpeResult tryDecryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix) {
+        return tryDecryptPhoneKeepPrefix(cipher, keepPrefix, keepSuffix, null);
+    }
+
+    public FpeResult tryEncryptPhoneKeepPrefix(String phone, int keepPrefix, int keepSuffix, FormatMask mask) {
+        if (phone == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return phoneKeepPrefix(true, phone, keepPrefix, keepSuffix, mask, false);
+    }
+
+    public FpeResult tryDecryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix, FormatMask mask) {
+        if (cipher == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return phoneKeepPrefix(false, cipher, keepPrefix, keepSuffix, mask, false);
+    }
+
+    private String phoneKeepPrefix(boolean forEncrypt, String phone, int keepPrefix, int keepSuffix, FormatMask mask) {
+        return phoneKeepPrefix(forEncrypt, phone, keepPrefix, keepSuffix, mask, true).valueOrThrow();
+    }
+
+    /** lenient: run the cipher unchecked (it throws itself); otherwise pre-check the middle length. */
+    private FpeResult phoneKeepPrefix(boolean forEncrypt, String phone, int keepPrefix, int keepSuffix,
+                                      FormatMask mask, boolean lenient) {
+        FpeOperation op = forEncrypt ? FpeOperation.PHONE_ENCRYPT : FpeOperation.PHONE_DECRYPT;
+        return timed(op, length(phone), 10,
+                () -> counted(runPhoneKeepPrefix(forEncrypt, phone, keepPrefix, keepSuffix, mask, lenient)));
+    }
+
+    private FpeResult runPhoneKeepPrefix(boolean forEncrypt, String phone, int keepPrefix, int keepSuffix,
+                                         FormatMask mask, boolean lenient) {
         if (keepPrefix < 0 || keepSuffix < 0) throw new IllegalArgumentException("keep counts must be >= 0");
 
-        List<Integer> digitPositions = new ArrayList<>();
-        StringBuilder digitsOnly = new StringBuilder();
-        for (int i = 0; i < phone.length(); i++) {
-            char c = phone.charAt(i);
-            if (Character.isDigit(c)) {
-                digitPositions.add(i);
-                digitsOnly.append(c);
+        char[] out = phone.toCharArray();
+        char[] digits = new char[out.length];
+        int[] digitPositions;
+        int total = mask == null ? -1 : mask.gather(out, 0, out.length, Alphabet.DIGITS, digits);
+        if (total >= 0) {
+            digitPositions = mask.slots(Alphabet.DIGITS);
+        } else {
+            digitPositions = new int[out.length];
+            total = 0;
+            for (int i = 0; i < out.length; i++) {
+                char c = out[i];
+                if (Character.isDigit(c)) {
+                    digitPositions[total] = i;
+                    digits[total++] = c;
+                }
             }
         }
 
-        int total = digitsOnly.length();
-        if (total == 0) return phone;
-        if (keepPrefix + keepSuffix >= total) return phone;
+        if (total == 0 || keepPrefix + keepSuffix >= total) {
+            metrics.increment(FpeEvent.PASSTHROUGH);
+            return FpeResult.ok(phone);
+        }
 
         int midStart = keepPrefix;
         int midEnd = total - keepSuffix;
-        String middle = digitsOnly.substring(midStart, midEnd);
-
-        // encrypt middle using digitsEngine (numeric-only string)
-        String encMiddle = digitsEngine.encryptFormatted(middle, false);
+        int midLen = midEnd - midStart;
+        if (!lenient) {
+            FpeStatus status = digitsEngine.cipher().checkLength(midLen);
+            if (status != FpeStatus.OK) return FpeResult.failure(status);
+        }
 
-        // reinsert encrypted middle into original formatted phone
-        char[] out = phone.toCharArray();
-        int encIndex = 0;
+        // middle digits in place, then back to their original positions
+        if (forEncrypt) {
+            digitsEngine.encrypt(digits, midStart, midLen, digits, midStart);
+        } else {
+            digitsEngine.decrypt(digits, midStart, midLen, digits, midStart);
+        }
         for (int d = midStart; d < midEnd; d++) {
-            int pos = digitPositions.get(d);
-            out[pos] = encMiddle.charAt(encIndex++);
+            out[digitPositions[d]] = digits[d];
         }
-        return new String(out);
+        return FpeResult.ok(new String(out));
     }
 
-    public String decryptPhoneKeepPrefix(String cipher, int keepPrefix, int keepSuffix) throws Exception {
-        Objects.requireNonNull(cipher, "cipher null");
-        if (keepPrefix < 0 || keepSuffix < 0) throw new IllegalArgumentException("keep counts must be >= 0");
+    private FpeResult counted(FpeResult r) {
+        if (!r.isOk()) metrics.increment(FpeEvent.REJECTED);
+        return r;
+    }
 
-        List<Integer> digitPositions = new ArrayList<>();
-        StringBuilder digitsOnly = new StringBuilder();
-        for (int i = 0; i < cipher.length(); i++) {
-            char c = cipher.charAt(i);
-            if (Character.isDigit(c)) {
-                digitPositions.add(i);
-                digitsOnly.append(c);
-            }
+    /**
+     * Run call with its latency recorded in metrics under op and one FpeServiceJfrEvent around it.
+     * The event outcome is the FpeResult status, OK for any other result, ERROR if call throws.
+     */
+    private <T, E extends Exception> T timed(FpeOperation op, int inputLength, int radix, Call<T, E> call) throws E {
+        long t0 = metrics.start();
+        FpeServiceJfrEvent event = new FpeServiceJfrEvent();
+        event.begin();
+        String outcome = FpeServiceJfrEvent.ERROR;
+        try {
+            T r = call.run();
+            outcome = r instanceof FpeResult ? ((FpeResult) r).status().name() : FpeServiceJfrEvent.OK;
+            return r;
+        } finally {
+            metrics.stop(op, t0);
+            event.finish(op, inputLength, radix, modeName, outcome);
         }
+    }
 
-        int total = digitsOnly.length();
-        if (total == 0) return cipher;
-        if (keepPrefix + keepSuffix >= total) return cipher;
+    @FunctionalInterface
+    private interface Call<T, E extends Exception> {
+        T run() throws E;
+    }
 
-        int midStart = keepPrefix;
-        int midEnd = total - keepSuffix;
-        String middle = digitsOnly.substring(midStart, midEnd);
+    /** Input length for JFR events (the value itself is never recorded). */
+    private static int length(String s) {
+        return s == null ? -1 : s.length();
+    }
 
-        String decMiddle = digitsEngine.decryptFormatted(middle, false);
+    /** Destroy both engines (key copies and per-thread state); later calls throw IllegalStateException. */
+    @Override
+    public void destroy() {
+        if (digitsEngine != null) digitsEngine.destroy();
+        if (alphabetEngine != null) alphabetEngine.destroy();
+    }
 
-        char[] out = cipher.toCharArray();
-        int decIndex = 0;
-        for (int d = midStart; d < midEnd; d++) {
-            int pos = digitPositions.get(d);
-            out[pos] = decMiddle.charAt(decIndex++);
-        }
-        return new String(out);
+    @Override
+    public boolean isDestroyed() {
+        return (digitsEngine == null || digitsEngine.isDestroyed())
+                && (alphabetEngine == null || alphabetEngine.isDestroyed());
     }
 
     // ---------- Backwards-compatible aliases ----------
@@ -268,6 +413,131 @@ public final class FormatPreservingService {
         return decryptPhoneKeepPrefix(cipher, keepPrefix, keepSuffix);
     }
 
+    // ---------- Batch ----------
+    /*
+     * Batch calls give the same per-element result as the single-value methods, in input order.
+     * Elements are processed grouped by core length, so consecutive FF1 calls hit the same
+     * per-length state (native backend) and the same scratch sizes; batches larger than
+     * BATCH_CHUNK are split across batchPool. A failing element records its exception in the
+     * BatchResult and does not stop the others.
+     */
+
+    public BatchResult encryptPhonesKeepPrefix(List<String> phones, int keepPrefix, int keepSuffix) {
+        Objects.requireNonNull(phones, "phones null");
+        if (keepPrefix < 0 || keepSuffix < 0) throw new IllegalArgumentException("keep counts must be >= 0");
+        return runBatch(phones.toArray(new String[0]), FormatPreservingService::digitCount,
+                v -> encryptPhoneKeepPrefix(v, keepPrefix, keepSuffix));
+    }
+
+    public BatchResult decryptPhonesKeepPrefix(List<String> ciphers, int keepPrefix, int keepSuffix) {
+        Objects.requireNonNull(ciphers, "ciphers null");
+        if (keepPrefix < 0 || keepSuffix < 0) throw new IllegalArgumentException("keep counts must be >= 0");
+        return runBatch(ciphers.toArray(new String[0]), FormatPreservingService::digitCount,
+                v -> decryptPhoneKeepPrefix(v, keepPrefix, keepSuffix));
+    }
+
+    /** Batch form of {@link #encryptEmailWithMarker(String)}. */
+    public BatchResult encryptEmails(String[] emails) {
+        Objects.requireNonNull(emails, "emails null");
+        return runBatch(emails.clone(), FormatPreservingService::localPartLength, this::encryptEmailWithMarker);
+    }
+
+    /** Batch form of {@link #decryptEmailWithMarker(String)}. */
+    public BatchResult decryptEmails(String[] ciphers) {
+        Objects.requireNonNull(ciphers, "ciphers null");
+        return runBatch(ciphers.clone(), FormatPreservingService::localPartLength, this::decryptEmailWithMarker);
+    }
+
+    @FunctionalInterface
+    private interface ValueOp {
+        String apply(String value) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface LengthKey {
+        int of(String value);
+    }
+
+    private BatchResult runBatch(String[] inputs, LengthKey key, ValueOp op) {
+        int n = inputs.length;
+        String[] values = new String[n];
+        Exception[] errors = new Exception[n];
+        int[] order = lengthOrder(inputs, key);
+        if (batchPool == null || n <= BATCH_CHUNK) {
+            runRange(inputs, order, 0, n, op, values, errors);
+        } else {
+            batchPool.invoke(new BatchTask(inputs, order, 0, n, op, values, errors));
+        }
+        return new BatchResult(values, errors);
+    }
+
+    /** Indices of inputs, stably sorted by key (nulls first). */
+    private static int[] lengthOrder(String[] inputs, LengthKey key) {
+        int n = inputs.length;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            int k = inputs[i] == null ? -1 : key.of(inputs[i]);
+            packed[i] = ((long) (k + 1) << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) packed[i];
+        return order;
+    }
+
+    private static void runRange(String[] inputs, int[] order, int from, int to, ValueOp op,
+                                 String[] values, Exception[] errors) {
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            try {
+                values[i] = op.apply(inputs[i]);
+            } catch (Exception ex) {
+                errors[i] = ex;
+            }
+        }
+    }
+
+    private static final class BatchTask extends RecursiveAction {
+        private final String[] inputs;
+        private final int[] order;
+        private final int from, to;
+        private final ValueOp op;
+        private final String[] values;
+        private final Exception[] errors;
+
+        BatchTask(String[] inputs, int[] order, int from, int to, ValueOp op, String[] values, Exception[] errors) {
+            this.inputs = inputs;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.op = op;
+            this.values = values;
+            this.errors = errors;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_CHUNK) {
+                runRange(inputs, order, from, to, op, values, errors);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(inputs, order, from, mid, op, values, errors),
+                    new BatchTask(inputs, order, mid, to, op, values, errors));
+        }
+    }
+
+    private static int digitCount(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) if (Character.isDigit(s.charAt(i))) n++;
+        return n;
+    }
+
+    private static int localPartLength(String s) {
+        int at = s.indexOf('@');
+        return at < 0 ? s.length() : at;
+    }
+
     // ---------- Any-UTF8：任意 Unicode 文本（含中文）→ 可打印密文 ----------
     /**
      * 将任意 Unicode 文本转 UTF-8，再用 Base64URL(无填充) 编码后，整体做 FPE 加密。
@@ -276,7 +546,40 @@ public final class FormatPreservingService {
      */
     public String encryptAnyUnicodeOpaque(String input) throws Exception {
         if (input == null) return null;
-        if (input.isEmpty()) return input;
+        return anyUnicodeOpaque(true, input, true).valueOrThrow();
+    }
+
+    /**
+     * 与 encryptAnyUnicodeOpaque 对称：先 FPE 解密，再 Base64URL 解码为 UTF-8 原文。
+     */
+    public String decryptAnyUnicodeOpaque(String cipher) throws Exception {
+        if (cipher == null) return null;
+        return anyUnicodeOpaque(false, cipher, true).valueOrThrow();
+    }
+
+    /**
+     * Non-throwing form of {@link #encryptAnyUnicodeOpaque(String)}: INVALID_CHAR if the alphabet
+     * lacks a Base64URL character, TOO_SHORT / TOO_LONG for the encoded length.
+     */
+    public FpeResult tryEncryptAnyUnicodeOpaque(String input) {
+        if (input == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return anyUnicodeOpaque(true, input, false);
+    }
+
+    /** Non-throwing form of {@link #decryptAnyUnicodeOpaque(String)}; MALFORMED if the plaintext is not Base64URL. */
+    public FpeResult tryDecryptAnyUnicodeOpaque(String cipher) {
+        if (cipher == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return anyUnicodeOpaque(false, cipher, false);
+    }
+
+    private FpeResult anyUnicodeOpaque(boolean forEncrypt, String input, boolean lenient) {
+        FpeOperation op = forEncrypt ? FpeOperation.UNICODE_ENCRYPT : FpeOperation.UNICODE_DECRYPT;
+        return timed(op, length(input), alphabetRadix, () -> counted(forEncrypt
+                ? runEncryptAnyUnicodeOpaque(input, lenient) : runDecryptAnyUnicodeOpaque(input, lenient)));
+    }
+
+    private FpeResult runEncryptAnyUnicodeOpaque(String input, boolean lenient) {
+        if (input.isEmpty()) return FpeResult.ok(input);
 
         // 1) UTF-8 → Base64URL(无填充)
         String b64url = Base64.getUrlEncoder()
@@ -289,28 +592,28 @@ public final class FormatPreservingService {
         }
 
         // 2) 整段 FPE（radix 需覆盖 A-Z a-z 0-9 - _；你现有 alphabet 里包含 -/_ 就可以）
-        String enc = alphabetEngine.encryptChars(b64url);
-
-        return enc;
+        return alphabetEngine.chars(true, b64url, !lenient);
     }
 
-
-    /**
-     * 与 encryptAnyUnicodeOpaque 对称：先 FPE 解密，再 Base64URL 解码为 UTF-8 原文。
-     */
-    public String decryptAnyUnicodeOpaque(String cipher) throws Exception {
-        if (cipher == null) return null;
-        if (cipher.isEmpty()) return cipher;
+    private FpeResult runDecryptAnyUnicodeOpaque(String cipher, boolean lenient) {
+        if (cipher.isEmpty()) return FpeResult.ok(cipher);
         if (alphabetEngine == null) {
             throw new IllegalStateException("alphabetEngine is required for Base64URL FPE.");
         }
 
         // 1) 先整段 FPE 解密
-        String b64url = alphabetEngine.decryptChars(cipher);
+        FpeResult b64url = alphabetEngine.chars(false, cipher, !lenient);
+        if (!b64url.isOk()) return b64url;
 
         // 2) Base64URL(无填充) → UTF-8
-        byte[] bytes = Base64.getUrlDecoder().decode(b64url);
-        return new String(bytes, StandardCharsets.UTF_8);
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(b64url.value());
+        } catch (IllegalArgumentException e) {
+            if (lenient) throw e;
+            return FpeResult.failure(FpeStatus.MALFORMED);
+        }
+        return FpeResult.ok(new String(bytes, StandardCharsets.UTF_8));
     }
 
     // ---------- Opaque: 对“所有类型数据”的通用加/解密（按 alphabet 覆盖的字符整体处理） ----------
@@ -320,35 +623,7 @@ public final class FormatPreservingService {
      */
     public String encryptOpaqueAll(String input) throws Exception {
         if (input == null) return null;
-        if (input.isEmpty()) return input;
-        if (alphabetEngine == null) {
-            // 若确实只注入了 digitsEngine，可退化为仅加密数字、其余保持；否则建议总是注入 alphabetEngine
-            return encryptOpaqueAllWithDigitsFallback(input);
-        }
-
-        // 1) 抽取“可加密核心串”
-        StringBuilder core = new StringBuilder();
-        for (int i = 0; i < input.length(); i++) {
-            char c = input.charAt(i);
-            if (alphabetEngine.containsChar(c)) core.append(c);
-        }
-        if (core.length() == 0) return input; // 无可加密字符，原样返回
-
-        // 2) 对核心串整体加密（允许输出含字母与数字）
-        String encCore = alphabetEngine.encryptChars(core.toString());
-
-        // 3) 回填到原位置（只替换 alphabet 内字符）
-        StringBuilder out = new StringBuilder(input.length());
-        int di = 0;
-        for (int i = 0; i < input.length(); i++) {
-            char c = input.charAt(i);
-            if (alphabetEngine.containsChar(c)) {
-                out.append(encCore.charAt(di++));
-            } else {
-                out.append(c);
-            }
-        }
-        return out.toString();
+        return opaqueAll(true, input, true).valueOrThrow();
     }
 
     /**
@@ -356,36 +631,68 @@ public final class FormatPreservingService {
      */
     public String decryptOpaqueAll(String cipher) throws Exception {
         if (cipher == null) return null;
-        if (cipher.isEmpty()) return cipher;
+        return opaqueAll(false, cipher, true).valueOrThrow();
+    }
+
+    /**
+     * Non-throwing form of {@link #encryptOpaqueAll(String)}: a core too short (or long) for the
+     * engine is reported as TOO_SHORT / TOO_LONG.
+     */
+    public FpeResult tryEncryptOpaqueAll(String input) {
+        if (input == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return opaqueAll(true, input, false);
+    }
+
+    public FpeResult tryDecryptOpaqueAll(String cipher) {
+        if (cipher == null) return FpeResult.failure(FpeStatus.NULL_INPUT);
+        return opaqueAll(false, cipher, false);
+    }
+
+    private FpeResult opaqueAll(boolean forEncrypt, String input, boolean lenient) {
+        FpeOperation op = forEncrypt ? FpeOperation.OPAQUE_ENCRYPT : FpeOperation.OPAQUE_DECRYPT;
+        return timed(op, length(input), alphabetRadix, () -> counted(runOpaqueAll(forEncrypt, input, lenient)));
+    }
+
+    private FpeResult runOpaqueAll(boolean forEncrypt, String input, boolean lenient) {
+        if (input.isEmpty()) return FpeResult.ok(input);
         if (alphabetEngine == null) {
-            return decryptOpaqueAllWithDigitsFallback(cipher);
+            // 若确实只注入了 digitsEngine，可退化为仅处理数字、其余保持；否则建议总是注入 alphabetEngine
+            return opaqueAllWithDigitsFallback(forEncrypt, input, lenient);
         }
 
+        // 1) 抽取“可加密核心串”
         StringBuilder core = new StringBuilder();
-        for (int i = 0; i < cipher.length(); i++) {
-            char c = cipher.charAt(i);
-            if (alphabetEngine.containsChar(c)) core.append(c);
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (alphabet.contains(c)) core.append(c);
+        }
+        if (core.length() == 0) { // 无可加密字符，原样返回
+            metrics.increment(FpeEvent.PASSTHROUGH);
+            return FpeResult.ok(input);
         }
-        if (core.length() == 0) return cipher;
 
-        String decCore = alphabetEngine.decryptChars(core.toString());
+        // 2) 对核心串整体加/解密（允许输出含字母与数字）
+        FpeResult newCore = alphabetEngine.chars(forEncrypt, core.toString(), !lenient);
+        if (!newCore.isOk()) return newCore;
+        String coreOut = newCore.value();
 
-        StringBuilder out = new StringBuilder(cipher.length());
+        // 3) 回填到原位置（只替换 alphabet 内字符）
+        StringBuilder out = new StringBuilder(input.length());
         int di = 0;
-        for (int i = 0; i < cipher.length(); i++) {
-            char c = cipher.charAt(i);
-            if (alphabetEngine.containsChar(c)) {
-                out.append(decCore.charAt(di++));
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (alphabet.contains(c)) {
+                out.append(coreOut.charAt(di++));
             } else {
                 out.append(c);
             }
         }
-        return out.toString();
+        return FpeResult.ok(out.toString());
     }
 
     /* ---------- 可选：当只配置了 digitsEngine、没有 alphabetEngine 时的退化策略 ---------- */
-    /* 仅加密数字字符，非数字字符保持不变；若希望更强一致性，请务必注入 alphabetEngine。 */
-    private String encryptOpaqueAllWithDigitsFallback(String input) throws Exception {
+    /* 仅加/解密数字字符，非数字字符保持不变；若希望更强一致性，请务必注入 alphabetEngine。 */
+    private FpeResult opaqueAllWithDigitsFallback(boolean forEncrypt, String input, boolean lenient) {
         List<Integer> digitPos = new ArrayList<>();
         StringBuilder digits = new StringBuilder();
         for (int i = 0; i < input.length(); i++) {
@@ -395,34 +702,22 @@ public final class FormatPreservingService {
                 digits.append(c);
             }
         }
-        if (digits.length() == 0) return input;
-        String enc = digitsEngine.encryptFormatted(digits.toString(), false);
-
-        char[] out = input.toCharArray();
-        for (int i = 0; i < digitPos.size(); i++) {
-            out[digitPos.get(i)] = enc.charAt(i);
-        }
-        return new String(out);
-    }
-
-    private String decryptOpaqueAllWithDigitsFallback(String cipher) throws Exception {
-        List<Integer> digitPos = new ArrayList<>();
-        StringBuilder digits = new StringBuilder();
-        for (int i = 0; i < cipher.length(); i++) {
-            char c = cipher.charAt(i);
-            if (Character.isDigit(c)) {
-                digitPos.add(i);
-                digits.append(c);
-            }
+        if (digits.length() == 0) return FpeResult.ok(input);
+        FpeResult r;
+        if (lenient) {
+            r = FpeResult.ok(forEncrypt ? digitsEngine.encryptFormatted(digits.toString(), false)
+                    : digitsEngine.decryptFormatted(digits.toString(), false));
+        } else {
+            r = forEncrypt ? digitsEngine.tryEncryptFormatted(digits.toString(), false)
+                    : digitsEngine.tryDecryptFormatted(digits.toString(), false);
+            if (!r.isOk()) return r;
         }
-        if (digits.length() == 0) return cipher;
-        String dec = digitsEngine.decryptFormatted(digits.toString(), false);
 
-        char[] out = cipher.toCharArray();
+        char[] out = input.toCharArray();
         for (int i = 0; i < digitPos.size(); i++) {
-            out[digitPos.get(i)] = dec.charAt(i);
+            out[digitPos.get(i)] = r.value().charAt(i);
         }
-        return new String(out);
+        return FpeResult.ok(new String(out));
     }
 
 
@@ -439,18 +734,8 @@ public final class FormatPreservingService {
                 int j = i;
                 while (j < n && Character.isDigit(local.charAt(j))) j++;
                 String seg = local.substring(i, j);
-                try {
-                    String encSeg = digitsEngine.encryptFormatted(seg, false);
-                    sb.append(encSeg);
-                } catch (IllegalArgumentException ex) {
-                    // too short or invalid => leave as-is
-                    sb.append(seg);
-                } catch (RuntimeException ex) {
-                    sb.append(seg);
-                } catch (Exception ex) {
-                    // convert checked exceptions into runtime here
-                    sb.append(seg);
-                }
+                // too short => leave as-is (encrypted instead with EngineOptions.withSmallDomainTables)
+                sb.append(segment(digitsEngine.tryEncryptFormatted(seg, false), seg));
                 i = j;
             } else {
                 sb.append(c);
@@ -460,6 +745,12 @@ public final class FormatPreservingService {
         return sb.toString();
     }
 
+    private String segment(FpeResult r, String seg) {
+        if (r.isOk()) return r.value();
+        metrics.increment(FpeEvent.SEGMENT_PASSTHROUGH);
+        return seg;
+    }
+
     private String decryptLocalPartNumericSegmentsWithFallback(String local) {
         StringBuilder sb = new StringBuilder();
         int i = 0, n = local.length();
@@ -469,16 +760,7 @@ public final class FormatPreservingService {
                 int j = i;
                 while (j < n && Character.isDigit(local.charAt(j))) j++;
                 String seg = local.substring(i, j);
-                try {
-                    String decSeg = digitsEngine.decryptFormatted(seg, false);
-                    sb.append(decSeg);
-                } catch (IllegalArgumentException ex) {
-                    sb.append(seg);
-                } catch (RuntimeException ex) {
-                    sb.append(seg);
-                } catch (Exception ex) {
-                    sb.append(seg);
-                }
+                sb.append(segment(digitsEngine.tryDecryptFormatted(seg, false), seg));
                 i = j;
             } else {
                 sb.append(c);
@@ -0,0 +1,48 @@
+package com.lennon.security.core;
+
+import javax.security.auth.Destroyable;
+
+/**
+ * Numeral-level FPE primitive behind the engine wrappers: symbols are byte values in [0, radix).
+ * Implementations are thread-safe.
+ */
+interface FpeCipher extends Destroyable {
+
+    int radix();
+
+    /** Shortest input the mode accepts for this radix. */
+    int minLength();
+
+    /** Longest input the mode accepts (Integer.MAX_VALUE if unbounded). */
+    int maxLength();
+
+    /** Whether len symbols are within the mode's domain bounds, without running the cipher. */
+    default FpeStatus checkLength(int len) {
+        if (len < minLength()) return FpeStatus.TOO_SHORT;
+        if (len > maxLength()) return FpeStatus.TOO_LONG;
+        return FpeStatus.OK;
+    }
+
+    /** Smallest n >= 2 with radix^n >= 1,000,000, evaluated the way SP 800-38G implementations check it. */
+    static int minLength(int radix) {
+        int n = 2;
+        while (Math.pow(radix, n) < 1_000_000d) n++;
+        return n;
+    }
+
+    /**
+     * Encrypt (forEncrypt=true) or decrypt in[inOff..inOff+len) into out[outOff..outOff+len).
+     * Returns the number of symbols written (always len).
+     */
+    int process(boolean forEncrypt, byte[] in, int inOff, int len, byte[] out, int outOff);
+
+    /**
+     * Zero this cipher's key copies and drop every thread's initialized state. Later calls throw
+     * IllegalStateException; so does a call that was running when destroy started.
+     */
+    @Override
+    void destroy();
+
+    @Override
+    boolean isDestroyed();
+}
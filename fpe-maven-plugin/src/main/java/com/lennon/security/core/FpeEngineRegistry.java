@@ -0,0 +1,203 @@
+package com.lennon.security.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared engines per (tenant, keyVersion, alphabet, mode), built on first use.
+ *
+ *  - Lookup: a lock-free get on a ConcurrentHashMap; only a miss goes through computeIfAbsent,
+ *    so concurrent first requests for the same tenant build its engines exactly once.
+ *  - Bounded: at most maxEntries; beyond that the least recently used entry is dropped.
+ *    Entries idle for idleMillis (0 = never) are dropped on the next miss or {@link #evictIdle()}.
+ *  - Engines and services are thread-safe. Size and idle eviction only drop the entry: calls
+ *    already running on its engines finish normally, and the engines are left to the garbage
+ *    collector. {@link #invalidateTenant} and {@link #invalidateAll} also destroy them (key copies
+ *    and per-thread AES state wiped); use those once a key must stop working, not while the
+ *    tenant still has calls in flight.
+ *
+ * Usage:
+ *   FpeEngineRegistry registry = new FpeEngineRegistry(keyDerivation.keySource("fpe"), EngineOptions.defaults(), 1000, 600_000);
+ *   FormatPreservingService fps = registry.service("acme", 3, alphabet, FpeMode.FF1);
+ */
+public final class FpeEngineRegistry {
+    /** Key material per tenant and key version. The registry zeroes the returned key once the engines are built. */
+    public interface KeySource {
+        byte[] key(String tenant, int keyVersion);
+
+        byte[] tweak(String tenant, int keyVersion);
+    }
+
+    private final KeySource keys;
+    private final EngineOptions options;
+    private final int maxEntries;
+    private final long idleNanos;
+    private final ConcurrentHashMap<Key, Engines> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** @param options backend / AES provider for every engine; the mode comes from each lookup */
+    public FpeEngineRegistry(KeySource keys, EngineOptions options, int maxEntries, long idleMillis) {
+        this.keys = Objects.requireNonNull(keys, "keys null");
+        this.options = Objects.requireNonNull(options, "options null");
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be >= 1");
+        if (idleMillis < 0) throw new IllegalArgumentException("idleMillis must be >= 0");
+        this.maxEntries = maxEntries;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    }
+
+    public Engines engines(String tenant, int keyVersion, String alphabet, FpeMode mode) {
+        Key key = new Key(tenant, keyVersion, alphabet, mode);
+        Engines e = entries.get(key);
+        long now = System.nanoTime();
+        if (e != null) {
+            hits.increment();
+        } else {
+            boolean[] built = new boolean[1];
+            e = entries.computeIfAbsent(key, k -> {
+                built[0] = true;
+                return build(k);
+            });
+            if (built[0]) {
+                misses.increment();
+                evict(now, key);
+            } else {
+                hits.increment();
+            }
+        }
+        if (now - e.lastUsed > BoundedMaps.TOUCH_GRANULARITY_NANOS) e.lastUsed = now;
+        return e;
+    }
+
+    public FormatPreservingService service(String tenant, int keyVersion, String alphabet, FpeMode mode) {
+        return engines(tenant, keyVersion, alphabet, mode).service();
+    }
+
+    /** Drop and destroy every entry of a tenant, e.g. after its key was rotated out. */
+    public void invalidateTenant(String tenant) {
+        Objects.requireNonNull(tenant, "tenant null");
+        for (Map.Entry<Key, Engines> me : entries.entrySet()) {
+            if (me.getKey().tenant.equals(tenant)) remove(me.getKey(), me.getValue());
+        }
+    }
+
+    public void invalidateAll() {
+        for (Map.Entry<Key, Engines> me : entries.entrySet()) remove(me.getKey(), me.getValue());
+    }
+
+    /** Drop entries idle for longer than idleMillis; a no-op when idle expiry is off. */
+    public void evictIdle() {
+        if (idleNanos > 0) evictIdle(System.nanoTime(), null);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** Entries dropped for size or idleness (explicit invalidation is not counted). */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Engines build(Key k) {
+        byte[] key = keys.key(k.tenant, k.keyVersion);
+        byte[] tweak = keys.tweak(k.tenant, k.keyVersion);
+        try {
+            EngineOptions opts = options.withMode(k.mode);
+            FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(key, tweak, opts);
+            FF1BcEngineWithAlphabet alpha = new FF1BcEngineWithAlphabet(key, k.alphabet, tweak, opts);
+            return new Engines(digits, alpha, new FormatPreservingService(digits, alpha), System.nanoTime());
+        } finally {
+            if (key != null) Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private void evict(long now, Key keep) {
+        if (idleNanos > 0) evictIdle(now, keep);
+        BoundedMaps.evictLeastRecentlyUsed(entries, maxEntries, keep, e -> e.lastUsed,
+                (k, e) -> evictions.increment());
+    }
+
+    private void evictIdle(long now, Key keep) {
+        for (Map.Entry<Key, Engines> me : entries.entrySet()) {
+            if (me.getKey().equals(keep)) continue;
+            Engines e = me.getValue();
+            if (now - e.lastUsed >= idleNanos && entries.remove(me.getKey(), e)) evictions.increment();
+        }
+    }
+
+    private void remove(Key key, Engines e) {
+        if (entries.remove(key, e)) e.service.destroy();
+    }
+
+    /** Digits engine, alphabet engine and the service over both, for one registry key. */
+    public static final class Engines {
+        private final FF1BcEngineWithFormat digits;
+        private final FF1BcEngineWithAlphabet alphabet;
+        private final FormatPreservingService service;
+        volatile long lastUsed;
+
+        Engines(FF1BcEngineWithFormat digits, FF1BcEngineWithAlphabet alphabet, FormatPreservingService service,
+                long created) {
+            this.digits = digits;
+            this.alphabet = alphabet;
+            this.service = service;
+            this.lastUsed = created;
+        }
+
+        public FF1BcEngineWithFormat digits() {
+            return digits;
+        }
+
+        public FF1BcEngineWithAlphabet alphabet() {
+            return alphabet;
+        }
+
+        public FormatPreservingService service() {
+            return service;
+        }
+    }
+
+    private static final class Key {
+        final String tenant;
+        final int keyVersion;
+        final String alphabet;
+        final FpeMode mode;
+        final int hash;
+
+        Key(String tenant, int keyVersion, String alphabet, FpeMode mode) {
+            this.tenant = Objects.requireNonNull(tenant, "tenant null");
+            this.keyVersion = keyVersion;
+            this.alphabet = Objects.requireNonNull(alphabet, "alphabet null");
+            this.mode = Objects.requireNonNull(mode, "mode null");
+            this.hash = ((tenant.hashCode() * 31 + keyVersion) * 31 + alphabet.hashCode()) * 31 + mode.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && keyVersion == k.keyVersion && mode == k.mode
+                    && tenant.equals(k.tenant) && alphabet.equals(k.alphabet);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
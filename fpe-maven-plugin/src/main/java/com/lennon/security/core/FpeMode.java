@@ -0,0 +1,17 @@
+package com.lennon.security.core;
+
+/**
+ * FPE algorithm behind the engine wrappers, selected through {@link EngineOptions#withMode(FpeMode)}.
+ * The modes give different ciphertext: data encrypted under one mode must be decrypted under the same mode.
+ */
+public enum FpeMode {
+    /** NIST SP 800-38G FF1 (10 rounds, CBC-MAC PRF, tweak of any length). Default. */
+    FF1,
+    /**
+     * NIST SP 800-38G Rev. 1 FF3-1 (8 rounds, one AES call per round, 56-bit tweak), via
+     * BouncyCastle's FPEFF3_1Engine. A 7-byte tweak is used as is; any other tweak is mapped to
+     * the first 7 bytes of its SHA-256, so existing tweak strings keep working deterministically.
+     * Inputs are limited to 2 * floor(96 / log2(radix)) symbols (56 digits, 30 chars of radix 65).
+     */
+    FF3_1
+}
@@ -0,0 +1,60 @@
+package com.lennon.security.core;
+
+/**
+ * Value or status returned by the try* methods. Failed results are shared constants, so the
+ * expected failure paths (short segments, foreign chars, non-emails) allocate nothing.
+ */
+public final class FpeResult {
+    private static final FpeResult[] FAILURES;
+
+    static {
+        FpeStatus[] all = FpeStatus.values();
+        FAILURES = new FpeResult[all.length];
+        for (FpeStatus s : all) FAILURES[s.ordinal()] = new FpeResult(s, null);
+    }
+
+    private final FpeStatus status;
+    private final String value;
+
+    private FpeResult(FpeStatus status, String value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    static FpeResult ok(String value) {
+        return new FpeResult(FpeStatus.OK, value);
+    }
+
+    static FpeResult failure(FpeStatus status) {
+        if (status == FpeStatus.OK) throw new IllegalArgumentException("OK is not a failure");
+        return FAILURES[status.ordinal()];
+    }
+
+    public FpeStatus status() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return status == FpeStatus.OK;
+    }
+
+    /** Result value, or null if the call failed. */
+    public String value() {
+        return value;
+    }
+
+    public String orElse(String other) {
+        return status == FpeStatus.OK ? value : other;
+    }
+
+    /** Result value; a failure becomes the IllegalArgumentException the throwing method would raise. */
+    public String valueOrThrow() {
+        if (status != FpeStatus.OK) throw new IllegalArgumentException(status.description());
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return status == FpeStatus.OK ? "OK" : status.name();
+    }
+}
@@ -0,0 +1,195 @@
+package com.lennon.security.core;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded memo of FPE results, used by {@link CachingFormatPreservingService}.
+ *
+ * Reads take no lock: each segment is a ConcurrentHashMap, and a hit only sets the entry's
+ * "referenced" bit, and only if it is clear, so a hot key read from many threads is not written
+ * on every hit. Writes lock their segment (chosen by key hash) and evict with CLOCK (second chance):
+ * entries queue in insertion order, and a referenced entry at the head has its bit cleared and
+ * goes to the back instead of being evicted. That approximates LRU without reordering on reads.
+ * Capacity is divided evenly across segments; entries optionally expire after a fixed time-to-live.
+ *
+ * Entries hold plaintext, so size the cache (and TTL) with that in mind.
+ */
+public final class FpeResultCache {
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int mask;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** @param maximumSize max entries overall; ttlMillis 0 = entries never expire */
+    public FpeResultCache(int maximumSize, long ttlMillis) {
+        this(maximumSize, ttlMillis, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param segments write-lock stripes, rounded down to a power of two and to at most maximumSize
+     */
+    public FpeResultCache(int maximumSize, long ttlMillis, int segments) {
+        if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be >= 1");
+        if (ttlMillis < 0) throw new IllegalArgumentException("ttlMillis must be >= 0");
+        if (segments < 1) throw new IllegalArgumentException("segments must be >= 1");
+        int n = Integer.highestOneBit(Math.min(segments, maximumSize));
+        this.segments = new Segment[n];
+        int perSegment = (maximumSize + n - 1) / n;
+        for (int i = 0; i < n; i++) this.segments[i] = new Segment(perSegment);
+        this.mask = n - 1;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /** Cached result for key, or null (counts a hit or a miss). */
+    String get(Key key) {
+        Segment seg = segmentFor(key);
+        Cached e = seg.map.get(key);
+        if (e != null && ttlNanos > 0 && System.nanoTime() - e.createdNanos >= ttlNanos) {
+            if (seg.map.remove(key, e)) evictions.increment();
+            e = null;
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        if (!e.referenced) e.referenced = true;
+        hits.increment();
+        return e.value;
+    }
+
+    void put(Key key, String value) {
+        Segment seg = segmentFor(key);
+        Cached e = new Cached(key, value, ttlNanos > 0 ? System.nanoTime() : 0L);
+        synchronized (seg) {
+            seg.map.put(key, e);
+            seg.clock.addLast(e);
+            seg.evict();
+        }
+    }
+
+    /** Drop every entry cached for the given scope (one key/tweak binding of a service). */
+    void invalidateScope(long scope) {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.map.keySet().removeIf(k -> k.scope == scope);
+                seg.clock.removeIf(c -> c.key.scope == scope);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.map.clear();
+                seg.clock.clear();
+            }
+        }
+    }
+
+    public long size() {
+        long n = 0;
+        for (Segment seg : segments) n += seg.map.size();
+        return n;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** Entries dropped for capacity or because their TTL ran out (explicit invalidation is not counted). */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & mask];
+    }
+
+    /** One operation on one value under one scope, with its integer parameters (e.g. keepPrefix/keepSuffix). */
+    static final class Key {
+        final long scope;
+        final int op;
+        final int p1;
+        final int p2;
+        final String value;
+        private final int hash;
+
+        Key(long scope, int op, int p1, int p2, String value) {
+            this.scope = scope;
+            this.op = op;
+            this.p1 = p1;
+            this.p2 = p2;
+            this.value = value;
+            int h = Long.hashCode(scope);
+            h = 31 * h + op;
+            h = 31 * h + p1;
+            h = 31 * h + p2;
+            this.hash = 31 * h + value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return scope == k.scope && op == k.op && p1 == k.p1 && p2 == k.p2 && value.equals(k.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Cached {
+        final Key key;
+        final String value;
+        final long createdNanos;
+        /** Set by reads, cleared when the clock hand passes; racy by design. */
+        volatile boolean referenced;
+
+        Cached(Key key, String value, long createdNanos) {
+            this.key = key;
+            this.value = value;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private final class Segment {
+        final ConcurrentHashMap<Key, Cached> map = new ConcurrentHashMap<>();
+        /** Insertion order of entries; guarded by the segment lock. May hold replaced or expired entries. */
+        final ArrayDeque<Cached> clock = new ArrayDeque<>();
+        final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /** CLOCK sweep down to capacity; also drops stale queue nodes once they outnumber live entries. */
+        void evict() {
+            while (map.size() > capacity) {
+                Cached c = clock.pollFirst();
+                if (c == null) return;
+                if (map.get(c.key) != c) continue;
+                if (c.referenced) {
+                    c.referenced = false;
+                    clock.addLast(c);
+                } else if (map.remove(c.key, c)) {
+                    evictions.increment();
+                }
+            }
+            if (clock.size() > 2 * capacity) clock.removeIf(c -> map.get(c.key) != c);
+        }
+    }
+}
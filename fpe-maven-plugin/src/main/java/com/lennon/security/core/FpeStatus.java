@@ -0,0 +1,28 @@
+package com.lennon.security.core;
+
+/**
+ * Outcome code of the non-throwing try* methods of the engines and {@link FormatPreservingService}.
+ * Everything except OK means the input was left untouched and no exception was created.
+ */
+public enum FpeStatus {
+    OK("ok"),
+    NULL_INPUT("null input"),
+    /** Fewer symbols than the FF1/FF3-1 minimum domain (radix^n >= 1,000,000) needs, without small-domain tables. */
+    TOO_SHORT("input too short"),
+    /** More symbols than the mode allows (FF3-1 only). */
+    TOO_LONG("input too long"),
+    /** A char outside the engine's alphabet where only alphabet chars are allowed. */
+    INVALID_CHAR("char not in alphabet"),
+    /** Input without the expected structure, e.g. an email without '@'. */
+    MALFORMED("malformed input");
+
+    private final String description;
+
+    FpeStatus(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+}
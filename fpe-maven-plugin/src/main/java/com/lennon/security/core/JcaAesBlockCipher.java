@@ -0,0 +1,62 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * BC BlockCipher adapter over a single JCA "AES/ECB/NoPadding" Cipher, so FF1 picks up the
+ * JDK's AES intrinsics. Not thread-safe: engines keep one instance per thread.
+ */
+final class JcaAesBlockCipher implements BlockCipher {
+    private static final int BLOCK = 16;
+
+    private Cipher cipher;
+
+    @Override
+    public void init(boolean forEncryption, CipherParameters params) {
+        if (!(params instanceof KeyParameter)) {
+            throw new IllegalArgumentException("KeyParameter required, got " + params);
+        }
+        byte[] key = ((KeyParameter) params).getKey();
+        try {
+            Cipher c = Cipher.getInstance("AES/ECB/NoPadding");
+            c.init(forEncryption ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"));
+            this.cipher = c;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("cannot init JCA AES: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "AES";
+    }
+
+    @Override
+    public int getBlockSize() {
+        return BLOCK;
+    }
+
+    @Override
+    public int processBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        if (cipher == null) throw new IllegalStateException("AES not initialised");
+        if (inOff + BLOCK > in.length) throw new DataLengthException("input buffer too short");
+        try {
+            return cipher.update(in, inOff, BLOCK, out, outOff);
+        } catch (ShortBufferException e) {
+            throw new DataLengthException("output buffer too short");
+        }
+    }
+
+    @Override
+    public void reset() {
+        // ECB without padding keeps no state between blocks
+    }
+}
@@ -1,38 +1,62 @@
 package com.lennon.security.core;
 
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Objects;
 
 /**
  * Small PRF / helpers utility used by tests and engines.
  *
  * - hmac(data) -> HMAC-SHA256(key, data)
+ * - hmacInto(data, off, len, out) -> same, written into out[0..32) without allocating
  * - hmacMod(data, mod) -> map HMAC output to [0, mod)
  * - concat(...) -> concat byte arrays
  * - utf8(String) -> bytes
  * - int32be(int) -> 4-byte big-endian
  * - hexToBytes(hex) -> convert hex string to bytes (no external deps)
+ *
+ * The key is set up once; each thread then keeps its own initialized Mac (cloned from a
+ * prototype), so calls skip the provider lookup and key schedule. Thread-safe.
  */
 public final class PRF {
+    public static final int MAC_BYTES = 32;
+    private static final String ALGORITHM = "HmacSHA256";
+
     private final byte[] key;
+    private final Mac prototype;
+    private final ThreadLocal<Scratch> scratch;
 
     public PRF(byte[] key) {
         if (key == null || key.length == 0) throw new IllegalArgumentException("key empty");
         this.key = key.clone();
+        this.prototype = newMac(this.key);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(copyOfPrototype()));
     }
 
     /**
      * Compute HMAC-SHA256(key, data)
      */
     public byte[] hmac(byte[] data) {
+        Objects.requireNonNull(data, "data null");
+        byte[] out = new byte[MAC_BYTES];
+        hmacInto(data, 0, data.length, out);
+        return out;
+    }
+
+    /**
+     * Compute HMAC-SHA256(key, data[off..off+len)) into out[0..MAC_BYTES).
+     */
+    public void hmacInto(byte[] data, int off, int len, byte[] out) {
+        if (out == null || out.length < MAC_BYTES) throw new IllegalArgumentException("out must hold " + MAC_BYTES + " bytes");
+        Mac mac = scratch.get().mac;
+        mac.update(data, off, len);
         try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(key, "HmacSHA256"));
-            return mac.doFinal(data);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            mac.doFinal(out, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -41,7 +65,9 @@ public final class PRF {
      * Uses the first 4 bytes of HMAC (unsigned).
      */
     public int hmacMod(byte[] data, int mod) {
-        byte[] out = hmac(data);
+        Objects.requireNonNull(data, "data null");
+        byte[] out = scratch.get().out;
+        hmacInto(data, 0, data.length, out);
         // convert first 4 bytes to int (unsigned)
         int v = ((out[0] & 0xff) << 24) | ((out[1] & 0xff) << 16) | ((out[2] & 0xff) << 8) | (out[3] & 0xff);
         // make non-negative (map Java signed int -> non-negative domain)
@@ -49,6 +75,36 @@ public final class PRF {
         return v % mod;
     }
 
+    private Mac copyOfPrototype() {
+        try {
+            synchronized (prototype) {
+                return (Mac) prototype.clone();
+            }
+        } catch (CloneNotSupportedException e) {
+            return newMac(key);
+        }
+    }
+
+    private static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        }
+    }
+
+    /** Per-thread Mac and output buffer for hmacMod. */
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] out = new byte[MAC_BYTES];
+
+        Scratch(Mac mac) {
+            this.mac = mac;
+        }
+    }
+
     /** Concatenate byte arrays */
     public static byte[] concat(byte[]... parts) {
         int len = 0;
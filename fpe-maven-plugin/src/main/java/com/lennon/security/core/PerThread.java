@@ -0,0 +1,80 @@
+package com.lennon.security.core;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread state of a cipher (initialized AES, key copies, scratch) that can be released.
+ *
+ * Like a ThreadLocal, but every thread's value is also tracked (weakly, so values of dead threads
+ * can still be collected), so {@link #release()} reaches all of them, not only the caller's: it
+ * wipes each value and drops it from its slot. What stays in other threads' ThreadLocalMaps until
+ * they expunge it is an empty slot, not key material.
+ *
+ * After release, {@link #get()} throws IllegalStateException. A call that was already running
+ * checks {@link #checkLive()} before returning, so it fails instead of returning output computed
+ * with a wiped key.
+ */
+final class PerThread<T> {
+    private final Supplier<T> initial;
+    private final Consumer<T> wipe;
+    private final ThreadLocal<Slot<T>> local = ThreadLocal.withInitial(this::newSlot);
+    private final Set<Slot<T>> slots = Collections.newSetFromMap(new WeakHashMap<>());
+    private volatile boolean released;
+
+    /** @param wipe zeroes the key material of one value; may run on any thread */
+    PerThread(Supplier<T> initial, Consumer<T> wipe) {
+        this.initial = initial;
+        this.wipe = wipe;
+    }
+
+    T get() {
+        T v = local.get().value;
+        if (v == null || released) throw destroyed();
+        return v;
+    }
+
+    /** Throws if {@link #release()} has started, e.g. while the caller was using its value. */
+    void checkLive() {
+        if (released) throw destroyed();
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    /** Wipe and drop every thread's value; idempotent. */
+    void release() {
+        released = true;
+        synchronized (slots) {
+            for (Slot<T> s : slots) {
+                T v = s.value;
+                s.value = null;
+                if (v != null) wipe.accept(v);
+            }
+            slots.clear();
+        }
+        local.remove();
+    }
+
+    private Slot<T> newSlot() {
+        Slot<T> s = new Slot<>();
+        synchronized (slots) {
+            if (released) return s; // empty: get() throws
+            s.value = initial.get();
+            slots.add(s);
+        }
+        return s;
+    }
+
+    private static IllegalStateException destroyed() {
+        return new IllegalStateException("cipher destroyed");
+    }
+
+    private static final class Slot<T> {
+        T value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.lennon.security.core;
+
+/**
+ * Outcome of {@link Rekeyer#verify}: how many rotated elements were round-tripped and which
+ * indices did not come back. Carries indices only, never values.
+ */
+public final class RekeyVerification {
+    /** At most this many mismatching indices are kept; mismatches() still counts all of them. */
+    public static final int MAX_REPORTED = 100;
+
+    private final int checked;
+    private final int mismatches;
+    private final int[] mismatchIndices;
+
+    RekeyVerification(int checked, int mismatches, int[] mismatchIndices) {
+        this.checked = checked;
+        this.mismatches = mismatches;
+        this.mismatchIndices = mismatchIndices;
+    }
+
+    public int checked() {
+        return checked;
+    }
+
+    public int mismatches() {
+        return mismatches;
+    }
+
+    public boolean passed() {
+        return mismatches == 0;
+    }
+
+    /** Batch indices of the first MAX_REPORTED mismatches, in sample order. */
+    public int[] mismatchIndices() {
+        return mismatchIndices.clone();
+    }
+
+    @Override
+    public String toString() {
+        return checked + " checked, " + mismatches + " mismatches";
+    }
+}
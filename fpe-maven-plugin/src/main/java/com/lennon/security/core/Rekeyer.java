@@ -0,0 +1,241 @@
+package com.lennon.security.core;
+
+import com.lennon.security.alphabet.Alphabet;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Key rotation for formatted FPE ciphertext in one pass: strip the format once, FF1-decrypt
+ * under the old key and FF1-encrypt under the new key on the same per-thread symbol buffers,
+ * then put the format back once. The result equals
+ *   to.encryptFormatted(from.decryptFormatted(c, keepLast), keepLast)
+ * without the intermediate plaintext String, char[] copies or second format scan.
+ *
+ * Both sides must use the same alphabet (the format is defined by it); keys, tweaks, modes and
+ * backends may differ. Instances are immutable and thread-safe.
+ *
+ * Usage:
+ *   Rekeyer rekeyer = Rekeyer.forDigits(oldCards, newCards);
+ *   BatchResult rotated = rekeyer.rekeyAllParallel(ciphers, true);
+ *   RekeyVerification check = rekeyer.verify(ciphers, rotated, true, 1000, seed);
+ */
+public final class Rekeyer {
+    private final Alphabet alphabet;
+    private final FpeCipher from;
+    private final FpeCipher to;
+    private final ValueOp decryptOld;
+    private final ValueOp encryptNew;
+    private final ValueOp decryptNew;
+    private final ForkJoinPool pool;
+
+    private Rekeyer(Alphabet alphabet, FpeCipher from, FpeCipher to,
+                    ValueOp decryptOld, ValueOp encryptNew, ValueOp decryptNew, ForkJoinPool pool) {
+        this.alphabet = alphabet;
+        this.from = from;
+        this.to = to;
+        this.decryptOld = decryptOld;
+        this.encryptNew = encryptNew;
+        this.decryptNew = decryptNew;
+        this.pool = pool;
+    }
+
+    /** Rotation of {@link FF1BcEngineWithFormat#encryptFormatted} ciphertext (digits, separators kept). */
+    public static Rekeyer forDigits(FF1BcEngineWithFormat from, FF1BcEngineWithFormat to) {
+        Objects.requireNonNull(from, "from null");
+        Objects.requireNonNull(to, "to null");
+        return new Rekeyer(Alphabet.DIGITS, from.cipher(), to.cipher(),
+                (v, keep) -> from.decryptFormatted(v, keep),
+                (v, keep) -> to.encryptFormatted(v, keep),
+                (v, keep) -> to.decryptFormatted(v, keep),
+                ForkJoinPool.commonPool());
+    }
+
+    /** Rotation of {@link FF1BcEngineWithAlphabet#encryptFormatted} ciphertext; both engines need the same charset. */
+    public static Rekeyer forAlphabet(FF1BcEngineWithAlphabet from, FF1BcEngineWithAlphabet to) {
+        Objects.requireNonNull(from, "from null");
+        Objects.requireNonNull(to, "to null");
+        if (!from.alphabet().getCharset().equals(to.alphabet().getCharset())) {
+            throw new IllegalArgumentException("alphabets differ");
+        }
+        return new Rekeyer(from.alphabet(), from.cipher(), to.cipher(),
+                from::decryptFormatted, to::encryptFormatted, to::decryptFormatted,
+                ForkJoinPool.commonPool());
+    }
+
+    /** Same rekeyer running its parallel batches on pool instead of the common pool. */
+    public Rekeyer withPool(ForkJoinPool pool) {
+        return new Rekeyer(alphabet, from, to, decryptOld, encryptNew, decryptNew,
+                Objects.requireNonNull(pool, "pool null"));
+    }
+
+    public String rekey(String cipher, boolean keepLast) {
+        return rekey(cipher, keepLast, null);
+    }
+
+    /** @param mask precompiled layout, or null to scan the format of each value */
+    public String rekey(String cipher, boolean keepLast, FormatMask mask) {
+        Objects.requireNonNull(cipher, "cipher null");
+        char[] buf = cipher.toCharArray();
+        rekey(buf, 0, buf.length, buf, 0, keepLast, mask);
+        return new String(buf);
+    }
+
+    /**
+     * Rekey src[off..off+len) into dst[dstOff..dstOff+len); src and dst may be the same array.
+     * Returns the number of chars written (len).
+     */
+    public int rekey(char[] src, int off, int len, char[] dst, int dstOff, boolean keepLast, FormatMask mask) {
+        CharScratch scratch = CharScratch.get();
+        char[] core = scratch.core(len);
+        int[] pos;
+        int n = mask == null ? -1 : mask.gather(src, off, len, alphabet, core);
+        if (n >= 0) {
+            pos = mask.slots(alphabet);
+        } else {
+            pos = scratch.slots(len);
+            n = 0;
+            for (int i = 0; i < len; i++) {
+                char c = src[off + i];
+                if (alphabet.contains(c)) {
+                    core[n] = c;
+                    pos[n++] = i;
+                }
+            }
+        }
+
+        if (src != dst || off != dstOff) System.arraycopy(src, off, dst, dstOff, len);
+        int m = keepLast ? n - 1 : n;
+        if (m <= 0) return len;
+
+        // symbols -> plaintext symbols (old key) -> new ciphertext symbols, back in the first buffer
+        byte[] a = scratch.symbols(m);
+        byte[] b = scratch.result(m);
+        alphabet.encode(core, 0, m, a, 0);
+        from.process(false, a, 0, m, b, 0);
+        to.process(true, b, 0, m, a, 0);
+        alphabet.decode(a, 0, m, core, 0);
+        for (int k = 0; k < m; k++) dst[dstOff + pos[k]] = core[k];
+        return len;
+    }
+
+    // ---------- batch ----------
+
+    /** Rekey every element on the calling thread; a failing element is recorded and does not stop the rest. */
+    public BatchResult rekeyAll(String[] ciphers, boolean keepLast) {
+        Objects.requireNonNull(ciphers, "ciphers null");
+        String[] values = new String[ciphers.length];
+        Exception[] errors = new Exception[ciphers.length];
+        rekeyRange(ciphers, keepLast, 0, ciphers.length, values, errors);
+        return new BatchResult(values, errors);
+    }
+
+    /** As {@link #rekeyAll}, split into chunks of FormatPreservingService.BATCH_CHUNK across the pool. */
+    public BatchResult rekeyAllParallel(String[] ciphers, boolean keepLast) {
+        Objects.requireNonNull(ciphers, "ciphers null");
+        String[] values = new String[ciphers.length];
+        Exception[] errors = new Exception[ciphers.length];
+        if (ciphers.length <= FormatPreservingService.BATCH_CHUNK) {
+            rekeyRange(ciphers, keepLast, 0, ciphers.length, values, errors);
+        } else {
+            pool.invoke(new RekeyTask(ciphers, keepLast, 0, ciphers.length, values, errors));
+        }
+        return new BatchResult(values, errors);
+    }
+
+    private void rekeyRange(String[] ciphers, boolean keepLast, int fromIdx, int toIdx, String[] values, Exception[] errors) {
+        for (int i = fromIdx; i < toIdx; i++) {
+            try {
+                values[i] = rekey(ciphers[i], keepLast);
+            } catch (Exception ex) {
+                errors[i] = ex;
+            }
+        }
+    }
+
+    private final class RekeyTask extends RecursiveAction {
+        private final String[] ciphers;
+        private final boolean keepLast;
+        private final int fromIdx, toIdx;
+        private final String[] values;
+        private final Exception[] errors;
+
+        RekeyTask(String[] ciphers, boolean keepLast, int fromIdx, int toIdx, String[] values, Exception[] errors) {
+            this.ciphers = ciphers;
+            this.keepLast = keepLast;
+            this.fromIdx = fromIdx;
+            this.toIdx = toIdx;
+            this.values = values;
+            this.errors = errors;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIdx - fromIdx <= FormatPreservingService.BATCH_CHUNK) {
+                rekeyRange(ciphers, keepLast, fromIdx, toIdx, values, errors);
+                return;
+            }
+            int mid = (fromIdx + toIdx) >>> 1;
+            invokeAll(new RekeyTask(ciphers, keepLast, fromIdx, mid, values, errors),
+                    new RekeyTask(ciphers, keepLast, mid, toIdx, values, errors));
+        }
+    }
+
+    // ---------- verification ----------
+
+    /**
+     * Check a random sample of a rotation through the engines' ordinary two-call path: for each
+     * sampled element that was rekeyed, the plaintext under the old key must equal the plaintext of
+     * the new ciphertext under the new key, and re-encrypting that plaintext must give the new
+     * ciphertext again. Elements that failed to rekey are not sampled.
+     *
+     * @param samples number of elements to check (all of them if >= the batch size)
+     * @param seed    sample selection, so a failing check can be reproduced
+     */
+    public RekeyVerification verify(String[] ciphers, BatchResult rekeyed, boolean keepLast, int samples, long seed) {
+        Objects.requireNonNull(ciphers, "ciphers null");
+        Objects.requireNonNull(rekeyed, "rekeyed null");
+        if (rekeyed.size() != ciphers.length) throw new IllegalArgumentException("rekeyed does not match ciphers");
+        if (samples < 0) throw new IllegalArgumentException("samples must be >= 0");
+
+        int n = ciphers.length;
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        Random rnd = new Random(seed);
+        int k = Math.min(samples, n);
+        int checked = 0;
+        int mismatches = 0;
+        int[] reported = new int[Math.min(k, RekeyVerification.MAX_REPORTED)];
+        for (int j = 0; j < k; j++) {
+            int r = j + rnd.nextInt(n - j);
+            int i = idx[r];
+            idx[r] = idx[j];
+            idx[j] = i;
+            if (!rekeyed.isSuccess(i) || ciphers[i] == null) continue;
+            checked++;
+            if (!roundTrips(ciphers[i], rekeyed.value(i), keepLast)) {
+                if (mismatches < reported.length) reported[mismatches] = i;
+                mismatches++;
+            }
+        }
+        return new RekeyVerification(checked, mismatches,
+                Arrays.copyOf(reported, Math.min(mismatches, reported.length)));
+    }
+
+    private boolean roundTrips(String cipher, String rotated, boolean keepLast) {
+        try {
+            String plain = decryptOld.apply(cipher, keepLast);
+            return plain.equals(decryptNew.apply(rotated, keepLast)) && rotated.equals(encryptNew.apply(plain, keepLast));
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueOp {
+        String apply(String value, boolean keepLast) throws Exception;
+    }
+}
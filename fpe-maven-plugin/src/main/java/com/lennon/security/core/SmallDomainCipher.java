@@ -0,0 +1,232 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Wraps an FF1/FF3-1 cipher and handles the lengths it rejects (radix^len < 1,000,000) with a
+ * keyed permutation table, so short values are encrypted instead of failing.
+ *
+ * For each such length the domain [0, radix^len) (at most 2^20 values) is shuffled once with
+ * Fisher-Yates, driven by AES-CTR under the engine key from a seed that MACs radix, length and
+ * tweak. The table and its inverse are built on first use of a length and kept for the lifetime
+ * of the instance (char[] up to 2^16 entries, int[] above). A call is then NUM, one array lookup
+ * and STR. Lengths the wrapped cipher accepts go to it unchanged.
+ *
+ * A table permutation over a domain this small is only as strong as the domain: it hides which
+ * value is which, not how many distinct values there are.
+ */
+final class SmallDomainCipher implements FpeCipher {
+    private static final int BLOCK = 16;
+    /** Largest domain a table is built for. */
+    static final int MAX_TABLE = 1 << 20;
+
+    private final FpeCipher inner;
+    private final int radix;
+    private final byte[] key;
+    private final byte[] tweak;
+    private final BlockCipherProvider aes;
+    /** index = length; lengths below inner.minLength() */
+    private final AtomicReferenceArray<Table> tables;
+    private volatile boolean destroyed;
+
+    SmallDomainCipher(FpeCipher inner, byte[] key, byte[] tweak, BlockCipherProvider aes) {
+        this.inner = inner;
+        this.radix = inner.radix();
+        this.key = key.clone();
+        this.tweak = tweak == null ? new byte[0] : tweak.clone();
+        this.aes = aes;
+        this.tables = new AtomicReferenceArray<>(inner.minLength());
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+
+    @Override
+    public int minLength() {
+        return 1;
+    }
+
+    @Override
+    public int maxLength() {
+        return inner.maxLength();
+    }
+
+    @Override
+    public int process(boolean forEncrypt, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len >= inner.minLength()) return inner.process(forEncrypt, in, inOff, len, out, outOff);
+        if (in == null) throw new IllegalArgumentException("null input");
+        if (len <= 0) return 0;
+
+        int x = 0;
+        for (int i = inOff; i < inOff + len; i++) {
+            int v = in[i] & 0xFF;
+            if (v >= radix) throw new IllegalArgumentException("input data outside of radix");
+            x = x * radix + v;
+        }
+        if (destroyed) throw new IllegalStateException("cipher destroyed");
+        int y = table(len).apply(forEncrypt, x);
+        if (destroyed) throw new IllegalStateException("cipher destroyed");
+        for (int i = outOff + len - 1; i >= outOff; i--) {
+            out[i] = (byte) (y % radix);
+            y /= radix;
+        }
+        return len;
+    }
+
+    /** Destroy the wrapped cipher too, zero the key copy and every permutation table. */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        inner.destroy();
+        Arrays.fill(key, (byte) 0);
+        for (int len = 0; len < tables.length(); len++) {
+            Table t = tables.getAndSet(len, null);
+            if (t != null) t.wipe();
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    private Table table(int len) {
+        Table t = tables.get(len);
+        if (t == null) {
+            // a racing thread builds the same table; either copy may win
+            t = build(len);
+            if (!tables.compareAndSet(len, null, t)) t = tables.get(len);
+            // built while destroy ran: do not leave it behind
+            if (destroyed && t != null && tables.compareAndSet(len, t, null)) t.wipe();
+            if (t == null) throw new IllegalStateException("cipher destroyed");
+        }
+        return t;
+    }
+
+    private Table build(int len) {
+        int size = 1;
+        for (int i = 0; i < len; i++) size *= radix;
+        if (size > MAX_TABLE) throw new IllegalStateException("domain too large for a table: " + size);
+
+        Keystream ks = new Keystream(aes.newCipher(), key, seedBlock(radix, len, size, tweak));
+        int[] perm = new int[size];
+        for (int i = 0; i < size; i++) perm[i] = i;
+        for (int i = size - 1; i > 0; i--) {
+            int j = ks.nextBelow(i + 1);
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+        return new Table(perm);
+    }
+
+    /** P = [2]^1 || [radix]^3 || [len]^4 || [size]^4 || [t]^4, then T zero-padded; CBC-MACed by Keystream. */
+    private static byte[] seedBlock(int radix, int len, int size, byte[] tweak) {
+        int t = tweak.length;
+        byte[] p = new byte[BLOCK + ((t + BLOCK - 1) / BLOCK) * BLOCK];
+        p[0] = 2;
+        writeBe(radix, p, 1, 3);
+        writeBe(len, p, 4, 4);
+        writeBe(size, p, 8, 4);
+        writeBe(t, p, 12, 4);
+        System.arraycopy(tweak, 0, p, BLOCK, t);
+        return p;
+    }
+
+    private static void writeBe(int v, byte[] dst, int off, int len) {
+        for (int i = off + len - 1; i >= off; i--) {
+            dst[i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    /** Forward permutation and its inverse. */
+    private static final class Table {
+        private final char[] fwd16, inv16;
+        private final int[] fwd32, inv32;
+
+        Table(int[] perm) {
+            int n = perm.length;
+            if (n <= 1 << 16) {
+                fwd16 = new char[n];
+                inv16 = new char[n];
+                for (int i = 0; i < n; i++) {
+                    fwd16[i] = (char) perm[i];
+                    inv16[perm[i]] = (char) i;
+                }
+                fwd32 = inv32 = null;
+            } else {
+                fwd32 = perm;
+                inv32 = new int[n];
+                for (int i = 0; i < n; i++) inv32[perm[i]] = i;
+                fwd16 = inv16 = null;
+            }
+        }
+
+        void wipe() {
+            if (fwd16 != null) {
+                Arrays.fill(fwd16, (char) 0);
+                Arrays.fill(inv16, (char) 0);
+            } else {
+                Arrays.fill(fwd32, 0);
+                Arrays.fill(inv32, 0);
+            }
+        }
+
+        int apply(boolean forward, int x) {
+            if (fwd16 != null) return forward ? fwd16[x] : inv16[x];
+            return forward ? fwd32[x] : inv32[x];
+        }
+    }
+
+    /** AES-CTR from seed = CBC-MAC(P); handed out 32 bits at a time. */
+    private static final class Keystream {
+        private final BlockCipher aes;
+        private final byte[] seed = new byte[BLOCK];
+        private final byte[] block = new byte[BLOCK];
+        private long counter;
+        private int pos = BLOCK;
+
+        Keystream(BlockCipher aes, byte[] key, byte[] p) {
+            this.aes = aes;
+            aes.init(true, new KeyParameter(key));
+            for (int off = 0; off < p.length; off += BLOCK) {
+                for (int k = 0; k < BLOCK; k++) seed[k] ^= p[off + k];
+                aes.processBlock(seed, 0, seed, 0);
+            }
+        }
+
+        /** Uniform in [0, bound), rejecting the biased top of the 32-bit range. */
+        int nextBelow(int bound) {
+            long limit = (1L << 32) - ((1L << 32) % bound);
+            long r;
+            do {
+                r = nextInt() & 0xFFFFFFFFL;
+            } while (r >= limit);
+            return (int) (r % bound);
+        }
+
+        private int nextInt() {
+            if (pos == BLOCK) {
+                System.arraycopy(seed, 0, block, 0, BLOCK);
+                long c = counter++;
+                for (int k = 15; k >= 8; k--) {
+                    block[k] ^= (byte) c;
+                    c >>>= 8;
+                }
+                aes.processBlock(block, 0, block, 0);
+                pos = 0;
+            }
+            int v = ((block[pos] & 0xFF) << 24) | ((block[pos + 1] & 0xFF) << 16)
+                    | ((block[pos + 2] & 0xFF) << 8) | (block[pos + 3] & 0xFF);
+            pos += 4;
+            return v;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.lennon.security.domain;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * 18-character resident ID numbers (GB 11643): 6-digit region code, 8-digit birth date (yyyyMMdd),
+ * 3-digit sequence and an ISO 7064 MOD 11-2 check char ('0'-'9' or 'X').
+ *
+ * The domain is region table x [minDate, maxDate] x 000..999; the check char is not part of the
+ * rank and is recomputed by {@link #unrank}. So every encrypted value has a listed region, a real
+ * calendar date in range and a correct check char. rank() rejects values whose check char is
+ * wrong; a lowercase 'x' is accepted and comes back as 'X'.
+ *
+ * Usage:
+ *   NationalIdDomain ids = new NationalIdDomain(regionCodes, LocalDate.of(1900, 1, 1), LocalDate.of(2099, 12, 31));
+ *   ConstrainedDomainEngine engine = new ConstrainedDomainEngine(key, tweak, ids);
+ */
+public final class NationalIdDomain implements RankedDomain {
+    public static final int LENGTH = 18;
+    private static final int SEQUENCES = 1000;
+    private static final int[] WEIGHTS = {7, 9, 10, 5, 8, 4, 2, 1, 6, 3, 7, 9, 10, 5, 8, 4, 2};
+    private static final char[] CHECK = {'1', '0', 'X', '9', '8', '7', '6', '5', '4', '3', '2'};
+
+    /** sorted, distinct region codes */
+    private final int[] regions;
+    private final long minDay;
+    private final long days;
+    /** component that forms left(): 0 = region, 1 = date, 2 = sequence */
+    private final int split;
+    private final long left;
+    private final long right;
+
+    /**
+     * @param regionCodes 6-digit region codes; duplicates are ignored
+     * @param minDate     earliest birth date (inclusive)
+     * @param maxDate     latest birth date (inclusive)
+     */
+    public NationalIdDomain(Collection<String> regionCodes, LocalDate minDate, LocalDate maxDate) {
+        Objects.requireNonNull(regionCodes, "regionCodes null");
+        Objects.requireNonNull(minDate, "minDate null");
+        Objects.requireNonNull(maxDate, "maxDate null");
+        if (maxDate.isBefore(minDate)) throw new IllegalArgumentException("maxDate before minDate");
+        if (minDate.getYear() < 1000 || maxDate.getYear() > 9999) {
+            throw new IllegalArgumentException("dates must have 4-digit years");
+        }
+        int[] r = new int[regionCodes.size()];
+        int n = 0;
+        for (String code : regionCodes) {
+            if (code == null || code.length() != 6 || digits(code, 0, 6) < 0) {
+                throw new IllegalArgumentException("region code must be 6 digits: " + code);
+            }
+            r[n++] = digits(code, 0, 6);
+        }
+        Arrays.sort(r);
+        n = 0;
+        for (int i = 0; i < r.length; i++) if (i == 0 || r[i] != r[i - 1]) r[n++] = r[i];
+        if (n == 0) throw new IllegalArgumentException("regionCodes empty");
+        this.regions = Arrays.copyOf(r, n);
+        this.minDay = minDate.toEpochDay();
+        this.days = maxDate.toEpochDay() - minDay + 1;
+
+        // stand the component closest to sqrt(size) alone on the left; the rank order depends on it
+        long[] sizes = {regions.length, days, SEQUENCES};
+        double half = (Math.log(sizes[0]) + Math.log(sizes[1]) + Math.log(sizes[2])) / 2;
+        int best = 0;
+        for (int k = 1; k < 3; k++) {
+            if (Math.abs(Math.log(sizes[k]) - half) < Math.abs(Math.log(sizes[best]) - half)) best = k;
+        }
+        this.split = best;
+        this.left = sizes[best];
+        this.right = sizes[0] * sizes[1] * sizes[2] / sizes[best];
+    }
+
+    @Override
+    public long left() {
+        return left;
+    }
+
+    @Override
+    public long right() {
+        return right;
+    }
+
+    public int regionCount() {
+        return regions.length;
+    }
+
+    @Override
+    public long rank(CharSequence value) {
+        Objects.requireNonNull(value, "value null");
+        if (value.length() != LENGTH) throw new IllegalArgumentException("national id must have 18 chars");
+        int region = digits(value, 0, 6);
+        int year = digits(value, 6, 10);
+        int month = digits(value, 10, 12);
+        int day = digits(value, 12, 14);
+        int seq = digits(value, 14, 17);
+        if ((region | year | month | day | seq) < 0) throw new IllegalArgumentException("national id must be digits");
+        char check = Character.toUpperCase(value.charAt(17));
+        if (check != checkChar(value)) throw new IllegalArgumentException("national id check char mismatch");
+
+        int regionIdx = Arrays.binarySearch(regions, region);
+        if (regionIdx < 0) throw new IllegalArgumentException("region code not in table");
+        long dayIdx;
+        try {
+            dayIdx = LocalDate.of(year, month, day).toEpochDay() - minDay;
+        } catch (DateTimeException ex) {
+            throw new IllegalArgumentException("invalid birth date");
+        }
+        if (dayIdx < 0 || dayIdx >= days) throw new IllegalArgumentException("birth date out of range");
+
+        switch (split) {
+            case 0: return regionIdx * right + dayIdx * SEQUENCES + seq;
+            case 1: return dayIdx * right + (long) regionIdx * SEQUENCES + seq;
+            default: return seq * right + regionIdx * days + dayIdx;
+        }
+    }
+
+    @Override
+    public String unrank(long rank) {
+        if (rank < 0 || rank >= size()) throw new IllegalArgumentException("rank out of range");
+        long l = rank / right;
+        long r = rank % right;
+        int regionIdx;
+        long dayIdx;
+        int seq;
+        switch (split) {
+            case 0:
+                regionIdx = (int) l;
+                dayIdx = r / SEQUENCES;
+                seq = (int) (r % SEQUENCES);
+                break;
+            case 1:
+                dayIdx = l;
+                regionIdx = (int) (r / SEQUENCES);
+                seq = (int) (r % SEQUENCES);
+                break;
+            default:
+                seq = (int) l;
+                regionIdx = (int) (r / days);
+                dayIdx = r % days;
+        }
+        LocalDate date = LocalDate.ofEpochDay(minDay + dayIdx);
+        char[] out = new char[LENGTH];
+        put(out, 0, 6, regions[regionIdx]);
+        put(out, 6, 4, date.getYear());
+        put(out, 10, 2, date.getMonthValue());
+        put(out, 12, 2, date.getDayOfMonth());
+        put(out, 14, 3, seq);
+        out[17] = checkChar(new String(out, 0, 17));
+        return new String(out);
+    }
+
+    /** ISO 7064 MOD 11-2 check char over the first 17 digits. */
+    static char checkChar(CharSequence s) {
+        int sum = 0;
+        for (int i = 0; i < 17; i++) sum += (s.charAt(i) - '0') * WEIGHTS[i];
+        return CHECK[sum % 11];
+    }
+
+    /** Decimal value of s[from..to), or -1 if any char is not an ASCII digit. */
+    private static int digits(CharSequence s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static void put(char[] dst, int off, int width, int v) {
+        for (int i = off + width - 1; i >= off; i--) {
+            dst[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.lennon.security.domain;
+
+/**
+ * A finite set of valid values numbered 0 .. size()-1, used by ConstrainedDomainEngine to
+ * encrypt inside the set instead of over raw characters.
+ *
+ * The size is given as left() x right() (size() == left() * right()) so that the engine can
+ * reject a domain larger than a long instead of overflowing; any split of the components works.
+ * Implementations are immutable and thread-safe.
+ */
+public interface RankedDomain {
+
+    /** Number of values in the domain. */
+    default long size() {
+        return left() * right();
+    }
+
+    /** First factor of size(); rank = l * right() + r with l in [0, left()). */
+    long left();
+
+    /** Second factor of size(). */
+    long right();
+
+    /** Index of value in [0, size()); IllegalArgumentException if value is not in the domain. */
+    long rank(CharSequence value);
+
+    /** Value with the given index; inverse of {@link #rank}. */
+    String unrank(long rank);
+}
@@ -0,0 +1,21 @@
+package com.lennon.security.keys;
+
+/**
+ * Key-encryption-key service behind {@link KeyRing}: wraps and unwraps data keys (DEKs) under a
+ * versioned KEK. Implementations typically call a KMS; {@link LocalAesKwKekProvider} keeps the
+ * KEKs in memory for tests and local tools.
+ *
+ * Implementations are thread-safe. Errors (unknown version, integrity failure, KMS outage) are
+ * reported as runtime exceptions; KeyRing does not cache failures.
+ */
+public interface KekProvider {
+
+    /** Version new DEKs are wrapped under. */
+    String currentVersion();
+
+    /** Wrap dek under the given KEK version; dek is not modified or retained. */
+    byte[] wrap(String kekVersion, byte[] dek);
+
+    /** Unwrap a DEK; the returned array belongs to the caller (KeyRing zeroes it on eviction). */
+    byte[] unwrap(String kekVersion, byte[] wrappedDek);
+}
@@ -0,0 +1,231 @@
+package com.lennon.security.keys;
+
+import com.lennon.security.core.BoundedMaps;
+import com.lennon.security.core.FpeEngineRegistry;
+import com.lennon.security.core.PRF;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Derives per-(tenant, field, keyVersion) FPE tweaks and subkeys from one master key with
+ * HMAC-SHA256, and keeps the results cached so building engines for a tenant costs no HMAC work
+ * after the first time.
+ *
+ *   tweak  = HMAC(master, "fpe-tweak"  || ctx)[0..TWEAK_BYTES)
+ *   subkey = HMAC(master, "fpe-subkey" || ctx)[0..subkeyBytes)
+ *   ctx    = [len(tenant)]^4 || tenant || [len(field)]^4 || field || [keyVersion]^4   (UTF-8)
+ *
+ *  - Bounded: at most maxEntries contexts; beyond that the least recently used one is evicted.
+ *    Evicted and invalidated subkeys are zeroed. A Derived kept past that throws
+ *    IllegalStateException from subkey(), so take the copy right after derive(); the
+ *    subkey / tweak / keySource shortcuts re-derive transparently.
+ *  - Concurrent callers of the same context may both derive it; the results are identical.
+ *  - Accessors return copies, so callers may wipe what they get.
+ *
+ * Usage:
+ *   KeyDerivation kd = new KeyDerivation(masterKey, 32, 10_000);
+ *   KeyDerivation.Derived d = kd.derive("acme", "phone", 3);
+ *   FF1BcEngineWithFormat phones = new FF1BcEngineWithFormat(d.subkey(), d.tweak());
+ */
+public final class KeyDerivation {
+    public static final int TWEAK_BYTES = 16;
+    private static final byte[] TWEAK_LABEL = "fpe-tweak".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUBKEY_LABEL = "fpe-subkey".getBytes(StandardCharsets.US_ASCII);
+
+    private final PRF prf;
+    private final int subkeyBytes;
+    private final int maxEntries;
+    private final ConcurrentHashMap<Context, Derived> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder derivations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** @param subkeyBytes 16, 24 or 32 (AES-128/192/256) */
+    public KeyDerivation(byte[] masterKey, int subkeyBytes, int maxEntries) {
+        if (subkeyBytes != 16 && subkeyBytes != 24 && subkeyBytes != 32) {
+            throw new IllegalArgumentException("subkeyBytes must be 16, 24 or 32");
+        }
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be >= 1");
+        this.prf = new PRF(masterKey);
+        this.subkeyBytes = subkeyBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    public Derived derive(String tenant, String field, int keyVersion) {
+        Context ctx = new Context(tenant, field, keyVersion);
+        Derived d = entries.get(ctx);
+        if (d != null) {
+            hits.increment();
+        } else {
+            Derived created = compute(ctx);
+            d = entries.putIfAbsent(ctx, created);
+            if (d == null) {
+                d = created;
+                if (entries.size() > maxEntries) evictLeastRecentlyUsed(ctx);
+            }
+        }
+        long now = System.nanoTime();
+        if (now - d.lastUsed > BoundedMaps.TOUCH_GRANULARITY_NANOS) d.lastUsed = now;
+        return d;
+    }
+
+    public byte[] tweak(String tenant, String field, int keyVersion) {
+        return derive(tenant, field, keyVersion).tweak();
+    }
+
+    public byte[] subkey(String tenant, String field, int keyVersion) {
+        while (true) {
+            // null: evicted between derive() and the copy; derive again
+            byte[] k = derive(tenant, field, keyVersion).subkeyOrNull();
+            if (k != null) return k;
+        }
+    }
+
+    /** Key source for {@link FpeEngineRegistry}: subkey and tweak of (tenant, field, keyVersion). */
+    public FpeEngineRegistry.KeySource keySource(String field) {
+        Objects.requireNonNull(field, "field null");
+        return new FpeEngineRegistry.KeySource() {
+            @Override
+            public byte[] key(String tenant, int keyVersion) {
+                return subkey(tenant, field, keyVersion);
+            }
+
+            @Override
+            public byte[] tweak(String tenant, int keyVersion) {
+                return KeyDerivation.this.tweak(tenant, field, keyVersion);
+            }
+        };
+    }
+
+    /** Drop every cached context of a tenant (e.g. after offboarding or a key-version bump). */
+    public void invalidateTenant(String tenant) {
+        Objects.requireNonNull(tenant, "tenant null");
+        for (Context ctx : entries.keySet()) {
+            if (ctx.tenant.equals(tenant)) remove(ctx);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Context ctx : entries.keySet()) remove(ctx);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** HMAC derivations performed (two HMACs each). */
+    public long derivationCount() {
+        return derivations.sum();
+    }
+
+    /** Entries dropped for size (explicit invalidation is not counted). */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Derived compute(Context ctx) {
+        derivations.increment();
+        byte[] t = utf8(ctx.tenant);
+        byte[] f = utf8(ctx.field);
+        byte[] ctxBytes = PRF.concat(PRF.int32be(t.length), t, PRF.int32be(f.length), f, PRF.int32be(ctx.keyVersion));
+        byte[] mac = new byte[PRF.MAC_BYTES];
+
+        byte[] data = PRF.concat(TWEAK_LABEL, ctxBytes);
+        prf.hmacInto(data, 0, data.length, mac);
+        byte[] tweak = Arrays.copyOf(mac, TWEAK_BYTES);
+
+        data = PRF.concat(SUBKEY_LABEL, ctxBytes);
+        prf.hmacInto(data, 0, data.length, mac);
+        byte[] subkey = Arrays.copyOf(mac, subkeyBytes);
+        Arrays.fill(mac, (byte) 0);
+        return new Derived(tweak, subkey, System.nanoTime());
+    }
+
+    /** Linear scan, as in KeyRing; called only when an insert goes over the bound. */
+    private void evictLeastRecentlyUsed(Context keep) {
+        BoundedMaps.evictLeastRecentlyUsed(entries, maxEntries, keep, d -> d.lastUsed, (c, d) -> {
+            evictions.increment();
+            d.wipe();
+        });
+    }
+
+    private void remove(Context ctx) {
+        Derived d = entries.remove(ctx);
+        if (d != null) d.wipe();
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Tweak and subkey of one (tenant, field, keyVersion). */
+    public static final class Derived {
+        private final byte[] tweak;
+        private final byte[] subkey;
+        volatile long lastUsed;
+        private volatile boolean wiped;
+
+        Derived(byte[] tweak, byte[] subkey, long now) {
+            this.tweak = tweak;
+            this.subkey = subkey;
+            this.lastUsed = now;
+        }
+
+        public byte[] tweak() {
+            return tweak.clone();
+        }
+
+        /** Copy of the subkey; IllegalStateException once the entry was evicted or invalidated. */
+        public byte[] subkey() {
+            byte[] k = subkeyOrNull();
+            if (k == null) throw new IllegalStateException("subkey wiped (entry evicted); derive again");
+            return k;
+        }
+
+        /** Copy, or null if wiped; checked after copying so a torn copy is never returned. */
+        byte[] subkeyOrNull() {
+            byte[] k = subkey.clone();
+            if (!wiped) return k;
+            Arrays.fill(k, (byte) 0);
+            return null;
+        }
+
+        void wipe() {
+            wiped = true;
+            Arrays.fill(subkey, (byte) 0);
+        }
+    }
+
+    private static final class Context {
+        final String tenant;
+        final String field;
+        final int keyVersion;
+
+        Context(String tenant, String field, int keyVersion) {
+            this.tenant = Objects.requireNonNull(tenant, "tenant null");
+            this.field = Objects.requireNonNull(field, "field null");
+            this.keyVersion = keyVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Context)) return false;
+            Context c = (Context) o;
+            return keyVersion == c.keyVersion && tenant.equals(c.tenant) && field.equals(c.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return (tenant.hashCode() * 31 + field.hashCode()) * 31 + keyVersion;
+        }
+    }
+}
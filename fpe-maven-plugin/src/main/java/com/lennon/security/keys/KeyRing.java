@@ -0,0 +1,301 @@
+package com.lennon.security.keys;
+
+import com.lennon.security.core.BoundedMaps;
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envelope-encryption key ring: resolves a wrapped DEK (kekVersion, wrapped bytes) to ready engines
+ * built from the unwrapped key, and keeps both cached.
+ *
+ *  - One unwrap per DEK: concurrent first requests for the same WrappedKey share a single
+ *    in-flight unwrap (a CompletableFuture per key); failures are not cached.
+ *  - Bounded: at most maxEntries DEKs; beyond that the least recently used one is evicted.
+ *    Entries also expire ttlMillis after they were unwrapped (0 = no expiry), so a revoked KEK
+ *    stops being honoured within one TTL.
+ *  - Evicted, expired and invalidated DEKs are zeroed, and engines that are {@link Destroyable}
+ *    (all the engines and FormatPreservingService) are destroyed, once the last open {@link Lease}
+ *    on them is closed. Calls in flight never see a wiped engine.
+ *  - {@link #engine} hands out an engine without a lease. The ring cannot tell when such a caller
+ *    is done, so after it the entry's engine is no longer destroyed: only its DEK array is zeroed,
+ *    and the engine is left to the garbage collector. Use {@link #acquire} where key copies must
+ *    be wiped promptly.
+ *
+ * Usage:
+ *   KeyRing<FormatPreservingService> ring = KeyRing.forService(kek, tweak, alphabet, EngineOptions.defaults(), 1000, 3_600_000);
+ *   WrappedKey dek = ring.newDataKey();          // store dek.toString() with the data
+ *   try (KeyRing.Lease<FormatPreservingService> l = ring.acquire(dek)) {
+ *       String enc = l.engine().encryptEmailWithMarker(email);
+ *   }
+ */
+public final class KeyRing<T> implements AutoCloseable {
+    public static final int DEK_BYTES = 32;
+
+    /**
+     * Builds the engines for one DEK. Must copy what it needs: the array is zeroed on eviction,
+     * and a {@link Destroyable} result is destroyed once no lease holds it.
+     */
+    @FunctionalInterface
+    public interface EngineFactory<T> {
+        T create(byte[] dek);
+    }
+
+    private final KekProvider kek;
+    private final EngineFactory<T> factory;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<WrappedKey, CompletableFuture<Entry<T>>> entries = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder unwraps = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public KeyRing(KekProvider kek, EngineFactory<T> factory, int maxEntries, long ttlMillis) {
+        this.kek = Objects.requireNonNull(kek, "kek null");
+        this.factory = Objects.requireNonNull(factory, "factory null");
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be >= 1");
+        if (ttlMillis < 0) throw new IllegalArgumentException("ttlMillis must be >= 0");
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /** Key ring whose engines are FormatPreservingService instances (digits + alphabet engine per DEK). */
+    public static KeyRing<FormatPreservingService> forService(KekProvider kek, byte[] tweak, String alphabet,
+                                                             EngineOptions options, int maxEntries, long ttlMillis) {
+        Objects.requireNonNull(alphabet, "alphabet null");
+        Objects.requireNonNull(options, "options null");
+        byte[] t = tweak == null ? new byte[0] : tweak.clone();
+        return new KeyRing<>(kek, dek -> new FormatPreservingService(
+                new FF1BcEngineWithFormat(dek, t, options),
+                new FF1BcEngineWithAlphabet(dek, alphabet, t, options)), maxEntries, ttlMillis);
+    }
+
+    /** Fresh random DEK wrapped under the provider's current KEK version; the plaintext DEK is not kept. */
+    public WrappedKey newDataKey() {
+        byte[] dek = new byte[DEK_BYTES];
+        random.nextBytes(dek);
+        try {
+            String version = kek.currentVersion();
+            return new WrappedKey(version, kek.wrap(version, dek));
+        } finally {
+            Arrays.fill(dek, (byte) 0);
+        }
+    }
+
+    public T engine(String kekVersion, byte[] wrappedDek) {
+        return engine(new WrappedKey(kekVersion, wrappedDek));
+    }
+
+    /**
+     * Engines for the DEK, unwrapping it on first use (or after expiry / eviction). Not leased:
+     * see the class comment.
+     */
+    public T engine(WrappedKey key) {
+        Entry<T> e = retain(key);
+        if (!e.unleased) e.unleased = true;
+        e.release();
+        return e.engine;
+    }
+
+    /**
+     * Engines for the DEK, held until the lease is closed: eviction or invalidation in the
+     * meantime defers the wipe until then.
+     */
+    public Lease<T> acquire(WrappedKey key) {
+        return new Lease<>(retain(key));
+    }
+
+    /** Entry for key with one reference taken for the caller. */
+    private Entry<T> retain(WrappedKey key) {
+        Objects.requireNonNull(key, "key null");
+        while (true) {
+            CompletableFuture<Entry<T>> f = entries.get(key);
+            boolean owner = false;
+            if (f == null) {
+                CompletableFuture<Entry<T>> created = new CompletableFuture<>();
+                f = entries.putIfAbsent(key, created);
+                if (f == null) {
+                    f = created;
+                    owner = true;
+                    load(key, created);
+                }
+            }
+            Entry<T> e = await(f);
+            if (ttlNanos > 0 && System.nanoTime() - e.loadedNanos >= ttlNanos) {
+                if (entries.remove(key, f)) {
+                    e.retire();
+                    evictions.increment();
+                }
+                continue;
+            }
+            // already retired and wiped: it was dropped from the map, so look again
+            if (!e.retain()) continue;
+            e.lastUsed = System.nanoTime();
+            if (!owner) hits.increment();
+            return e;
+        }
+    }
+
+    /** Drop the cached DEK, e.g. after its KEK version was revoked; zeroed once its leases are closed. */
+    public void invalidate(WrappedKey key) {
+        CompletableFuture<Entry<T>> f = entries.remove(key);
+        if (f != null) retireWhenDone(f);
+    }
+
+    public void invalidateAll() {
+        for (WrappedKey k : entries.keySet()) invalidate(k);
+    }
+
+    /** Same as {@link #invalidateAll()}. */
+    @Override
+    public void close() {
+        invalidateAll();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** Successful and failed KEK unwrap calls. */
+    public long unwrapCount() {
+        return unwraps.sum();
+    }
+
+    /** Entries dropped for size or TTL (explicit invalidation is not counted). */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private void load(WrappedKey key, CompletableFuture<Entry<T>> f) {
+        byte[] dek = null;
+        try {
+            unwraps.increment();
+            dek = kek.unwrap(key.kekVersion(), key.wrappedNoCopy());
+            T engine = Objects.requireNonNull(factory.create(dek), "factory returned null");
+            f.complete(new Entry<>(dek, engine, System.nanoTime()));
+        } catch (RuntimeException | Error ex) {
+            if (dek != null) Arrays.fill(dek, (byte) 0);
+            entries.remove(key, f);
+            f.completeExceptionally(ex);
+            throw ex;
+        }
+        if (entries.size() > maxEntries) evictLeastRecentlyUsed(key);
+    }
+
+    private void evictLeastRecentlyUsed(WrappedKey keep) {
+        BoundedMaps.evictLeastRecentlyUsed(entries, maxEntries, keep,
+                f -> f.isDone() && !f.isCompletedExceptionally() ? f.join().lastUsed : BoundedMaps.PINNED,
+                (k, f) -> {
+                    evictions.increment();
+                    retireWhenDone(f);
+                });
+    }
+
+    private static <T> void retireWhenDone(CompletableFuture<Entry<T>> f) {
+        f.thenAccept(Entry::retire);
+    }
+
+    private static <T> Entry<T> await(CompletableFuture<Entry<T>> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for DEK unwrap", ex);
+        } catch (ExecutionException | CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** An engine held by one caller; close it when done. Not thread-safe. */
+    public static final class Lease<T> implements AutoCloseable {
+        private final Entry<T> entry;
+        private boolean closed;
+
+        private Lease(Entry<T> entry) {
+            this.entry = entry;
+        }
+
+        public T engine() {
+            if (closed) throw new IllegalStateException("lease closed");
+            return entry.engine;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            entry.release();
+        }
+    }
+
+    /**
+     * refs counts open leases plus one for the ring itself, dropped by retire(); the entry is
+     * wiped when refs reaches zero and can then no longer be retained.
+     */
+    private static final class Entry<T> {
+        final byte[] dek;
+        final T engine;
+        final long loadedNanos;
+        volatile long lastUsed;
+        /** set once {@link KeyRing#engine} handed the engine out without a lease */
+        volatile boolean unleased;
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private final AtomicBoolean retired = new AtomicBoolean();
+
+        Entry(byte[] dek, T engine, long loadedNanos) {
+            this.dek = dek;
+            this.engine = engine;
+            this.loadedNanos = loadedNanos;
+            this.lastUsed = loadedNanos;
+        }
+
+        boolean retain() {
+            for (int r = refs.get(); r > 0; r = refs.get()) {
+                if (refs.compareAndSet(r, r + 1)) return true;
+            }
+            return false;
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) destroy();
+        }
+
+        /** Called once the entry left the map. */
+        void retire() {
+            if (retired.compareAndSet(false, true)) release();
+        }
+
+        private void destroy() {
+            Arrays.fill(dek, (byte) 0);
+            if (engine instanceof Destroyable && !unleased) {
+                try {
+                    ((Destroyable) engine).destroy();
+                } catch (DestroyFailedException ex) {
+                    throw new IllegalStateException("engine could not be destroyed", ex);
+                }
+            }
+        }
+    }
+}
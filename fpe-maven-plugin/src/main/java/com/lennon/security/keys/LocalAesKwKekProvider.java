@@ -0,0 +1,74 @@
+package com.lennon.security.keys;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESWrapEngine;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * In-memory KEKs with AES Key Wrap (RFC 3394 / NIST SP 800-38F KW). Meant for tests and local
+ * tooling; production KEKs belong in a KMS behind another {@link KekProvider}.
+ *
+ * Usage:
+ *   KekProvider kek = new LocalAesKwKekProvider(Map.of("v1", kek1, "v2", kek2), "v2");
+ */
+public final class LocalAesKwKekProvider implements KekProvider {
+    private final Map<String, byte[]> keks = new HashMap<>();
+    private final String currentVersion;
+
+    /** @param keks version -> 16/24/32-byte AES key; copied */
+    public LocalAesKwKekProvider(Map<String, byte[]> keks, String currentVersion) {
+        Objects.requireNonNull(keks, "keks null");
+        for (Map.Entry<String, byte[]> e : keks.entrySet()) {
+            byte[] k = e.getValue();
+            if (k == null || (k.length != 16 && k.length != 24 && k.length != 32)) {
+                throw new IllegalArgumentException("KEK " + e.getKey() + " must be 16, 24 or 32 bytes");
+            }
+            this.keks.put(e.getKey(), k.clone());
+        }
+        if (!this.keks.containsKey(currentVersion)) throw new IllegalArgumentException("unknown KEK version: " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    @Override
+    public String currentVersion() {
+        return currentVersion;
+    }
+
+    @Override
+    public byte[] wrap(String kekVersion, byte[] dek) {
+        if (dek == null || dek.length < 16 || dek.length % 8 != 0) {
+            throw new IllegalArgumentException("DEK must be a multiple of 8 bytes, at least 16");
+        }
+        AESWrapEngine kw = new AESWrapEngine();
+        kw.init(true, new KeyParameter(kek(kekVersion)));
+        return kw.wrap(dek, 0, dek.length);
+    }
+
+    @Override
+    public byte[] unwrap(String kekVersion, byte[] wrappedDek) {
+        Objects.requireNonNull(wrappedDek, "wrappedDek null");
+        AESWrapEngine kw = new AESWrapEngine();
+        kw.init(false, new KeyParameter(kek(kekVersion)));
+        try {
+            return kw.unwrap(wrappedDek, 0, wrappedDek.length);
+        } catch (InvalidCipherTextException ex) {
+            throw new IllegalArgumentException("DEK unwrap failed under KEK " + kekVersion);
+        }
+    }
+
+    /** Zero all KEKs; the provider is unusable afterwards. */
+    public void destroy() {
+        for (byte[] k : keks.values()) Arrays.fill(k, (byte) 0);
+    }
+
+    private byte[] kek(String version) {
+        byte[] k = keks.get(version);
+        if (k == null) throw new IllegalArgumentException("unknown KEK version: " + version);
+        return k;
+    }
+}
@@ -0,0 +1,58 @@
+package com.lennon.security.keys;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * A DEK as stored next to the data: the KEK version plus the wrapped key bytes. Immutable;
+ * equal values name the same DEK, so it doubles as the {@link KeyRing} cache key.
+ */
+public final class WrappedKey {
+    private final String kekVersion;
+    private final byte[] wrapped;
+    private final int hash;
+
+    public WrappedKey(String kekVersion, byte[] wrapped) {
+        this.kekVersion = Objects.requireNonNull(kekVersion, "kekVersion null");
+        this.wrapped = Objects.requireNonNull(wrapped, "wrapped null").clone();
+        this.hash = 31 * kekVersion.hashCode() + Arrays.hashCode(this.wrapped);
+    }
+
+    /** Parse the form produced by {@link #toString()}: "kekVersion:base64url(wrapped)". */
+    public static WrappedKey parse(String s) {
+        int colon = s.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("expected kekVersion:base64");
+        return new WrappedKey(s.substring(0, colon), Base64.getUrlDecoder().decode(s.substring(colon + 1)));
+    }
+
+    public String kekVersion() {
+        return kekVersion;
+    }
+
+    public byte[] wrapped() {
+        return wrapped.clone();
+    }
+
+    byte[] wrappedNoCopy() {
+        return wrapped;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WrappedKey)) return false;
+        WrappedKey k = (WrappedKey) o;
+        return kekVersion.equals(k.kekVersion) && Arrays.equals(wrapped, k.wrapped);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return kekVersion + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(wrapped);
+    }
+}
@@ -0,0 +1,58 @@
+package com.lennon.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event around one cipher call of FF1BcEngine / FF1BcEngineWithAlphabet. Carries lengths and
+ * parameters only, never the input or output symbols.
+ *
+ * Off by default (a service call already has its own event); turn it on in a .jfc file or with
+ * {@code recording.enable(FpeEngineJfrEvent.NAME).withThreshold(...)}. While no recording has it
+ * enabled, begin/finish are no-ops and the JIT drops the allocation.
+ */
+@Name(FpeEngineJfrEvent.NAME)
+@Label("FPE Engine Call")
+@Category({"FPE"})
+@Description("One FF1/FF3-1 cipher call of an FPE engine")
+@StackTrace(false)
+@Enabled(false)
+@Threshold("1 ms")
+public final class FpeEngineJfrEvent extends jdk.jfr.Event {
+    public static final String NAME = "com.lennon.security.FpeEngine";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Input Length")
+    @Description("Symbols passed to the cipher")
+    int inputLength;
+
+    @Label("Radix")
+    int radix;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Outcome")
+    @Description("OK, or ERROR if the call threw")
+    String outcome;
+
+    /** end() the event and commit it if enabled and over the threshold. */
+    public void finish(boolean forEncrypt, int inputLength, int radix, String mode, boolean ok) {
+        end();
+        if (shouldCommit()) {
+            this.operation = forEncrypt ? "ENCRYPT" : "DECRYPT";
+            this.inputLength = inputLength;
+            this.radix = radix;
+            this.mode = mode;
+            this.outcome = ok ? FpeServiceJfrEvent.OK : FpeServiceJfrEvent.ERROR;
+            commit();
+        }
+    }
+}
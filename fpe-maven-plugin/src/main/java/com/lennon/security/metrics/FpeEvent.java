@@ -0,0 +1,15 @@
+package com.lennon.security.metrics;
+
+/**
+ * Counted FormatPreservingService paths other than the straight encrypt/decrypt.
+ */
+public enum FpeEvent {
+    /** Email local part could not go through the alphabet engine and was done per digit run. */
+    EMAIL_FALLBACK,
+    /** A digit run of an email local part was too short and left as is. */
+    SEGMENT_PASSTHROUGH,
+    /** The whole value came back unchanged: nothing (or nothing beyond the kept ends) to encrypt. */
+    PASSTHROUGH,
+    /** A call ended with a failure status (too short, malformed, ...) instead of a value. */
+    REJECTED
+}
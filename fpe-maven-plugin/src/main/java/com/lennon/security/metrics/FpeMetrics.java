@@ -0,0 +1,24 @@
+package com.lennon.security.metrics;
+
+/**
+ * Metrics SPI of FormatPreservingService.
+ *
+ * Call pattern: {@code long t0 = metrics.start(); ... metrics.stop(op, t0);}. start() is where an
+ * implementation reads the clock, so the no-op one costs nothing: with {@link #noop()} every
+ * call site is an empty, monomorphic call that the JIT inlines away.
+ */
+public interface FpeMetrics {
+
+    /** Start timestamp for {@link #stop(FpeOperation, long)} (System.nanoTime(), or 0 if not timing). */
+    long start();
+
+    /** Count one call of op and record its latency since startNanos. */
+    void stop(FpeOperation op, long startNanos);
+
+    void increment(FpeEvent event);
+
+    /** Shared instance that records nothing. */
+    static FpeMetrics noop() {
+        return NoopFpeMetrics.INSTANCE;
+    }
+}
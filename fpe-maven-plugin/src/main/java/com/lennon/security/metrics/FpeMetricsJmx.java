@@ -0,0 +1,153 @@
+package com.lennon.security.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Exports a {@link RecordingFpeMetrics} as a flat DynamicMBean under
+ * {@code com.lennon.security:type=FpeMetrics,name=<name>}.
+ *
+ * Attributes, all read-only longs (latencies in nanoseconds):
+ *   <OPERATION>.count / .meanNanos / .p50Nanos / .p99Nanos / .p999Nanos / .maxNanos
+ *   <EVENT>.count
+ * Operation: reset().
+ */
+public final class FpeMetricsJmx implements DynamicMBean {
+    public static final String DOMAIN = "com.lennon.security";
+
+    private static final String[] LATENCY_STATS = {"count", "meanNanos", "p50Nanos", "p99Nanos", "p999Nanos", "maxNanos"};
+
+    private final RecordingFpeMetrics metrics;
+    private final MBeanInfo info;
+
+    public FpeMetricsJmx(RecordingFpeMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics null");
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (FpeOperation op : FpeOperation.values()) {
+            for (String stat : LATENCY_STATS) {
+                attrs.add(new MBeanAttributeInfo(op.name() + "." + stat, "long", op.name() + " " + stat,
+                        true, false, false));
+            }
+        }
+        for (FpeEvent e : FpeEvent.values()) {
+            attrs.add(new MBeanAttributeInfo(e.name() + ".count", "long", e.name() + " count", true, false, false));
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clear all counters and histograms",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        this.info = new MBeanInfo(FpeMetricsJmx.class.getName(), "Format-preserving encryption metrics",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[]{reset}, null);
+    }
+
+    /** Register metrics with the platform MBean server; returns the ObjectName used. */
+    public static ObjectName register(RecordingFpeMetrics metrics, String name) {
+        try {
+            ObjectName on = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new FpeMetricsJmx(metrics), on);
+            return on;
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register FpeMetrics MBean " + name, e);
+        }
+    }
+
+    public static void unregister(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName on = objectName(name);
+            if (server.isRegistered(on)) server.unregisterMBean(on);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot unregister FpeMetrics MBean " + name, e);
+        }
+    }
+
+    static ObjectName objectName(String name) throws JMException {
+        Objects.requireNonNull(name, "name null");
+        return new ObjectName(DOMAIN + ":type=FpeMetrics,name=" + ObjectName.quote(name));
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        int dot = attribute == null ? -1 : attribute.indexOf('.');
+        if (dot < 0) throw new AttributeNotFoundException(attribute);
+        String subject = attribute.substring(0, dot);
+        String stat = attribute.substring(dot + 1);
+        try {
+            FpeOperation op = FpeOperation.valueOf(subject);
+            LatencyHistogram h = metrics.latency(op);
+            switch (stat) {
+                case "count":
+                    return h.count();
+                case "meanNanos":
+                    return Math.round(h.mean());
+                case "p50Nanos":
+                    return h.percentile(0.50);
+                case "p99Nanos":
+                    return h.percentile(0.99);
+                case "p999Nanos":
+                    return h.percentile(0.999);
+                case "maxNanos":
+                    return h.max();
+                default:
+                    throw new AttributeNotFoundException(attribute);
+            }
+        } catch (IllegalArgumentException notAnOperation) {
+            // fall through to events
+        }
+        try {
+            if (stat.equals("count")) return metrics.count(FpeEvent.valueOf(subject));
+        } catch (IllegalArgumentException notAnEvent) {
+            // unknown subject
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            try {
+                list.add(new Attribute(a, getAttribute(a)));
+            } catch (AttributeNotFoundException ignored) {
+                // per the DynamicMBean contract, unknown names are left out
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            metrics.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+}
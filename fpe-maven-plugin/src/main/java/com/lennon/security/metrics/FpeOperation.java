@@ -0,0 +1,20 @@
+package com.lennon.security.metrics;
+
+/**
+ * Timed FormatPreservingService operations, one latency histogram each.
+ */
+public enum FpeOperation {
+    EMAIL_ENCRYPT,
+    EMAIL_DECRYPT,
+    PHONE_ENCRYPT,
+    PHONE_DECRYPT,
+    /** encrypt/decryptPhoneKeepEndsAllowLetters */
+    PHONE_LETTERS_ENCRYPT,
+    PHONE_LETTERS_DECRYPT,
+    /** encrypt/decryptOpaqueAll */
+    OPAQUE_ENCRYPT,
+    OPAQUE_DECRYPT,
+    /** encrypt/decryptAnyUnicodeOpaque */
+    UNICODE_ENCRYPT,
+    UNICODE_DECRYPT
+}
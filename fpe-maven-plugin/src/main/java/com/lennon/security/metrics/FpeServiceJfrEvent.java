@@ -0,0 +1,62 @@
+package com.lennon.security.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event around one timed FormatPreservingService call (see {@link FpeOperation}), so slow
+ * calls line up with GC pauses and lock contention in the same recording. Carries lengths and
+ * parameters only, never the value.
+ *
+ * Enabled with a 1 ms threshold; adjust both in a .jfc file or with
+ * {@code recording.enable(FpeServiceJfrEvent.NAME).withThreshold(...)}. While no recording has it
+ * enabled, begin/finish are no-ops and the JIT drops the allocation.
+ */
+@Name(FpeServiceJfrEvent.NAME)
+@Label("FPE Service Call")
+@Category({"FPE"})
+@Description("One FormatPreservingService encrypt/decrypt call")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class FpeServiceJfrEvent extends jdk.jfr.Event {
+    public static final String NAME = "com.lennon.security.FpeService";
+
+    /** Outcome of a call that returned normally; a try* call reports its FpeStatus name instead. */
+    public static final String OK = "OK";
+    /** Outcome of a call that threw. */
+    public static final String ERROR = "ERROR";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Input Length")
+    @Description("Characters of the input, -1 for null")
+    int inputLength;
+
+    @Label("Radix")
+    @Description("Radix of the engine the operation runs on")
+    int radix;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Outcome")
+    String outcome;
+
+    /** end() the event and commit it if enabled and over the threshold. */
+    public void finish(FpeOperation op, int inputLength, int radix, String mode, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.operation = op.name();
+            this.inputLength = inputLength;
+            this.radix = radix;
+            this.mode = mode;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
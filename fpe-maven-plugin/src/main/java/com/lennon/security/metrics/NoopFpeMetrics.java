@@ -0,0 +1,22 @@
+package com.lennon.security.metrics;
+
+/** Records nothing; see {@link FpeMetrics#noop()}. */
+final class NoopFpeMetrics implements FpeMetrics {
+    static final NoopFpeMetrics INSTANCE = new NoopFpeMetrics();
+
+    private NoopFpeMetrics() {
+    }
+
+    @Override
+    public long start() {
+        return 0L;
+    }
+
+    @Override
+    public void stop(FpeOperation op, long startNanos) {
+    }
+
+    @Override
+    public void increment(FpeEvent event) {
+    }
+}
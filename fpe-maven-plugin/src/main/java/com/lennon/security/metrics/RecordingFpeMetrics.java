@@ -0,0 +1,57 @@
+package com.lennon.security.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link FpeMetrics}: a {@link LatencyHistogram} (which carries the striped call
+ * count) per operation and a LongAdder per event. Thread-safe; export with {@link FpeMetricsJmx}.
+ *
+ * Usage:
+ *   RecordingFpeMetrics metrics = new RecordingFpeMetrics();
+ *   FormatPreservingService fps = new FormatPreservingService(digits, alpha, ForkJoinPool.commonPool(), metrics);
+ *   FpeMetricsJmx.register(metrics, "default");
+ */
+public final class RecordingFpeMetrics implements FpeMetrics {
+    private static final FpeOperation[] OPERATIONS = FpeOperation.values();
+    private static final FpeEvent[] EVENTS = FpeEvent.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] events = new LongAdder[EVENTS.length];
+
+    public RecordingFpeMetrics() {
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new LatencyHistogram();
+        for (int i = 0; i < events.length; i++) events[i] = new LongAdder();
+    }
+
+    @Override
+    public long start() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void stop(FpeOperation op, long startNanos) {
+        latencies[op.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void increment(FpeEvent event) {
+        events[event.ordinal()].increment();
+    }
+
+    public LatencyHistogram latency(FpeOperation op) {
+        return latencies[op.ordinal()];
+    }
+
+    public long calls(FpeOperation op) {
+        return latencies[op.ordinal()].count();
+    }
+
+    public long count(FpeEvent event) {
+        return events[event.ordinal()].sum();
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : latencies) h.reset();
+        for (LongAdder a : events) a.reset();
+    }
+}
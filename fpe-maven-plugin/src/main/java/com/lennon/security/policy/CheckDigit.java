@@ -0,0 +1,9 @@
+package com.lennon.security.policy;
+
+/** What a DIGITS / ALPHABET handler does with the last symbol of the value. */
+public enum CheckDigit {
+    /** Encrypt every symbol. */
+    NONE,
+    /** Leave the last symbol (Luhn / ISO 7064 check char) as it is. */
+    KEEP_LAST
+}
@@ -0,0 +1,10 @@
+package com.lennon.security.policy;
+
+/**
+ * Compiled, immutable transform for one field; thread-safe. null passes through unchanged.
+ */
+public interface FieldHandler {
+    String encrypt(String value);
+
+    String decrypt(String value);
+}
@@ -0,0 +1,120 @@
+package com.lennon.security.policy;
+
+import com.lennon.security.core.FpeMode;
+
+import java.util.Objects;
+
+/**
+ * Declarative description of how one field is protected. Immutable; compiled into a
+ * {@link FieldHandler} by {@link FieldPolicyEngine}.
+ *
+ * Usage:
+ *   FieldPolicy phone = FieldPolicy.of("phone", FieldType.PHONE).withKeep(3, 4);
+ *   FieldPolicy card = FieldPolicy.of("card", FieldType.DIGITS).withCheckDigit(CheckDigit.KEEP_LAST);
+ */
+public final class FieldPolicy {
+    /** Alphabet used when a non-digit policy does not name one (covers Base64URL and email local parts). */
+    public static final String DEFAULT_ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ._-";
+
+    private final String name;
+    private final FieldType type;
+    private final String alphabet;
+    private final int keepPrefix;
+    private final int keepSuffix;
+    private final CheckDigit checkDigit;
+    private final FpeMode mode;
+    private final String tweak;
+    private final String mask;
+
+    private FieldPolicy(String name, FieldType type, String alphabet, int keepPrefix, int keepSuffix,
+                        CheckDigit checkDigit, FpeMode mode, String tweak, String mask) {
+        this.name = name;
+        this.type = type;
+        this.alphabet = alphabet;
+        this.keepPrefix = keepPrefix;
+        this.keepSuffix = keepSuffix;
+        this.checkDigit = checkDigit;
+        this.mode = mode;
+        this.tweak = tweak;
+        this.mask = mask;
+    }
+
+    /** Policy with the type's defaults: default alphabet, no kept ends, no check digit, FF1, engine tweak. */
+    public static FieldPolicy of(String name, FieldType type) {
+        Objects.requireNonNull(name, "name null");
+        Objects.requireNonNull(type, "type null");
+        return new FieldPolicy(name, type, DEFAULT_ALPHABET, 0, 0, CheckDigit.NONE, FpeMode.FF1, null, null);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public FieldType type() {
+        return type;
+    }
+
+    /** Alphabet for ALPHABET / PHONE_ALNUM / EMAIL / OPAQUE / UNICODE; ignored by DIGITS and PHONE. */
+    public String alphabet() {
+        return alphabet;
+    }
+
+    public int keepPrefix() {
+        return keepPrefix;
+    }
+
+    public int keepSuffix() {
+        return keepSuffix;
+    }
+
+    public CheckDigit checkDigit() {
+        return checkDigit;
+    }
+
+    public FpeMode mode() {
+        return mode;
+    }
+
+    /** Field-specific tweak, or null to use the engine-wide tweak. */
+    public String tweak() {
+        return tweak;
+    }
+
+    /** FormatMask pattern ('d' = slot) for DIGITS / ALPHABET / PHONE, or null; only a speed-up, see FormatMask. */
+    public String mask() {
+        return mask;
+    }
+
+    public FieldPolicy withAlphabet(String alphabet) {
+        return new FieldPolicy(name, type, Objects.requireNonNull(alphabet, "alphabet null"),
+                keepPrefix, keepSuffix, checkDigit, mode, tweak, mask);
+    }
+
+    public FieldPolicy withKeep(int keepPrefix, int keepSuffix) {
+        if (keepPrefix < 0 || keepSuffix < 0) throw new IllegalArgumentException("keep counts must be >= 0");
+        return new FieldPolicy(name, type, alphabet, keepPrefix, keepSuffix, checkDigit, mode, tweak, mask);
+    }
+
+    public FieldPolicy withCheckDigit(CheckDigit checkDigit) {
+        return new FieldPolicy(name, type, alphabet, keepPrefix, keepSuffix,
+                Objects.requireNonNull(checkDigit, "checkDigit null"), mode, tweak, mask);
+    }
+
+    public FieldPolicy withMode(FpeMode mode) {
+        return new FieldPolicy(name, type, alphabet, keepPrefix, keepSuffix, checkDigit,
+                Objects.requireNonNull(mode, "mode null"), tweak, mask);
+    }
+
+    public FieldPolicy withTweak(String tweak) {
+        return new FieldPolicy(name, type, alphabet, keepPrefix, keepSuffix, checkDigit, mode, tweak, mask);
+    }
+
+    public FieldPolicy withMask(String mask) {
+        return new FieldPolicy(name, type, alphabet, keepPrefix, keepSuffix, checkDigit, mode, tweak, mask);
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + type + ")";
+    }
+}
@@ -0,0 +1,237 @@
+package com.lennon.security.policy;
+
+import com.lennon.security.alphabet.Alphabet;
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatMask;
+import com.lennon.security.core.FormatPreservingService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Policy table compiled into one immutable {@link FieldHandler} per field.
+ *
+ * Field ids are the positions of the policies in the list they were compiled from. Resolve them
+ * once with {@link #fieldId(String)}; {@link #encrypt(int, String)} / {@link #decrypt(int, String)}
+ * are then a plain array lookup plus the field's operation. All parameter checks happen at
+ * compile time, and engines are shared between fields with the same mode, tweak and alphabet.
+ *
+ * Usage:
+ *   FieldPolicyEngine policies = FieldPolicyEngine.compile(PolicyConfig.load(path), key, tweak);
+ *   int phone = policies.fieldId("phone");
+ *   String enc = policies.encrypt(phone, "+86-156-1894-0601");
+ */
+public final class FieldPolicyEngine {
+    private static final String BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    private final FieldPolicy[] policies;
+    private final FieldHandler[] handlers;
+    private final Map<String, Integer> ids;
+
+    private FieldPolicyEngine(FieldPolicy[] policies, FieldHandler[] handlers, Map<String, Integer> ids) {
+        this.policies = policies;
+        this.handlers = handlers;
+        this.ids = ids;
+    }
+
+    public static FieldPolicyEngine compile(List<FieldPolicy> policies, byte[] key, byte[] tweak) {
+        return compile(policies, key, tweak, EngineOptions.defaults());
+    }
+
+    /**
+     * @param tweak   tweak for fields that do not set their own
+     * @param options backend / AES provider for every engine; the mode comes from each policy
+     */
+    public static FieldPolicyEngine compile(List<FieldPolicy> policies, byte[] key, byte[] tweak, EngineOptions options) {
+        Objects.requireNonNull(policies, "policies null");
+        if (key == null || key.length == 0) throw new IllegalArgumentException("key empty");
+        Objects.requireNonNull(options, "options null");
+        Compiler c = new Compiler(key, tweak == null ? new byte[0] : tweak, options);
+        FieldPolicy[] table = policies.toArray(new FieldPolicy[0]);
+        FieldHandler[] handlers = new FieldHandler[table.length];
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < table.length; i++) {
+            FieldPolicy p = Objects.requireNonNull(table[i], "policy null");
+            if (ids.putIfAbsent(p.name(), i) != null) {
+                throw new IllegalArgumentException("duplicate field: " + p.name());
+            }
+            handlers[i] = c.compile(p);
+        }
+        return new FieldPolicyEngine(table, handlers, Collections.unmodifiableMap(ids));
+    }
+
+    /** Id of the named field; resolve once, not per value. */
+    public int fieldId(String name) {
+        Integer id = ids.get(name);
+        if (id == null) throw new IllegalArgumentException("unknown field: " + name);
+        return id;
+    }
+
+    public int size() {
+        return handlers.length;
+    }
+
+    public FieldPolicy policy(int fieldId) {
+        return policies[fieldId];
+    }
+
+    public FieldHandler handler(int fieldId) {
+        return handlers[fieldId];
+    }
+
+    public String encrypt(int fieldId, String value) {
+        return handlers[fieldId].encrypt(value);
+    }
+
+    public String decrypt(int fieldId, String value) {
+        return handlers[fieldId].decrypt(value);
+    }
+
+    // ---------- compilation ----------
+
+    @FunctionalInterface
+    private interface Op {
+        String apply(String value) throws Exception;
+    }
+
+    /** Handler built from a pair of pre-bound operations. */
+    private static final class Compiled implements FieldHandler {
+        private final Op enc;
+        private final Op dec;
+
+        Compiled(Op enc, Op dec) {
+            this.enc = enc;
+            this.dec = dec;
+        }
+
+        @Override
+        public String encrypt(String value) {
+            return value == null ? null : run(enc, value);
+        }
+
+        @Override
+        public String decrypt(String value) {
+            return value == null ? null : run(dec, value);
+        }
+
+        private static String run(Op op, String value) {
+            try {
+                return op.apply(value);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    /** Builds handlers and shares engines between fields with the same (mode, tweak, alphabet). */
+    private static final class Compiler {
+        private final byte[] key;
+        private final byte[] tweak;
+        private final EngineOptions options;
+        private final Map<String, FF1BcEngineWithFormat> digitEngines = new HashMap<>();
+        private final Map<String, FF1BcEngineWithAlphabet> alphabetEngines = new HashMap<>();
+        private final Map<String, FormatPreservingService> services = new HashMap<>();
+
+        Compiler(byte[] key, byte[] tweak, EngineOptions options) {
+            this.key = key;
+            this.tweak = tweak;
+            this.options = options;
+        }
+
+        FieldHandler compile(FieldPolicy p) {
+            validate(p);
+            boolean keepLast = p.checkDigit() == CheckDigit.KEEP_LAST;
+            FormatMask mask = p.mask() == null ? null : FormatMask.compile(p.mask());
+            int kp = p.keepPrefix();
+            int ks = p.keepSuffix();
+            switch (p.type()) {
+                case DIGITS: {
+                    FF1BcEngineWithFormat e = digits(p);
+                    return new Compiled(v -> e.encryptFormatted(v, keepLast, mask), v -> e.decryptFormatted(v, keepLast, mask));
+                }
+                case ALPHABET: {
+                    FF1BcEngineWithAlphabet e = alphabet(p);
+                    return new Compiled(v -> e.encryptFormatted(v, keepLast, mask), v -> e.decryptFormatted(v, keepLast, mask));
+                }
+                case PHONE: {
+                    FormatPreservingService s = service(p);
+                    return new Compiled(v -> s.encryptPhoneKeepPrefix(v, kp, ks, mask), v -> s.decryptPhoneKeepPrefix(v, kp, ks, mask));
+                }
+                case PHONE_ALNUM: {
+                    FormatPreservingService s = service(p);
+                    return new Compiled(v -> s.encryptPhoneKeepEndsAllowLetters(v, kp, ks),
+                            v -> s.decryptPhoneKeepEndsAllowLetters(v, kp, ks));
+                }
+                case EMAIL: {
+                    FormatPreservingService s = service(p);
+                    return new Compiled(s::encryptEmailWithMarker, s::decryptEmailWithMarker);
+                }
+                case OPAQUE: {
+                    FormatPreservingService s = service(p);
+                    return new Compiled(s::encryptOpaqueAll, s::decryptOpaqueAll);
+                }
+                case UNICODE:
+                default: {
+                    FormatPreservingService s = service(p);
+                    return new Compiled(s::encryptAnyUnicodeOpaque, s::decryptAnyUnicodeOpaque);
+                }
+            }
+        }
+
+        private static void validate(FieldPolicy p) {
+            FieldType t = p.type();
+            boolean phone = t == FieldType.PHONE || t == FieldType.PHONE_ALNUM;
+            if (!phone && (p.keepPrefix() != 0 || p.keepSuffix() != 0)) {
+                throw new IllegalArgumentException(p + ": keepPrefix/keepSuffix only apply to PHONE and PHONE_ALNUM");
+            }
+            if (p.checkDigit() != CheckDigit.NONE && t != FieldType.DIGITS && t != FieldType.ALPHABET) {
+                throw new IllegalArgumentException(p + ": checkDigit only applies to DIGITS and ALPHABET");
+            }
+            if (p.mask() != null && t != FieldType.DIGITS && t != FieldType.ALPHABET && t != FieldType.PHONE) {
+                throw new IllegalArgumentException(p + ": mask only applies to DIGITS, ALPHABET and PHONE");
+            }
+            if (p.alphabet().length() < 2) {
+                throw new IllegalArgumentException(p + ": alphabet must have length >= 2");
+            }
+            if (t == FieldType.UNICODE) {
+                Alphabet a = new Alphabet(p.alphabet());
+                for (int i = 0; i < BASE64URL.length(); i++) {
+                    if (!a.contains(BASE64URL.charAt(i))) {
+                        throw new IllegalArgumentException(p + ": UNICODE alphabet must contain A-Z a-z 0-9 - _");
+                    }
+                }
+            }
+        }
+
+        private byte[] tweakOf(FieldPolicy p) {
+            return p.tweak() == null ? tweak : p.tweak().getBytes(StandardCharsets.UTF_8);
+        }
+
+        private String engineKey(FieldPolicy p, String alphabet) {
+            return p.mode() + "\u0000" + new String(tweakOf(p), StandardCharsets.ISO_8859_1) + "\u0000" + alphabet;
+        }
+
+        private FF1BcEngineWithFormat digits(FieldPolicy p) {
+            return digitEngines.computeIfAbsent(engineKey(p, ""),
+                    k -> new FF1BcEngineWithFormat(key, tweakOf(p), options.withMode(p.mode())));
+        }
+
+        private FF1BcEngineWithAlphabet alphabet(FieldPolicy p) {
+            return alphabetEngines.computeIfAbsent(engineKey(p, p.alphabet()),
+                    k -> new FF1BcEngineWithAlphabet(key, p.alphabet(), tweakOf(p), options.withMode(p.mode())));
+        }
+
+        private FormatPreservingService service(FieldPolicy p) {
+            return services.computeIfAbsent(engineKey(p, p.alphabet()),
+                    k -> new FormatPreservingService(digits(p), alphabet(p)));
+        }
+    }
+}
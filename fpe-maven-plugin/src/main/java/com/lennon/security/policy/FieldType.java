@@ -0,0 +1,22 @@
+package com.lennon.security.policy;
+
+/**
+ * Kind of value a {@link FieldPolicy} protects; selects the FormatPreservingService / engine
+ * operation its compiled handler runs.
+ */
+public enum FieldType {
+    /** Digits with any separators kept in place (cards, account numbers); honours checkDigit and mask. */
+    DIGITS,
+    /** Chars of the policy alphabet, everything else kept in place (IDs, passports); honours checkDigit and mask. */
+    ALPHABET,
+    /** Phone: keepPrefix / keepSuffix digits in clear, middle digits encrypted to digits; honours mask. */
+    PHONE,
+    /** Phone: keepPrefix / keepSuffix alphabet chars in clear, middle may become letters. */
+    PHONE_ALNUM,
+    /** Email: local part encrypted, domain kept, '#' marker appended. */
+    EMAIL,
+    /** Every alphabet char encrypted, everything else kept. */
+    OPAQUE,
+    /** Any Unicode text, via UTF-8 + Base64URL; output is longer than the input. */
+    UNICODE
+}
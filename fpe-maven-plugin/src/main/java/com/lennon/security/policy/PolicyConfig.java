@@ -0,0 +1,99 @@
+package com.lennon.security.policy;
+
+import com.lennon.security.core.FpeMode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Reads a policy table from a properties file (UTF-8). Field ids follow the order of "fields".
+ *
+ * <pre>
+ * fields=phone,email,card
+ * field.phone.type=PHONE
+ * field.phone.keepPrefix=3
+ * field.phone.keepSuffix=4
+ * field.phone.mask=+86-ddd-dddd-dddd
+ * field.email.type=EMAIL
+ * field.card.type=DIGITS
+ * field.card.checkDigit=KEEP_LAST
+ * field.card.mode=FF3_1
+ * </pre>
+ *
+ * Per-field keys: type (required), alphabet, keepPrefix, keepSuffix, checkDigit, mode, tweak, mask.
+ * Unknown keys under field.&lt;name&gt;. are rejected so typos fail at startup.
+ */
+public final class PolicyConfig {
+    private static final List<String> KEYS = List.of(
+            "type", "alphabet", "keepPrefix", "keepSuffix", "checkDigit", "mode", "tweak", "mask");
+
+    private PolicyConfig() {}
+
+    public static List<FieldPolicy> load(Path file) throws IOException {
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Properties props = new Properties();
+            props.load(r);
+            return parse(props);
+        }
+    }
+
+    public static List<FieldPolicy> parse(Properties props) {
+        String fields = props.getProperty("fields");
+        if (fields == null || fields.trim().isEmpty()) throw new IllegalArgumentException("missing 'fields'");
+        List<String> names = new ArrayList<>();
+        for (String n : fields.split(",")) {
+            String name = n.trim();
+            if (!name.isEmpty()) names.add(name);
+        }
+
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith("field.")) continue;
+            int dot = key.lastIndexOf('.');
+            String name = key.substring("field.".length(), Math.max(dot, "field.".length()));
+            if (!names.contains(name) || !KEYS.contains(key.substring(dot + 1))) {
+                throw new IllegalArgumentException("unknown policy key: " + key);
+            }
+        }
+
+        List<FieldPolicy> out = new ArrayList<>(names.size());
+        for (String name : names) {
+            String prefix = "field." + name + ".";
+            String type = props.getProperty(prefix + "type");
+            if (type == null) throw new IllegalArgumentException("missing " + prefix + "type");
+            FieldPolicy p = FieldPolicy.of(name, FieldType.valueOf(type.trim().toUpperCase(Locale.ROOT)));
+
+            String v;
+            if ((v = props.getProperty(prefix + "alphabet")) != null) p = p.withAlphabet(v);
+            int kp = intProp(props, prefix + "keepPrefix");
+            int ks = intProp(props, prefix + "keepSuffix");
+            if (kp != 0 || ks != 0) p = p.withKeep(kp, ks);
+            if ((v = props.getProperty(prefix + "checkDigit")) != null) {
+                p = p.withCheckDigit(CheckDigit.valueOf(v.trim().toUpperCase(Locale.ROOT)));
+            }
+            if ((v = props.getProperty(prefix + "mode")) != null) {
+                p = p.withMode(FpeMode.valueOf(v.trim().toUpperCase(Locale.ROOT)));
+            }
+            if ((v = props.getProperty(prefix + "tweak")) != null) p = p.withTweak(v);
+            if ((v = props.getProperty(prefix + "mask")) != null) p = p.withMask(v);
+            out.add(p);
+        }
+        return out;
+    }
+
+    private static int intProp(Properties props, String key) {
+        String v = props.getProperty(key);
+        if (v == null) return 0;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(key + " is not a number: " + v);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.lennon.security.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker threads of {@link AsyncFormatPreservingService}, JDK 21+ version (META-INF/versions/21):
+ * platform daemon threads for the pool, or a virtual thread per task.
+ */
+final class AsyncThreads {
+    private AsyncThreads() {
+    }
+
+    static boolean virtualSupported() {
+        return true;
+    }
+
+    static ThreadFactory platform(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    static ExecutorService virtualPerTask(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+}
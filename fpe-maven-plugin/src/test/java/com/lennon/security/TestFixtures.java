@@ -0,0 +1,30 @@
+package com.lennon.security;
+
+import com.lennon.security.core.PRF;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Key, tweak and alphabet shared by the tests.
+ *
+ * KEY comes from FPE_KEY_HEX (system property or environment), as in FormatPreservingServiceTests,
+ * and falls back to the SP 800-38G sample key, since these tests compare paths against each other
+ * rather than against fixed ciphertext.
+ */
+public final class TestFixtures {
+    public static final byte[] KEY = PRF.hexToBytes(keyHex());
+    /** A second key, for tests that need two. */
+    public static final byte[] OTHER_KEY = PRF.hexToBytes("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDDEEFF");
+    public static final byte[] TWEAK = "tenant:test|suite:fixtures".getBytes(StandardCharsets.UTF_8);
+    public static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ._-";
+
+    private TestFixtures() {
+    }
+
+    private static String keyHex() {
+        String hex = System.getProperty("FPE_KEY_HEX");
+        if (hex == null || hex.isEmpty()) hex = System.getenv("FPE_KEY_HEX");
+        if (hex == null || hex.isEmpty()) hex = "2B7E151628AED2A6ABF7158809CF4F3CEF4359D8D580AA4F7F036D6F04FC6A94";
+        return hex;
+    }
+}
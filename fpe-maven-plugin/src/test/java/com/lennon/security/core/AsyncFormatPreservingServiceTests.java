@@ -0,0 +1,116 @@
+package com.lennon.security.core;
+
+import com.lennon.security.metrics.FpeEvent;
+import com.lennon.security.metrics.FpeMetrics;
+import com.lennon.security.metrics.FpeOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncFormatPreservingServiceTests {
+    /** Holds the first call in metrics.start() until released, so the single worker stays busy. */
+    private static final class GateMetrics implements FpeMetrics {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean first = new AtomicBoolean(true);
+
+        @Override
+        public long start() {
+            if (first.compareAndSet(true, false)) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public void stop(FpeOperation op, long startNanos) {
+        }
+
+        @Override
+        public void increment(FpeEvent event) {
+        }
+    }
+
+    private static FormatPreservingService service(FpeMetrics metrics) {
+        return new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK), null, metrics);
+    }
+
+    @Test
+    public void results_matchSyncService() throws Exception {
+        FormatPreservingService fps = service(FpeMetrics.noop());
+        try (AsyncFormatPreservingService async = new AsyncFormatPreservingService(fps,
+                AsyncFormatPreservingService.Options.defaults().withThreads(2).withVirtualThreads(true))) {
+            String email = "john.doe123@example.com";
+            String enc = async.encryptEmailWithMarker(email).get(5, TimeUnit.SECONDS);
+            assertEquals(fps.encryptEmailWithMarker(email), enc);
+            assertEquals(email, async.decryptEmailWithMarker(enc).get(5, TimeUnit.SECONDS));
+
+            String phone = async.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2).get(5, TimeUnit.SECONDS);
+            assertEquals(fps.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2), phone);
+            assertEquals(FpeStatus.MALFORMED, async.tryEncryptEmailWithMarker("no-at-sign").get(5, TimeUnit.SECONDS).status());
+
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> async.encryptOpaqueAll("ab").get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void coalesces_andRejectsWhenFull() throws Exception {
+        GateMetrics gate = new GateMetrics();
+        try (AsyncFormatPreservingService async = new AsyncFormatPreservingService(service(gate),
+                AsyncFormatPreservingService.Options.defaults().withThreads(1).withQueueCapacity(1))) {
+            CompletableFuture<String> a = async.encryptEmailWithMarker("alice@example.com");
+            assertTrue(gate.entered.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> b = async.encryptEmailWithMarker("alice@example.com"); // joins a
+            CompletableFuture<String> c = async.encryptEmailWithMarker("bob@example.com");   // queued
+            CompletableFuture<String> d = async.encryptEmailWithMarker("carol@example.com"); // queue full
+            assertNotSame(a, b);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> d.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+            b.cancel(false); // does not cancel the shared run
+            gate.release.countDown();
+            assertEquals(service(FpeMetrics.noop()).encryptEmailWithMarker("alice@example.com"),
+                    a.get(5, TimeUnit.SECONDS));
+            assertNotNull(c.get(5, TimeUnit.SECONDS));
+            assertEquals(1, async.coalescedCount());
+            assertEquals(1, async.rejectedCount());
+
+            // finished calls leave the in-flight map, so this one runs again
+            assertEquals(a.get(), async.encryptEmailWithMarker("alice@example.com").get(5, TimeUnit.SECONDS));
+            assertEquals(1, async.coalescedCount());
+        }
+    }
+
+    @Test
+    public void callerRuns_whenFull() throws Exception {
+        GateMetrics gate = new GateMetrics();
+        try (AsyncFormatPreservingService async = new AsyncFormatPreservingService(service(gate),
+                AsyncFormatPreservingService.Options.defaults().withThreads(1).withQueueCapacity(1)
+                        .withOverflow(AsyncFormatPreservingService.Overflow.CALLER_RUNS).withCoalesce(false))) {
+            async.encryptEmailWithMarker("alice@example.com");
+            assertTrue(gate.entered.await(5, TimeUnit.SECONDS));
+            async.encryptEmailWithMarker("bob@example.com");
+            CompletableFuture<String> d = async.encryptEmailWithMarker("carol@example.com");
+            assertTrue(d.isDone()); // ran on this thread
+            assertEquals(1, async.callerRunsCount());
+            assertEquals(0, async.rejectedCount());
+            gate.release.countDown();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.lennon.security.core;
+
+import com.lennon.security.metrics.FpeEvent;
+import com.lennon.security.metrics.FpeMetrics;
+import com.lennon.security.metrics.FpeOperation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the packaged JAR (failsafe, java21 profile): checks that the META-INF/versions/21
+ * classes are there and that virtual-thread calls are bounded by threads + queueCapacity.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+public class AsyncVirtualThreadsIT {
+    /** Holds every call in metrics.start() until released, recording the thread it ran on. */
+    private static final class HoldMetrics implements FpeMetrics {
+        final CountDownLatch entered = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public long start() {
+            threads.add(Thread.currentThread());
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0L;
+        }
+
+        @Override
+        public void stop(FpeOperation op, long startNanos) {
+        }
+
+        @Override
+        public void increment(FpeEvent event) {
+        }
+    }
+
+    @Test
+    public void jar_runsCallsOnVirtualThreads_boundedInFlight() throws Exception {
+        assertTrue(AsyncFormatPreservingService.Options.virtualThreadsSupported(),
+                "JDK 21 classes not loaded: the JAR lacks META-INF/versions/21 or the Multi-Release manifest entry");
+        HoldMetrics hold = new HoldMetrics();
+        FormatPreservingService fps = new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK), null, hold);
+        try (AsyncFormatPreservingService async = new AsyncFormatPreservingService(fps,
+                AsyncFormatPreservingService.Options.defaults().withThreads(1).withQueueCapacity(1)
+                        .withVirtualThreads(true))) {
+            assertTrue(async.usesVirtualThreads());
+            CompletableFuture<String> a = async.encryptEmailWithMarker("alice@example.com");
+            CompletableFuture<String> b = async.encryptEmailWithMarker("bob@example.com");
+            assertTrue(hold.entered.await(5, TimeUnit.SECONDS)); // both running at once, on their own threads
+            CompletableFuture<String> c = async.encryptEmailWithMarker("carol@example.com");
+            ExecutionException e = assertThrows(ExecutionException.class, () -> c.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+            hold.release.countDown();
+            assertNotNull(a.get(5, TimeUnit.SECONDS));
+            assertNotNull(b.get(5, TimeUnit.SECONDS));
+            for (Thread t : hold.threads) {
+                assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(t), t.toString());
+            }
+        }
+    }
+}
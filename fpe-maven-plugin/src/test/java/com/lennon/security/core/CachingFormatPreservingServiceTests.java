@@ -0,0 +1,84 @@
+package com.lennon.security.core;
+
+import org.junit.jupiter.api.Test;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memoizing wrapper: same results as the service, scoped by key and parameters, bounded.
+ */
+public class CachingFormatPreservingServiceTests {
+    private static FormatPreservingService service(byte[] key) {
+        return new FormatPreservingService(new FF1BcEngineWithFormat(key, TWEAK),
+                new FF1BcEngineWithAlphabet(key, ALPHABET, TWEAK));
+    }
+
+    @Test
+    public void repeatedValues_hitCache_andMatchService() throws Exception {
+        FormatPreservingService plain = service(KEY);
+        CachingFormatPreservingService fps = new CachingFormatPreservingService(plain, new FpeResultCache(100, 0));
+        String phone = "+86-156-1894-0601";
+        String email = "alice.smith-01_test@example.com";
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(plain.encryptPhoneKeepPrefix(phone, 3, 4), fps.encryptPhoneKeepPrefix(phone, 3, 4));
+            assertEquals(plain.encryptEmailWithMarker(email), fps.encryptEmailWithMarker(email));
+        }
+        assertEquals(2, fps.cache().missCount());
+        assertEquals(4, fps.cache().hitCount());
+
+        // parameters are part of the key
+        assertEquals(plain.encryptPhoneKeepPrefix(phone, 2, 2), fps.encryptPhoneKeepPrefix(phone, 2, 2));
+        assertEquals(3, fps.cache().missCount());
+
+        String enc = fps.encryptEmailWithMarker(email);
+        assertEquals(email, fps.decryptEmailWithMarker(enc));
+    }
+
+    @Test
+    public void switchKey_dropsOldEntries() throws Exception {
+        FpeResultCache cache = new FpeResultCache(100, 0);
+        CachingFormatPreservingService fps = new CachingFormatPreservingService(service(KEY), cache);
+        String phone = "13884353625";
+        String underA = fps.encryptPhoneKeepPrefix(phone, 3, 2);
+        assertEquals(1, cache.size());
+
+        fps.switchKey(service(OTHER_KEY));
+        assertEquals(0, cache.size());
+        String underB = fps.encryptPhoneKeepPrefix(phone, 3, 2);
+        assertEquals(service(OTHER_KEY).encryptPhoneKeepPrefix(phone, 3, 2), underB);
+        assertNotEquals(underA, underB);
+    }
+
+    @Test
+    public void sizeBound_and_ttl_evict() throws Exception {
+        FpeResultCache bounded = new FpeResultCache(4, 0, 1);
+        CachingFormatPreservingService fps = new CachingFormatPreservingService(service(KEY), bounded);
+        for (int i = 0; i < 10; i++) fps.encryptPhoneKeepPrefix("1388435362" + i, 3, 2);
+        assertEquals(4, bounded.size());
+        assertEquals(6, bounded.evictionCount());
+
+        // a value read since it was cached gets a second chance over one that was not
+        fps.encryptPhoneKeepPrefix("13884353626", 3, 2);
+        fps.encryptPhoneKeepPrefix("13884353620", 3, 2);
+        long misses = bounded.missCount();
+        fps.encryptPhoneKeepPrefix("13884353626", 3, 2);
+        assertEquals(misses, bounded.missCount());
+
+        FpeResultCache expiring = new FpeResultCache(100, 1);
+        CachingFormatPreservingService ttl = new CachingFormatPreservingService(service(KEY), expiring);
+        ttl.encryptPhoneKeepPrefix("13884353625", 3, 2);
+        Thread.sleep(5);
+        ttl.encryptPhoneKeepPrefix("13884353625", 3, 2);
+        assertEquals(2, expiring.missCount());
+        assertEquals(1, expiring.evictionCount());
+    }
+
+    @Test
+    public void failures_areNotCached() {
+        CachingFormatPreservingService fps = new CachingFormatPreservingService(service(KEY), new FpeResultCache(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> fps.encryptEmailWithMarker("not-an-email"));
+        assertEquals(0, fps.cache().size());
+    }
+}
@@ -0,0 +1,142 @@
+package com.lennon.security.core;
+
+import com.lennon.security.domain.NationalIdDomain;
+import com.lennon.security.domain.RankedDomain;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rank / unrank encryption over national IDs and a plain numeric domain.
+ */
+public class ConstrainedDomainEngineTests {
+    private static final List<String> REGIONS = Arrays.asList("110101", "110105", "310104", "440305", "510107");
+    private static final LocalDate MIN = LocalDate.of(1930, 1, 1);
+    private static final LocalDate MAX = LocalDate.of(2020, 12, 31);
+
+    @Test
+    public void national_id_stays_valid_and_roundtrips() {
+        NationalIdDomain ids = new NationalIdDomain(REGIONS, MIN, MAX);
+        ConstrainedDomainEngine engine = new ConstrainedDomainEngine(KEY, TWEAK, ids);
+        DateTimeFormatter yyyyMMdd = DateTimeFormatter.BASIC_ISO_DATE;
+
+        Random rnd = new Random(14);
+        for (int n = 0; n < 2000; n++) {
+            String id = ids.unrank(Math.floorMod(rnd.nextLong(), ids.size()));
+            String enc = engine.encrypt(id);
+            assertEquals(18, enc.length());
+            assertTrue(REGIONS.contains(enc.substring(0, 6)), enc);
+            LocalDate birth = LocalDate.parse(enc.substring(6, 14), yyyyMMdd);
+            assertFalse(birth.isBefore(MIN) || birth.isAfter(MAX), enc);
+            assertEquals(enc, ids.unrank(ids.rank(enc)));   // check char is correct
+            assertEquals(id, engine.decrypt(enc));
+        }
+
+        String id = "11010519491231002X";
+        String enc = engine.encrypt(id);
+        assertNotEquals(id, enc);
+        assertEquals(enc, new ConstrainedDomainEngine(KEY, TWEAK, ids,
+                EngineOptions.defaults().withBlockCipher(BlockCipherProvider.jca())).encrypt(id));
+        assertNotEquals(enc, new ConstrainedDomainEngine(KEY, "other".getBytes(StandardCharsets.UTF_8), ids).encrypt(id));
+        assertEquals(id, engine.decrypt(engine.encrypt("11010519491231002x")));
+    }
+
+    @Test
+    public void national_id_rejects_values_outside_domain() {
+        NationalIdDomain ids = new NationalIdDomain(REGIONS, MIN, MAX);
+        ConstrainedDomainEngine engine = new ConstrainedDomainEngine(KEY, TWEAK, ids);
+        assertThrows(IllegalArgumentException.class, () -> engine.encrypt("110105194912310021"));   // bad check char
+        assertThrows(IllegalArgumentException.class, () -> engine.encrypt("120105194912310025"));   // region not listed
+        assertThrows(IllegalArgumentException.class, () -> engine.encrypt("110105194902300020"));   // Feb 30
+        assertThrows(IllegalArgumentException.class, () -> engine.encrypt("1101051949123100"));
+        assertNull(engine.encrypt(null));
+    }
+
+    @Test
+    public void rank_permutation_is_bijective() {
+        RankedDomain numbers = new RankedDomain() {
+            @Override public long left() { return 997; }
+            @Override public long right() { return 1009; }
+            @Override public long rank(CharSequence value) { return Long.parseLong(value.toString()); }
+            @Override public String unrank(long rank) { return Long.toString(rank); }
+        };
+        ConstrainedDomainEngine engine = new ConstrainedDomainEngine(KEY, TWEAK, numbers);
+        int n = (int) numbers.size();
+        BitSet seen = new BitSet(n);
+        for (int r = 0; r < n; r++) {
+            long c = engine.encryptRank(r);
+            assertTrue(c >= 0 && c < n);
+            assertFalse(seen.get((int) c));
+            seen.set((int) c);
+            if (r % 997 == 0) assertEquals(r, engine.decryptRank(c));
+        }
+        assertThrows(IllegalArgumentException.class, () -> engine.encryptRank(n));
+    }
+
+    @Test
+    public void domain_size_must_fit_in_a_long() {
+        // both factors are below 2^55, but their product is not below 2^63
+        assertThrows(IllegalArgumentException.class, () -> new ConstrainedDomainEngine(KEY, TWEAK, factors(1L << 40, 1L << 40)));
+        assertThrows(IllegalArgumentException.class, () -> new ConstrainedDomainEngine(KEY, TWEAK, factors(1L << 32, 1L << 31)));
+
+        RankedDomain widest = factors(1L << 31, (1L << 32) - 1);
+        ConstrainedDomainEngine engine = new ConstrainedDomainEngine(KEY, TWEAK, widest);
+        long last = widest.size() - 1;
+        for (long r : new long[]{0, 1, last / 2, last}) {
+            long c = engine.encryptRank(r);
+            assertTrue(c >= 0 && c <= last);
+            assertEquals(r, engine.decryptRank(c));
+        }
+        assertThrows(IllegalArgumentException.class, () -> engine.encryptRank(last + 1));
+    }
+
+    @Test
+    public void decimal_domain_matches_nist_ff1_samples() {
+        // SP 800-38G FF1 samples 1 and 2 (AES-128, radix 10): a 10^10 domain is exactly FF1 over ten digits
+        byte[] key = PRF.hexToBytes("2B7E151628AED2A6ABF7158809CF4F3C");
+        RankedDomain tenDigits = factors(100_000, 100_000);
+        ConstrainedDomainEngine plain = new ConstrainedDomainEngine(key, new byte[0], tenDigits);
+        assertEquals(10, plain.radix());
+        assertEquals(10, plain.length());
+        assertEquals(2433477484L, plain.encryptRank(123456789L));
+        assertEquals(123456789L, plain.decryptRank(2433477484L));
+        ConstrainedDomainEngine tweaked = new ConstrainedDomainEngine(key, PRF.hexToBytes("39383736353433323130"), tenDigits);
+        assertEquals(6124200773L, tweaked.encryptRank(123456789L));
+    }
+
+    @Test
+    public void national_id_known_answers() {
+        // pins radix / length selection and the walk; any change to either shows up here
+        byte[] key = PRF.hexToBytes("2B7E151628AED2A6ABF7158809CF4F3CEF4359D8D580AA4F7F036D6F04FC6A94");
+        NationalIdDomain ids = new NationalIdDomain(REGIONS, MIN, MAX);
+        ConstrainedDomainEngine engine = new ConstrainedDomainEngine(key, "tenant:kat".getBytes(StandardCharsets.UTF_8), ids);
+        assertEquals(114, engine.radix());   // 114^4 = 168,896,016 for 166,185,000 IDs
+        assertEquals(4, engine.length());
+        String[] plain = {"11010519491231002X", "11010119300101000X", "510107202012319998"};
+        String[] expected = {"510107199709079037", "310104199007302680", "310104194609281511"};
+        for (int i = 0; i < plain.length; i++) {
+            assertEquals(expected[i], engine.encrypt(plain[i]));
+            assertEquals(plain[i], engine.decrypt(expected[i]));
+        }
+        assertEquals("11010119300101000X", ids.unrank(0));
+        assertEquals("510107202012319998", ids.unrank(ids.size() - 1));
+    }
+
+    private static RankedDomain factors(long left, long right) {
+        return new RankedDomain() {
+            @Override public long left() { return left; }
+            @Override public long right() { return right; }
+            @Override public long rank(CharSequence value) { return Long.parseLong(value.toString()); }
+            @Override public String unrank(long rank) { return Long.toString(rank); }
+        };
+    }
+}
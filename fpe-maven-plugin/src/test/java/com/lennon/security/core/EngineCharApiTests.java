@@ -0,0 +1,96 @@
+package com.lennon.security.core;
+
+import com.lennon.security.alphabet.Alphabet;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * char[] / CharBuffer overloads must agree with the String API of each engine.
+ */
+public class EngineCharApiTests {
+    @Test
+    public void digits_charArray_matchesString() {
+        FF1BcEngine e = new FF1BcEngine(KEY, 10, TWEAK);
+        String plain = "13884353625";
+        char[] row = ("id=" + plain + ";").toCharArray();
+        char[] out = new char[row.length];
+        e.encrypt(row, 3, plain.length(), out, 3);
+        assertEquals(e.encryptDigits(plain), new String(out, 3, plain.length()));
+
+        // in place
+        e.decrypt(out, 3, plain.length(), out, 3);
+        assertEquals(plain, new String(out, 3, plain.length()));
+    }
+
+    @Test
+    public void format_charArray_and_buffers_matchString() {
+        FF1BcEngineWithFormat e = new FF1BcEngineWithFormat(KEY, TWEAK, EngineOptions.defaults().withBackend(FF1Backend.NATIVE));
+        for (String plain : new String[]{"+1-202-555-0173", "4111 1111 1111 1111", "12", "no digits"}) {
+            for (boolean keepLuhn : new boolean[]{false, true}) {
+                String expected;
+                try {
+                    expected = e.encryptFormatted(plain, keepLuhn);
+                } catch (IllegalArgumentException tooShort) {
+                    assertThrows(IllegalArgumentException.class,
+                            () -> e.encrypt(plain.toCharArray(), 0, plain.length(), new char[plain.length()], 0, keepLuhn));
+                    continue;
+                }
+                char[] buf = plain.toCharArray();
+                e.encrypt(buf, 0, buf.length, buf, 0, keepLuhn);
+                assertEquals(expected, new String(buf));
+
+                // heap buffers use the backing arrays directly
+                CharBuffer src = CharBuffer.wrap(plain.toCharArray());
+                CharBuffer dst = CharBuffer.allocate(plain.length());
+                e.encrypt(src, dst, keepLuhn);
+                assertFalse(src.hasRemaining());
+                assertEquals(expected, dst.flip().toString());
+
+                // read-only source is staged through scratch
+                CharBuffer ro = CharBuffer.wrap(expected);
+                CharBuffer back = CharBuffer.allocate(plain.length());
+                e.decrypt(ro, back, keepLuhn);
+                assertEquals(plain, back.flip().toString());
+            }
+        }
+    }
+
+    @Test
+    public void alphabet_charArray_matchesString() throws Exception {
+        FF1BcEngineWithAlphabet e = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        String plain = "alice.smith-01_test";
+        String expected = e.encryptFormatted(plain, true);
+        char[] out = new char[plain.length() + 2];
+        assertEquals(plain.length(), e.encrypt(plain.toCharArray(), 0, plain.length(), out, 2, true));
+        assertEquals(expected, new String(out, 2, plain.length()));
+
+        CharBuffer dst = CharBuffer.allocate(plain.length());
+        e.decrypt(CharBuffer.wrap(expected), dst, true);
+        assertEquals(plain, dst.flip().toString());
+
+        CharBuffer tooSmall = CharBuffer.allocate(3);
+        assertThrows(BufferOverflowException.class, () -> e.encrypt(CharBuffer.wrap(plain), tooSmall));
+    }
+
+    @Test
+    public void sharedAlphabet_matchesStringAlphabet() throws Exception {
+        Alphabet codec = new Alphabet(ALPHABET);
+        FF1BcEngineWithAlphabet byString = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        FF1BcEngineWithAlphabet byCodec = new FF1BcEngineWithAlphabet(KEY, codec, TWEAK);
+        String plain = "alice.smith-01_test";
+        assertEquals(byString.encryptChars(plain), byCodec.encryptChars(plain));
+        assertSame(codec, byCodec.alphabet());
+
+        assertTrue(codec.contains('_'));
+        assertFalse(codec.contains('@'));
+        assertFalse(codec.contains('\u4e2d'));
+        assertEquals(-1, codec.indexOf('@'));
+        assertThrows(IllegalArgumentException.class, () -> byCodec.encryptChars("alice@example"));
+        assertThrows(IllegalArgumentException.class, () -> new Alphabet("abca"));
+    }
+}
@@ -0,0 +1,184 @@
+package com.lennon.security.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Native FF1Cipher vs. NIST SP 800-38G FF1 samples and vs. the BouncyCastle backend.
+ */
+public class FF1CipherTests {
+    private static final String K128 = "2B7E151628AED2A6ABF7158809CF4F3C";
+    private static final String K192 = K128 + "EF4359D8D580AA4F";
+    private static final String K256 = K192 + "7F036D6F04FC6A94";
+    private static final String T_DIGITS = "39383736353433323130";
+    private static final String T_ALNUM = "3737373770717273373737";
+    private static final String RADIX36 = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    private static final EngineOptions NATIVE = EngineOptions.defaults().withBackend(FF1Backend.NATIVE);
+    private static final EngineOptions BC = EngineOptions.defaults().withBackend(FF1Backend.BOUNCY_CASTLE);
+    private static final EngineOptions[] ALL_OPTIONS = {
+            BC,
+            NATIVE,
+            BC.withBlockCipher(BlockCipherProvider.jca()),
+            NATIVE.withBlockCipher(BlockCipherProvider.jca()),
+    };
+
+    @Test
+    public void nist_samples_digits_allBackends() {
+        String[][] samples = {
+                // key, tweak, plain, cipher
+                {K128, "", "0123456789", "2433477484"},
+                {K128, T_DIGITS, "0123456789", "6124200773"},
+                {K192, "", "0123456789", "2830668132"},
+                {K192, T_DIGITS, "0123456789", "2496655549"},
+                {K256, "", "0123456789", "6657667009"},
+                {K256, T_DIGITS, "0123456789", "1001623463"},
+        };
+        for (String[] s : samples) {
+            for (EngineOptions opts : ALL_OPTIONS) {
+                FF1BcEngine e = new FF1BcEngine(PRF.hexToBytes(s[0]), 10, PRF.hexToBytes(s[1]), opts);
+                assertEquals(s[3], e.encryptDigits(s[2]), opts.backend() + " encrypt " + s[0] + "/" + s[1]);
+                assertEquals(s[2], e.decryptDigits(s[3]), opts.backend() + " decrypt " + s[0] + "/" + s[1]);
+            }
+        }
+    }
+
+    @Test
+    public void nist_samples_radix36_allBackends() throws Exception {
+        String[][] samples = {
+                {K128, "a9tv40mll9kdu509eum"},
+                {K192, "xbj3kv35jrawxv32ysr"},
+                {K256, "xs8a0azh2avyalyzuwd"},
+        };
+        String plain = "0123456789abcdefghi";
+        for (String[] s : samples) {
+            for (EngineOptions opts : ALL_OPTIONS) {
+                FF1BcEngineWithAlphabet e =
+                        new FF1BcEngineWithAlphabet(PRF.hexToBytes(s[0]), RADIX36, PRF.hexToBytes(T_ALNUM), opts);
+                assertEquals(s[1], e.encryptChars(plain), opts.backend() + " encrypt " + s[0]);
+                assertEquals(plain, e.decryptChars(s[1]), opts.backend() + " decrypt " + s[0]);
+            }
+        }
+    }
+
+    @Test
+    public void native_matches_bouncyCastle_randomized() {
+        Random rnd = new Random(42);
+        int[] radices = {2, 10, 26, 36, 62, 66, 94, 256};
+        for (int radix : radices) {
+            for (int t = 0; t < 40; t += 7) {
+                byte[] key = new byte[16 + 8 * rnd.nextInt(3)];
+                byte[] tweak = new byte[t];
+                rnd.nextBytes(key);
+                rnd.nextBytes(tweak);
+                FF1Cipher nat = new FF1Cipher(key, radix, tweak);
+                FF1EnginePool bc = new FF1EnginePool(key, radix, tweak);
+                int minLen = Math.max(2, (int) Math.ceil(Math.log(1_000_000d) / Math.log(radix)));
+                for (int n = minLen; n <= 70; n += 1 + rnd.nextInt(4)) {
+                    byte[] in = new byte[n];
+                    for (int i = 0; i < n; i++) in[i] = (byte) rnd.nextInt(radix);
+                    byte[] expected = new byte[n];
+                    byte[] actual = new byte[n];
+                    bc.process(true, in, 0, n, expected, 0);
+                    nat.encrypt(in, 0, n, actual, 0);
+                    assertArrayEquals(expected, actual, "radix=" + radix + " t=" + t + " n=" + n);
+                    byte[] back = new byte[n];
+                    nat.decrypt(actual, 0, n, back, 0);
+                    assertArrayEquals(in, back, "roundtrip radix=" + radix + " t=" + t + " n=" + n);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void native_matches_bouncyCastle_acrossArithmeticTiers() {
+        // long (radix^v < 2^55) -> int limbs (d <= 64 bytes) -> BigInteger, including the
+        // all-zero / all-max inputs that drive every carry and borrow
+        Random rnd = new Random(7);
+        int[] radices = {2, 3, 10, 65, 94, 255, 256};
+        for (int radix : radices) {
+            byte[] key = new byte[32];
+            byte[] tweak = new byte[rnd.nextInt(20)];
+            rnd.nextBytes(key);
+            rnd.nextBytes(tweak);
+            FF1Cipher nat = new FF1Cipher(key, radix, tweak);
+            FF1EnginePool bc = new FF1EnginePool(key, radix, tweak);
+            double bitsPerSymbol = Math.log(radix) / Math.log(2);
+            int minLen = Math.max(2, (int) Math.ceil(Math.log(1_000_000d) / Math.log(radix)));
+            // v * bitsPerSymbol ~ 8 * (WORDS_MAX_BYTES + 16) puts the top lengths on BigInteger
+            int maxLen = (int) Math.ceil(2 * 8 * (FF1Cipher.WORDS_MAX_BYTES + 16) / bitsPerSymbol);
+            for (int n = minLen; n <= maxLen; n += 1 + rnd.nextInt(Math.max(1, maxLen / 40))) {
+                for (int fill = 0; fill < 3; fill++) {
+                    byte[] in = new byte[n];
+                    for (int i = 0; i < n; i++) {
+                        in[i] = (byte) (fill == 0 ? 0 : fill == 1 ? radix - 1 : rnd.nextInt(radix));
+                    }
+                    byte[] expected = new byte[n];
+                    byte[] actual = new byte[n];
+                    bc.process(true, in, 0, n, expected, 0);
+                    nat.encrypt(in, 0, n, actual, 0);
+                    assertArrayEquals(expected, actual, "radix=" + radix + " n=" + n + " fill=" + fill);
+                    byte[] back = new byte[n];
+                    nat.decrypt(actual, 0, n, back, 0);
+                    assertArrayEquals(in, back, "roundtrip radix=" + radix + " n=" + n + " fill=" + fill);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void native_lengthCache_sizes_giveSameOutput() {
+        byte[] key = PRF.hexToBytes(K256);
+        byte[] tweak = "tenant:demo|app:plugin-consumer-demo".getBytes(StandardCharsets.UTF_8);
+        FF1EnginePool bc = new FF1EnginePool(key, 10, tweak);
+        FF1Cipher uncached = new FF1Cipher(key, 10, tweak, 0);
+        FF1Cipher single = new FF1Cipher(key, 10, tweak, 1);
+        FF1Cipher cached = new FF1Cipher(key, 10, tweak);
+        Random rnd = new Random(7);
+        for (int round = 0; round < 3; round++) {
+            for (int n = 6; n <= 32; n++) {
+                byte[] in = new byte[n];
+                for (int i = 0; i < n; i++) in[i] = (byte) rnd.nextInt(10);
+                byte[] expected = new byte[n];
+                bc.process(true, in, 0, n, expected, 0);
+                for (FF1Cipher c : new FF1Cipher[]{uncached, single, cached}) {
+                    byte[] actual = new byte[n];
+                    c.encrypt(in, 0, n, actual, 0);
+                    assertArrayEquals(expected, actual, "n=" + n);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void native_rejects_shortOrOutOfRangeInput() {
+        FF1Cipher ff1 = new FF1Cipher(PRF.hexToBytes(K128), 10, new byte[0]);
+        byte[] out = new byte[8];
+        assertThrows(IllegalArgumentException.class, () -> ff1.encrypt(new byte[]{1, 2, 3, 4, 5}, 0, 5, out, 0));
+        assertThrows(IllegalArgumentException.class, () -> ff1.encrypt(new byte[]{1, 2, 3, 4, 5, 6, 7, 10}, 0, 8, out, 0));
+    }
+
+    @Test
+    public void destroy_wipesEveryThreadsState_andLaterCallsFail() throws Exception {
+        EngineOptions[] all = {
+                BC, NATIVE, NATIVE.withSmallDomainTables(true), BC.withMode(FpeMode.FF3_1),
+        };
+        for (EngineOptions opts : all) {
+            FF1BcEngine e = new FF1BcEngine(PRF.hexToBytes(K256), 10, PRF.hexToBytes(T_DIGITS), opts);
+            String enc = e.encryptDigits("0123456789");
+            Thread other = new Thread(() -> e.encryptDigits("9876543210"));
+            other.start();
+            other.join();
+
+            e.destroy();
+            assertTrue(e.isDestroyed(), opts.toString());
+            assertThrows(IllegalStateException.class, () -> e.encryptDigits("0123456789"), opts.toString());
+            assertThrows(IllegalStateException.class, () -> e.decryptDigits(enc), opts.toString());
+            e.destroy(); // idempotent
+        }
+    }
+}
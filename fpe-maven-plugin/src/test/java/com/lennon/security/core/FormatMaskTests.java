@@ -0,0 +1,115 @@
+package com.lennon.security.core;
+
+import com.lennon.security.alphabet.Alphabet;
+import org.junit.jupiter.api.Test;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Precompiled masks give the dynamic-path result for every input: those that fit and those that fall back.
+ */
+public class FormatMaskTests {
+    @Test
+    public void compile_and_learn() {
+        FormatMask card = FormatMask.compile("dddd dddd dddd dddd");
+        assertEquals(19, card.length());
+        assertEquals(16, card.slotCount());
+        assertTrue(card.matches("4111 1111 1111 1111", Alphabet.DIGITS));
+        assertFalse(card.matches("4111-1111-1111-1111", Alphabet.DIGITS));
+        assertFalse(card.matches("4111 1111 1111 111", Alphabet.DIGITS));
+        assertFalse(card.matches("4111 1111 1111 111x", Alphabet.DIGITS));
+
+        FormatMask learned = FormatMask.learn("+1-202-555-0173", Alphabet.DIGITS);
+        assertEquals("+d-ddd-ddd-dddd", learned.toString());
+        assertEquals(11, learned.slotCount());
+    }
+
+    @Test
+    public void formatEngine_mask_matchesDynamic_andFallsBack() {
+        FF1BcEngineWithFormat e = new FF1BcEngineWithFormat(KEY, TWEAK);
+        FormatMask card = FormatMask.learn("4111 1111 1111 1111", Alphabet.DIGITS);
+        for (String v : new String[]{"4111 1111 1111 1111", "5500 0000 0000 0004", "4111-1111-1111-1111", "41111111"}) {
+            String expected = e.encryptFormatted(v, true);
+            assertEquals(expected, e.encryptFormatted(v, true, card), v);
+            assertEquals(v, e.decryptFormatted(expected, true, card), v);
+        }
+
+        // a compiled digit literal is encrypted like any other digit, as on the dynamic path
+        FormatMask us = FormatMask.compile("+1-ddd-ddd-dddd");
+        assertEquals(10, us.slotCount());
+        assertEquals(11, us.slotCount(Alphabet.DIGITS));
+        String enc = e.encryptFormatted("+1-202-555-0173", false, us);
+        assertEquals(e.encryptFormatted("+1-202-555-0173", false), enc);
+        assertEquals("+1-202-555-0173", e.decryptFormatted(enc, false, us));
+    }
+
+    @Test
+    public void compiledLiteral_ciphertextOfOtherPrefix_roundTrips() throws Exception {
+        // "+7-..." does not fit "+1-..." literally, but its ciphertext may start with "+1-";
+        // decrypting that must still give the "+7-..." value back
+        FF1BcEngineWithFormat e = new FF1BcEngineWithFormat(KEY, TWEAK);
+        FormatMask us = FormatMask.compile("+1-ddd-ddd-dddd");
+        int landedOnLiteral = 0;
+        for (int i = 0; i < 200; i++) {
+            String v = String.format("+7-200-%03d-0173", i);
+            String enc = e.encryptFormatted(v, false, us);
+            assertEquals(e.encryptFormatted(v, false), enc, v);
+            if (enc.startsWith("+1-")) landedOnLiteral++;
+            assertEquals(v, e.decryptFormatted(enc, false, us), v);
+        }
+        assertTrue(landedOnLiteral > 0);
+
+        // alphabet engines: '-' is an alphabet char here, so it is a slot as well
+        FF1BcEngineWithAlphabet a = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        FormatMask dashed = FormatMask.compile("dddd-dddd");
+        assertEquals(9, dashed.slotCount(a.alphabet()));
+        for (String v : new String[]{"ab12-cd34", "ab12_cd34", "ab12+cd34"}) {
+            String enc = a.encryptFormatted(v, false, dashed);
+            assertEquals(a.encryptFormatted(v, false), enc, v);
+            assertEquals(v, a.decryptFormatted(enc, false, dashed), v);
+        }
+    }
+
+    @Test
+    public void alphabetEngine_mask_matchesDynamic() throws Exception {
+        FF1BcEngineWithAlphabet e = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        FormatMask id = FormatMask.learn("11010519491231002X", e.alphabet());
+        String v = "44030119800101123X";
+        String expected = e.encryptFormatted(v, true);
+        assertEquals(expected, e.encryptFormatted(v, true, id));
+        char[] buf = v.toCharArray();
+        e.encrypt(buf, 0, buf.length, buf, 0, true, id);
+        assertEquals(expected, new String(buf));
+        assertEquals(v, e.decryptFormatted(expected, true, id));
+    }
+
+    @Test
+    public void phoneKeepPrefix_mask_matchesDynamic() throws Exception {
+        FormatPreservingService fps = new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK));
+        FormatMask mask = FormatMask.learn("+86-156-1894-0601", Alphabet.DIGITS);
+        for (String phone : new String[]{"+86-138-8435-3625", "+86 138 8435 3625", "13884353625"}) {
+            String expected = fps.encryptPhoneKeepPrefix(phone, 3, 2);
+            assertEquals(expected, fps.encryptPhoneKeepPrefix(phone, 3, 2, mask), phone);
+            assertEquals(phone, fps.decryptPhoneKeepPrefix(expected, 3, 2, mask), phone);
+        }
+    }
+
+    @Test
+    public void shared_mask_keeps_a_view_per_alphabet() throws Exception {
+        // one static-style mask used alternately by a digits and an alphabet engine
+        FormatMask phone = FormatMask.compile("+1-ddd-ddd-dddd");
+        FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(KEY, TWEAK);
+        FF1BcEngineWithAlphabet alpha = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        String v = "+1-202-555-0173";
+        for (int i = 0; i < 3; i++) {
+            assertEquals(digits.encryptFormatted(v, false), digits.encryptFormatted(v, false, phone));
+            assertEquals(alpha.encryptFormatted(v, false), alpha.encryptFormatted(v, false, phone));
+        }
+        assertEquals(2, phone.cachedViews());
+        assertEquals(11, phone.slotCount(Alphabet.DIGITS));    // the literal 1 is a digit
+        assertEquals(14, phone.slotCount(alpha.alphabet()));   // plus the three '-', which are in ALPHABET
+        assertEquals(2, phone.cachedViews());
+    }
+}
@@ -5,6 +5,10 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.slf4j.Logger;
@@ -13,6 +17,7 @@ import org.slf4j.Logger;
  * Tests specifically for new FormatPreservingService API:
  *   - encryptEmailWithMarker / decryptEmailWithMarker
  *   - encryptPhoneKeepPrefix / decryptPhoneKeepPrefix
+ *   - batch variants (encryptPhonesKeepPrefix / encryptEmails)
  */
 public class FormatPreservingServiceTests {
     static FF1BcEngineWithFormat digitsEngine;
@@ -122,4 +127,56 @@ public class FormatPreservingServiceTests {
         logRoundtrip("phone allow letters", plain, enc, dec);
         assertEquals(plain, dec, "phone should round-trip after allow-letters encryption");
     }
+
+    @Test
+    public void testBatch_phones_matchSingleCalls_inOrder_withFailures() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FormatPreservingService parallel = new FormatPreservingService(digitsEngine, alphabetEngine, pool);
+            List<String> phones = new ArrayList<>();
+            for (int i = 0; i < FormatPreservingService.BATCH_CHUNK * 3; i++) {
+                // mixed lengths so several buckets interleave in the input
+                phones.add(i % 3 == 0 ? "+1-202-555-" + String.format("%04d", i)
+                        : i % 3 == 1 ? "138" + String.format("%08d", i * 7919L % 100000000L)
+                        : "65" + String.format("%06d", i));
+            }
+            phones.set(5, null);        // NPE from the single-value call
+            phones.set(6, "+1-2-34");   // 3 digits, 1 in the middle: too short for FF1
+
+            BatchResult enc = parallel.encryptPhonesKeepPrefix(phones, 2, 0);
+            assertEquals(phones.size(), enc.size());
+            assertEquals(2, enc.failureCount());
+            assertInstanceOf(NullPointerException.class, enc.error(5));
+            assertInstanceOf(IllegalArgumentException.class, enc.error(6));
+            assertNull(enc.value(6));
+
+            for (int i = 0; i < phones.size(); i++) {
+                if (!enc.isSuccess(i)) continue;
+                assertEquals(fps.encryptPhoneKeepPrefix(phones.get(i), 2, 0), enc.value(i), "index " + i);
+            }
+
+            List<String> ciphers = new ArrayList<>(Arrays.asList(enc.values()));
+            BatchResult dec = parallel.decryptPhonesKeepPrefix(ciphers, 2, 0);
+            for (int i = 0; i < phones.size(); i++) {
+                if (enc.isSuccess(i)) assertEquals(phones.get(i), dec.value(i), "index " + i);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatch_emails_roundtrip() {
+        String[] emails = {"alice.smith-01_test@example.com", "not-an-email", "bob@example.org", "x9@short.io"};
+        BatchResult enc = fps.encryptEmails(emails);
+        assertEquals(1, enc.failureCount());
+        assertInstanceOf(IllegalArgumentException.class, enc.error(1));
+        assertEquals(fps.encryptEmailWithMarker(emails[0]), enc.value(0));
+
+        BatchResult dec = fps.decryptEmails(enc.values());
+        assertEquals(emails[0], dec.value(0));
+        assertEquals(emails[2], dec.value(2));
+        assertEquals(emails[3], dec.value(3));
+        assertNull(dec.value(1));
+    }
 }
@@ -0,0 +1,164 @@
+package com.lennon.security.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FpeEngineRegistryTests {
+    /** Key derived from tenant and version by xor-folding (test only); counts key lookups. */
+    private static final class CountingKeys implements FpeEngineRegistry.KeySource {
+        final AtomicInteger keyCalls = new AtomicInteger();
+
+        public byte[] key(String tenant, int keyVersion) {
+            keyCalls.incrementAndGet();
+            byte[] k = new byte[32];
+            byte[] t = (tenant + "#" + keyVersion).getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < t.length; i++) k[i % 32] ^= t[i];
+            return k;
+        }
+
+        public byte[] tweak(String tenant, int keyVersion) {
+            return ("tenant:" + tenant).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void lookup_sharesEngines_and_matchesDirectWiring() throws Exception {
+        CountingKeys keys = new CountingKeys();
+        FpeEngineRegistry registry = new FpeEngineRegistry(keys, EngineOptions.defaults(), 16, 0);
+        FormatPreservingService fps = registry.service("acme", 1, ALPHABET, FpeMode.FF1);
+        for (int i = 0; i < 5; i++) assertSame(fps, registry.service("acme", 1, ALPHABET, FpeMode.FF1));
+        assertEquals(1, keys.keyCalls.get());
+        assertEquals(1, registry.missCount());
+        assertEquals(5, registry.hitCount());
+
+        byte[] key = keys.key("acme", 1);
+        byte[] tweak = keys.tweak("acme", 1);
+        FormatPreservingService direct = new FormatPreservingService(
+                new FF1BcEngineWithFormat(key, tweak), new FF1BcEngineWithAlphabet(key, ALPHABET, tweak));
+        assertEquals(direct.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2),
+                fps.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2));
+
+        assertNotSame(fps, registry.service("acme", 2, ALPHABET, FpeMode.FF1));
+        assertNotSame(fps, registry.service("acme", 1, ALPHABET, FpeMode.FF3_1));
+        assertNotSame(fps, registry.service("other", 1, ALPHABET, FpeMode.FF1));
+        assertEquals(4, registry.size());
+    }
+
+    @Test
+    public void concurrent_first_use_builds_once() throws Exception {
+        CountingKeys keys = new CountingKeys();
+        FpeEngineRegistry registry = new FpeEngineRegistry(keys, EngineOptions.defaults(), 16, 0);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<FormatPreservingService>> fs = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                fs.add(pool.submit(() -> {
+                    go.await(5, TimeUnit.SECONDS);
+                    return registry.service("acme", 1, ALPHABET, FpeMode.FF1);
+                }));
+            }
+            go.countDown();
+            FormatPreservingService first = fs.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<FormatPreservingService> f : fs) assertSame(first, f.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, keys.keyCalls.get());
+    }
+
+    @Test
+    public void bounded_and_idle_eviction() throws Exception {
+        FpeEngineRegistry registry = new FpeEngineRegistry(new CountingKeys(), EngineOptions.defaults(), 2, 0);
+        registry.service("t1", 1, ALPHABET, FpeMode.FF1);
+        Thread.sleep(150);
+        registry.service("t2", 1, ALPHABET, FpeMode.FF1);
+        registry.service("t3", 1, ALPHABET, FpeMode.FF1);
+        assertEquals(2, registry.size());
+        assertEquals(1, registry.evictionCount());
+
+        FpeEngineRegistry idle = new FpeEngineRegistry(new CountingKeys(), EngineOptions.defaults(), 16, 20);
+        idle.service("t1", 1, ALPHABET, FpeMode.FF1);
+        Thread.sleep(50);
+        idle.evictIdle();
+        assertEquals(0, idle.size());
+
+        idle.service("t1", 1, ALPHABET, FpeMode.FF1);
+        idle.service("t2", 1, ALPHABET, FpeMode.FF1);
+        idle.invalidateTenant("t1");
+        assertEquals(1, idle.size());
+    }
+
+    @Test
+    public void evicted_engines_keep_working_and_invalidated_ones_are_destroyed() throws Exception {
+        FpeEngineRegistry registry = new FpeEngineRegistry(new CountingKeys(), EngineOptions.defaults(), 1, 20);
+        FormatPreservingService t1 = registry.service("t1", 1, ALPHABET, FpeMode.FF1);
+        String enc = t1.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2);
+        Thread.sleep(150);
+        registry.service("t2", 1, ALPHABET, FpeMode.FF1);
+        assertEquals(1, registry.evictionCount());
+        assertFalse(t1.isDestroyed());
+        assertEquals("+1-202-555-0173", t1.decryptPhoneKeepPrefix(enc, 2, 2));
+
+        FormatPreservingService idle = registry.service("t1", 1, ALPHABET, FpeMode.FF1);
+        Thread.sleep(50);
+        registry.evictIdle();
+        assertEquals(0, registry.size());
+        assertFalse(idle.isDestroyed());
+
+        FormatPreservingService current = registry.service("t1", 1, ALPHABET, FpeMode.FF1);
+        registry.invalidateAll();
+        assertTrue(current.isDestroyed());
+        assertThrows(IllegalStateException.class, () -> current.decryptPhoneKeepPrefix(enc, 2, 2));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void eviction_under_concurrent_use_never_fails_calls() throws Exception {
+        int tenants = 8;
+        FpeEngineRegistry reference = new FpeEngineRegistry(new CountingKeys(), EngineOptions.defaults(), tenants, 0);
+        String phone = "+1-202-555-0173";
+        String[] expected = new String[tenants];
+        for (int t = 0; t < tenants; t++) {
+            expected[t] = reference.service("t" + t, 1, ALPHABET, FpeMode.FF1).encryptPhoneKeepPrefix(phone, 2, 2);
+        }
+
+        // two slots for eight tenants: nearly every lookup evicts an entry another thread is using
+        FpeEngineRegistry registry = new FpeEngineRegistry(new CountingKeys(), EngineOptions.defaults(), 2, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                int seed = w;
+                fs.add(pool.submit(() -> {
+                    for (int i = 0; i < 300; i++) {
+                        int t = (seed + i) % tenants;
+                        FormatPreservingService fps = registry.service("t" + t, 1, ALPHABET, FpeMode.FF1);
+                        String enc = fps.encryptPhoneKeepPrefix(phone, 2, 2);
+                        assertEquals(expected[t], enc);
+                        assertEquals(phone, fps.decryptPhoneKeepPrefix(enc, 2, 2));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : fs) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(registry.evictionCount() > 0);
+        assertTrue(registry.size() <= 2);
+    }
+}
@@ -0,0 +1,75 @@
+package com.lennon.security.core;
+
+import org.bouncycastle.crypto.fpe.FPEFF3_1Engine;
+import org.bouncycastle.crypto.params.FPEParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.junit.jupiter.api.Test;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FF3-1 mode through the same wrappers and service as FF1.
+ */
+public class FpeModeTests {
+    private static final EngineOptions FF3_1 = EngineOptions.defaults().withMode(FpeMode.FF3_1);
+
+    @Test
+    public void ff3_1_wrappers_roundtrip_and_differ_from_ff1() throws Exception {
+        FF1BcEngine digits = new FF1BcEngine(KEY, 10, TWEAK, FF3_1);
+        String phone = "13884353625";
+        String enc = digits.encryptDigits(phone);
+        assertEquals(phone.length(), enc.length());
+        assertNotEquals(new FF1BcEngine(KEY, 10, TWEAK).encryptDigits(phone), enc);
+        assertEquals(phone, digits.decryptDigits(enc));
+        // deterministic across instances
+        assertEquals(enc, new FF1BcEngine(KEY, 10, TWEAK, FF3_1).encryptDigits(phone));
+
+        FF1BcEngineWithFormat card = new FF1BcEngineWithFormat(KEY, TWEAK, FF3_1);
+        String cc = "4111 1111 1111 1111";
+        String encCard = card.encryptFormatted(cc, true);
+        assertEquals(cc.charAt(cc.length() - 1), encCard.charAt(encCard.length() - 1));
+        assertEquals(cc, card.decryptFormatted(encCard, true));
+
+        FF1BcEngineWithAlphabet alpha = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK, FF3_1);
+        String local = "alice.smith-01_test";
+        assertEquals(local, alpha.decryptChars(alpha.encryptChars(local)));
+    }
+
+    @Test
+    public void ff3_1_service_roundtrip() throws Exception {
+        FormatPreservingService fps = new FormatPreservingService(
+                new FF1BcEngineWithFormat(KEY, TWEAK, FF3_1),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK, FF3_1));
+        String email = "alice.smith-01_test@example.com";
+        assertEquals(email, fps.decryptEmailWithMarker(fps.encryptEmailWithMarker(email)));
+        String phone = "+86-156-1894-0601";
+        assertEquals(phone, fps.decryptPhoneKeepPrefix(fps.encryptPhoneKeepPrefix(phone, 3, 4), 3, 4));
+    }
+
+    @Test
+    public void ff3_1_tweak_derivation() {
+        // a 56-bit tweak is used as is
+        byte[] t7 = PRF.hexToBytes("D8E7920AFA330A");
+        byte[] in = {8, 9, 0, 1, 2, 1, 2, 3, 4, 5, 6, 7, 8, 9, 0, 0, 0, 0};
+        FPEFF3_1Engine bc = new FPEFF3_1Engine();
+        bc.init(true, new FPEParameters(new KeyParameter(KEY), 10, t7));
+        byte[] expected = new byte[in.length];
+        bc.processBlock(in, 0, in.length, expected, 0);
+        byte[] actual = new byte[in.length];
+        new FF3_1EnginePool(KEY, 10, t7, BlockCipherProvider.bouncyCastle()).process(true, in, 0, in.length, actual, 0);
+        assertArrayEquals(expected, actual);
+
+        // other lengths (including empty) map to 7 bytes deterministically
+        assertEquals(7, FF3_1EnginePool.deriveTweak(new byte[0]).length);
+        assertArrayEquals(FF3_1EnginePool.deriveTweak(TWEAK), FF3_1EnginePool.deriveTweak(TWEAK.clone()));
+        assertFalse(java.util.Arrays.equals(FF3_1EnginePool.deriveTweak(TWEAK), FF3_1EnginePool.deriveTweak(new byte[0])));
+    }
+
+    @Test
+    public void ff3_1_rejects_too_long_input() {
+        FF1BcEngine digits = new FF1BcEngine(KEY, 10, TWEAK, FF3_1);
+        assertEquals(56, digits.encryptDigits("1".repeat(56)).length());
+        assertThrows(IllegalArgumentException.class, () -> digits.encryptDigits("1".repeat(57)));
+    }
+}
@@ -0,0 +1,64 @@
+package com.lennon.security.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fused key rotation against the two-call decrypt/encrypt path.
+ */
+public class RekeyerTests {
+    @Test
+    public void digits_rekey_matches_two_call_path() {
+        FF1BcEngineWithFormat from = new FF1BcEngineWithFormat(KEY, TWEAK);
+        FF1BcEngineWithFormat to = new FF1BcEngineWithFormat(OTHER_KEY, TWEAK, EngineOptions.defaults().withMode(FpeMode.FF3_1));
+        Rekeyer rekeyer = Rekeyer.forDigits(from, to);
+
+        String card = from.encryptFormatted("4111 1111 1111 1111", true);
+        String rotated = rekeyer.rekey(card, true);
+        assertEquals(to.encryptFormatted(from.decryptFormatted(card, true), true), rotated);
+        assertEquals("4111 1111 1111 1111", to.decryptFormatted(rotated, true));
+        assertEquals(rotated, rekeyer.rekey(card, true, FormatMask.compile("dddd dddd dddd dddd")));
+
+        char[] row = ("id=7;" + card + ";x").toCharArray();
+        rekeyer.rekey(row, 5, card.length(), row, 5, true, null);
+        assertEquals("id=7;" + rotated + ";x", new String(row));
+    }
+
+    @Test
+    public void alphabet_batches_and_verification() throws Exception {
+        FF1BcEngineWithAlphabet from = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        FF1BcEngineWithAlphabet to = new FF1BcEngineWithAlphabet(OTHER_KEY, ALPHABET, TWEAK);
+        Rekeyer rekeyer = Rekeyer.forAlphabet(from, to).withPool(new ForkJoinPool(3));
+
+        String[] ciphers = new String[2000];
+        for (int i = 0; i < ciphers.length; i++) ciphers[i] = from.encryptFormatted("user." + i + "@mail", false);
+        ciphers[17] = "a@b";   // too short for FF1
+
+        BatchResult seq = rekeyer.rekeyAll(ciphers, false);
+        BatchResult par = rekeyer.rekeyAllParallel(ciphers, false);
+        assertEquals(1, par.failureCount());
+        assertFalse(par.isSuccess(17));
+        assertArrayEquals(seq.values(), par.values());
+        assertEquals(to.encryptFormatted("user.5@mail", false), par.value(5));
+
+        RekeyVerification ok = rekeyer.verify(ciphers, par, false, 200, 42);
+        assertTrue(ok.passed(), ok.toString());
+        assertTrue(ok.checked() >= 199);
+
+        String[] tampered = par.values();
+        tampered[5] = to.encryptFormatted("user.6@mail", false);
+        Exception[] errors = new Exception[tampered.length];
+        errors[17] = par.error(17);
+        BatchResult bad = new BatchResult(tampered, errors);
+        RekeyVerification all = rekeyer.verify(ciphers, bad, false, Integer.MAX_VALUE, 1);
+        assertEquals(1, all.mismatches());
+        assertArrayEquals(new int[]{5}, all.mismatchIndices());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> Rekeyer.forAlphabet(from, new FF1BcEngineWithAlphabet(OTHER_KEY, "0123456789abcdef", TWEAK)));
+    }
+}
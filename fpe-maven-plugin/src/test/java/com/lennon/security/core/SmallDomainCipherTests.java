@@ -0,0 +1,78 @@
+package com.lennon.security.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Short inputs go through the permutation tables, longer ones through FF1 unchanged.
+ */
+public class SmallDomainCipherTests {
+    private static final EngineOptions SMALL = EngineOptions.defaults().withSmallDomainTables(true);
+
+    @Test
+    public void tables_arePermutations() {
+        FpeCipher c = SMALL.newCipher(KEY, 10, TWEAK);
+        assertEquals(1, c.minLength());
+        for (int len = 1; len <= 4; len++) {
+            int size = (int) Math.pow(10, len);
+            Set<Integer> seen = new HashSet<>();
+            byte[] in = new byte[len], out = new byte[len], back = new byte[len];
+            for (int x = 0; x < size; x++) {
+                int v = x;
+                for (int i = len - 1; i >= 0; i--, v /= 10) in[i] = (byte) (v % 10);
+                c.process(true, in, 0, len, out, 0);
+                int y = 0;
+                for (byte b : out) y = y * 10 + b;
+                assertTrue(seen.add(y), "len=" + len + " collision at " + x);
+                c.process(false, out, 0, len, back, 0);
+                assertArrayEquals(in, back);
+            }
+        }
+    }
+
+    @Test
+    public void keyAndTweakSelectThePermutation() {
+        FF1BcEngine a = new FF1BcEngine(KEY, 10, TWEAK, SMALL);
+        FF1BcEngine b = new FF1BcEngine(KEY, 10, "other".getBytes(StandardCharsets.UTF_8), SMALL);
+        assertEquals(a.encryptDigits("12345"), new FF1BcEngine(KEY, 10, TWEAK, SMALL).encryptDigits("12345"));
+        assertNotEquals(a.encryptDigits("12345"), b.encryptDigits("12345"));
+    }
+
+    @Test
+    public void longInputs_matchPlainFf1() {
+        FF1BcEngine plain = new FF1BcEngine(KEY, 10, TWEAK);
+        FF1BcEngine small = new FF1BcEngine(KEY, 10, TWEAK, SMALL);
+        assertEquals(plain.encryptDigits("123456"), small.encryptDigits("123456"));
+        assertEquals(plain.encryptDigits("13884353625"), small.encryptDigits("13884353625"));
+    }
+
+    @Test
+    public void engines_handleShortFields() throws Exception {
+        FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(KEY, TWEAK, SMALL);
+        FpeResult r = digits.tryEncryptFormatted("12-34", false);
+        assertTrue(r.isOk());
+        assertEquals(5, r.value().length());
+        assertEquals('-', r.value().charAt(2));
+        assertEquals("12-34", digits.decryptFormatted(r.value(), false));
+
+        FF1BcEngineWithAlphabet alpha = new FF1BcEngineWithAlphabet(KEY, "0123456789abcdefghijklmnopqrstuvwxyz", TWEAK, SMALL);
+        String enc = alpha.encryptChars("ab");
+        assertEquals("ab", alpha.decryptChars(enc));
+
+        FormatPreservingService svc = new FormatPreservingService(digits, null);
+        String email = svc.encryptEmailWithMarker("bob42@example.com");
+        assertEquals("bob42@example.com", svc.decryptEmailWithMarker(email));
+        // the 2-digit table may fix any one value (KEY is configurable), but not ten of them
+        int changed = 0;
+        for (int i = 10; i < 20; i++) {
+            if (!svc.encryptEmailWithMarker("bob" + i + "@example.com").equals("bob" + i + "@example.com#")) changed++;
+        }
+        assertTrue(changed > 0);
+    }
+}
@@ -0,0 +1,120 @@
+package com.lennon.security.core;
+
+import org.junit.jupiter.api.Test;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * try* methods report a status where the throwing methods throw, and agree with them otherwise.
+ */
+public class TryApiTests {
+    @Test
+    public void digits_statusMatchesThrowingApi() {
+        FF1BcEngine e = new FF1BcEngine(KEY, 10, TWEAK);
+        FpeResult ok = e.tryEncryptDigits("13884353625");
+        assertTrue(ok.isOk());
+        assertEquals(e.encryptDigits("13884353625"), ok.value());
+        assertEquals("13884353625", e.tryDecryptDigits(ok.value()).value());
+
+        assertEquals(FpeStatus.TOO_SHORT, e.tryEncryptDigits("12345").status());
+        assertThrows(IllegalArgumentException.class, () -> e.encryptDigits("12345"));
+        assertEquals(FpeStatus.INVALID_CHAR, e.tryEncryptDigits("1388435362x").status());
+        assertEquals(FpeStatus.NULL_INPUT, e.tryEncryptDigits(null).status());
+    }
+
+    @Test
+    public void charArray_failureLeavesDstUntouched() {
+        FF1BcEngineWithFormat e = new FF1BcEngineWithFormat(KEY, TWEAK);
+        char[] src = "12-34".toCharArray();
+        char[] dst = new char[src.length];
+        assertEquals(FpeStatus.TOO_SHORT, e.tryEncrypt(src, 0, src.length, dst, 0, false));
+        assertArrayEquals(new char[src.length], dst);
+
+        char[] phone = "+1-202-555-0173".toCharArray();
+        assertEquals(FpeStatus.OK, e.tryEncrypt(phone, 0, phone.length, phone, 0, true));
+        assertEquals(e.encryptFormatted("+1-202-555-0173", true), new String(phone));
+    }
+
+    @Test
+    public void alphabet_charsAndFormatted() throws Exception {
+        FF1BcEngineWithAlphabet e = new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK);
+        assertEquals(FpeStatus.INVALID_CHAR, e.tryEncryptChars("john doe").status());
+        assertEquals(FpeStatus.TOO_SHORT, e.tryEncryptChars("ab").status());
+        assertEquals(e.encryptChars("john.doe"), e.tryEncryptChars("john.doe").value());
+
+        // formatted input skips foreign chars, so only the core length can fail
+        assertEquals(e.encryptFormatted("john doe", false), e.tryEncryptFormatted("john doe", false).value());
+        assertEquals(FpeStatus.TOO_SHORT, e.tryEncryptFormatted("a b", false).status());
+    }
+
+    @Test
+    public void ff3_1_reportsTooLong() {
+        FF1BcEngine e = new FF1BcEngine(KEY, 10, TWEAK, EngineOptions.defaults().withMode(FpeMode.FF3_1));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) sb.append(i % 10);
+        assertEquals(FpeStatus.TOO_LONG, e.tryEncryptDigits(sb.toString()).status());
+        assertTrue(e.tryEncryptDigits("13884353625").isOk());
+    }
+
+    @Test
+    public void service_emailsAndPhones() throws Exception {
+        FormatPreservingService svc = new FormatPreservingService(
+                new FF1BcEngineWithFormat(KEY, TWEAK), new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK));
+
+        assertEquals(FpeStatus.MALFORMED, svc.tryEncryptEmailWithMarker("not-an-email").status());
+        assertThrows(IllegalArgumentException.class, () -> svc.encryptEmailWithMarker("not-an-email"));
+
+        // local part too short for the alphabet engine falls back, short digit segments stay as is
+        FpeResult shortLocal = svc.tryEncryptEmailWithMarker("a1@example.com");
+        assertEquals("a1@example.com#", shortLocal.value());
+
+        String email = "john.doe123@example.com";
+        FpeResult enc = svc.tryEncryptEmailWithMarker(email);
+        assertEquals(svc.encryptEmailWithMarker(email), enc.value());
+        assertEquals(email, svc.tryDecryptEmailWithMarker(enc.value()).value());
+
+        assertEquals(FpeStatus.TOO_SHORT, svc.tryEncryptPhoneKeepPrefix("138-1234-5678", 3, 4).status());
+        String phone = "+86 138-1234-5678";
+        FpeResult p = svc.tryEncryptPhoneKeepPrefix(phone, 2, 2);
+        assertEquals(svc.encryptPhoneKeepPrefix(phone, 2, 2), p.value());
+        assertEquals(phone, svc.tryDecryptPhoneKeepPrefix(p.value(), 2, 2).value());
+    }
+
+    @Test
+    public void service_allowLettersOpaqueAndUnicode() throws Exception {
+        FormatPreservingService svc = new FormatPreservingService(
+                new FF1BcEngineWithFormat(KEY, TWEAK), new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK));
+
+        String phone = "138 1234 5678"; // '-' is in ALPHABET, spaces are not
+        assertEquals(FpeStatus.TOO_SHORT, svc.tryEncryptPhoneKeepEndsAllowLetters(phone, 3, 6).status());
+        assertThrows(IllegalArgumentException.class, () -> svc.encryptPhoneKeepEndsAllowLetters(phone, 3, 6));
+        FpeResult p = svc.tryEncryptPhoneKeepEndsAllowLetters(phone, 3, 4);
+        assertEquals(svc.encryptPhoneKeepEndsAllowLetters(phone, 3, 4), p.value());
+        assertEquals(phone, svc.tryDecryptPhoneKeepEndsAllowLetters(p.value(), 3, 4).value());
+
+        assertEquals(FpeStatus.TOO_SHORT, svc.tryEncryptOpaqueAll("ab").status());
+        assertEquals(FpeStatus.NULL_INPUT, svc.tryDecryptOpaqueAll(null).status());
+        FpeResult o = svc.tryEncryptOpaqueAll("order #A-1024");
+        assertEquals(svc.encryptOpaqueAll("order #A-1024"), o.value());
+        assertEquals("order #A-1024", svc.tryDecryptOpaqueAll(o.value()).value());
+
+        FpeResult u = svc.tryEncryptAnyUnicodeOpaque("张三 ~~~");
+        assertEquals(svc.encryptAnyUnicodeOpaque("张三 ~~~"), u.value());
+        assertEquals("张三 ~~~", svc.tryDecryptAnyUnicodeOpaque(u.value()).value());
+        // five Base64URL characters never decode
+        assertEquals(FpeStatus.MALFORMED, svc.tryDecryptAnyUnicodeOpaque("abcde").status());
+        assertThrows(IllegalArgumentException.class, () -> svc.decryptAnyUnicodeOpaque("abcde"));
+
+        // "~~~" is "fn5-" in Base64URL, and '-' is not in this alphabet
+        FormatPreservingService alnum = new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET.substring(0, 62), TWEAK));
+        assertEquals(FpeStatus.INVALID_CHAR, alnum.tryEncryptAnyUnicodeOpaque("~~~").status());
+
+        FormatPreservingService digitsOnly = new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK), null);
+        assertEquals(FpeStatus.TOO_SHORT, digitsOnly.tryEncryptOpaqueAll("ab-12").status());
+        FpeResult d = digitsOnly.tryEncryptOpaqueAll("id 13884353625");
+        assertEquals(digitsOnly.encryptOpaqueAll("id 13884353625"), d.value());
+        assertEquals("id 13884353625", digitsOnly.tryDecryptOpaqueAll(d.value()).value());
+    }
+}
@@ -0,0 +1,102 @@
+package com.lennon.security.keys;
+
+import com.lennon.security.core.PRF;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyDerivationTests {
+    private static final byte[] MASTER = PRF.hexToBytes("000102030405060708090A0B0C0D0E0F101112131415161718191A1B1C1D1E1F");
+
+    @Test
+    public void prf_matchesJca() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(MASTER, "HmacSHA256"));
+        byte[] data = "tenant|field".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = mac.doFinal(data);
+
+        PRF prf = new PRF(MASTER);
+        assertArrayEquals(expected, prf.hmac(data));
+        byte[] row = ("xx" + "tenant|field" + "yy").getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[PRF.MAC_BYTES];
+        prf.hmacInto(row, 2, data.length, out);
+        assertArrayEquals(expected, out);
+        // a second call on the same thread reuses the Mac and must start clean
+        assertArrayEquals(expected, prf.hmac(data));
+    }
+
+    @Test
+    public void prf_perThreadMacsAgree() throws Exception {
+        PRF prf = new PRF(MASTER);
+        byte[] data = "shared".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = prf.hmac(data);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> fs = new ArrayList<>();
+            for (int i = 0; i < 16; i++) fs.add(pool.submit(() -> prf.hmac(data)));
+            for (Future<byte[]> f : fs) assertArrayEquals(expected, f.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void derivation_isDeterministicAndSeparated() {
+        KeyDerivation kd = new KeyDerivation(MASTER, 32, 100);
+        KeyDerivation.Derived d = kd.derive("acme", "phone", 1);
+        assertEquals(KeyDerivation.TWEAK_BYTES, d.tweak().length);
+        assertEquals(32, d.subkey().length);
+
+        KeyDerivation other = new KeyDerivation(MASTER, 32, 100);
+        assertArrayEquals(d.subkey(), other.subkey("acme", "phone", 1));
+        assertArrayEquals(d.tweak(), other.tweak("acme", "phone", 1));
+
+        assertFalse(Arrays.equals(d.subkey(), kd.subkey("acme", "phone", 2)));
+        assertFalse(Arrays.equals(d.tweak(), kd.tweak("acme", "email", 1)));
+        // length prefixes keep ("ab","c") and ("a","bc") apart
+        assertFalse(Arrays.equals(kd.tweak("ab", "c", 1), kd.tweak("a", "bc", 1)));
+    }
+
+    @Test
+    public void cache_isBoundedAndCountsHits() {
+        KeyDerivation kd = new KeyDerivation(MASTER, 16, 2);
+        kd.derive("t1", "f", 1);
+        kd.derive("t1", "f", 1);
+        assertEquals(1, kd.hitCount());
+        assertEquals(1, kd.derivationCount());
+
+        kd.derive("t2", "f", 1);
+        kd.derive("t3", "f", 1);
+        assertEquals(2, kd.size());
+        assertEquals(1, kd.evictionCount());
+
+        kd.invalidateTenant("t3");
+        assertEquals(1, kd.size());
+    }
+
+    @Test
+    public void evicted_and_invalidated_subkeys_are_wiped() {
+        KeyDerivation kd = new KeyDerivation(MASTER, 32, 1);
+        KeyDerivation.Derived t1 = kd.derive("t1", "f", 1);
+        byte[] k1 = t1.subkey();
+        kd.derive("t2", "f", 1);
+        assertThrows(IllegalStateException.class, t1::subkey);
+        assertArrayEquals(k1, kd.subkey("t1", "f", 1));
+        assertArrayEquals(k1, kd.derive("t1", "f", 1).subkey());
+
+        KeyDerivation.Derived current = kd.derive("t1", "f", 1);
+        kd.invalidateAll();
+        assertThrows(IllegalStateException.class, current::subkey);
+        assertArrayEquals(t1.tweak(), current.tweak());
+    }
+}
@@ -0,0 +1,260 @@
+package com.lennon.security.keys;
+
+import com.lennon.security.core.EngineOptions;
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+import com.lennon.security.core.PRF;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyRingTests {
+    private static LocalAesKwKekProvider kek() {
+        Map<String, byte[]> keks = new HashMap<>();
+        keks.put("v1", PRF.hexToBytes("000102030405060708090A0B0C0D0E0F101112131415161718191A1B1C1D1E1F"));
+        keks.put("v2", PRF.hexToBytes("1F1E1D1C1B1A191817161514131211100F0E0D0C0B0A09080706050403020100"));
+        return new LocalAesKwKekProvider(keks, "v2");
+    }
+
+    /** Counts unwraps; optionally blocks them until released. */
+    private static final class CountingKek implements KekProvider {
+        final KekProvider inner;
+        final AtomicInteger unwraps = new AtomicInteger();
+        final CountDownLatch release;
+
+        CountingKek(KekProvider inner, CountDownLatch release) {
+            this.inner = inner;
+            this.release = release;
+        }
+
+        public String currentVersion() {
+            return inner.currentVersion();
+        }
+
+        public byte[] wrap(String version, byte[] dek) {
+            return inner.wrap(version, dek);
+        }
+
+        public byte[] unwrap(String version, byte[] wrapped) {
+            unwraps.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return inner.unwrap(version, wrapped);
+        }
+    }
+
+    @Test
+    public void wrap_roundtrip_and_text_form() {
+        LocalAesKwKekProvider kek = kek();
+        byte[] dek = PRF.hexToBytes("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCCDDEEFF");
+        WrappedKey w = new WrappedKey("v1", kek.wrap("v1", dek));
+        assertEquals(40, w.wrapped().length);
+        assertArrayEquals(dek, kek.unwrap("v1", w.wrapped()));
+        assertEquals(w, WrappedKey.parse(w.toString()));
+        assertThrows(IllegalArgumentException.class, () -> kek.unwrap("v2", w.wrapped()));
+        assertThrows(IllegalArgumentException.class, () -> kek.unwrap("v9", w.wrapped()));
+    }
+
+    @Test
+    public void engine_is_unwrapped_once_and_matches_raw_dek() throws Exception {
+        CountingKek kek = new CountingKek(kek(), null);
+        KeyRing<FormatPreservingService> ring = KeyRing.forService(kek, TWEAK, ALPHABET, EngineOptions.defaults(), 16, 0);
+        WrappedKey dek = ring.newDataKey();
+        assertEquals("v2", dek.kekVersion());
+
+        String email = "alice.smith-01_test@example.com";
+        String enc = ring.engine(dek).encryptEmailWithMarker(email);
+        for (int i = 0; i < 10; i++) {
+            assertSame(ring.engine(dek), ring.engine(WrappedKey.parse(dek.toString())));
+        }
+        assertEquals(1, kek.unwraps.get());
+        assertEquals(1, ring.unwrapCount());
+        assertEquals(20, ring.hitCount());
+
+        byte[] raw = kek.inner.unwrap(dek.kekVersion(), dek.wrapped());
+        FormatPreservingService direct = new FormatPreservingService(
+                new FF1BcEngineWithFormat(raw, TWEAK), new FF1BcEngineWithAlphabet(raw, ALPHABET, TWEAK));
+        assertEquals(direct.encryptEmailWithMarker(email), enc);
+        assertEquals(email, ring.engine(dek).decryptEmailWithMarker(enc));
+    }
+
+    @Test
+    public void concurrent_first_use_shares_one_unwrap() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountingKek kek = new CountingKek(kek(), release);
+        KeyRing<byte[]> ring = new KeyRing<>(kek, byte[]::clone, 16, 0);
+        WrappedKey dek = new KeyRing<>(kek(), d -> d, 1, 0).newDataKey();
+
+        int threads = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch started = new CountDownLatch(threads);
+            List<Future<byte[]>> fs = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                fs.add(pool.submit(() -> {
+                    started.countDown();
+                    return ring.engine(dek);
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(50);
+            release.countDown();
+            byte[] first = fs.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<byte[]> f : fs) assertSame(first, f.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, kek.unwraps.get());
+    }
+
+    @Test
+    public void ttl_expiry_reloads_and_zeroes_old_dek() throws Exception {
+        CountingKek kek = new CountingKek(kek(), null);
+        List<byte[]> seen = new ArrayList<>();
+        KeyRing<Integer> ring = new KeyRing<>(kek, d -> {
+            synchronized (seen) {
+                seen.add(d);
+                return seen.size();
+            }
+        }, 16, 30);
+        WrappedKey dek = ring.newDataKey();
+        assertEquals(1, ring.engine(dek));
+        assertFalse(allZero(seen.get(0)));
+        Thread.sleep(60);
+        assertEquals(2, ring.engine(dek));
+        assertEquals(2, kek.unwraps.get());
+        assertEquals(1, ring.evictionCount());
+        assertTrue(allZero(seen.get(0)));
+        assertFalse(allZero(seen.get(1)));
+
+        ring.close();
+        assertEquals(0, ring.size());
+        assertTrue(allZero(seen.get(1)));
+    }
+
+    @Test
+    public void size_bound_evicts_least_recently_used() {
+        KeyRing<byte[]> ring = new KeyRing<>(kek(), d -> d, 2, 0);
+        WrappedKey a = ring.newDataKey(), b = ring.newDataKey(), c = ring.newDataKey();
+        byte[] da = ring.engine(a);
+        byte[] db = ring.engine(b);
+        ring.engine(a);
+        byte[] dc = ring.engine(c);
+        assertEquals(2, ring.size());
+        assertEquals(1, ring.evictionCount());
+        assertTrue(allZero(db));
+        assertFalse(allZero(da));
+        assertFalse(allZero(dc));
+        assertSame(da, ring.engine(a));
+        assertNotSame(db, ring.engine(b));
+    }
+
+    @Test
+    public void eviction_destroys_engines_once_leases_close() {
+        KeyRing<FormatPreservingService> ring = KeyRing.forService(kek(), TWEAK, ALPHABET, EngineOptions.defaults(), 1, 0);
+        WrappedKey a = ring.newDataKey(), b = ring.newDataKey();
+        KeyRing.Lease<FormatPreservingService> lease = ring.acquire(a);
+        FormatPreservingService held = lease.engine();
+        String enc = held.encryptEmailWithMarker("alice@example.com");
+
+        ring.acquire(b).close();
+        assertEquals(1, ring.evictionCount());
+        assertFalse(held.isDestroyed());
+        assertEquals("alice@example.com", held.decryptEmailWithMarker(enc));
+        lease.close();
+        assertTrue(held.isDestroyed());
+        assertThrows(IllegalStateException.class, lease::engine);
+        assertThrows(IllegalStateException.class, () -> held.decryptEmailWithMarker(enc));
+
+        KeyRing.Lease<FormatPreservingService> again = ring.acquire(a);
+        assertEquals("alice@example.com", again.engine().decryptEmailWithMarker(enc));
+        ring.invalidate(a);
+        assertFalse(again.engine().isDestroyed());
+        FormatPreservingService invalidated = again.engine();
+        again.close();
+        assertTrue(invalidated.isDestroyed());
+
+        // handed out without a lease: never destroyed by the ring
+        FormatPreservingService unleased = ring.engine(a);
+        ring.invalidateAll();
+        assertFalse(unleased.isDestroyed());
+        assertEquals(enc, unleased.encryptEmailWithMarker("alice@example.com"));
+    }
+
+    @Test
+    public void eviction_under_concurrent_leases_never_fails_calls() throws Exception {
+        KeyRing<FormatPreservingService> ring = KeyRing.forService(kek(), TWEAK, ALPHABET, EngineOptions.defaults(), 2, 0);
+        int keys = 8;
+        WrappedKey[] deks = new WrappedKey[keys];
+        String[] expected = new String[keys];
+        for (int k = 0; k < keys; k++) {
+            deks[k] = ring.newDataKey();
+            try (KeyRing.Lease<FormatPreservingService> l = ring.acquire(deks[k])) {
+                expected[k] = l.engine().encryptEmailWithMarker("alice@example.com");
+            }
+        }
+
+        // two slots for eight DEKs: nearly every acquire evicts an entry another thread holds
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                int seed = w;
+                fs.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        int k = (seed + i) % keys;
+                        try (KeyRing.Lease<FormatPreservingService> l = ring.acquire(deks[k])) {
+                            assertEquals(expected[k], l.engine().encryptEmailWithMarker("alice@example.com"));
+                            assertEquals("alice@example.com", l.engine().decryptEmailWithMarker(expected[k]));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : fs) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(ring.evictionCount() > 0);
+    }
+
+    @Test
+    public void bad_wrap_fails_and_is_not_cached() {
+        CountingKek kek = new CountingKek(kek(), null);
+        KeyRing<byte[]> ring = new KeyRing<>(kek, byte[]::clone, 4, 0);
+        WrappedKey good = ring.newDataKey();
+        byte[] tampered = good.wrapped();
+        tampered[3] ^= 1;
+        WrappedKey bad = new WrappedKey(good.kekVersion(), tampered);
+        assertThrows(IllegalArgumentException.class, () -> ring.engine(bad));
+        assertThrows(IllegalArgumentException.class, () -> ring.engine(bad));
+        assertThrows(IllegalArgumentException.class, () -> ring.engine("v9", good.wrapped()));
+        assertEquals(3, kek.unwraps.get());
+        assertEquals(0, ring.size());
+        assertNotNull(ring.engine(good));
+        assertEquals(1, ring.size());
+    }
+
+    private static boolean allZero(byte[] b) {
+        for (byte x : b) if (x != 0) return false;
+        return true;
+    }
+}
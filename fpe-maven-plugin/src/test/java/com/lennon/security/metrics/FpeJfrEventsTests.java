@@ -0,0 +1,83 @@
+package com.lennon.security.metrics;
+
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FpeJfrEventsTests {
+    @Test
+    public void events_carryShapeButNotValues() throws Exception {
+        FormatPreservingService fps = new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK));
+        Path file = Files.createTempFile("fpe", ".jfr");
+        try (Recording r = new Recording()) {
+            r.enable(FpeServiceJfrEvent.NAME).withThreshold(Duration.ZERO);
+            r.enable(FpeEngineJfrEvent.NAME).withThreshold(Duration.ZERO);
+            r.start();
+            fps.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2);
+            fps.tryEncryptEmailWithMarker("no-at-sign");
+            fps.tryEncryptPhoneKeepPrefix("+1-202-5", 1, 1);
+            assertThrows(IllegalArgumentException.class, () -> fps.encryptOpaqueAll("ab"));
+            r.stop();
+            r.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<RecordedEvent> service = events.stream()
+                    .filter(e -> e.getEventType().getName().equals(FpeServiceJfrEvent.NAME)).collect(Collectors.toList());
+            assertEquals(4, service.size());
+            RecordedEvent phone = service.get(0);
+            assertEquals("PHONE_ENCRYPT", phone.getString("operation"));
+            assertEquals(15, phone.getInt("inputLength"));
+            assertEquals(10, phone.getInt("radix"));
+            assertEquals("FF1", phone.getString("mode"));
+            assertEquals("OK", phone.getString("outcome"));
+            assertEquals("MALFORMED", service.get(1).getString("outcome"));
+            assertEquals("TOO_SHORT", service.get(2).getString("outcome"));
+            assertEquals("OPAQUE_ENCRYPT", service.get(3).getString("operation"));
+            assertEquals(ALPHABET.length(), service.get(3).getInt("radix"));
+            assertEquals("ERROR", service.get(3).getString("outcome"));
+
+            RecordedEvent engine = events.stream()
+                    .filter(e -> e.getEventType().getName().equals(FpeEngineJfrEvent.NAME)).findFirst().orElseThrow();
+            assertEquals("ENCRYPT", engine.getString("operation"));
+            assertEquals(7, engine.getInt("inputLength"));
+
+            for (RecordedEvent e : events) {
+                String s = e.toString();
+                assertFalse(s.contains("2025550173") || s.contains("no-at-sign"), "value leaked: " + s);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void engineEvent_offUnlessEnabled() throws Exception {
+        FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(KEY, TWEAK);
+        Path file = Files.createTempFile("fpe", ".jfr");
+        try (Recording r = new Recording()) {
+            r.enable(FpeServiceJfrEvent.NAME).withThreshold(Duration.ZERO);
+            r.start();
+            digits.encryptFormatted("202-555-0173", false);
+            r.stop();
+            r.dump(file);
+            assertTrue(RecordingFile.readAllEvents(file).stream()
+                    .noneMatch(e -> e.getEventType().getName().equals(FpeEngineJfrEvent.NAME)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.lennon.security.metrics;
+
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FpeMetricsTests {
+    @Test
+    public void histogram_bucketsAndPercentiles() {
+        for (long v : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.index(v));
+            assertTrue(upper >= v, "upper bound below value " + v);
+            assertTrue(upper - v <= Math.max(0, v / 8), "bucket too wide at " + v);
+        }
+
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+        assertEquals(1000, h.count());
+        assertEquals(1_000_000L, h.max());
+        long p50 = h.percentile(0.5);
+        assertTrue(p50 >= 500_000L && p50 <= 500_000L * 9 / 8, "p50=" + p50);
+        long p99 = h.percentile(0.99);
+        assertTrue(p99 >= 990_000L && p99 <= 1_000_000L, "p99=" + p99);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(0.99));
+    }
+
+    @Test
+    public void service_countsCallsAndPaths() throws Exception {
+        RecordingFpeMetrics m = new RecordingFpeMetrics();
+        FormatPreservingService fps = new FormatPreservingService(new FF1BcEngineWithFormat(KEY, TWEAK),
+                new FF1BcEngineWithAlphabet(KEY, ALPHABET, TWEAK), null, m);
+
+        fps.encryptEmailWithMarker("john.doe123@example.com");
+        fps.tryEncryptEmailWithMarker("a1@example.com");   // alphabet core too short, digit run too short
+        fps.tryEncryptEmailWithMarker("no-at-sign");
+        assertEquals(3, m.calls(FpeOperation.EMAIL_ENCRYPT));
+        assertEquals(1, m.count(FpeEvent.EMAIL_FALLBACK));
+        assertEquals(1, m.count(FpeEvent.SEGMENT_PASSTHROUGH));
+        assertEquals(1, m.count(FpeEvent.REJECTED));
+
+        fps.encryptPhoneKeepPrefix("+1-202-555-0173", 2, 2);
+        fps.encryptPhoneKeepPrefix("12", 1, 1);
+        assertEquals(2, m.calls(FpeOperation.PHONE_ENCRYPT));
+        assertEquals(1, m.count(FpeEvent.PASSTHROUGH));
+        assertTrue(m.latency(FpeOperation.PHONE_ENCRYPT).max() > 0);
+    }
+
+    @Test
+    public void jmx_exportsAttributes() throws Exception {
+        RecordingFpeMetrics m = new RecordingFpeMetrics();
+        m.stop(FpeOperation.OPAQUE_ENCRYPT, m.start());
+        m.increment(FpeEvent.PASSTHROUGH);
+        ObjectName on = FpeMetricsJmx.register(m, "metrics-test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(on, "OPAQUE_ENCRYPT.count"));
+            assertEquals(1L, server.getAttribute(on, "PASSTHROUGH.count"));
+            assertTrue((Long) server.getAttribute(on, "OPAQUE_ENCRYPT.p99Nanos") >= 0);
+            server.invoke(on, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(on, "OPAQUE_ENCRYPT.count"));
+            ReflectionException e = assertThrows(ReflectionException.class,
+                    () -> server.invoke(on, "flush", new Object[0], new String[0]));
+            assertInstanceOf(NoSuchMethodException.class, e.getCause());
+        } finally {
+            FpeMetricsJmx.unregister("metrics-test");
+        }
+    }
+}
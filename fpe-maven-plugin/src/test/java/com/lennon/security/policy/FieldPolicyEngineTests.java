@@ -0,0 +1,121 @@
+package com.lennon.security.policy;
+
+import com.lennon.security.core.FF1BcEngineWithAlphabet;
+import com.lennon.security.core.FF1BcEngineWithFormat;
+import com.lennon.security.core.FormatPreservingService;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static com.lennon.security.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiled field policies against direct engine / service calls.
+ */
+public class FieldPolicyEngineTests {
+    private static final String CONFIG = String.join("\n",
+            "fields=phone,email,card,memo,name",
+            "field.phone.type=PHONE",
+            "field.phone.keepPrefix=3",
+            "field.phone.keepSuffix=4",
+            "field.email.type=EMAIL",
+            "field.card.type=DIGITS",
+            "field.card.checkDigit=KEEP_LAST",
+            "field.card.mask=dddd dddd dddd dddd",
+            "field.memo.type=UNICODE",
+            "field.name.type=ALPHABET",
+            "field.name.tweak=field:name");
+
+    @Test
+    public void handlers_match_direct_calls() throws Exception {
+        Properties props = new Properties();
+        props.load(new StringReader(CONFIG));
+        FieldPolicyEngine engine = FieldPolicyEngine.compile(PolicyConfig.parse(props), KEY, TWEAK);
+        assertEquals(5, engine.size());
+
+        FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(KEY, TWEAK);
+        FF1BcEngineWithAlphabet alpha = new FF1BcEngineWithAlphabet(KEY, FieldPolicy.DEFAULT_ALPHABET, TWEAK);
+        FormatPreservingService fps = new FormatPreservingService(digits, alpha);
+
+        int phone = engine.fieldId("phone");
+        int email = engine.fieldId("email");
+        int card = engine.fieldId("card");
+        int memo = engine.fieldId("memo");
+        int name = engine.fieldId("name");
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, new int[]{phone, email, card, memo, name});
+
+        String p = "+86-156-1894-0601";
+        assertEquals(fps.encryptPhoneKeepPrefix(p, 3, 4), engine.encrypt(phone, p));
+        String e = "alice.smith-01_test@example.com";
+        assertEquals(fps.encryptEmailWithMarker(e), engine.encrypt(email, e));
+        String c = "4111 1111 1111 1111";
+        String encCard = engine.encrypt(card, c);
+        assertEquals(digits.encryptFormatted(c, true), encCard);
+        assertEquals(c, engine.decrypt(card, encCard));
+        String m = "备注：VIP 客户";
+        assertEquals(fps.encryptAnyUnicodeOpaque(m), engine.encrypt(memo, m));
+        assertEquals(m, engine.decrypt(memo, engine.encrypt(memo, m)));
+
+        // per-field tweak
+        FF1BcEngineWithAlphabet nameEngine = new FF1BcEngineWithAlphabet(
+                KEY, FieldPolicy.DEFAULT_ALPHABET, "field:name".getBytes(StandardCharsets.UTF_8));
+        assertEquals(nameEngine.encryptFormatted("Alice Smith", false), engine.encrypt(name, "Alice Smith"));
+        assertEquals("Alice Smith", engine.decrypt(name, engine.encrypt(name, "Alice Smith")));
+
+        assertNull(engine.encrypt(phone, null));
+        assertSame(engine.handler(phone), engine.handler(engine.fieldId("phone")));
+    }
+
+    @Test
+    public void masked_fields_roundTrip_inputsOutsideMask() throws Exception {
+        FieldPolicyEngine engine = FieldPolicyEngine.compile(Arrays.asList(
+                FieldPolicy.of("phone", FieldType.PHONE).withKeep(1, 2).withMask("+1-ddd-ddd-dddd"),
+                FieldPolicy.of("digits", FieldType.DIGITS).withMask("+1-ddd-ddd-dddd"),
+                FieldPolicy.of("code", FieldType.ALPHABET).withMask("dddd-dddd")), KEY, TWEAK);
+        FF1BcEngineWithFormat digits = new FF1BcEngineWithFormat(KEY, TWEAK);
+        FF1BcEngineWithAlphabet alpha = new FF1BcEngineWithAlphabet(KEY, FieldPolicy.DEFAULT_ALPHABET, TWEAK);
+        FormatPreservingService fps = new FormatPreservingService(digits, alpha);
+
+        for (int i = 0; i < 100; i++) {
+            // "+7-..." does not fit the "+1-..." mask; its ciphertext may
+            String v = String.format("+7-200-%03d-0173", i);
+            String ph = engine.encrypt(0, v);
+            assertEquals(fps.encryptPhoneKeepPrefix(v, 1, 2), ph, v);
+            assertEquals(v, engine.decrypt(0, ph), v);
+            String d = engine.encrypt(1, v);
+            assertEquals(digits.encryptFormatted(v, false), d, v);
+            assertEquals(v, engine.decrypt(1, d), v);
+        }
+        for (String v : new String[]{"ab12-cd34", "ab12_cd34", "ab12 cd34"}) {
+            String enc = engine.encrypt(2, v);
+            assertEquals(alpha.encryptFormatted(v, false), enc, v);
+            assertEquals(v, engine.decrypt(2, enc), v);
+        }
+    }
+
+    @Test
+    public void rejects_invalid_policies_and_config() {
+        assertThrows(IllegalArgumentException.class, () -> FieldPolicyEngine.compile(Arrays.asList(
+                FieldPolicy.of("a", FieldType.DIGITS), FieldPolicy.of("a", FieldType.EMAIL)), KEY, TWEAK));
+        assertThrows(IllegalArgumentException.class, () -> FieldPolicyEngine.compile(List.of(
+                FieldPolicy.of("a", FieldType.EMAIL).withKeep(3, 4)), KEY, TWEAK));
+        assertThrows(IllegalArgumentException.class, () -> FieldPolicyEngine.compile(List.of(
+                FieldPolicy.of("a", FieldType.OPAQUE).withCheckDigit(CheckDigit.KEEP_LAST)), KEY, TWEAK));
+        assertThrows(IllegalArgumentException.class, () -> FieldPolicyEngine.compile(List.of(
+                FieldPolicy.of("a", FieldType.UNICODE).withAlphabet("0123456789")), KEY, TWEAK));
+
+        FieldPolicyEngine engine = FieldPolicyEngine.compile(List.of(FieldPolicy.of("a", FieldType.DIGITS)), KEY, TWEAK);
+        assertThrows(IllegalArgumentException.class, () -> engine.fieldId("b"));
+
+        Properties typo = new Properties();
+        typo.setProperty("fields", "a");
+        typo.setProperty("field.a.type", "DIGITS");
+        typo.setProperty("field.a.keepPrefx", "3");
+        assertThrows(IllegalArgumentException.class, () -> PolicyConfig.parse(typo));
+    }
+}